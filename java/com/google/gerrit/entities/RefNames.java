@@ -74,6 +74,9 @@ public class RefNames {
   /** Suffix of a ref that stores robot comments in the NoteDb. */
   public static final String ROBOT_COMMENTS_SUFFIX = "/robot-comments";
 
+  /** Suffix of a ref that keeps the history of a squashed meta ref in the NoteDb. */
+  public static final String META_HISTORY_SUFFIX = "/meta-history";
+
   public static final String EDIT_PREFIX = "edit-";
 
   /*
@@ -169,9 +172,16 @@ public class RefNames {
     return shard(id.get(), r).append(ROBOT_COMMENTS_SUFFIX).toString();
   }
 
+  public static String changeMetaHistoryRef(Change.Id id) {
+    StringBuilder r = newStringBuilder().append(REFS_CHANGES);
+    return shard(id.get(), r).append(META_HISTORY_SUFFIX).toString();
+  }
+
   public static boolean isNoteDbMetaRef(String ref) {
     if (ref.startsWith(REFS_CHANGES)
-        && (ref.endsWith(META_SUFFIX) || ref.endsWith(ROBOT_COMMENTS_SUFFIX))) {
+        && (ref.endsWith(META_SUFFIX)
+            || ref.endsWith(ROBOT_COMMENTS_SUFFIX)
+            || ref.endsWith(META_HISTORY_SUFFIX))) {
       return true;
     }
     if (ref.startsWith(REFS_DRAFT_COMMENTS) || ref.startsWith(REFS_STARRED_CHANGES)) {
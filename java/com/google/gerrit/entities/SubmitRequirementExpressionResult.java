@@ -158,7 +158,7 @@ public abstract class SubmitRequirementExpressionResult {
     public abstract String predicateString();
 
     /** true if the predicate is passing for a given change. */
-    abstract boolean status();
+    public abstract boolean status();
 
     /** Returns a list of leaf predicate results whose {@link PredicateResult#status()} is true. */
     ImmutableList<String> getPassingAtoms() {
@@ -0,0 +1,128 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.httpd;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Immutable snapshot of the objects that were advertised to a client by receive-pack.
+ *
+ * <p>The object IDs are stored sorted in a single byte array, i.e. with 20 bytes per object instead
+ * of an {@link ObjectId} instance and a hash set entry per object.
+ *
+ * <p>Snapshots are shared by the state of the advertised refs: users that can see the same refs of
+ * a project get the same advertised objects. An advertisement looks up the snapshot by a hash of its
+ * objects and reuses it if it contains exactly the same objects, so that only advertisements of a
+ * new ref state build a new snapshot. Snapshots are held weakly, a snapshot is released as soon as
+ * no cache entry references it anymore.
+ */
+final class AdvertisedObjects {
+  private static final Cache<Long, AdvertisedObjects> snapshots =
+      CacheBuilder.newBuilder().weakValues().build();
+
+  /** Returns the snapshot of the given object IDs. */
+  static AdvertisedObjects create(Set<? extends AnyObjectId> ids) {
+    long hash = hash(ids);
+    AdvertisedObjects snapshot = snapshots.getIfPresent(hash);
+    if (snapshot != null && snapshot.containsExactly(ids)) {
+      return snapshot;
+    }
+    snapshot = new AdvertisedObjects(ids);
+    snapshots.put(hash, snapshot);
+    return snapshot;
+  }
+
+  /** Returns a hash of the object IDs that doesn't depend on their order. */
+  @VisibleForTesting
+  static long hash(Collection<? extends AnyObjectId> ids) {
+    long sum = 0;
+    for (AnyObjectId id : ids) {
+      sum += id.hashCode();
+    }
+    return ((long) ids.size() << 32) + sum;
+  }
+
+  private final byte[] ids;
+
+  @VisibleForTesting
+  AdvertisedObjects(Collection<? extends AnyObjectId> ids) {
+    AnyObjectId[] sorted = ids.toArray(new AnyObjectId[0]);
+    Arrays.sort(sorted);
+    byte[] raw = new byte[sorted.length * Constants.OBJECT_ID_LENGTH];
+    int n = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i > 0 && AnyObjectId.isEqual(sorted[i - 1], sorted[i])) {
+        continue;
+      }
+      sorted[i].copyRawTo(raw, n * Constants.OBJECT_ID_LENGTH);
+      n++;
+    }
+    this.ids = n == sorted.length ? raw : Arrays.copyOf(raw, n * Constants.OBJECT_ID_LENGTH);
+  }
+
+  int size() {
+    return ids.length / Constants.OBJECT_ID_LENGTH;
+  }
+
+  boolean contains(AnyObjectId id) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = id.compareTo(ids, mid * Constants.OBJECT_ID_LENGTH);
+      if (cmp == 0) {
+        return true;
+      } else if (cmp < 0) {
+        high = mid - 1;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return false;
+  }
+
+  /** Returns whether this snapshot contains exactly the given object IDs. */
+  boolean containsExactly(Set<? extends AnyObjectId> other) {
+    if (other.size() != size()) {
+      return false;
+    }
+    for (AnyObjectId id : other) {
+      if (!contains(id)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the object IDs of this snapshot to the given set.
+   *
+   * <p>{@link org.eclipse.jgit.transport.ReceivePack} only takes the advertised objects as a
+   * mutable set that it iterates for the connectivity check, hence the snapshot must be expanded
+   * for a push request.
+   */
+  void addTo(Set<ObjectId> set) {
+    for (int p = 0; p < ids.length; p += Constants.OBJECT_ID_LENGTH) {
+      set.add(ObjectId.fromRaw(ids, p));
+    }
+  }
+}
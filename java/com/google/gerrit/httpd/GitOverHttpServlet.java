@@ -60,10 +60,7 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.time.Duration;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -82,7 +79,6 @@ import org.eclipse.jgit.http.server.HttpServerText;
 import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.http.server.UploadPackErrorHandler;
 import org.eclipse.jgit.http.server.resolver.AsIsFileService;
-import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.transport.PostUploadHook;
 import org.eclipse.jgit.transport.PostUploadHookChain;
@@ -102,7 +98,7 @@ import org.eclipse.jgit.transport.resolver.UploadPackFactory;
 public class GitOverHttpServlet extends GitServlet {
   private static final long serialVersionUID = 1L;
 
-  private static final String ATT_STATE = ProjectState.class.getName();
+  static final String ATT_STATE = ProjectState.class.getName();
   private static final String ATT_ARC = AsyncReceiveCommits.class.getName();
   private static final String ID_CACHE = "adv_bases";
 
@@ -148,6 +144,7 @@ public class GitOverHttpServlet extends GitServlet {
       bind(Resolver.class);
       bind(UploadFactory.class);
       bind(UploadFilter.class);
+      bind(UploadPackResponseCacheFilter.class);
       bind(new TypeLiteral<ReceivePackFactory<HttpServletRequest>>() {})
           .to(enableReceive ? ReceiveFactory.class : DisabledReceiveFactory.class);
       bind(ReceiveFilter.class);
@@ -155,7 +152,7 @@ public class GitOverHttpServlet extends GitServlet {
           new CacheModule() {
             @Override
             protected void configure() {
-              cache(ID_CACHE, AdvertisedObjectsCacheKey.class, new TypeLiteral<Set<ObjectId>>() {})
+              cache(ID_CACHE, AdvertisedObjectsCacheKey.class, AdvertisedObjects.class)
                   .maximumWeight(4096)
                   .expireAfterWrite(Duration.ofMinutes(10));
             }
@@ -236,6 +233,7 @@ public class GitOverHttpServlet extends GitServlet {
       Resolver resolver,
       UploadFactory upload,
       UploadFilter uploadFilter,
+      UploadPackResponseCacheFilter uploadPackResponseCacheFilter,
       GerritUploadPackErrorHandler uploadPackErrorHandler,
       ReceivePackFactory<HttpServletRequest> receive,
       ReceiveFilter receiveFilter) {
@@ -245,6 +243,7 @@ public class GitOverHttpServlet extends GitServlet {
     setUploadPackFactory(upload);
     setUploadPackErrorHandler(uploadPackErrorHandler);
     addUploadPackFilter(uploadFilter);
+    addUploadPackFilter(uploadPackResponseCacheFilter);
 
     setReceivePackFactory(receive);
     addReceivePackFilter(receiveFilter);
@@ -550,7 +549,7 @@ public class GitOverHttpServlet extends GitServlet {
   }
 
   static class ReceiveFilter implements Filter {
-    private final Cache<AdvertisedObjectsCacheKey, Set<ObjectId>> cache;
+    private final Cache<AdvertisedObjectsCacheKey, AdvertisedObjects> cache;
     private final PermissionBackend permissionBackend;
     private final Provider<CurrentUser> userProvider;
     private final GroupAuditService groupAuditService;
@@ -559,7 +558,7 @@ public class GitOverHttpServlet extends GitServlet {
 
     @Inject
     ReceiveFilter(
-        @Named(ID_CACHE) Cache<AdvertisedObjectsCacheKey, Set<ObjectId>> cache,
+        @Named(ID_CACHE) Cache<AdvertisedObjectsCacheKey, AdvertisedObjects> cache,
         PermissionBackend permissionBackend,
         Provider<CurrentUser> userProvider,
         GroupAuditService groupAuditService,
@@ -646,9 +645,9 @@ public class GitOverHttpServlet extends GitServlet {
       if (isGet) {
         cache.invalidate(cacheKey);
       } else {
-        Set<ObjectId> ids = cache.getIfPresent(cacheKey);
+        AdvertisedObjects ids = cache.getIfPresent(cacheKey);
         if (ids != null) {
-          rp.getAdvertisedObjects().addAll(ids);
+          ids.addTo(rp.getAdvertisedObjects());
           cache.invalidate(cacheKey);
         }
       }
@@ -656,7 +655,7 @@ public class GitOverHttpServlet extends GitServlet {
       chain.doFilter(request, responseWrapper);
 
       if (isGet) {
-        cache.put(cacheKey, Collections.unmodifiableSet(new HashSet<>(rp.getAdvertisedObjects())));
+        cache.put(cacheKey, AdvertisedObjects.create(rp.getAdvertisedObjects()));
       }
     }
 
@@ -0,0 +1,358 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.httpd;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.server.git.UploadPackResponseCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.eclipse.jgit.http.server.GitSmartHttpTools;
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.AdvertiseRefsHook;
+import org.eclipse.jgit.transport.PostUploadHook;
+import org.eclipse.jgit.transport.PostUploadHookChain;
+import org.eclipse.jgit.transport.RefFilter;
+import org.eclipse.jgit.transport.ServiceMayNotContinueException;
+import org.eclipse.jgit.transport.UploadPack;
+
+/**
+ * Answers upload-pack requests over HTTP from the {@link UploadPackResponseCache} and stores the
+ * responses of cacheable requests that miss the cache.
+ *
+ * <p>Must run after {@link GitOverHttpServlet.UploadFilter}, which checks that the user may run
+ * upload-pack and installs the upload validators.
+ */
+@Singleton
+class UploadPackResponseCacheFilter implements Filter {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final UploadPackResponseCache cache;
+
+  @Inject
+  UploadPackResponseCacheFilter(UploadPackResponseCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain next)
+      throws IOException, ServletException {
+    HttpServletRequest req = (HttpServletRequest) request;
+    HttpServletResponse rsp = (HttpServletResponse) response;
+    ProjectState state = (ProjectState) req.getAttribute(GitOverHttpServlet.ATT_STATE);
+    UploadPack up = (UploadPack) req.getAttribute(ServletUtils.ATTRIBUTE_HANDLER);
+    if (!cache.isEnabled()
+        || !"POST".equals(req.getMethod())
+        || state == null
+        || up == null
+        || state.isAllUsers()
+        || up.getAdvertiseRefsHook() != AdvertiseRefsHook.DEFAULT
+        || up.getRefFilter() != RefFilter.DEFAULT) {
+      // Responses that depend on custom ref advertisements can't be keyed by the visible refs.
+      next.doFilter(req, rsp);
+      return;
+    }
+
+    InputStream in = req.getInputStream();
+    byte[] body = ByteStreams.toByteArray(ByteStreams.limit(in, cache.getMaxRequestSize() + 1L));
+    HttpServletRequest replay = new ReplayingRequest(req, body, in);
+    if (body.length > cache.getMaxRequestSize()) {
+      next.doFilter(replay, rsp);
+      return;
+    }
+
+    Optional<UploadPackResponseCache.Request> cacheable =
+        UploadPackResponseCache.parse(decode(req, body));
+    if (!cacheable.isPresent()) {
+      next.doFilter(replay, rsp);
+      return;
+    }
+
+    ObjectId key =
+        UploadPackResponseCache.key(
+            state.getNameKey(),
+            req.getHeader("Git-Protocol"),
+            cacheable.get(),
+            up.getRepository().getRefDatabase().getRefs());
+    if (serveFromCache(key, cacheable.get(), up, rsp)) {
+      return;
+    }
+
+    AtomicBoolean packSent = new AtomicBoolean();
+    up.setPostUploadHook(
+        PostUploadHookChain.newChain(
+            ImmutableList.<PostUploadHook>of(
+                up.getPostUploadHook(), stats -> packSent.set(true))));
+    try (UploadPackResponseCache.Writer writer = cache.newWriter(key)) {
+      TeeResponse tee = new TeeResponse(rsp, writer);
+      next.doFilter(replay, tee);
+      if (packSent.get() && tee.isCacheable()) {
+        writer.commit();
+      }
+    }
+  }
+
+  private boolean serveFromCache(
+      ObjectId key,
+      UploadPackResponseCache.Request request,
+      UploadPack up,
+      HttpServletResponse rsp)
+      throws IOException {
+    try (FileChannel channel = cache.open(key)) {
+      if (channel == null) {
+        return false;
+      }
+      try {
+        up.getPreUploadHook().onSendPack(up, request.wants(), ImmutableList.of());
+      } catch (ServiceMayNotContinueException e) {
+        // Let upload-pack reject the request the usual way.
+        return false;
+      }
+
+      long size = channel.size();
+      rsp.setStatus(HttpServletResponse.SC_OK);
+      rsp.setContentType(GitSmartHttpTools.UPLOAD_PACK_RESULT_TYPE);
+      rsp.setHeader("Cache-Control", "no-cache, max-age=0, must-revalidate");
+      rsp.setHeader("Pragma", "no-cache");
+      rsp.setContentLengthLong(size);
+      // The servlet API only exposes a stream, hence the file channel transfers into a channel
+      // that wraps the response stream, without copying the data through the JVM heap in between.
+      WritableByteChannel out = Channels.newChannel(rsp.getOutputStream());
+      long position = 0;
+      while (position < size) {
+        position += channel.transferTo(position, size - position, out);
+      }
+      rsp.flushBuffer();
+      cache.served(size);
+      return true;
+    }
+  }
+
+  private static byte[] decode(HttpServletRequest req, byte[] body) throws IOException {
+    String encoding = req.getHeader("Content-Encoding");
+    if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+      try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+        return ByteStreams.toByteArray(in);
+      }
+    }
+    return body;
+  }
+
+  @Override
+  public void init(FilterConfig config) {}
+
+  @Override
+  public void destroy() {}
+
+  /** Request that replays the part of the body that was already read. */
+  private static class ReplayingRequest extends HttpServletRequestWrapper {
+    private final ServletInputStream in;
+
+    ReplayingRequest(HttpServletRequest req, byte[] read, InputStream remaining) {
+      super(req);
+      InputStream body = new SequenceInputStream(new ByteArrayInputStream(read), remaining);
+      this.in =
+          new ServletInputStream() {
+            private boolean finished;
+
+            @Override
+            public int read() throws IOException {
+              int b = body.read();
+              finished = b < 0;
+              return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+              int n = body.read(b, off, len);
+              finished = n < 0;
+              return n;
+            }
+
+            @Override
+            public boolean isFinished() {
+              return finished;
+            }
+
+            @Override
+            public boolean isReady() {
+              return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+              throw new UnsupportedOperationException();
+            }
+          };
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      return in;
+    }
+  }
+
+  /**
+   * Response that copies the body into the cache, as long as the response looks like a successful
+   * upload-pack result.
+   */
+  private static class TeeResponse extends HttpServletResponseWrapper {
+    private final OutputStream copy;
+    private boolean cacheable = true;
+    private String contentType;
+    private ServletOutputStream out;
+
+    TeeResponse(HttpServletResponse rsp, OutputStream copy) {
+      super(rsp);
+      this.copy = copy;
+    }
+
+    boolean isCacheable() {
+      return cacheable && GitSmartHttpTools.UPLOAD_PACK_RESULT_TYPE.equals(contentType);
+    }
+
+    @Override
+    public void setContentType(String type) {
+      contentType = type;
+      super.setContentType(type);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+      cacheable &= sc == SC_OK;
+      super.setStatus(sc);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setStatus(int sc, String sm) {
+      cacheable &= sc == SC_OK;
+      super.setStatus(sc, sm);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      cacheable = false;
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      cacheable = false;
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      checkHeader(name);
+      super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      checkHeader(name);
+      super.addHeader(name, value);
+    }
+
+    private void checkHeader(String name) {
+      if ("Content-Encoding".equalsIgnoreCase(name)) {
+        // The cached response would be served without this header.
+        cacheable = false;
+      }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      cacheable = false;
+      return super.getWriter();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (out == null) {
+        ServletOutputStream delegate = super.getOutputStream();
+        out =
+            new ServletOutputStream() {
+              @Override
+              public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+              }
+
+              @Override
+              public void write(byte[] b, int off, int len) throws IOException {
+                delegate.write(b, off, len);
+                if (cacheable) {
+                  try {
+                    copy.write(b, off, len);
+                  } catch (IOException e) {
+                    logger.atWarning().withCause(e).log("Cannot cache upload-pack response");
+                    cacheable = false;
+                  }
+                }
+              }
+
+              @Override
+              public void flush() throws IOException {
+                delegate.flush();
+              }
+
+              @Override
+              public void close() throws IOException {
+                delegate.close();
+              }
+
+              @Override
+              public boolean isReady() {
+                return delegate.isReady();
+              }
+
+              @Override
+              public void setWriteListener(WriteListener listener) {
+                delegate.setWriteListener(listener);
+              }
+            };
+      }
+      return out;
+    }
+  }
+}
@@ -346,6 +346,8 @@ public class RestApiServlet extends HttpServlet {
                             requestInfo, req.getHeader(X_GERRIT_DEADLINE)));
             PerformanceLogContext performanceLogContext =
                 new PerformanceLogContext(globals.config, globals.performanceLoggers)) {
+          performanceLogContext.accountResourceUsage(
+              requestInfo.formatForLogging(), requestInfo.resourceUsage());
           traceRequestData(req);
 
           if (corsResponder.filterCorsPreflight(req, res)) {
@@ -1408,10 +1410,10 @@ public class RestApiServlet extends HttpServlet {
       throws IOException {
     BinaryResult gz;
     long len = src.getContentLength();
-    if (len < 256) {
+    if (0 <= len && len < 256) {
       return src; // Do not compress very small payloads.
     }
-    if (len <= (10 << 20)) {
+    if (0 <= len && len <= (10 << 20)) {
       gz = compress(src);
       if (len <= gz.getContentLength()) {
         return src;
@@ -154,6 +154,26 @@ public interface Index<K, V> {
    */
   void markReady(boolean ready);
 
+  /**
+   * Commits all writes to this index to durable storage.
+   *
+   * <p>Only needed if the index does not commit on its own, e.g. during offline reindexing. The
+   * default implementation does nothing.
+   *
+   * @throws IOException if committing to the storage fails.
+   */
+  default void commit() throws IOException {}
+
+  /**
+   * Prepares the index for serving after all documents were written by a full reindex, e.g. by
+   * merging and committing the written data. Called before the index is marked as ready.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @throws IOException if writing to the storage fails.
+   */
+  default void finishBuild() throws IOException {}
+
   /**
    * Returns whether the index is enabled. {@code true} by default, but could be overridden by
    * implementations.
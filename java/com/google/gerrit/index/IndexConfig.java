@@ -46,6 +46,7 @@ public abstract class IndexConfig {
     setIfPresent(cfg, "maxPageSize", b::maxPageSize);
     setTypeOrDefault(cfg, b::type);
     setPaginationTypeOrDefault(cfg, b::paginationType);
+    b.pipelinedPagination(cfg.getBoolean("index", null, "pipelinedPagination", false));
     return b;
   }
 
@@ -76,7 +77,8 @@ public abstract class IndexConfig {
         .maxPageSize(Integer.MAX_VALUE)
         .type(IndexType.getDefault())
         .separateChangeSubIndexes(false)
-        .paginationType(PaginationType.OFFSET);
+        .paginationType(PaginationType.OFFSET)
+        .pipelinedPagination(false);
   }
 
   @AutoValue.Builder
@@ -109,6 +111,8 @@ public abstract class IndexConfig {
 
     public abstract Builder maxPageSize(int maxPageSize);
 
+    public abstract Builder pipelinedPagination(boolean pipelined);
+
     abstract IndexConfig autoBuild();
 
     public IndexConfig build() {
@@ -174,4 +178,10 @@ public abstract class IndexConfig {
    * Returns maximum allowed limit when repeating index queries to obtain the next set of results.
    */
   public abstract int maxPageSize();
+
+  /**
+   * Returns whether the next page of results is requested from the index while the current page is
+   * being filtered, and whether the results of a page may be filtered in parallel.
+   */
+  public abstract boolean pipelinedPagination();
 }
@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.gerrit.index.IndexConfig;
 import com.google.gerrit.index.PaginationType;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -86,6 +87,23 @@ public class AndSource<T> extends AndPredicate<T> implements DataSource<T> {
     return buffer;
   }
 
+  /**
+   * Returns the objects that this source matches, in the given order.
+   *
+   * <p>Used to filter the results of the selected data source page by page if {@link
+   * IndexConfig#pipelinedPagination()} is enabled. Subclasses may override this method to match
+   * the objects as a batch, e.g. in parallel.
+   */
+  protected List<T> matchAll(List<T> objects) {
+    List<T> matches = new ArrayList<>(objects.size());
+    for (T object : objects) {
+      if (match(object)) {
+        matches.add(object);
+      }
+    }
+    return matches;
+  }
+
   @Override
   public int getCardinality() {
     return cardinality;
@@ -131,5 +149,10 @@ public class AndSource<T> extends AndPredicate<T> implements DataSource<T> {
     protected boolean isMatchable() {
       return AndSource.this.isMatchable();
     }
+
+    @Override
+    protected List<T> matchAll(List<T> objects) {
+      return AndSource.this.matchAll(objects);
+    }
   }
 }
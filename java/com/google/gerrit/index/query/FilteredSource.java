@@ -31,7 +31,7 @@ public class FilteredSource<T> implements DataSource<T> {
   protected final int start;
   protected final int cardinality;
   protected final IndexConfig indexConfig;
-  private static final int PARTITION_SIZE = 50;
+  protected static final int PARTITION_SIZE = 50;
 
   public FilteredSource(DataSource<T> source, int start, IndexConfig indexConfig) {
     checkArgument(start >= 0, "negative start: %s", start);
@@ -122,4 +122,21 @@ public class FilteredSource<T> implements DataSource<T> {
   protected boolean isMatchable() {
     return true;
   }
+
+  /**
+   * Returns the objects that this data source matches, in the given order.
+   *
+   * <p>Subclasses may override this method to match the objects as a batch, e.g. in parallel.
+   *
+   * @param objects objects to be matched
+   */
+  protected List<T> matchAll(List<T> objects) {
+    List<T> matches = new ArrayList<>(objects.size());
+    for (T object : objects) {
+      if (match(object)) {
+        matches.add(object);
+      }
+    }
+    return matches;
+  }
 }
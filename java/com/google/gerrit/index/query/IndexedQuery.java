@@ -19,6 +19,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.index.Index;
 import com.google.gerrit.index.QueryOptions;
+import com.google.gerrit.server.logging.LoggingContext;
+import com.google.gerrit.server.logging.ResourceUsage;
 import java.util.Collection;
 import java.util.List;
 
@@ -78,11 +80,13 @@ public class IndexedQuery<I, T> extends Predicate<T> implements DataSource<T>, P
 
   @Override
   public ResultSet<T> read() {
+    LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.INDEX_QUERIES, 1);
     return source.read();
   }
 
   @Override
   public ResultSet<FieldBundle> readRaw() {
+    LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.INDEX_QUERIES, 1);
     return source.readRaw();
   }
 
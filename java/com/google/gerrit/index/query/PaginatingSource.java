@@ -15,6 +15,7 @@
 package com.google.gerrit.index.query;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.index.IndexConfig;
@@ -38,6 +39,9 @@ public class PaginatingSource<T> extends FilteredSource<T> {
     // ResultSets are lazy. Calling #read here first and then dealing with ResultSets only when
     // requested allows the index to run asynchronous queries.
     ResultSet<T> resultSet = source.read();
+    if (indexConfig.pipelinedPagination() && source instanceof Paginated) {
+      return new LazyResultSet<>(() -> readPipelined(resultSet));
+    }
     return new LazyResultSet<>(
         () -> {
           List<T> r = new ArrayList<>();
@@ -92,6 +96,67 @@ public class PaginatingSource<T> extends FilteredSource<T> {
         });
   }
 
+  /**
+   * Reads the results page by page, requesting the next page from the index before the current page
+   * is filtered, so that the index query for the next page runs while the current page is matched.
+   *
+   * <p>Each page is matched in partitions by {@link #matchAll(List)}, reading stops as soon as
+   * there is one more result than the limit. If the prefetched page turns out not to be needed, it
+   * is closed without being read.
+   */
+  private ImmutableList<T> readPipelined(ResultSet<T> resultSet) {
+    @SuppressWarnings("unchecked")
+    Paginated<T> p = (Paginated<T>) source;
+    QueryOptions opts = p.getOptions();
+    int limit = opts.limit();
+    int pageSize = opts.pageSize();
+    int pageSizeMultiplier = opts.pageSizeMultiplier();
+    List<T> r = new ArrayList<>();
+    int nextStart = 0;
+    boolean firstPage = true;
+    ResultSet<T> current = resultSet;
+    while (current != null) {
+      ImmutableList<T> page = ImmutableList.copyOf(buffer(current));
+      nextStart += page.size();
+
+      ResultSet<T> next = null;
+      if (!page.isEmpty() && page.size() == pageSize) {
+        pageSize = getNextPageSize(pageSize, pageSizeMultiplier);
+        next =
+            indexConfig.paginationType().equals(PaginationType.SEARCH_AFTER)
+                ? p.restart(current.searchAfter(), pageSize)
+                : p.restart(nextStart, pageSize);
+      }
+
+      if (firstPage && !isMatchable()) {
+        r.addAll(page);
+      } else {
+        for (List<T> partition : Lists.partition(page, PARTITION_SIZE)) {
+          r.addAll(matchAll(partition));
+          if (r.size() > limit) { // get 1 more than the limit
+            break;
+          }
+        }
+      }
+      firstPage = false;
+
+      if (r.size() > limit) {
+        if (next != null) {
+          next.close();
+        }
+        break;
+      }
+      current = next;
+    }
+
+    if (start >= r.size()) {
+      return ImmutableList.of();
+    } else if (start > 0) {
+      return ImmutableList.copyOf(r.subList(start, r.size()));
+    }
+    return ImmutableList.copyOf(r);
+  }
+
   @Override
   public ResultSet<FieldBundle> readRaw() {
     // TODO(hiesel): Implement
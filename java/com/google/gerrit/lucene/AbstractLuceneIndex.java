@@ -116,6 +116,7 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
   private final AutoFlush autoFlush;
   private ScheduledExecutorService autoCommitExecutor;
   private final Function<V, K> valueToKeyFunction;
+  private final int buildMaxSegments;
 
   @SuppressWarnings("ThreadPriorityCheck")
   AbstractLuceneIndex(
@@ -139,6 +140,15 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
     this.valueToKeyFunction = valueToKeyFunction;
     String index = Joiner.on('_').skipNulls().join(name, subIndex);
     long commitPeriod = writerConfig.getCommitWithinMs();
+    this.buildMaxSegments = writerConfig.getBuildMaxSegments();
+
+    // Without auto flush the index is not searched while it is written, e.g. during offline
+    // reindexing, hence the writer can be tuned for bulk writes by several threads.
+    int writerThreads = 1;
+    if (autoFlush.equals(AutoFlush.DISABLED)) {
+      writerConfig.enableBuildMode();
+      writerThreads = writerConfig.getBuildWriterThreads();
+    }
 
     writerConfig.setIndexDeletionPolicy(
         new SnapshotDeletionPolicy(writerConfig.getIndexDeletionPolicy()));
@@ -195,7 +205,7 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
         MoreExecutors.listeningDecorator(
             new LoggingContextAwareExecutorService(
                 Executors.newFixedThreadPool(
-                    1,
+                    writerThreads,
                     new ThreadFactoryBuilder()
                         .setNameFormat(index + " Write-%d")
                         .setDaemon(true)
@@ -243,6 +253,20 @@ public abstract class AbstractLuceneIndex<K, V> implements Index<K, V> {
     IndexUtils.setReady(sitePaths, name, schema.getVersion(), ready);
   }
 
+  @Override
+  public void commit() throws IOException {
+    writer.commit();
+  }
+
+  @Override
+  public void finishBuild() throws IOException {
+    if (buildMaxSegments > 0) {
+      logger.atInfo().log("Merging %s index into at most %d segments", name, buildMaxSegments);
+      writer.forceMerge(buildMaxSegments);
+    }
+    writer.commit();
+  }
+
   @Override
   public void close() {
     if (autoCommitExecutor != null) {
@@ -35,6 +35,9 @@ class GerritIndexWriterConfig {
   private final IndexWriterConfig luceneConfig;
   private long commitWithinMs;
   private final CustomMappingAnalyzer analyzer;
+  private final double buildRamBufferSizeMb;
+  private final int buildWriterThreads;
+  private final int buildMaxSegments;
 
   GerritIndexWriterConfig(Config cfg, String name) {
     analyzer =
@@ -69,6 +72,10 @@ class GerritIndexWriterConfig {
             / m);
     luceneConfig.setMaxBufferedDocs(
         cfg.getInt("index", name, "maxBufferedDocs", IndexWriterConfig.DEFAULT_MAX_BUFFERED_DOCS));
+    buildRamBufferSizeMb = cfg.getLong("index", name, "buildRamBufferSize", 256L << 20) / m;
+    buildWriterThreads =
+        cfg.getInt("index", name, "buildWriterThreads", Runtime.getRuntime().availableProcessors());
+    buildMaxSegments = cfg.getInt("index", name, "buildMaxSegments", 10);
     try {
       commitWithinMs =
           ConfigUtil.getTimeUnit(
@@ -78,6 +85,29 @@ class GerritIndexWriterConfig {
     }
   }
 
+  /**
+   * Tunes the writer for building the index from scratch, e.g. during offline reindexing: documents
+   * are buffered in a large RAM buffer and are only flushed when the buffer is full.
+   */
+  void enableBuildMode() {
+    luceneConfig.setRAMBufferSizeMB(
+        Math.max(luceneConfig.getRAMBufferSizeMB(), buildRamBufferSizeMb));
+    luceneConfig.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+  }
+
+  /** Returns the number of threads that write documents in build mode. */
+  int getBuildWriterThreads() {
+    return Math.max(1, buildWriterThreads);
+  }
+
+  /**
+   * Returns the number of segments the index is merged into when the build has finished, or 0 if
+   * the index should not be merged.
+   */
+  int getBuildMaxSegments() {
+    return buildMaxSegments;
+  }
+
   void setIndexDeletionPolicy(IndexDeletionPolicy indexDeletionPolicy) {
     luceneConfig.setIndexDeletionPolicy(indexDeletionPolicy);
   }
@@ -290,6 +290,18 @@ public class LuceneChangeIndex implements ChangeIndex {
     openIndex.markReady(ready);
   }
 
+  @Override
+  public void commit() throws IOException {
+    openIndex.commit();
+    closedIndex.commit();
+  }
+
+  @Override
+  public void finishBuild() throws IOException {
+    openIndex.finishBuild();
+    closedIndex.finishBuild();
+  }
+
   @Override
   public boolean snapshot(String id) throws IOException {
     return openIndex.snapshot(id) && closedIndex.snapshot(id);
@@ -17,6 +17,7 @@ package com.google.gerrit.metrics;
 /** Type of reservoir for collecting metrics into. */
 public enum ReservoirType {
   ExponentiallyDecaying,
+  HdrHistogram,
   SlidingTimeWindowArray,
   SlidingTimeWindow,
   SlidingWindow,
@@ -88,14 +88,15 @@ public abstract class Timer1<F1> implements RegistrationHandle {
   public final void record(F1 fieldValue, long value, TimeUnit unit) {
     long durationNanos = unit.toNanos(value);
 
-    Metadata.Builder metadataBuilder = Metadata.builder();
-    field.metadataMapper().accept(metadataBuilder, fieldValue);
-    Metadata metadata = metadataBuilder.build();
-
     if (!suppressLogging) {
       LoggingContext.getInstance()
           .addPerformanceLogRecord(
-              () -> PerformanceLogRecord.create(name, durationNanos, metadata));
+              () -> {
+                // Only build the metadata if performance logging is enabled.
+                Metadata.Builder metadataBuilder = Metadata.builder();
+                field.metadataMapper().accept(metadataBuilder, fieldValue);
+                return PerformanceLogRecord.create(name, durationNanos, metadataBuilder.build());
+              });
       logger.atFinest().log(
           "%s (%s = %s) took %.2f ms", name, field.name(), fieldValue, durationNanos / 1000000.0);
     }
@@ -97,15 +97,15 @@ public abstract class Timer2<F1, F2> implements RegistrationHandle {
   public final void record(F1 fieldValue1, F2 fieldValue2, long value, TimeUnit unit) {
     long durationNanos = unit.toNanos(value);
 
-    Metadata.Builder metadataBuilder = Metadata.builder();
-    field1.metadataMapper().accept(metadataBuilder, fieldValue1);
-    field2.metadataMapper().accept(metadataBuilder, fieldValue2);
-    Metadata metadata = metadataBuilder.build();
-
     if (!suppressLogging) {
       LoggingContext.getInstance()
           .addPerformanceLogRecord(
-              () -> PerformanceLogRecord.create(name, durationNanos, metadata));
+              () -> {
+                Metadata.Builder metadataBuilder = Metadata.builder();
+                field1.metadataMapper().accept(metadataBuilder, fieldValue1);
+                field2.metadataMapper().accept(metadataBuilder, fieldValue2);
+                return PerformanceLogRecord.create(name, durationNanos, metadataBuilder.build());
+              });
       logger.atFinest().log(
           "%s (%s = %s, %s = %s) took %.2f ms",
           name, field1.name(), fieldValue1, field2.name(), fieldValue2, durationNanos / 1000000.0);
@@ -105,16 +105,16 @@ public abstract class Timer3<F1, F2, F3> implements RegistrationHandle {
       F1 fieldValue1, F2 fieldValue2, F3 fieldValue3, long value, TimeUnit unit) {
     long durationNanos = unit.toNanos(value);
 
-    Metadata.Builder metadataBuilder = Metadata.builder();
-    field1.metadataMapper().accept(metadataBuilder, fieldValue1);
-    field2.metadataMapper().accept(metadataBuilder, fieldValue2);
-    field3.metadataMapper().accept(metadataBuilder, fieldValue3);
-    Metadata metadata = metadataBuilder.build();
-
     if (!suppressLogging) {
       LoggingContext.getInstance()
           .addPerformanceLogRecord(
-              () -> PerformanceLogRecord.create(name, durationNanos, metadata));
+              () -> {
+                Metadata.Builder metadataBuilder = Metadata.builder();
+                field1.metadataMapper().accept(metadataBuilder, fieldValue1);
+                field2.metadataMapper().accept(metadataBuilder, fieldValue2);
+                field3.metadataMapper().accept(metadataBuilder, fieldValue3);
+                return PerformanceLogRecord.create(name, durationNanos, metadataBuilder.build());
+              });
       logger.atFinest().log(
           "%s (%s = %s, %s = %s, %s = %s) took %.2f ms",
           name,
@@ -15,7 +15,6 @@
 package com.google.gerrit.metrics.dropwizard;
 
 import com.codahale.metrics.Metric;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
@@ -51,14 +50,6 @@ abstract class BucketedHistogram implements BucketedMetric {
     metrics.remove(name);
   }
 
-  HistogramImpl forceCreate(Object f1, Object f2) {
-    return forceCreate(ImmutableList.of(f1, f2));
-  }
-
-  HistogramImpl forceCreate(Object f1, Object f2, Object f3) {
-    return forceCreate(ImmutableList.of(f1, f2, f3));
-  }
-
   HistogramImpl forceCreate(Object key) {
     HistogramImpl c = cells.get(key);
     if (c != null) {
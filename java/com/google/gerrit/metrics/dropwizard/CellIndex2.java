@@ -0,0 +1,51 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.metrics.dropwizard;
+
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Index of the cells of a bucketed metric with two fields.
+ *
+ * <p>Cells are indexed by one nested map per field, so that looking up the cell for a pair of field
+ * values doesn't need to allocate a key. Recording a value for an existing cell is the common case,
+ * the {@link ImmutableList} key of the metric is only built when a new cell is created.
+ *
+ * @param <F1> type of the first field.
+ * @param <F2> type of the second field.
+ * @param <V> type of the cells.
+ */
+class CellIndex2<F1, F2, V> {
+  private final ConcurrentMap<F1, ConcurrentMap<F2, V>> index = new ConcurrentHashMap<>();
+  private final Function<Object, V> create;
+
+  /** @param create returns the cell for an {@link ImmutableList} of the field values. */
+  CellIndex2(Function<Object, V> create) {
+    this.create = create;
+  }
+
+  V get(F1 f1, F2 f2) {
+    ConcurrentMap<F2, V> byF2 = index.get(f1);
+    V cell = byF2 != null ? byF2.get(f2) : null;
+    if (cell == null) {
+      cell = create.apply(ImmutableList.of(f1, f2));
+      index.computeIfAbsent(f1, k -> new ConcurrentHashMap<>()).putIfAbsent(f2, cell);
+    }
+    return cell;
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.metrics.dropwizard;
+
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Index of the cells of a bucketed metric with three fields.
+ *
+ * @see CellIndex2
+ * @param <F1> type of the first field.
+ * @param <F2> type of the second field.
+ * @param <F3> type of the third field.
+ * @param <V> type of the cells.
+ */
+class CellIndex3<F1, F2, F3, V> {
+  private final ConcurrentMap<F1, ConcurrentMap<F2, ConcurrentMap<F3, V>>> index =
+      new ConcurrentHashMap<>();
+  private final Function<Object, V> create;
+
+  /** @param create returns the cell for an {@link ImmutableList} of the field values. */
+  CellIndex3(Function<Object, V> create) {
+    this.create = create;
+  }
+
+  V get(F1 f1, F2 f2, F3 f3) {
+    ConcurrentMap<F2, ConcurrentMap<F3, V>> byF2 = index.get(f1);
+    ConcurrentMap<F3, V> byF3 = byF2 != null ? byF2.get(f2) : null;
+    V cell = byF3 != null ? byF3.get(f3) : null;
+    if (cell == null) {
+      cell = create.apply(ImmutableList.of(f1, f2, f3));
+      index
+          .computeIfAbsent(f1, k -> new ConcurrentHashMap<>())
+          .computeIfAbsent(f2, k -> new ConcurrentHashMap<>())
+          .putIfAbsent(f3, cell);
+    }
+    return cell;
+  }
+}
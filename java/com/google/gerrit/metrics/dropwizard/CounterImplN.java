@@ -20,6 +20,7 @@ import com.google.gerrit.metrics.Counter2;
 import com.google.gerrit.metrics.Counter3;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.dropwizard.DropWizardMetricMaker.CounterImpl;
 import java.util.function.Function;
 
 /** Generalized implementation of N-dimensional counter metrics. */
@@ -29,11 +30,12 @@ class CounterImplN extends BucketedCounter implements BucketedMetric {
   }
 
   <F1, F2> Counter2<F1, F2> counter2() {
+    CellIndex2<F1, F2, CounterImpl> cells = new CellIndex2<>(this::forceCreate);
     return new Counter2<>() {
       @Override
       public void incrementBy(F1 field1, F2 field2, long value) {
         total.incrementBy(value);
-        forceCreate(field1, field2).incrementBy(value);
+        cells.get(field1, field2).incrementBy(value);
       }
 
       @Override
@@ -44,11 +46,12 @@ class CounterImplN extends BucketedCounter implements BucketedMetric {
   }
 
   <F1, F2, F3> Counter3<F1, F2, F3> counter3() {
+    CellIndex3<F1, F2, F3, CounterImpl> cells = new CellIndex3<>(this::forceCreate);
     return new Counter3<>() {
       @Override
       public void incrementBy(F1 field1, F2 field2, F3 field3, long value) {
         total.incrementBy(value);
-        forceCreate(field1, field2, field3).incrementBy(value);
+        cells.get(field1, field2, field3).incrementBy(value);
       }
 
       @Override
@@ -33,6 +33,9 @@ class DropWizardReservoirProvider {
     switch (reservoirType) {
       case ExponentiallyDecaying:
         return new ExponentiallyDecayingReservoir(config.reservoirSize(), config.reservoirAlpha());
+      case HdrHistogram:
+        return new HdrHistogramReservoir(
+            config.reservoirWindow().toMillis(), TimeUnit.MILLISECONDS);
       case SlidingTimeWindowArray:
         return new SlidingTimeWindowArrayReservoir(
             config.reservoirWindow().toMillis(), TimeUnit.MILLISECONDS);
@@ -0,0 +1,328 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.metrics.dropwizard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Reservoir that records values into a histogram with logarithmic buckets, similar to an
+ * HdrHistogram.
+ *
+ * <p>Recording a value increments a single bucket counter, it neither locks nor allocates. Values
+ * are kept with a relative precision of {@code 1/}{@link #SUB_BUCKETS}, independent of their
+ * magnitude, and the memory used doesn't depend on the number of recorded values.
+ *
+ * <p>Values are recorded into two interval histograms that are swapped once per window, like the
+ * double buffering of an HdrHistogram {@code Recorder}. A snapshot covers the current and the
+ * previous interval, i.e. the values that were recorded during the last one to two windows.
+ */
+class HdrHistogramReservoir implements Reservoir {
+  /** Number of sub-buckets per power of two, determines the precision. */
+  @VisibleForTesting static final int SUB_BUCKETS = 64;
+
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+  /** Values below this are counted exactly, each in a bucket of its own. */
+  private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+  private static final int SEGMENTS = 64 - SUB_BUCKET_BITS;
+
+  private final long windowNanos;
+  private final LongSupplier nanoClock;
+  private final Object rotateLock = new Object();
+
+  private volatile Interval current = new Interval();
+  private volatile Interval previous = new Interval();
+  private volatile long nextRotation;
+
+  HdrHistogramReservoir(long window, TimeUnit unit) {
+    this(window, unit, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  HdrHistogramReservoir(long window, TimeUnit unit, LongSupplier nanoClock) {
+    this.windowNanos = Math.max(1, unit.toNanos(window));
+    this.nanoClock = nanoClock;
+    this.nextRotation = nanoClock.getAsLong() + windowNanos;
+  }
+
+  @Override
+  public int size() {
+    rotateIfDue();
+    long count = current.count() + previous.count();
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void update(long value) {
+    rotateIfDue();
+    current.record(Math.max(0, value));
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    rotateIfDue();
+    return new HdrSnapshot(previous, current);
+  }
+
+  private void rotateIfDue() {
+    if (nanoClock.getAsLong() - nextRotation < 0) {
+      return;
+    }
+    synchronized (rotateLock) {
+      long now = nanoClock.getAsLong();
+      if (now - nextRotation < 0) {
+        return;
+      }
+      if (now - nextRotation >= windowNanos) {
+        // Nothing was rotated for more than one window, all recorded values are too old.
+        previous = new Interval();
+      } else {
+        previous = current;
+      }
+      // Writers that still hold the old current interval record into the previous interval, which
+      // is still part of the snapshots.
+      current = new Interval();
+      nextRotation = now + windowNanos;
+    }
+  }
+
+  /** Returns the index of the bucket that counts {@code value}. */
+  @VisibleForTesting
+  static int bucketIndex(long value) {
+    if (value < LINEAR_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  /** Returns the smallest value that is counted in the bucket. */
+  @VisibleForTesting
+  static long lowestValue(int index) {
+    if (index < LINEAR_BUCKETS) {
+      return index;
+    }
+    int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    long subBucket = SUB_BUCKETS + (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+    return subBucket << shift;
+  }
+
+  /** Returns the largest value that is counted in the bucket. */
+  @VisibleForTesting
+  static long highestValue(int index) {
+    if (index < LINEAR_BUCKETS) {
+      return index;
+    }
+    int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    return lowestValue(index) + (1L << shift) - 1;
+  }
+
+  /**
+   * Bucket counts of one interval.
+   *
+   * <p>Counts are stored in segments of {@link #SUB_BUCKETS} buckets that are allocated when the
+   * first value is recorded into them, so that only the range of values that is actually used
+   * takes memory.
+   */
+  private static class Interval {
+    private final AtomicReferenceArray<AtomicLongArray> segments =
+        new AtomicReferenceArray<>(SEGMENTS);
+
+    void record(long value) {
+      int index = bucketIndex(value);
+      int segment = index / SUB_BUCKETS;
+      AtomicLongArray counts = segments.get(segment);
+      if (counts == null) {
+        segments.compareAndSet(segment, null, new AtomicLongArray(SUB_BUCKETS));
+        counts = segments.get(segment);
+      }
+      counts.incrementAndGet(index % SUB_BUCKETS);
+    }
+
+    long count() {
+      long count = 0;
+      for (int s = 0; s < SEGMENTS; s++) {
+        AtomicLongArray counts = segments.get(s);
+        if (counts != null) {
+          for (int i = 0; i < SUB_BUCKETS; i++) {
+            count += counts.get(i);
+          }
+        }
+      }
+      return count;
+    }
+
+    void addTo(long[] result) {
+      for (int s = 0; s < SEGMENTS; s++) {
+        AtomicLongArray counts = segments.get(s);
+        if (counts != null) {
+          for (int i = 0; i < SUB_BUCKETS; i++) {
+            result[s * SUB_BUCKETS + i] += counts.get(i);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Snapshot of the bucket counts.
+   *
+   * <p>Each value is represented by the midpoint of its bucket, except for the minimum and maximum
+   * which are the bounds of their buckets. All statistics are computed from the bucket counts, only
+   * {@link #getValues()} expands them into the individual values.
+   */
+  @VisibleForTesting
+  static class HdrSnapshot extends Snapshot {
+    /** Counts of the buckets from {@link #minIndex} to {@link #maxIndex}. */
+    private final long[] counts;
+
+    private final long count;
+    private final int minIndex;
+    private final int maxIndex;
+    private final double mean;
+    private final double stdDev;
+
+    private HdrSnapshot(Interval... intervals) {
+      long[] all = new long[SEGMENTS * SUB_BUCKETS];
+      for (Interval interval : intervals) {
+        interval.addTo(all);
+      }
+      int min = -1;
+      int max = -1;
+      for (int i = 0; i < all.length; i++) {
+        if (all[i] > 0) {
+          if (min < 0) {
+            min = i;
+          }
+          max = i;
+        }
+      }
+      this.minIndex = min;
+      this.maxIndex = max;
+      this.counts = min < 0 ? new long[0] : Arrays.copyOfRange(all, min, max + 1);
+
+      // Welford's algorithm, applied to each bucket as a group of equal values.
+      long n = 0;
+      double m = 0;
+      double m2 = 0;
+      for (int i = 0; i < counts.length; i++) {
+        long c = counts[i];
+        if (c > 0) {
+          double delta = representativeValue(minIndex + i) - m;
+          n += c;
+          m += delta * c / n;
+          m2 += delta * delta * c * (n - c) / n;
+        }
+      }
+      this.count = n;
+      this.mean = m;
+      this.stdDev = n > 1 ? Math.sqrt(m2 / (n - 1)) : 0.0;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+        throw new IllegalArgumentException(quantile + " is not in [0..1]");
+      }
+      if (count == 0) {
+        return 0.0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return representativeValue(minIndex + i);
+        }
+      }
+      return getMax();
+    }
+
+    /**
+     * Returns the recorded values, each bucket contributing its representative value as often as
+     * values were counted in it.
+     *
+     * <p>The array has one element per recorded value, hence this should only be used if the
+     * individual values are really needed. The statistics of this snapshot don't use it.
+     */
+    @Override
+    public long[] getValues() {
+      long[] values = new long[size()];
+      int n = 0;
+      for (int i = 0; i < counts.length && n < values.length; i++) {
+        long value = representativeValue(minIndex + i);
+        for (long c = 0; c < counts[i] && n < values.length; c++) {
+          values[n++] = value;
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMax() {
+      return count == 0 ? 0 : highestValue(maxIndex);
+    }
+
+    @Override
+    public double getMean() {
+      return mean;
+    }
+
+    @Override
+    public long getMin() {
+      return count == 0 ? 0 : lowestValue(minIndex);
+    }
+
+    @Override
+    public double getStdDev() {
+      return stdDev;
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8))) {
+        for (int i = 0; i < counts.length; i++) {
+          long value = representativeValue(minIndex + i);
+          for (long c = 0; c < counts[i]; c++) {
+            out.printf("%d%n", value);
+          }
+        }
+      }
+    }
+
+    private static long representativeValue(int index) {
+      long low = lowestValue(index);
+      return low + (highestValue(index) - low) / 2;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.Histogram2;
 import com.google.gerrit.metrics.Histogram3;
+import com.google.gerrit.metrics.dropwizard.DropWizardMetricMaker.HistogramImpl;
 import java.util.function.Function;
 
 /** Generalized implementation of N-dimensional Histogram metrics. */
@@ -29,11 +30,12 @@ class HistogramImplN extends BucketedHistogram implements BucketedMetric {
   }
 
   <F1, F2> Histogram2<F1, F2> histogram2() {
+    CellIndex2<F1, F2, HistogramImpl> cells = new CellIndex2<>(this::forceCreate);
     return new Histogram2<>() {
       @Override
       public void record(F1 field1, F2 field2, long value) {
         total.record(value);
-        forceCreate(field1, field2).record(value);
+        cells.get(field1, field2).record(value);
       }
 
       @Override
@@ -44,11 +46,12 @@ class HistogramImplN extends BucketedHistogram implements BucketedMetric {
   }
 
   <F1, F2, F3> Histogram3<F1, F2, F3> histogram3() {
+    CellIndex3<F1, F2, F3, HistogramImpl> cells = new CellIndex3<>(this::forceCreate);
     return new Histogram3<>() {
       @Override
       public void record(F1 field1, F2 field2, F3 field3, long value) {
         total.record(value);
-        forceCreate(field1, field2, field3).record(value);
+        cells.get(field1, field2, field3).record(value);
       }
 
       @Override
@@ -20,6 +20,7 @@ import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.Timer2;
 import com.google.gerrit.metrics.Timer3;
+import com.google.gerrit.metrics.dropwizard.DropWizardMetricMaker.TimerImpl;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -31,11 +32,12 @@ class TimerImplN extends BucketedTimer implements BucketedMetric {
 
   @SuppressWarnings("unchecked")
   <F1, F2> Timer2<F1, F2> timer2() {
+    CellIndex2<F1, F2, TimerImpl> cells = new CellIndex2<>(this::forceCreate);
     return new Timer2<>(name, (Field<F1>) fields[0], (Field<F2>) fields[1]) {
       @Override
       protected void doRecord(F1 field1, F2 field2, long value, TimeUnit unit) {
         total.record(value, unit);
-        forceCreate(field1, field2).record(value, unit);
+        cells.get(field1, field2).record(value, unit);
       }
 
       @Override
@@ -47,11 +49,12 @@ class TimerImplN extends BucketedTimer implements BucketedMetric {
 
   @SuppressWarnings("unchecked")
   <F1, F2, F3> Timer3<F1, F2, F3> timer3() {
+    CellIndex3<F1, F2, F3, TimerImpl> cells = new CellIndex3<>(this::forceCreate);
     return new Timer3<>(name, (Field<F1>) fields[0], (Field<F2>) fields[1], (Field<F3>) fields[2]) {
       @Override
       protected void doRecord(F1 field1, F2 field2, F3 field3, long value, TimeUnit unit) {
         total.record(value, unit);
-        forceCreate(field1, field2, field3).record(value, unit);
+        cells.get(field1, field2, field3).record(value, unit);
       }
 
       @Override
@@ -98,6 +98,7 @@ import com.google.gerrit.server.index.AbstractIndexModule;
 import com.google.gerrit.server.index.IndexModule;
 import com.google.gerrit.server.index.OnlineUpgrader.OnlineUpgraderModule;
 import com.google.gerrit.server.index.VersionManager;
+import com.google.gerrit.server.index.change.StaleChangeScanner.StaleChangeScannerModule;
 import com.google.gerrit.server.index.options.AutoFlush;
 import com.google.gerrit.server.mail.EmailModule;
 import com.google.gerrit.server.mail.SignedTokenEmailTokenVerifier.SignedTokenEmailTokenVerifierModule;
@@ -565,6 +566,7 @@ public class Daemon extends SiteProgram {
       modules.add(new AttentionSetOwnerAdderModule());
       modules.add(new ChangeCleanupRunnerModule());
     }
+    modules.add(new StaleChangeScannerModule());
     modules.add(new LocalMergeSuperSetComputationModule());
     modules.add(new DefaultLockManagerModule());
 
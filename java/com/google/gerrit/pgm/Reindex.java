@@ -40,9 +40,12 @@ import com.google.gerrit.server.cache.CacheDisplay;
 import com.google.gerrit.server.cache.CacheInfo;
 import com.google.gerrit.server.change.ChangeResource;
 import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.SitePaths;
 import com.google.gerrit.server.git.WorkQueue.WorkQueueModule;
 import com.google.gerrit.server.index.IndexModule;
+import com.google.gerrit.server.index.change.AllChangesIndexer;
 import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gerrit.server.index.change.ReindexCheckpoint;
 import com.google.gerrit.server.index.options.AutoFlush;
 import com.google.gerrit.server.index.options.BuildBloomFilter;
 import com.google.gerrit.server.index.options.IsFirstInsertForEntry;
@@ -57,10 +60,12 @@ import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.multibindings.OptionalBinder;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -99,6 +104,18 @@ public class Reindex extends SiteProgram {
   @Option(name = "--build-bloom-filter", usage = "Build bloom filter for H2 disk caches.")
   private boolean buildBloomFilter;
 
+  @Option(
+      name = "--resume",
+      usage = "Resume an interrupted reindex of changes, skipping the project slices it completed")
+  private boolean resume;
+
+  @Option(
+      name = "--prefetch-threads",
+      usage =
+          "Number of threads that read changes ahead of indexing them. Default is the number of"
+              + " indexing threads, 0 disables prefetching.")
+  private Integer prefetchThreads;
+
   private Boolean reuseExistingDocumentsOption;
 
   private Injector dbInjector;
@@ -109,6 +126,7 @@ public class Reindex extends SiteProgram {
 
   @Inject private Collection<IndexDefinition<?, ?, ?>> indexDefs;
   @Inject private DynamicMap<Cache<?, ?>> cacheMap;
+  @Inject private SitePaths sitePaths;
 
   @Option(name = "--reuse", usage = "Reindex only when existing index entry is stale")
   public void setReuseExistingDocuments(boolean value) {
@@ -160,7 +178,7 @@ public class Reindex extends SiteProgram {
     return true;
   }
 
-  private boolean reindex() {
+  private boolean reindex() throws IOException {
     boolean ok = true;
     for (IndexDefinition<?, ?, ?> def : indexDefs) {
       if (indices.isEmpty() || indices.contains(def.getName())) {
@@ -269,26 +287,43 @@ public class Reindex extends SiteProgram {
     globalConfig.setBoolean("index", null, "autoReindexIfStale", false);
   }
 
-  private <K, V, I extends Index<K, V>> boolean reindex(IndexDefinition<K, V, I> def) {
+  private <K, V, I extends Index<K, V>> boolean reindex(IndexDefinition<K, V, I> def)
+      throws IOException {
     I index = def.getIndexCollection().getSearchIndex();
     requireNonNull(
         index, () -> String.format("no active search index configured for %s", def.getName()));
     index.markReady(false);
 
-    if (!reuseExistingDocuments) {
-      index.deleteAll();
-    }
-
     SiteIndexer<K, V, I> siteIndexer = def.getSiteIndexer(reuseExistingDocuments);
     siteIndexer.setProgressOut(System.err);
     siteIndexer.setVerboseOut(verbose ? System.out : NullOutputStream.INSTANCE);
+
+    ReindexCheckpoint checkpoint = null;
+    if (siteIndexer instanceof AllChangesIndexer) {
+      AllChangesIndexer changesIndexer = (AllChangesIndexer) siteIndexer;
+      checkpoint = ReindexCheckpoint.open(checkpointFile(def, index), resume);
+      if (resume && !checkpoint.isResumed()) {
+        System.out.format("No progress of a previous reindex of %s found\n", def.getName());
+      }
+      changesIndexer.setCheckpoint(checkpoint);
+      changesIndexer.setPrefetchThreads(getPrefetchThreads());
+    }
+
+    if (!reuseExistingDocuments && (checkpoint == null || !checkpoint.isResumed())) {
+      index.deleteAll();
+    }
+
     SiteIndexer.Result result = siteIndexer.indexAll(index);
     int n = result.doneCount() + result.failedCount();
     double t = result.elapsed(TimeUnit.MILLISECONDS) / 1000d;
     System.out.format(
         "Reindexed %d documents in %s index in %.01fs (%.01f/s)\n", n, def.getName(), t, n / t);
     if (result.success()) {
+      index.finishBuild();
       index.markReady(true);
+      if (checkpoint != null) {
+        checkpoint.delete();
+      }
     }
     System.out.format(
         "Index %s in version %d is %sready\n",
@@ -297,6 +332,22 @@ public class Reindex extends SiteProgram {
     return result.success();
   }
 
+  private Path checkpointFile(IndexDefinition<?, ?, ?> def, Index<?, ?> index) {
+    return sitePaths.index_dir.resolve(
+        String.format("%s_%04d.reindex-progress", def.getName(), index.getSchema().getVersion()));
+  }
+
+  private int getPrefetchThreads() {
+    if (prefetchThreads != null) {
+      return prefetchThreads;
+    }
+    if (threads > 0) {
+      return threads;
+    }
+    return globalConfig.getInt(
+        "index", null, "batchThreads", Runtime.getRuntime().availableProcessors());
+  }
+
   private void printCacheStats() {
     try (Writer sw = new StringWriter()) {
       sw.write("Cache Statistics at the end of reindexing\n");
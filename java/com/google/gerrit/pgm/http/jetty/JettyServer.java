@@ -21,12 +21,14 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.extensions.client.AuthType;
 import com.google.gerrit.extensions.events.LifecycleListener;
 import com.google.gerrit.pgm.http.jetty.HttpLog.HttpLogFactory;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.SitePaths;
 import com.google.gerrit.server.config.ThreadSettingsConfig;
+import com.google.gerrit.server.util.VirtualThreads;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
@@ -43,7 +45,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.DispatcherType;
@@ -79,6 +83,8 @@ import org.eclipse.jgit.lib.Config;
 
 @Singleton
 public class JettyServer {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   static class Lifecycle implements LifecycleListener {
     private final JettyServer server;
     private final Config cfg;
@@ -218,7 +224,7 @@ public class JettyServer {
       HttpLogFactory httpLogFactory) {
     this.site = site;
 
-    QueuedThreadPool pool = threadPool(cfg, threadSettingsConfig);
+    QueuedThreadPool pool = threadPool(cfg, threadSettingsConfig.getHttpdMaxThreads());
     httpd = new Server(pool);
     httpd.setConnectors(listen(httpd, cfg));
     connStats = new ConnectionStatistics();
@@ -466,22 +472,36 @@ public class JettyServer {
     return site.resolve(path);
   }
 
-  private QueuedThreadPool threadPool(Config cfg, ThreadSettingsConfig threadSettingsConfig) {
-    int maxThreads = threadSettingsConfig.getHttpdMaxThreads();
+  @VisibleForTesting
+  static QueuedThreadPool threadPool(Config cfg, int maxThreads) {
     int minThreads = cfg.getInt("httpd", null, "minthreads", 5);
     int maxQueued = cfg.getInt("httpd", null, "maxqueued", 200);
     int idleTimeout = (int) MILLISECONDS.convert(60, SECONDS);
     int maxCapacity = maxQueued == 0 ? Integer.MAX_VALUE : Math.max(minThreads, maxQueued);
-    QueuedThreadPool pool =
-        new QueuedThreadPool(
-            maxThreads,
-            minThreads,
-            idleTimeout,
-            new BlockingArrayQueue<>(
-                minThreads, // capacity,
-                minThreads, // growBy,
-                maxCapacity // maxCapacity
-                ));
+    BlockingArrayQueue<Runnable> queue =
+        new BlockingArrayQueue<>(
+            minThreads, // capacity,
+            minThreads, // growBy,
+            maxCapacity // maxCapacity
+            );
+    Optional<ThreadFactory> virtualThreadFactory =
+        VirtualThreads.newThreadFactory(
+            cfg.getBoolean("httpd", null, "virtualThreads", false), "HTTP");
+    QueuedThreadPool pool;
+    if (virtualThreadFactory.isPresent()) {
+      ThreadFactory factory = virtualThreadFactory.get();
+      pool =
+          new QueuedThreadPool(maxThreads, minThreads, idleTimeout, queue) {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              return factory.newThread(runnable);
+            }
+          };
+      // Virtual threads are always daemon threads, the pool must not try to change this.
+      pool.setDaemon(true);
+    } else {
+      pool = new QueuedThreadPool(maxThreads, minThreads, idleTimeout, queue);
+    }
     pool.setName("HTTP");
     return pool;
   }
@@ -15,13 +15,20 @@
 package com.google.gerrit.pgm.http.jetty;
 
 import static com.google.gerrit.server.config.ConfigUtil.getTimeUnit;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.ProjectUtil;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.account.AccountLimits;
 import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.QoSPolicy;
+import com.google.gerrit.server.git.QoSScheduler;
 import com.google.gerrit.server.git.QueueProvider;
 import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
 import com.google.gerrit.sshd.CommandExecutorQueueProvider;
@@ -32,7 +39,8 @@ import com.google.inject.servlet.ServletModule;
 import java.io.IOException;
 import java.util.Optional;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.AsyncContext;
@@ -62,12 +70,18 @@ import org.eclipse.jgit.lib.Config;
  * from the SSH execution queue. Trying to complete the request on the SSH execution queue caused
  * Jetty's HTTP parser to crash, so we instead block the SSH execution queue thread and ask Jetty to
  * resume processing on the web service thread.
+ *
+ * <p>The task is submitted through the {@link QoSScheduler} of the queue, which orders the requests
+ * of different users fairly if QoS scheduling is enabled. Requests that the scheduler rejects
+ * because their projected wait is too long are answered with {@code 429 Too Many Requests}.
  */
 @Singleton
 public class ProjectQoSFilter implements Filter {
   private static final String ATT_SPACE = ProjectQoSFilter.class.getName() + "/";
   private static final String TASK = ATT_SPACE + "TASK";
 
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
   private static final String FILTER_RE = "^/(.*)/(git-upload-pack|git-receive-pack)$";
   private static final Pattern URI_PATTERN = Pattern.compile(FILTER_RE);
 
@@ -135,6 +149,7 @@ public class ProjectQoSFilter implements Filter {
   private final AccountLimits.Factory limitsFactory;
   private final Provider<CurrentUser> user;
   private final QueueProvider queue;
+  private final QoSPolicy qosPolicy;
   private final ServletContext context;
   private final long maxWait;
 
@@ -143,11 +158,13 @@ public class ProjectQoSFilter implements Filter {
       AccountLimits.Factory limitsFactory,
       Provider<CurrentUser> user,
       QueueProvider queue,
+      QoSPolicy qosPolicy,
       ServletContext context,
       @GerritServerConfig Config cfg) {
     this.limitsFactory = limitsFactory;
     this.user = user;
     this.queue = queue;
+    this.qosPolicy = qosPolicy;
     this.context = context;
     this.maxWait = MINUTES.toMillis(getTimeUnit(cfg, "httpd", null, "maxwait", 5, MINUTES));
   }
@@ -170,7 +187,18 @@ public class ProjectQoSFilter implements Filter {
 
         request.setAttribute(TASK, task);
 
-        Future<?> f = getExecutor().submit(task);
+        Future<?> f;
+        try {
+          f = getScheduler().submit(qosPolicy.getTenant(user.get()), getProject(req), task);
+        } catch (QoSScheduler.QueueFullException e) {
+          context.log("Rejecting request: " + e.getMessage());
+          rsp.setHeader(
+              "Retry-After",
+              Long.toString(Math.max(1, MILLISECONDS.toSeconds(e.getProjectedWaitMillis()))));
+          rsp.sendError(SC_TOO_MANY_REQUESTS);
+          asyncContext.complete();
+          break;
+        }
         asyncContext.addListener(new Listener(f, task));
         break;
       case CANCELED:
@@ -200,9 +228,19 @@ public class ProjectQoSFilter implements Filter {
     return asyncContext;
   }
 
-  private ScheduledThreadPoolExecutor getExecutor() {
+  private QoSScheduler getScheduler() {
     QueueProvider.QueueType qt = limitsFactory.create(user.get()).getQueueType();
-    return queue.getQueue(qt);
+    return queue.getScheduler(qt);
+  }
+
+  @Nullable
+  private static Project.NameKey getProject(HttpServletRequest req) {
+    Matcher m = URI_PATTERN.matcher(req.getServletPath());
+    if (!m.matches()) {
+      return null;
+    }
+    String name = ProjectUtil.stripGitSuffix(CharMatcher.is('/').trimFrom(m.group(1)));
+    return name.isEmpty() ? null : Project.nameKey(name);
   }
 
   @Override
@@ -245,7 +283,9 @@ public class ProjectQoSFilter implements Filter {
   protected class TaskThunk implements CancelableRunnable {
     private final AsyncContext asyncContext;
     private final String name;
-    private final Object lock = new Object();
+    // Not a monitor, so that waiting on a virtual thread doesn't pin its carrier thread.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition doneCondition = lock.newCondition();
     private boolean done;
     private Thread worker;
 
@@ -258,10 +298,11 @@ public class ProjectQoSFilter implements Filter {
     public void run() {
       resume();
 
-      synchronized (lock) {
+      lock.lock();
+      try {
         while (!done) {
           try {
-            lock.wait();
+            doneCondition.await();
           } catch (InterruptedException e) {
             if (worker != null) {
               worker.interrupt();
@@ -270,20 +311,28 @@ public class ProjectQoSFilter implements Filter {
             }
           }
         }
+      } finally {
+        lock.unlock();
       }
     }
 
     void begin(Thread thread) {
-      synchronized (lock) {
+      lock.lock();
+      try {
         worker = thread;
+      } finally {
+        lock.unlock();
       }
     }
 
     void end() {
-      synchronized (lock) {
+      lock.lock();
+      try {
         worker = null;
         done = true;
-        lock.notifyAll();
+        doneCondition.signalAll();
+      } finally {
+        lock.unlock();
       }
     }
 
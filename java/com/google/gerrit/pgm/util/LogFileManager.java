@@ -49,7 +49,7 @@ import java.util.zip.GZIPOutputStream;
 import org.eclipse.jgit.lib.Config;
 
 /** Compresses and eventually deletes the old logs. */
-public class LogFileManager implements Runnable {
+public class LogFileManager implements WorkQueue.PrioritizedRunnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final Pattern LOG_FILENAME_PATTERN =
       Pattern.compile("^.+(?<date>\\d{4}-\\d{2}-\\d{2})(.gz)?");
@@ -242,6 +242,11 @@ public class LogFileManager implements Runnable {
     }
   }
 
+  @Override
+  public WorkQueue.Priority getPriority() {
+    return WorkQueue.Priority.LOW;
+  }
+
   @Override
   public String toString() {
     return "Log File Manager";
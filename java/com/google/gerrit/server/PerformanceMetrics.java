@@ -17,14 +17,18 @@ package com.google.gerrit.server;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.Counter2;
 import com.google.gerrit.metrics.Counter3;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.Histogram1;
 import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.metrics.Timer3;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.PerformanceLogger;
+import com.google.gerrit.server.logging.ResourceUsage;
 import com.google.gerrit.server.logging.TraceContext;
 import com.google.inject.Inject;
 import java.time.Instant;
@@ -33,16 +37,26 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.lib.Config;
 
-/** Performance logger that records the execution times as a metric. */
+/** Performance logger that records the execution times and the resource usage as metrics. */
 public class PerformanceMetrics implements PerformanceLogger {
   private static final String OPERATION_LATENCY_METRIC_NAME = "performance/operations";
   private static final String OPERATION_COUNT_METRIC_NAME = "performance/operations_count";
+  private static final String REQUEST_METRIC_PREFIX = "performance/requests/";
 
   private final ImmutableList<String> tracedOperations;
   private final Timer3<String, String, String> operationsLatency;
   private final Counter3<String, String, String> operationsCounter;
   private final Timer3<String, String, String> operationsRequestLatency;
 
+  private final boolean recordResourceUsage;
+  private final Timer1<String> requestCpuTime;
+  private final Histogram1<String> requestAllocatedBytes;
+  private final Histogram1<String> requestNoteDbRefsRead;
+  private final Histogram1<String> requestIndexQueries;
+  private final Histogram1<String> requestRepoOpens;
+  private final Counter2<String, String> requestCacheHits;
+  private final Counter2<String, String> requestCacheMisses;
+
   private final Map<MetricKey, Long> perRequestLatencyNanos = new HashMap<>();
 
   @Inject
@@ -97,6 +111,55 @@ public class PerformanceMetrics implements PerformanceLogger {
                 requestField,
                 pluginField)
             .suppressLogging();
+
+    this.recordResourceUsage = cfg.getBoolean("performance", "resourceUsage", false);
+    Field<String> cacheField =
+        Field.ofString("cache_name", Metadata.Builder::cacheName)
+            .description("The name of the cache.")
+            .build();
+    this.requestCpuTime =
+        metricMaker
+            .newTimer(
+                REQUEST_METRIC_PREFIX + "cpu_time",
+                new Description("CPU time used by all threads that executed a request")
+                    .setCumulative()
+                    .setUnit(Description.Units.MILLISECONDS),
+                requestField)
+            .suppressLogging();
+    this.requestAllocatedBytes =
+        metricMaker.newHistogram(
+            REQUEST_METRIC_PREFIX + "allocated_bytes",
+            new Description("Memory allocated by all threads that executed a request")
+                .setCumulative()
+                .setUnit(Description.Units.BYTES),
+            requestField);
+    this.requestNoteDbRefsRead =
+        metricMaker.newHistogram(
+            REQUEST_METRIC_PREFIX + "notedb_refs_read",
+            new Description("Number of NoteDb refs read by a request").setCumulative(),
+            requestField);
+    this.requestIndexQueries =
+        metricMaker.newHistogram(
+            REQUEST_METRIC_PREFIX + "index_queries",
+            new Description("Number of index queries done by a request").setCumulative(),
+            requestField);
+    this.requestRepoOpens =
+        metricMaker.newHistogram(
+            REQUEST_METRIC_PREFIX + "repo_opens",
+            new Description("Number of repositories opened by a request").setCumulative(),
+            requestField);
+    this.requestCacheHits =
+        metricMaker.newCounter(
+            REQUEST_METRIC_PREFIX + "cache_hits",
+            new Description("Number of cache hits of requests").setRate(),
+            requestField,
+            cacheField);
+    this.requestCacheMisses =
+        metricMaker.newCounter(
+            REQUEST_METRIC_PREFIX + "cache_misses",
+            new Description("Number of cache misses of requests").setRate(),
+            requestField,
+            cacheField);
   }
 
   @Override
@@ -122,6 +185,26 @@ public class PerformanceMetrics implements PerformanceLogger {
             (latencyNanos == null) ? durationNanos : latencyNanos + durationNanos);
   }
 
+  @Override
+  public void logResourceUsage(String request, ResourceUsage resourceUsage) {
+    if (!recordResourceUsage) {
+      return;
+    }
+
+    requestCpuTime.record(request, resourceUsage.cpuTimeNanos(), TimeUnit.NANOSECONDS);
+    requestAllocatedBytes.record(request, resourceUsage.allocatedBytes());
+    requestNoteDbRefsRead.record(
+        request, resourceUsage.get(ResourceUsage.Counter.NOTEDB_REFS_READ));
+    requestIndexQueries.record(request, resourceUsage.get(ResourceUsage.Counter.INDEX_QUERIES));
+    requestRepoOpens.record(request, resourceUsage.get(ResourceUsage.Counter.REPO_OPENS));
+    resourceUsage
+        .cacheHits()
+        .forEach((cacheName, hits) -> requestCacheHits.incrementBy(request, cacheName, hits));
+    resourceUsage
+        .cacheMisses()
+        .forEach((cacheName, misses) -> requestCacheMisses.incrementBy(request, cacheName, misses));
+  }
+
   @Override
   public void done() {
     perRequestLatencyNanos.forEach(
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gerrit.common.UsedAt;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.logging.ResourceUsage;
 import com.google.gerrit.server.logging.TraceContext;
 import java.util.Optional;
 
@@ -72,6 +73,15 @@ public abstract class RequestInfo {
    */
   public abstract Optional<String> requestQueryString();
 
+  /**
+   * Name of the command that is executed.
+   *
+   * <p>Only set if request type is {@link RequestType#SSH}.
+   *
+   * <p>Doesn't include the command arguments.
+   */
+  public abstract Optional<String> commandName();
+
   /** Request headers in the form '{@code <header-name>:<header-value>}'. */
   public abstract ImmutableList<String> headers();
 
@@ -98,11 +108,23 @@ public abstract class RequestInfo {
    */
   public abstract Optional<Project.NameKey> project();
 
+  /**
+   * The resources that are used for executing the request.
+   *
+   * <p>Resources are only accounted while the request is executed in a {@link
+   * com.google.gerrit.server.logging.PerformanceLogContext} that accounts resources for it.
+   */
+  @Memoized
+  public ResourceUsage resourceUsage() {
+    return new ResourceUsage();
+  }
+
   @Memoized
   public String formatForLogging() {
     StringBuilder sb = new StringBuilder();
     sb.append(requestType());
     redactedRequestUri().ifPresent(redactedRequestUri -> sb.append(' ').append(redactedRequestUri));
+    commandName().ifPresent(commandName -> sb.append(' ').append(commandName));
     return sb.toString();
   }
 
@@ -181,6 +203,8 @@ public abstract class RequestInfo {
 
     public abstract Builder requestQueryString(String requestQueryString);
 
+    public abstract Builder commandName(String commandName);
+
     /** Gets a builder for adding reasons for this status. */
     abstract ImmutableList.Builder<String> headersBuilder();
 
@@ -30,7 +30,7 @@ import java.util.Optional;
 import org.eclipse.jgit.lib.Config;
 
 /** Runnable to enable scheduling account deactivations to run periodically */
-public class AccountDeactivator implements Runnable {
+public class AccountDeactivator implements WorkQueue.PrioritizedRunnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   public static class AccountDeactivatorModule extends LifecycleModule {
@@ -126,6 +126,11 @@ public class AccountDeactivator implements Runnable {
     return false;
   }
 
+  @Override
+  public WorkQueue.Priority getPriority() {
+    return WorkQueue.Priority.LOW;
+  }
+
   @Override
   public String toString() {
     return "account deactivator";
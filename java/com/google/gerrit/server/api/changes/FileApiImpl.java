@@ -72,7 +72,7 @@ class FileApiImpl implements FileApi {
   @Override
   public DiffInfo diff() throws RestApiException {
     try {
-      return getDiff.apply(file).value();
+      return getDiff.getDiffInfo(file).value();
     } catch (Exception e) {
       throw asRestApiException("Cannot retrieve diff", e);
     }
@@ -81,7 +81,7 @@ class FileApiImpl implements FileApi {
   @Override
   public DiffInfo diff(String base) throws RestApiException {
     try {
-      return getDiff.setBase(base).apply(file).value();
+      return getDiff.setBase(base).getDiffInfo(file).value();
     } catch (Exception e) {
       throw asRestApiException("Cannot retrieve diff", e);
     }
@@ -90,7 +90,7 @@ class FileApiImpl implements FileApi {
   @Override
   public DiffInfo diff(int parent) throws RestApiException {
     try {
-      return getDiff.setParent(parent).apply(file).value();
+      return getDiff.setParent(parent).getDiffInfo(file).value();
     } catch (Exception e) {
       throw asRestApiException("Cannot retrieve diff", e);
     }
@@ -133,7 +133,7 @@ class FileApiImpl implements FileApi {
     }
     r.getParent().ifPresent(getDiff::setParent);
     try {
-      return getDiff.apply(file).value();
+      return getDiff.getDiffInfo(file).value();
     } catch (Exception e) {
       throw asRestApiException("Cannot retrieve diff", e);
     }
@@ -80,7 +80,7 @@ class DefaultMemoryCacheFactory implements MemoryCacheFactory {
 
   private <K, V> Caffeine<K, V> create(CacheDef<K, V> def) {
     Caffeine<K, V> builder = newCacheBuilder();
-    builder.recordStats();
+    builder.recordStats(() -> new ResourceAccountingStatsCounter(def.name()));
     builder.maximumWeight(cacheMaximumWeight(def));
     builder = builder.removalListener(newRemovalListener(def.name()));
 
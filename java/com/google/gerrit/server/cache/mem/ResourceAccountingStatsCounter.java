@@ -0,0 +1,73 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.cache.mem;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.google.gerrit.server.logging.LoggingContext;
+
+/**
+ * Records the cache statistics and additionally accounts cache hits and misses to the resource
+ * usage of the current request (see {@link com.google.gerrit.server.logging.ResourceUsage}).
+ */
+class ResourceAccountingStatsCounter implements StatsCounter {
+  private final String cacheName;
+  private final StatsCounter delegate = new ConcurrentStatsCounter();
+
+  ResourceAccountingStatsCounter(String cacheName) {
+    this.cacheName = cacheName;
+  }
+
+  @Override
+  public void recordHits(int count) {
+    delegate.recordHits(count);
+    LoggingContext.getInstance().addCacheHits(cacheName, count);
+  }
+
+  @Override
+  public void recordMisses(int count) {
+    delegate.recordMisses(count);
+    LoggingContext.getInstance().addCacheMisses(cacheName, count);
+  }
+
+  @Override
+  public void recordLoadSuccess(long loadTime) {
+    delegate.recordLoadSuccess(loadTime);
+  }
+
+  @Override
+  public void recordLoadFailure(long loadTime) {
+    delegate.recordLoadFailure(loadTime);
+  }
+
+  @Deprecated
+  @Override
+  @SuppressWarnings("deprecation")
+  public void recordEviction() {
+    delegate.recordEviction();
+  }
+
+  @Override
+  public void recordEviction(int weight, RemovalCause cause) {
+    delegate.recordEviction(weight, cause);
+  }
+
+  @Override
+  public CacheStats snapshot() {
+    return delegate.snapshot();
+  }
+}
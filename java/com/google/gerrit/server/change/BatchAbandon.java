@@ -82,6 +82,7 @@ public class BatchAbandon {
                     change.project().get(), project.get()));
           }
           u.addOp(change.getId(), abandonOpFactory.create(accountState, msgTxt));
+          change.setAllowCachedSubmitRequirements(false);
           u.addOp(
               change.getId(),
               storeSubmitRequirementsOpFactory.create(
@@ -30,7 +30,7 @@ import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
 /** Runnable to enable scheduling change cleanups to run periodically */
-public class ChangeCleanupRunner implements Runnable {
+public class ChangeCleanupRunner implements WorkQueue.PrioritizedRunnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   public static class ChangeCleanupRunnerModule extends LifecycleModule {
@@ -130,6 +130,11 @@ public class ChangeCleanupRunner implements Runnable {
     }
   }
 
+  @Override
+  public WorkQueue.Priority getPriority() {
+    return WorkQueue.Priority.LOW;
+  }
+
   @Override
   public String toString() {
     return "change cleanup runner";
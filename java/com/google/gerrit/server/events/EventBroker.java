@@ -39,6 +39,8 @@ import com.google.gerrit.server.project.ProjectState;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /** Distributes Events to listeners if they are allowed to see them */
@@ -53,6 +55,7 @@ public class EventBroker implements EventDispatcher {
       DynamicItem.bind(binder(), EventDispatcher.class).to(EventBroker.class);
 
       bind(Gson.class).annotatedWith(EventGson.class).toProvider(EventGsonProvider.class);
+      listener().to(EventJournal.class);
     }
   }
 
@@ -69,6 +72,8 @@ public class EventBroker implements EventDispatcher {
 
   protected final String gerritInstanceId;
 
+  protected final EventJournal journal;
+
   @Inject
   public EventBroker(
       PluginSetContext<UserScopedEventListener> listeners,
@@ -76,13 +81,15 @@ public class EventBroker implements EventDispatcher {
       PermissionBackend permissionBackend,
       ProjectCache projectCache,
       ChangeNotes.Factory notesFactory,
-      @Nullable @GerritInstanceId String gerritInstanceId) {
+      @Nullable @GerritInstanceId String gerritInstanceId,
+      EventJournal journal) {
     this.listeners = listeners;
     this.unrestrictedListeners = unrestrictedListeners;
     this.permissionBackend = permissionBackend;
     this.projectCache = projectCache;
     this.notesFactory = notesFactory;
     this.gerritInstanceId = gerritInstanceId;
+    this.journal = journal;
   }
 
   @Override
@@ -112,23 +119,19 @@ public class EventBroker implements EventDispatcher {
 
   protected void fireEvent(Change change, ChangeEvent event) throws PermissionBackendException {
     setInstanceIdWhenEmpty(event);
-    for (PluginSetEntryContext<UserScopedEventListener> c : listeners) {
-      CurrentUser user = c.call(UserScopedEventListener::getUser);
-      if (isVisibleTo(change, user)) {
-        c.run(l -> l.onEvent(event));
-      }
-    }
+    journal.append(change, event);
+    fireEventForUserScopedListeners(event, user -> isVisibleTo(change, user));
     fireEventForUnrestrictedListeners(event);
   }
 
   protected void fireEvent(Project.NameKey project, ProjectEvent event) {
     setInstanceIdWhenEmpty(event);
-    for (PluginSetEntryContext<UserScopedEventListener> c : listeners) {
-
-      CurrentUser user = c.call(UserScopedEventListener::getUser);
-      if (isVisibleTo(project, user)) {
-        c.run(l -> l.onEvent(event));
-      }
+    journal.append(project, event);
+    try {
+      fireEventForUserScopedListeners(event, user -> isVisibleTo(project, user));
+    } catch (PermissionBackendException e) {
+      // Not reached, isVisibleTo(Project.NameKey, CurrentUser) doesn't throw.
+      throw new IllegalStateException(e);
     }
     fireEventForUnrestrictedListeners(event);
   }
@@ -136,24 +139,45 @@ public class EventBroker implements EventDispatcher {
   protected void fireEvent(BranchNameKey branchName, RefEvent event)
       throws PermissionBackendException {
     setInstanceIdWhenEmpty(event);
-    for (PluginSetEntryContext<UserScopedEventListener> c : listeners) {
-      CurrentUser user = c.call(UserScopedEventListener::getUser);
-      if (isVisibleTo(branchName, user)) {
-        c.run(l -> l.onEvent(event));
-      }
-    }
+    journal.append(branchName, event);
+    fireEventForUserScopedListeners(event, user -> isVisibleTo(branchName, user));
     fireEventForUnrestrictedListeners(event);
   }
 
   protected void fireEvent(Event event) throws PermissionBackendException {
     setInstanceIdWhenEmpty(event);
+    journal.append(event);
+    fireEventForUserScopedListeners(event, user -> isVisibleTo(event, user));
+    fireEventForUnrestrictedListeners(event);
+  }
+
+  /**
+   * Delivers the event to all user scoped listeners whose user can see it.
+   *
+   * <p>Many listeners are registered for the same user, e.g. several {@code stream-events}
+   * connections of a CI system. The visibility is checked only once per distinct user (as
+   * identified by {@link CurrentUser#getCacheKey()}).
+   */
+  private void fireEventForUserScopedListeners(Event event, VisibilityCheck visibilityCheck)
+      throws PermissionBackendException {
+    Map<Object, Boolean> visibleByUser = new HashMap<>();
     for (PluginSetEntryContext<UserScopedEventListener> c : listeners) {
       CurrentUser user = c.call(UserScopedEventListener::getUser);
-      if (isVisibleTo(event, user)) {
+      Object key = user.getCacheKey();
+      Boolean visible = visibleByUser.get(key);
+      if (visible == null) {
+        visible = visibilityCheck.isVisibleTo(user);
+        visibleByUser.put(key, visible);
+      }
+      if (visible) {
         c.run(l -> l.onEvent(event));
       }
     }
-    fireEventForUnrestrictedListeners(event);
+  }
+
+  @FunctionalInterface
+  private interface VisibilityCheck {
+    boolean isVisibleTo(CurrentUser user) throws PermissionBackendException;
   }
 
   protected void setInstanceIdWhenEmpty(Event event) {
@@ -202,21 +226,51 @@ public class EventBroker implements EventDispatcher {
   protected boolean isVisibleTo(Event event, CurrentUser user) throws PermissionBackendException {
     if (event instanceof RefEvent) {
       RefEvent refEvent = (RefEvent) event;
-      String ref = refEvent.getRefName();
-      if (PatchSet.isChangeRef(ref)) {
-        Change.Id cid = PatchSet.Id.fromRef(ref).changeId();
-        try {
-          Change change = notesFactory.createChecked(refEvent.getProjectNameKey(), cid).getChange();
-          return isVisibleTo(change, user);
-        } catch (NoSuchChangeException e) {
-          logger.atFine().log(
-              "Change %s cannot be found, falling back on ref visibility check", cid.get());
-        }
-      }
-      return isVisibleTo(refEvent.getBranchNameKey(), user);
+      return isVisibleTo(refEvent.getProjectNameKey(), refEvent.getRefName(), user);
     } else if (event instanceof ProjectEvent) {
       return isVisibleTo(((ProjectEvent) event).getProjectNameKey(), user);
     }
     return true;
   }
+
+  protected boolean isVisibleTo(Project.NameKey project, String ref, CurrentUser user)
+      throws PermissionBackendException {
+    if (PatchSet.isChangeRef(ref)) {
+      Change.Id cid = PatchSet.Id.fromRef(ref).changeId();
+      try {
+        Change change = notesFactory.createChecked(project, cid).getChange();
+        return isVisibleTo(change, user);
+      } catch (NoSuchChangeException e) {
+        logger.atFine().log(
+            "Change %s cannot be found, falling back on ref visibility check", cid.get());
+      }
+    }
+    return isVisibleTo(BranchNameKey.create(project, ref), user);
+  }
+
+  /**
+   * Whether the user can see an event that is replayed from the {@link EventJournal}.
+   *
+   * <p>The same checks are done as when the event was fired, but against the current state of the
+   * change, ref or project.
+   */
+  public boolean isVisibleTo(EventJournal.Entry entry, CurrentUser user)
+      throws PermissionBackendException {
+    switch (entry.scope()) {
+      case CHANGE:
+        try {
+          return isVisibleTo(
+              notesFactory.createChecked(entry.project(), entry.changeId()).getChange(), user);
+        } catch (NoSuchChangeException e) {
+          return false;
+        }
+      case REF:
+        return isVisibleTo(entry.project(), entry.ref(), user);
+      case PROJECT:
+        return isVisibleTo(entry.project(), user);
+      case GLOBAL:
+        return true;
+    }
+    throw new IllegalStateException("Unknown scope: " + entry.scope());
+  }
 }
@@ -0,0 +1,566 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.events;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.events.SerializedEvents.SerializedEvent;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Append-only journal of the events that are dispatched by the {@link EventBroker}.
+ *
+ * <p>Each journaled event is assigned an increasing sequence id, which is added to the serialized
+ * event as {@code sequenceId} property. Clients that reconnect pass the id of the last event they
+ * have seen to catch up on the events that they missed in the meantime.
+ *
+ * <p>The journal is stored as segment files in {@code event.journal.directory}. Events are appended
+ * to the newest segment, a new segment is started when it would exceed {@code
+ * event.journal.segmentSize}. The oldest segments are deleted when the journal exceeds {@code
+ * event.journal.maxSize} or when they were last written longer than {@code event.journal.maxAge}
+ * ago. Segments are read through memory mappings, so catching up is a sequential read that is
+ * usually served from the page cache.
+ *
+ * <p>A record in a segment consists of the sequence id (8 bytes) and the length of the remainder of
+ * the record (4 bytes), followed by the {@link Scope} (1 byte), the event type, the project and the
+ * key of the scope (each as 4 bytes length followed by UTF-8) and the serialized event.
+ */
+@Singleton
+public class EventJournal implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String SEGMENT_SUFFIX = ".events";
+  private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  /** What the visibility of a journaled event is checked against when the event is replayed. */
+  public enum Scope {
+    /** The event is visible to users who can see the change. */
+    CHANGE,
+    /** The event is visible to users who can see the ref. */
+    REF,
+    /** The event is visible to users who can access the project. */
+    PROJECT,
+    /** The event is visible to all users. */
+    GLOBAL
+  }
+
+  /** Event that was read from the journal. */
+  public static final class Entry {
+    private final long id;
+    private final Scope scope;
+    private final String type;
+    @Nullable private final String project;
+    @Nullable private final String key;
+    private final SerializedEvent event;
+
+    private Entry(
+        long id,
+        Scope scope,
+        String type,
+        @Nullable String project,
+        @Nullable String key,
+        SerializedEvent event) {
+      this.id = id;
+      this.scope = scope;
+      this.type = type;
+      this.project = project;
+      this.key = key;
+      this.event = event;
+    }
+
+    public long id() {
+      return id;
+    }
+
+    public Scope scope() {
+      return scope;
+    }
+
+    public String type() {
+      return type;
+    }
+
+    /** Returns the project of the event, {@code null} for {@link Scope#GLOBAL} events. */
+    @Nullable
+    public Project.NameKey project() {
+      return project != null ? Project.nameKey(project) : null;
+    }
+
+    /** Returns the change of a {@link Scope#CHANGE} event. */
+    public Change.Id changeId() {
+      return Change.id(Integer.parseInt(key));
+    }
+
+    /** Returns the ref of a {@link Scope#REF} event. */
+    public String ref() {
+      return key;
+    }
+
+    public SerializedEvent event() {
+      return event;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("id", id)
+          .add("scope", scope)
+          .add("type", type)
+          .add("project", project)
+          .add("key", key)
+          .toString();
+    }
+  }
+
+  private static class Segment {
+    final long firstId;
+    final Path path;
+
+    /** Size of the complete records in the segment, readers don't look beyond it. */
+    volatile long size;
+
+    Segment(long firstId, Path path) {
+      this.firstId = firstId;
+      this.path = path;
+    }
+  }
+
+  /**
+   * Reads the journal sequentially, starting after a given sequence id.
+   *
+   * <p>A cursor doesn't hold any file open and needs not be closed. It is not thread-safe.
+   */
+  public final class Cursor {
+    private long lastId;
+    private boolean missedEvents;
+    @Nullable private Segment segment;
+    private long position;
+    private long mappedPosition;
+    @Nullable private ByteBuffer buffer;
+
+    private Cursor(long afterId) {
+      lastId = afterId;
+      Map.Entry<Long, Segment> first = segments.firstEntry();
+      Map.Entry<Long, Segment> start = segments.floorEntry(afterId + 1);
+      if (start == null) {
+        start = first;
+      }
+      if (first != null && first.getKey() > afterId + 1) {
+        missedEvents = true;
+      }
+      segment = start != null ? start.getValue() : null;
+    }
+
+    /** Returns the id of the last event that was returned, or the start id. */
+    public long lastId() {
+      return lastId;
+    }
+
+    /**
+     * Whether events after the start id are missing from the journal, because they were deleted
+     * before they could be read.
+     */
+    public boolean missedEvents() {
+      return missedEvents;
+    }
+
+    /**
+     * Returns the next events, at most {@code max}.
+     *
+     * @return the events, empty if all events that were journaled so far have been read
+     * @throws IOException if a segment cannot be read
+     */
+    public List<Entry> next(int max) throws IOException {
+      List<Entry> entries = new ArrayList<>();
+      while (entries.size() < max && segment != null) {
+        if (buffer == null || !buffer.hasRemaining()) {
+          if (!map()) {
+            break;
+          }
+          continue;
+        }
+        Entry entry = readEntry(buffer);
+        if (entry == null) {
+          logger.atWarning().log(
+              "Skipping corrupt event journal segment %s after position %d",
+              segment.path, mappedPosition + buffer.position());
+          missedEvents = true;
+          position = Long.MAX_VALUE;
+          buffer = null;
+          continue;
+        }
+        position = mappedPosition + buffer.position();
+        if (entry.id() > lastId) {
+          lastId = entry.id();
+          entries.add(entry);
+        }
+      }
+      return entries;
+    }
+
+    /** Maps the unread part of the journal, returns false if there is nothing left to read. */
+    private boolean map() throws IOException {
+      while (true) {
+        long size = segment.size;
+        if (position < size) {
+          try (FileChannel in = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            buffer = in.map(FileChannel.MapMode.READ_ONLY, position, size - position);
+            mappedPosition = position;
+            return true;
+          } catch (NoSuchFileException e) {
+            // The segment was deleted by the retention.
+            missedEvents = true;
+          }
+        }
+        Map.Entry<Long, Segment> next = segments.higherEntry(segment.firstId);
+        if (next == null) {
+          buffer = null;
+          return false;
+        }
+        if (next.getKey() > lastId + 1) {
+          missedEvents = true;
+        }
+        segment = next.getValue();
+        position = 0;
+        buffer = null;
+      }
+    }
+  }
+
+  private final SerializedEvents serializedEvents;
+  private final boolean enabled;
+  private final Path directory;
+  private final long segmentSize;
+  private final long maxSize;
+  private final long maxAgeMillis;
+  private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+  // Guarded by this.
+  @Nullable private FileChannel out;
+  private Segment current;
+  private long lastId;
+
+  @Inject
+  EventJournal(
+      @GerritServerConfig Config cfg, SitePaths site, SerializedEvents serializedEvents) {
+    this.serializedEvents = serializedEvents;
+    this.enabled = cfg.getBoolean("event", "journal", "enabled", false);
+    this.directory =
+        site.resolve(
+            MoreObjects.firstNonNull(
+                cfg.getString("event", "journal", "directory"), "data/event-journal"));
+    long configuredSegmentSize = cfg.getLong("event", "journal", "segmentSize", 64 << 20);
+    this.segmentSize = Math.max(1, Math.min(MAX_SEGMENT_SIZE, configuredSegmentSize));
+    this.maxSize = cfg.getLong("event", "journal", "maxSize", 1L << 30);
+    this.maxAgeMillis =
+        ConfigUtil.getTimeUnit(
+            cfg, "event", "journal", "maxAge", TimeUnit.DAYS.toMillis(7), MILLISECONDS);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      try (DirectoryStream<Path> files =
+          Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+        for (Path file : files) {
+          Optional<Long> firstId = parseFirstId(file);
+          if (firstId.isPresent()) {
+            Segment segment = new Segment(firstId.get(), file);
+            segment.size = Files.size(file);
+            segments.put(segment.firstId, segment);
+          }
+        }
+      }
+      Map.Entry<Long, Segment> last = segments.lastEntry();
+      if (last == null) {
+        lastId = 0;
+        openSegment(1);
+      } else {
+        current = last.getValue();
+        lastId = recover(current);
+        out = FileChannel.open(current.path, StandardOpenOption.WRITE);
+        out.truncate(current.size);
+      }
+      enforceRetention();
+    } catch (IOException e) {
+      logger.atSevere().withCause(e).log(
+          "Cannot open event journal in %s, events are not journaled", directory);
+      close();
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    close();
+  }
+
+  /** Returns a cursor that reads the events that were journaled after {@code afterId}. */
+  public Cursor read(long afterId) {
+    return new Cursor(afterId);
+  }
+
+  void append(Change change, Event event) {
+    append(event, Scope.CHANGE, change.getProject(), Integer.toString(change.getChangeId()));
+  }
+
+  void append(BranchNameKey branchName, Event event) {
+    append(event, Scope.REF, branchName.project(), branchName.branch());
+  }
+
+  void append(Project.NameKey project, Event event) {
+    append(event, Scope.PROJECT, project, null);
+  }
+
+  void append(Event event) {
+    if (event instanceof RefEvent && ((RefEvent) event).getRefName() != null) {
+      RefEvent refEvent = (RefEvent) event;
+      append(event, Scope.REF, refEvent.getProjectNameKey(), refEvent.getRefName());
+    } else if (event instanceof ProjectEvent) {
+      append(event, Scope.PROJECT, ((ProjectEvent) event).getProjectNameKey(), null);
+    } else {
+      append(event, Scope.GLOBAL, null, null);
+    }
+  }
+
+  private void append(
+      Event event, Scope scope, @Nullable Project.NameKey project, @Nullable String key) {
+    if (!enabled) {
+      return;
+    }
+    // Serialize outside of the lock, computing the attributes of an event may be expensive.
+    Optional<SerializedEvent> serialized = serializedEvents.get(event);
+    if (!serialized.isPresent()) {
+      return;
+    }
+    byte[] type = event.getType().getBytes(UTF_8);
+    byte[] projectName = project != null ? project.get().getBytes(UTF_8) : new byte[0];
+    byte[] keyBytes = key != null ? key.getBytes(UTF_8) : new byte[0];
+
+    synchronized (this) {
+      if (out == null) {
+        return;
+      }
+      long id = lastId + 1;
+      SerializedEvent journaled = serialized.get().withSequenceId(id);
+      byte[] json = journaled.bytes();
+      int length = 1 + 3 * Integer.BYTES + type.length + projectName.length + keyBytes.length;
+      length += json.length;
+      ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+      record.putLong(id).putInt(length).put((byte) scope.ordinal());
+      record.putInt(type.length).put(type);
+      record.putInt(projectName.length).put(projectName);
+      record.putInt(keyBytes.length).put(keyBytes);
+      record.put(json);
+      record.flip();
+      try {
+        if (current.size > 0 && current.size + record.remaining() > segmentSize) {
+          out.close();
+          openSegment(id);
+          enforceRetention();
+        }
+        long pos = current.size;
+        while (record.hasRemaining()) {
+          pos += out.write(record, pos);
+        }
+        current.size = pos;
+        lastId = id;
+      } catch (IOException e) {
+        logger.atSevere().atMostEvery(1, MINUTES).withCause(e).log(
+            "Cannot append %s event to the event journal", event.getType());
+        return;
+      }
+      serializedEvents.put(event, journaled);
+    }
+  }
+
+  private void openSegment(long firstId) throws IOException {
+    Segment segment =
+        new Segment(firstId, directory.resolve(String.format("%019d", firstId) + SEGMENT_SUFFIX));
+    out =
+        FileChannel.open(
+            segment.path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    segments.put(firstId, segment);
+    current = segment;
+  }
+
+  /**
+   * Drops an incomplete record at the end of the segment, e.g. after a crash.
+   *
+   * @return the id of the last record in the segment
+   */
+  private static long recover(Segment segment) throws IOException {
+    long last = segment.firstId - 1;
+    long valid = 0;
+    if (segment.size > 0) {
+      try (FileChannel in = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+        ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        Entry entry;
+        while ((entry = readEntry(buffer)) != null) {
+          last = entry.id();
+          valid = buffer.position();
+        }
+      }
+    }
+    if (valid < segment.size) {
+      logger.atWarning().log(
+          "Truncating incomplete event journal segment %s from %d to %d bytes",
+          segment.path, segment.size, valid);
+    }
+    segment.size = valid;
+    return last;
+  }
+
+  private void enforceRetention() {
+    long total = segments.values().stream().mapToLong(s -> s.size).sum();
+    long cutoff = TimeUtil.nowMs() - maxAgeMillis;
+    for (Segment segment : segments.values()) {
+      if (segment == current || (total <= maxSize && lastModified(segment) >= cutoff)) {
+        break;
+      }
+      segments.remove(segment.firstId);
+      total -= segment.size;
+      try {
+        Files.deleteIfExists(segment.path);
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log(
+            "Cannot delete event journal segment %s", segment.path);
+      }
+    }
+  }
+
+  private static long lastModified(Segment segment) {
+    try {
+      return Files.getLastModifiedTime(segment.path).toMillis();
+    } catch (IOException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private void close() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Cannot close event journal");
+      }
+      out = null;
+    }
+  }
+
+  private static Optional<Long> parseFirstId(Path file) {
+    String name = file.getFileName().toString();
+    try {
+      return Optional.of(
+          Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Reads the record at the position of the buffer and advances the buffer behind it.
+   *
+   * @return the record, {@code null} if the buffer doesn't contain a complete record
+   */
+  @Nullable
+  private static Entry readEntry(ByteBuffer buffer) {
+    int start = buffer.position();
+    if (buffer.remaining() < HEADER_SIZE) {
+      return null;
+    }
+    long id = buffer.getLong(start);
+    int length = buffer.getInt(start + Long.BYTES);
+    if (id <= 0 || length <= 1 + 3 * Integer.BYTES || length > buffer.remaining() - HEADER_SIZE) {
+      return null;
+    }
+    ByteBuffer record = buffer.duplicate();
+    record.position(start + HEADER_SIZE);
+    record.limit(start + HEADER_SIZE + length);
+    try {
+      int scope = record.get();
+      if (scope < 0 || scope >= Scope.values().length) {
+        return null;
+      }
+      String type = readString(record);
+      String project = readString(record);
+      String key = readString(record);
+      byte[] json = new byte[record.remaining()];
+      record.get(json);
+      if (type == null) {
+        return null;
+      }
+      buffer.position(start + HEADER_SIZE + length);
+      return new Entry(
+          id, Scope.values()[scope], type, project, key, new SerializedEvent(json, id));
+    } catch (BufferUnderflowException
+        | IllegalArgumentException
+        | NegativeArraySizeException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static String readString(ByteBuffer record) {
+    int length = record.getInt();
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    record.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
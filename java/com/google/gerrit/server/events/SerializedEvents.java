@@ -0,0 +1,142 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.events;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serializes events with the {@link EventGson} Gson for streaming them to clients.
+ *
+ * <p>The same {@link Event} instance is delivered to all subscribers, e.g. all {@code
+ * stream-events} connections. Each event is serialized only once, no matter how many subscribers
+ * it is written to. The serialized form is kept as long as the event is referenced.
+ */
+@Singleton
+public class SerializedEvents {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Event serialized as a single line of JSON, including the terminating newline. */
+  public static final class SerializedEvent {
+    private final byte[] bytes;
+    private final long sequenceId;
+
+    SerializedEvent(byte[] bytes, long sequenceId) {
+      this.bytes = bytes;
+      this.sequenceId = sequenceId;
+    }
+
+    /**
+     * Returns the id under which the event was recorded in the {@link EventJournal}, or {@code 0}
+     * if the event was not journaled.
+     */
+    public long sequenceId() {
+      return sequenceId;
+    }
+
+    public int size() {
+      return bytes.length;
+    }
+
+    byte[] bytes() {
+      return bytes;
+    }
+
+    /**
+     * Returns a copy of this event that has the {@code sequenceId} property set to the given id.
+     *
+     * <p>The property is inserted as first property of the JSON object, so that the event doesn't
+     * need to be serialized again.
+     */
+    SerializedEvent withSequenceId(long id) {
+      if (bytes.length < 2 || bytes[0] != '{') {
+        return new SerializedEvent(bytes, id);
+      }
+      byte[] property =
+          ("{\"sequenceId\":" + id + (bytes[1] == '}' ? "" : ",")).getBytes(UTF_8);
+      byte[] result = new byte[property.length + bytes.length - 1];
+      System.arraycopy(property, 0, result, 0, property.length);
+      System.arraycopy(bytes, 1, result, property.length, bytes.length - 1);
+      return new SerializedEvent(result, id);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+      out.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+      return new String(bytes, UTF_8);
+    }
+  }
+
+  private final Gson gson;
+  private final Counter0 serializations;
+
+  /** Weak keys compare by identity, hence this only dedupes deliveries of the same instance. */
+  private final Cache<Event, Optional<SerializedEvent>> cache =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  @Inject
+  SerializedEvents(@EventGson Gson gson, MetricMaker metricMaker) {
+    this.gson = gson;
+    this.serializations =
+        metricMaker.newCounter(
+            "events/serializations",
+            new Description("Number of events that were serialized for streaming to clients")
+                .setRate()
+                .setUnit("events"));
+  }
+
+  /**
+   * Returns the serialized event, or {@link Optional#empty()} if the event cannot be serialized.
+   */
+  public Optional<SerializedEvent> get(Event event) {
+    try {
+      return cache.get(event, () -> serialize(event));
+    } catch (ExecutionException e) {
+      // Not reached, serialize() doesn't throw checked exceptions.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Replaces the serialized form of {@code event}, e.g. after it was assigned a sequence id. */
+  void put(Event event, SerializedEvent serialized) {
+    cache.put(event, Optional.of(serialized));
+  }
+
+  private Optional<SerializedEvent> serialize(Event event) {
+    serializations.increment();
+    try {
+      return Optional.of(new SerializedEvent((gson.toJson(event) + "\n").getBytes(UTF_8), 0));
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log("Could not serialize event %s", event.getType());
+      return Optional.empty();
+    }
+  }
+}
@@ -22,7 +22,7 @@ import com.google.gerrit.server.project.ProjectCache;
 import com.google.inject.Inject;
 
 /** Runnable to enable scheduling gc to run periodically */
-public class GarbageCollectionRunner implements Runnable {
+public class GarbageCollectionRunner implements WorkQueue.PrioritizedRunnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   static class Lifecycle implements LifecycleListener {
@@ -64,6 +64,11 @@ public class GarbageCollectionRunner implements Runnable {
     garbageCollectionFactory.create().run(Lists.newArrayList(projectCache.all()));
   }
 
+  @Override
+  public WorkQueue.Priority getPriority() {
+    return WorkQueue.Priority.LOW;
+  }
+
   @Override
   public String toString() {
     return "GC runner";
@@ -23,6 +23,8 @@ import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.gerrit.server.cache.PerThreadRefDbCache;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.logging.LoggingContext;
+import com.google.gerrit.server.logging.ResourceUsage;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.File;
@@ -159,6 +161,7 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
 
   @Override
   public Repository openRepository(Project.NameKey name) throws RepositoryNotFoundException {
+    LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.REPO_OPENS, 1);
     FileKey cachedLocation = fileKeyByProject.get(name);
     if (cachedLocation != null) {
       try {
@@ -0,0 +1,172 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.git;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.entities.GroupReference;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.account.GroupBackend;
+import com.google.gerrit.server.account.GroupBackends;
+import com.google.gerrit.server.account.GroupMembership;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.QoSScheduler.Tenant;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ServerRequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Quality of service policy for git traffic as configured in the {@code qos} section of {@code
+ * gerrit.config}.
+ *
+ * <p>Creates the {@link QoSScheduler}s for the executors that serve git requests and maps users to
+ * the tenants that they are scheduled as: members of a group that has a {@code qos.<group>}
+ * subsection share one tenant with the weight and concurrency limit of that subsection, all other
+ * users are scheduled as a tenant of their own.
+ */
+@Singleton
+public class QoSPolicy {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String SECTION = "qos";
+
+  private static class GroupTenant {
+    final AccountGroup.UUID uuid;
+    final Tenant tenant;
+
+    GroupTenant(AccountGroup.UUID uuid, Tenant tenant) {
+      this.uuid = uuid;
+      this.tenant = tenant;
+    }
+  }
+
+  private final MetricMaker metrics;
+  private final boolean enabled;
+  private final int maxConcurrentPerUser;
+  private final int maxConcurrentPerProject;
+  private final long maxProjectedWaitMillis;
+  private final long queueTimeSloMillis;
+  private final Supplier<ImmutableList<GroupTenant>> groupTenants;
+
+  @Inject
+  QoSPolicy(
+      @GerritServerConfig Config cfg,
+      MetricMaker metrics,
+      GroupBackend groupBackend,
+      ThreadLocalRequestContext threadContext,
+      ServerRequestContext serverCtx) {
+    this.metrics = metrics;
+    this.enabled = cfg.getBoolean(SECTION, "enabled", false);
+    this.maxConcurrentPerUser = cfg.getInt(SECTION, "maxConcurrentPerUser", 0);
+    this.maxConcurrentPerProject = cfg.getInt(SECTION, "maxConcurrentPerProject", 0);
+    this.maxProjectedWaitMillis =
+        ConfigUtil.getTimeUnit(cfg, SECTION, null, "maxProjectedWait", 0, MILLISECONDS);
+    this.queueTimeSloMillis =
+        ConfigUtil.getTimeUnit(cfg, SECTION, null, "queueTimeSlo", 10000, MILLISECONDS);
+    this.groupTenants =
+        Suppliers.memoize(() -> resolveGroupTenants(cfg, groupBackend, threadContext, serverCtx));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Creates the scheduler for an executor.
+   *
+   * @param name name of the scheduler that is used in the metric names
+   * @param executor the executor
+   * @param capacity maximum number of tasks that the scheduler runs concurrently on the executor,
+   *     usually the number of threads of the executor
+   * @return the scheduler, a scheduler that submits tasks to the executor right away if QoS
+   *     scheduling is disabled
+   */
+  public QoSScheduler newScheduler(
+      String name, ScheduledThreadPoolExecutor executor, int capacity) {
+    if (!enabled) {
+      return QoSScheduler.direct(executor);
+    }
+    return new QoSScheduler(
+        name,
+        executor,
+        capacity,
+        maxConcurrentPerProject,
+        maxProjectedWaitMillis,
+        queueTimeSloMillis,
+        MILLISECONDS,
+        metrics,
+        Ticker.systemTicker());
+  }
+
+  /** Returns the tenant on whose behalf the tasks of the given user are scheduled. */
+  public Tenant getTenant(CurrentUser user) {
+    if (enabled) {
+      ImmutableList<GroupTenant> groups = groupTenants.get();
+      if (!groups.isEmpty()) {
+        GroupMembership effectiveGroups = user.getEffectiveGroups();
+        for (GroupTenant g : groups) {
+          if (effectiveGroups.contains(g.uuid)) {
+            return g.tenant;
+          }
+        }
+      }
+    }
+    String name =
+        user.isIdentifiedUser()
+            ? "account " + user.getAccountId().get()
+            : user.getLoggableName();
+    return new Tenant(name, 1, maxConcurrentPerUser);
+  }
+
+  private static ImmutableList<GroupTenant> resolveGroupTenants(
+      Config cfg,
+      GroupBackend groupBackend,
+      ThreadLocalRequestContext threadContext,
+      ServerRequestContext serverCtx) {
+    RequestContext ctx = threadContext.setContext(serverCtx);
+    try {
+      ImmutableList.Builder<GroupTenant> tenants = ImmutableList.builder();
+      for (String groupName : cfg.getSubsections(SECTION)) {
+        GroupReference g = GroupBackends.findBestSuggestion(groupBackend, groupName);
+        if (g == null) {
+          logger.atWarning().log("Group \"%s\" of qos is not available, skipping.", groupName);
+          continue;
+        }
+        tenants.add(
+            new GroupTenant(
+                g.getUUID(),
+                new Tenant(
+                    "group " + g.getName(),
+                    cfg.getInt(SECTION, groupName, "weight", 1),
+                    cfg.getInt(SECTION, groupName, "maxConcurrent", 0))));
+      }
+      return tenants.build();
+    } finally {
+      @SuppressWarnings("unused")
+      var unused = threadContext.setContext(ctx);
+    }
+  }
+}
@@ -0,0 +1,580 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.git;
+
+import static java.util.Comparator.comparingDouble;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
+import com.google.gerrit.server.logging.LoggingContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dispatches tasks to a {@link WorkQueue} executor in weighted fair order of their tenants.
+ *
+ * <p>Tasks are held by the scheduler until the executor has a free slot, so that the executor never
+ * runs more than {@code capacity} tasks of this scheduler at the same time. Which task is
+ * dispatched next is decided by start-time fair queueing: each task gets a virtual finish tag that
+ * advances by {@code 1 / weight} per task of its tenant, and the task with the smallest tag is
+ * dispatched first. A tenant that submits many tasks hence only delays its own tasks, while other
+ * tenants get their share of the executor as soon as a slot becomes free.
+ *
+ * <p>Tasks are not dispatched while their tenant runs {@link Tenant#maxConcurrent()} tasks or while
+ * their project runs {@code maxConcurrentPerProject} tasks, so that neither a single tenant nor a
+ * single hot project can occupy all slots.
+ *
+ * <p>If {@code maxProjectedWait} is set, tasks are rejected with a {@link QueueFullException} when
+ * they are submitted and the wait time that is projected from the queue length and the average run
+ * time of the recent tasks exceeds the limit. Clients can then retry later instead of waiting in a
+ * queue that they won't leave in time.
+ */
+public class QoSScheduler {
+  /** Tenant on whose behalf tasks are submitted, either a single user or a group of users. */
+  public static class Tenant {
+    private final String name;
+    private final int weight;
+    private final int maxConcurrent;
+
+    public Tenant(String name, int weight, int maxConcurrent) {
+      this.name = name;
+      this.weight = Math.max(1, weight);
+      this.maxConcurrent = Math.max(0, maxConcurrent);
+    }
+
+    public String name() {
+      return name;
+    }
+
+    /** Share of the executor relative to other tenants. */
+    public int weight() {
+      return weight;
+    }
+
+    /** Maximum number of tasks of this tenant that may run concurrently, 0 if unlimited. */
+    public int maxConcurrent() {
+      return maxConcurrent;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /** Thrown if a task is rejected because its projected wait time is too long. */
+  public static class QueueFullException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final long projectedWaitMillis;
+
+    QueueFullException(String queueName, Tenant tenant, long projectedWaitMillis) {
+      super(
+          String.format(
+              "%s queue is full for %s, projected wait is %d ms",
+              queueName, tenant, projectedWaitMillis));
+      this.projectedWaitMillis = projectedWaitMillis;
+    }
+
+    public long getProjectedWaitMillis() {
+      return projectedWaitMillis;
+    }
+  }
+
+  /**
+   * Creates a scheduler that submits all tasks to the executor right away, as if there was no
+   * scheduler.
+   */
+  public static QoSScheduler direct(ScheduledThreadPoolExecutor executor) {
+    return new QoSScheduler(executor);
+  }
+
+  /** Weight of the run time of the last task in the average run time. */
+  private static final double RUN_TIME_ALPHA = 0.125;
+
+  private final String queueName;
+  private final ScheduledThreadPoolExecutor executor;
+  private final boolean enabled;
+  private final int capacity;
+  private final int maxConcurrentPerProject;
+  private final long maxProjectedWaitNanos;
+  private final long queueTimeSloNanos;
+  private final Ticker ticker;
+  private final Timer0 queueLatency;
+  private final Counter0 sloViolations;
+  private final Counter0 rejected;
+
+  // All fields below are guarded by this.
+  private final TreeSet<Ticket> queued =
+      new TreeSet<>(comparingDouble((Ticket t) -> t.tag).thenComparingLong(t -> t.seq));
+  private final Map<String, Flow> flows = new HashMap<>();
+  private final Map<String, Integer> runningByProject = new HashMap<>();
+  private double virtualTime;
+  private long nextSeq;
+  private int running;
+  private double avgRunTimeNanos;
+
+  /**
+   * @param queueName name of the scheduler, used for metric names and messages
+   * @param executor executor to which tasks are dispatched
+   * @param capacity maximum number of tasks of this scheduler that run concurrently on the executor
+   * @param maxConcurrentPerProject maximum number of tasks per project that run concurrently, 0 if
+   *     unlimited
+   * @param maxProjectedWait projected wait time above which tasks are rejected, 0 to never reject
+   *     tasks
+   * @param queueTimeSlo queue time above which a task counts as a violation of the service level
+   *     objective
+   * @param unit unit of {@code maxProjectedWait} and {@code queueTimeSlo}
+   */
+  QoSScheduler(
+      String queueName,
+      ScheduledThreadPoolExecutor executor,
+      int capacity,
+      int maxConcurrentPerProject,
+      long maxProjectedWait,
+      long queueTimeSlo,
+      TimeUnit unit,
+      MetricMaker metrics,
+      Ticker ticker) {
+    this.queueName = queueName;
+    this.executor = executor;
+    this.enabled = true;
+    this.capacity = Math.max(1, capacity);
+    this.maxConcurrentPerProject = Math.max(0, maxConcurrentPerProject);
+    this.maxProjectedWaitNanos = unit.toNanos(Math.max(0, maxProjectedWait));
+    this.queueTimeSloNanos = unit.toNanos(Math.max(0, queueTimeSlo));
+    this.ticker = ticker;
+
+    queueLatency =
+        metrics.newTimer(
+            metricName(metrics, "queue_latency"),
+            new Description("Time tasks waited in the QoS scheduler before they were dispatched")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    sloViolations =
+        metrics.newCounter(
+            metricName(metrics, "slo_violation_count"),
+            new Description("Tasks that waited longer than the queue time objective")
+                .setRate()
+                .setUnit("tasks"));
+    rejected =
+        metrics.newCounter(
+            metricName(metrics, "rejected_count"),
+            new Description("Tasks that were rejected because the projected wait was too long")
+                .setRate()
+                .setUnit("tasks"));
+    metrics.newCallbackMetric(
+        metricName(metrics, "queued_tasks"),
+        Integer.class,
+        new Description("Tasks waiting in the QoS scheduler").setGauge().setUnit("tasks"),
+        this::getQueuedCount);
+    metrics.newCallbackMetric(
+        metricName(metrics, "running_tasks"),
+        Integer.class,
+        new Description("Tasks dispatched by the QoS scheduler that did not finish yet")
+            .setGauge()
+            .setUnit("tasks"),
+        this::getRunningCount);
+  }
+
+  private String metricName(MetricMaker metrics, String name) {
+    return metrics.sanitizeMetricName(String.format("qos/%s/%s", queueName, name));
+  }
+
+  private QoSScheduler(ScheduledThreadPoolExecutor executor) {
+    this.queueName = null;
+    this.executor = executor;
+    this.enabled = false;
+    this.capacity = 0;
+    this.maxConcurrentPerProject = 0;
+    this.maxProjectedWaitNanos = 0;
+    this.queueTimeSloNanos = 0;
+    this.ticker = null;
+    this.queueLatency = null;
+    this.sloViolations = null;
+    this.rejected = null;
+  }
+
+  public ScheduledThreadPoolExecutor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Submits a task on behalf of a tenant.
+   *
+   * <p>If the task is canceled through the returned future before it was dispatched, it is
+   * removed from the scheduler and, if it is a {@link CancelableRunnable}, notified of the
+   * cancellation.
+   *
+   * @param tenant tenant on whose behalf the task runs
+   * @param project project that the task accesses, {@code null} if unknown
+   * @param task the task
+   * @return future of the task
+   * @throws QueueFullException if the projected wait time of the task is too long
+   */
+  public Future<?> submit(Tenant tenant, @Nullable Project.NameKey project, Runnable task)
+      throws QueueFullException {
+    if (!enabled) {
+      return executor.submit(task);
+    }
+
+    Ticket ticket;
+    synchronized (this) {
+      Flow flow = flows.computeIfAbsent(tenant.name(), n -> new Flow());
+      double tag = Math.max(virtualTime, flow.finishTag) + 1.0 / tenant.weight();
+      ticket = new Ticket(tenant, flow, project, task, tag, nextSeq++);
+      long projectedWaitNanos = projectedWaitNanos(ticket);
+      if (maxProjectedWaitNanos > 0 && projectedWaitNanos > maxProjectedWaitNanos) {
+        removeIfIdle(tenant.name(), flow);
+        rejected.increment();
+        throw new QueueFullException(
+            queueName, tenant, NANOSECONDS.toMillis(projectedWaitNanos));
+      }
+      flow.finishTag = tag;
+      flow.queued++;
+      queued.add(ticket);
+    }
+    dispatch();
+    return ticket;
+  }
+
+  synchronized int getQueuedCount() {
+    return queued.size();
+  }
+
+  synchronized int getRunningCount() {
+    return running;
+  }
+
+  @VisibleForTesting
+  synchronized int getTenantCount() {
+    return flows.size();
+  }
+
+  private long projectedWaitNanos(Ticket ticket) {
+    if (avgRunTimeNanos == 0) {
+      return 0;
+    }
+    long wait = 0;
+    int ahead = queued.headSet(ticket).size();
+    if (running + ahead >= capacity) {
+      wait = (long) ((ahead + 1) * avgRunTimeNanos / capacity);
+    }
+    int maxConcurrent = ticket.tenant.maxConcurrent();
+    if (maxConcurrent > 0 && ticket.flow.running + ticket.flow.queued >= maxConcurrent) {
+      wait = Math.max(wait, (long) ((ticket.flow.queued + 1) * avgRunTimeNanos / maxConcurrent));
+    }
+    return wait;
+  }
+
+  private void dispatch() {
+    List<Ticket> dispatched = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Ticket> it = queued.iterator();
+      while (running < capacity && it.hasNext()) {
+        Ticket t = it.next();
+        int maxConcurrent = t.tenant.maxConcurrent();
+        if (maxConcurrent > 0 && t.flow.running >= maxConcurrent) {
+          continue;
+        }
+        if (maxConcurrentPerProject > 0
+            && t.project != null
+            && runningByProject.getOrDefault(t.project.get(), 0) >= maxConcurrentPerProject) {
+          continue;
+        }
+        it.remove();
+        t.flow.queued--;
+        t.flow.running++;
+        running++;
+        if (t.project != null) {
+          runningByProject.merge(t.project.get(), 1, Integer::sum);
+        }
+        virtualTime = Math.max(virtualTime, t.tag);
+        dispatched.add(t);
+      }
+    }
+    for (Ticket t : dispatched) {
+      t.start();
+    }
+  }
+
+  private synchronized boolean removeIfQueued(Ticket ticket) {
+    if (!queued.remove(ticket)) {
+      return false;
+    }
+    ticket.flow.queued--;
+    removeIfIdle(ticket.tenant.name(), ticket.flow);
+    return true;
+  }
+
+  private void release(Ticket ticket, long runTimeNanos) {
+    synchronized (this) {
+      ticket.flow.running--;
+      running--;
+      removeIfIdle(ticket.tenant.name(), ticket.flow);
+      if (ticket.project != null) {
+        runningByProject.computeIfPresent(ticket.project.get(), (p, n) -> n > 1 ? n - 1 : null);
+      }
+      if (runTimeNanos >= 0) {
+        avgRunTimeNanos =
+            avgRunTimeNanos == 0
+                ? runTimeNanos
+                : avgRunTimeNanos + RUN_TIME_ALPHA * (runTimeNanos - avgRunTimeNanos);
+      }
+    }
+    dispatch();
+  }
+
+  private void removeIfIdle(String tenant, Flow flow) {
+    if (flow.running == 0 && flow.queued == 0) {
+      flows.remove(tenant, flow);
+    }
+  }
+
+  private static void notifyCanceled(Runnable task) {
+    if (task instanceof CancelableRunnable) {
+      ((CancelableRunnable) task).cancel();
+    }
+  }
+
+  /** State of one tenant, guarded by the scheduler. */
+  private static class Flow {
+    double finishTag;
+    int queued;
+    int running;
+  }
+
+  /** A submitted task, the future of the task until it was dispatched to the executor. */
+  private class Ticket implements Future<Object> {
+    final Tenant tenant;
+    final Flow flow;
+    @Nullable final Project.NameKey project;
+    final Runnable task;
+    final double tag;
+    final long seq;
+    final long enqueuedNanos;
+    final Runnable dispatchable;
+    final CountDownLatch started = new CountDownLatch(1);
+
+    // Guarded by this.
+    private Future<?> future;
+    private boolean canceled;
+    private boolean cancelRequested;
+    private boolean mayInterruptIfRunning;
+
+    Ticket(
+        Tenant tenant,
+        Flow flow,
+        @Nullable Project.NameKey project,
+        Runnable task,
+        double tag,
+        long seq) {
+      this.tenant = tenant;
+      this.flow = flow;
+      this.project = project;
+      this.task = task;
+      this.tag = tag;
+      this.seq = seq;
+      this.enqueuedNanos = ticker.read();
+      // Capture the logging context of the submitting thread, the task may be dispatched by the
+      // thread of another task that finished.
+      this.dispatchable =
+          LoggingContext.copy(
+              task instanceof ProjectRunnable
+                  ? new DispatchedProjectTask(this)
+                  : new DispatchedTask(this));
+    }
+
+    void start() {
+      long queueTimeNanos = ticker.read() - enqueuedNanos;
+      queueLatency.record(queueTimeNanos, NANOSECONDS);
+      if (queueTimeSloNanos > 0 && queueTimeNanos > queueTimeSloNanos) {
+        sloViolations.increment();
+      }
+
+      Future<?> f;
+      try {
+        f = executor.submit(dispatchable);
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          canceled = true;
+        }
+        started.countDown();
+        release(this, -1);
+        notifyCanceled(task);
+        return;
+      }
+
+      boolean cancel;
+      boolean interrupt;
+      synchronized (this) {
+        future = f;
+        cancel = cancelRequested;
+        interrupt = mayInterruptIfRunning;
+      }
+      started.countDown();
+      if (cancel) {
+        f.cancel(interrupt);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (removeIfQueued(this)) {
+        synchronized (this) {
+          canceled = true;
+        }
+        started.countDown();
+        notifyCanceled(task);
+        return true;
+      }
+
+      Future<?> f;
+      synchronized (this) {
+        if (canceled) {
+          return false;
+        }
+        f = future;
+        if (f == null) {
+          // Being dispatched right now, start() cancels the task once it was submitted.
+          cancelRequested = true;
+          this.mayInterruptIfRunning = mayInterruptIfRunning;
+          return true;
+        }
+      }
+      return f.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+      return canceled || (future != null && future.isCancelled());
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+      return canceled || (future != null && future.isDone());
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      started.await();
+      return dispatchedFuture().get();
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      if (!started.await(timeout, unit)) {
+        throw new TimeoutException();
+      }
+      return dispatchedFuture().get(deadline - System.nanoTime(), NANOSECONDS);
+    }
+
+    private synchronized Future<?> dispatchedFuture() {
+      if (canceled) {
+        throw new CancellationException();
+      }
+      return future;
+    }
+
+    @Override
+    public String toString() {
+      return task.toString();
+    }
+  }
+
+  /** Runs a dispatched task on the executor and releases its slot once it finished. */
+  private class DispatchedTask implements CancelableRunnable {
+    final Ticket ticket;
+    final AtomicBoolean released = new AtomicBoolean();
+
+    DispatchedTask(Ticket ticket) {
+      this.ticket = ticket;
+    }
+
+    @Override
+    public void run() {
+      long start = ticker.read();
+      try {
+        ticket.task.run();
+      } finally {
+        if (released.compareAndSet(false, true)) {
+          release(ticket, ticker.read() - start);
+        }
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (released.compareAndSet(false, true)) {
+        release(ticket, -1);
+      }
+      notifyCanceled(ticket.task);
+    }
+
+    @Override
+    public String toString() {
+      return ticket.task.toString();
+    }
+  }
+
+  private class DispatchedProjectTask extends DispatchedTask implements ProjectRunnable {
+    DispatchedProjectTask(Ticket ticket) {
+      super(ticket);
+    }
+
+    private ProjectRunnable projectRunnable() {
+      return (ProjectRunnable) ticket.task;
+    }
+
+    @Override
+    public Project.NameKey getProjectNameKey() {
+      return projectRunnable().getProjectNameKey();
+    }
+
+    @Override
+    @Nullable
+    public String getRemoteName() {
+      return projectRunnable().getRemoteName();
+    }
+
+    @Override
+    public boolean hasCustomizedPrint() {
+      return projectRunnable().hasCustomizedPrint();
+    }
+  }
+}
@@ -23,4 +23,9 @@ public interface QueueProvider {
   }
 
   ScheduledThreadPoolExecutor getQueue(QueueType type);
+
+  /** Returns the scheduler through which git requests are dispatched to the queue. */
+  default QoSScheduler getScheduler(QueueType type) {
+    return QoSScheduler.direct(getQueue(type));
+  }
 }
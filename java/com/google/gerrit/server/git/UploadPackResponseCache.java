@@ -0,0 +1,489 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.git;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+
+/**
+ * Disk cache for the responses of upload-pack requests that fetch objects without negotiation,
+ * i.e. clones and shallow clones.
+ *
+ * <p>Such requests send only wants and no haves, hence their response is determined by the request
+ * and the refs that are visible to the user. The response is stored under a key that is computed
+ * from the project, the protocol, the normalized request and the visible refs, so that later
+ * requests for the same refs can be answered by streaming the stored response instead of counting
+ * objects and writing a pack again. Since the visible refs are part of the key, a stored response
+ * is only served to users that can see exactly the same refs as the user for whom it was created.
+ *
+ * <p>The size of the cache is bounded by {@code upload.responseCacheMaxSize}, the least recently
+ * used responses are evicted first.
+ */
+@Singleton
+public class UploadPackResponseCache implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String ENTRY_SUFFIX = ".pack";
+  private static final String TMP_SUFFIX = ".tmp";
+
+  public static Module module() {
+    return new LifecycleModule() {
+      @Override
+      protected void configure() {
+        listener().to(UploadPackResponseCache.class);
+      }
+    };
+  }
+
+  /** Upload-pack request that is eligible for caching. */
+  public static class Request {
+    private final ImmutableList<ObjectId> wants;
+    private final ImmutableList<String> lines;
+
+    private Request(ImmutableList<ObjectId> wants, ImmutableList<String> lines) {
+      this.wants = wants;
+      this.lines = lines;
+    }
+
+    /** Returns the objects that are requested by the client. */
+    public ImmutableList<ObjectId> wants() {
+      return wants;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("lines", lines).toString();
+    }
+  }
+
+  private final boolean enabled;
+  private final Path directory;
+  private final long maxSize;
+  private final int maxRequestSize;
+  private final Counter0 hits;
+  private final Counter0 misses;
+  private final Counter0 bytesServed;
+  private final Counter0 evictions;
+
+  // Guarded by this. Size of the entries by key, in access order.
+  private final LinkedHashMap<ObjectId, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+
+  @Inject
+  UploadPackResponseCache(
+      @GerritServerConfig Config cfg, SitePaths site, MetricMaker metricMaker) {
+    this.enabled = cfg.getBoolean("upload", "responseCache", false);
+    this.directory =
+        site.resolve(
+            MoreObjects.firstNonNull(
+                cfg.getString("upload", null, "responseCacheDirectory"),
+                "cache/upload-pack-responses"));
+    this.maxSize = cfg.getLong("upload", "responseCacheMaxSize", 4L << 30);
+    this.maxRequestSize = cfg.getInt("upload", "responseCacheMaxRequestSize", 1 << 20);
+
+    hits =
+        metricMaker.newCounter(
+            "git/upload-pack/response_cache/hit_count",
+            new Description("Upload-pack requests that were answered from the response cache")
+                .setRate()
+                .setUnit("requests"));
+    misses =
+        metricMaker.newCounter(
+            "git/upload-pack/response_cache/miss_count",
+            new Description("Cacheable upload-pack requests that missed the response cache")
+                .setRate()
+                .setUnit("requests"));
+    bytesServed =
+        metricMaker.newCounter(
+            "git/upload-pack/response_cache/bytes_served",
+            new Description("Bytes that were served from the upload-pack response cache")
+                .setRate()
+                .setUnit(Units.BYTES));
+    evictions =
+        metricMaker.newCounter(
+            "git/upload-pack/response_cache/eviction_count",
+            new Description("Responses that were evicted from the upload-pack response cache")
+                .setRate()
+                .setUnit("responses"));
+    metricMaker.newCallbackMetric(
+        "git/upload-pack/response_cache/size",
+        Long.class,
+        new Description("Size of the upload-pack response cache").setGauge().setUnit(Units.BYTES),
+        this::size);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Returns the maximum size of a request body in bytes for which the response is cached. */
+  public int getMaxRequestSize() {
+    return maxRequestSize;
+  }
+
+  @Override
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      List<Path> files = new ArrayList<>();
+      try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory)) {
+        for (Path p : dir) {
+          String name = p.getFileName().toString();
+          if (name.endsWith(TMP_SUFFIX)) {
+            Files.deleteIfExists(p);
+          } else if (name.endsWith(ENTRY_SUFFIX)) {
+            files.add(p);
+          }
+        }
+      }
+      files.sort(Comparator.comparing(UploadPackResponseCache::lastModified));
+      synchronized (this) {
+        for (Path p : files) {
+          String name = p.getFileName().toString();
+          String hex = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+          if (ObjectId.isId(hex)) {
+            add(ObjectId.fromString(hex), Files.size(p));
+          }
+        }
+        evict();
+      }
+    } catch (IOException e) {
+      logger.atSevere().withCause(e).log("Cannot load upload-pack response cache %s", directory);
+    }
+  }
+
+  @Override
+  public void stop() {}
+
+  /**
+   * Parses the body of an upload-pack request.
+   *
+   * @param body the request body as sent by the client (uncompressed)
+   * @return the request if its response can be cached, empty if the request negotiates (sends
+   *     haves), depends on the client's shallow state, refers to refs by name or cannot be parsed
+   */
+  public static Optional<Request> parse(byte[] body) {
+    ImmutableList.Builder<ObjectId> wants = ImmutableList.builder();
+    ImmutableList.Builder<String> lines = ImmutableList.builder();
+    boolean hasWants = false;
+    boolean done = false;
+    int p = 0;
+    while (p + 4 <= body.length) {
+      int len;
+      try {
+        len = Integer.parseInt(new String(body, p, 4, UTF_8), 16);
+      } catch (NumberFormatException e) {
+        return Optional.empty();
+      }
+      if (len < 4) {
+        // Flush, delimiter and response end packets.
+        lines.add(String.valueOf(len));
+        p += 4;
+        continue;
+      }
+      if (len == 4 || p + len > body.length) {
+        return Optional.empty();
+      }
+      String line = new String(body, p + 4, len - 4, UTF_8);
+      p += len;
+      if (line.endsWith("\n")) {
+        line = line.substring(0, line.length() - 1);
+      }
+
+      if (line.startsWith("want ")) {
+        int end = line.indexOf(' ', 5);
+        String id = end < 0 ? line.substring(5) : line.substring(5, end);
+        if (!ObjectId.isId(id)) {
+          return Optional.empty();
+        }
+        wants.add(ObjectId.fromString(id));
+        hasWants = true;
+        line = withoutClientSpecificCapabilities(line);
+      } else if (line.startsWith("have ")
+          || line.startsWith("shallow ")
+          || line.startsWith("deepen-not ")
+          || line.startsWith("want-ref ")
+          || line.startsWith("packfile-uris ")) {
+        return Optional.empty();
+      } else if (line.startsWith("command=") && !line.equals("command=fetch")) {
+        return Optional.empty();
+      } else if (line.startsWith("agent=") || line.startsWith("session-id=")) {
+        continue;
+      } else if (line.equals("done")) {
+        done = true;
+      }
+      lines.add(line);
+    }
+    if (p != body.length || !hasWants || !done) {
+      return Optional.empty();
+    }
+    return Optional.of(new Request(wants.build(), lines.build()));
+  }
+
+  /**
+   * Removes the capabilities that identify the client but don't affect the response from a v0
+   * want line.
+   */
+  private static String withoutClientSpecificCapabilities(String wantLine) {
+    StringBuilder b = new StringBuilder();
+    for (String token : wantLine.split(" ")) {
+      if (token.startsWith("agent=") || token.startsWith("session-id=")) {
+        continue;
+      }
+      if (b.length() > 0) {
+        b.append(' ');
+      }
+      b.append(token);
+    }
+    return b.toString();
+  }
+
+  /**
+   * Computes the key under which the response to a request is cached.
+   *
+   * @param project project from which is fetched
+   * @param protocol value of the {@code Git-Protocol} header or environment variable
+   * @param request the request
+   * @param visibleRefs the refs of the project that are visible to the user
+   */
+  public static ObjectId key(
+      Project.NameKey project,
+      @Nullable String protocol,
+      Request request,
+      Collection<Ref> visibleRefs) {
+    MessageDigest md = Constants.newMessageDigest();
+    update(md, project.get());
+    update(md, Strings.nullToEmpty(protocol));
+    for (String line : request.lines) {
+      update(md, line);
+    }
+    byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    for (Ref ref : visibleRefs) {
+      update(md, ref.getName());
+      ObjectId id = ref.getObjectId();
+      if (id != null) {
+        id.copyRawTo(raw, 0);
+        md.update(raw);
+      }
+    }
+    return ObjectId.fromRaw(md.digest());
+  }
+
+  private static void update(MessageDigest md, String s) {
+    md.update(s.getBytes(UTF_8));
+    md.update((byte) 0);
+  }
+
+  /**
+   * Opens the cached response for the given key.
+   *
+   * @return channel to read the response from, {@code null} if no response is cached for the key.
+   *     The caller must close the channel.
+   */
+  @Nullable
+  public FileChannel open(ObjectId key) throws IOException {
+    synchronized (this) {
+      if (entries.get(key) == null) {
+        misses.increment();
+        return null;
+      }
+    }
+    try {
+      FileChannel channel = FileChannel.open(path(key), StandardOpenOption.READ);
+      hits.increment();
+      return channel;
+    } catch (NoSuchFileException e) {
+      synchronized (this) {
+        Long removed = entries.remove(key);
+        if (removed != null) {
+          size -= removed;
+        }
+      }
+      misses.increment();
+      return null;
+    }
+  }
+
+  /** Records that a cached response of the given size was served. */
+  public void served(long bytes) {
+    bytesServed.incrementBy(bytes);
+  }
+
+  /**
+   * Returns a writer that stores a response under the given key.
+   *
+   * <p>The response is only added to the cache when {@link Writer#commit()} is called, otherwise it
+   * is discarded when the writer is closed.
+   */
+  public Writer newWriter(ObjectId key) throws IOException {
+    return new Writer(key);
+  }
+
+  @VisibleForTesting
+  synchronized long size() {
+    return size;
+  }
+
+  @VisibleForTesting
+  synchronized boolean contains(ObjectId key) {
+    return entries.containsKey(key);
+  }
+
+  private Path path(ObjectId key) {
+    return directory.resolve(key.name() + ENTRY_SUFFIX);
+  }
+
+  private static long lastModified(Path p) {
+    try {
+      return Files.getLastModifiedTime(p).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  // Must be called while holding the lock.
+  private void add(ObjectId key, long entrySize) {
+    Long old = entries.put(key, entrySize);
+    if (old != null) {
+      size -= old;
+    }
+    size += entrySize;
+  }
+
+  // Must be called while holding the lock.
+  private void evict() {
+    Iterator<Map.Entry<ObjectId, Long>> it = entries.entrySet().iterator();
+    while (size > maxSize && it.hasNext()) {
+      Map.Entry<ObjectId, Long> e = it.next();
+      it.remove();
+      size -= e.getValue();
+      evictions.increment();
+      try {
+        // Clients that are still streaming the response keep reading from their open channel.
+        Files.deleteIfExists(path(e.getKey()));
+      } catch (IOException ex) {
+        logger.atWarning().withCause(ex).log(
+            "Cannot delete upload-pack response %s", e.getKey().name());
+      }
+    }
+  }
+
+  /** Writes a response into the cache, see {@link #newWriter(ObjectId)}. */
+  public class Writer extends OutputStream {
+    private final ObjectId key;
+    private final Path tmp;
+    private final OutputStream out;
+    private long written;
+    private boolean overflow;
+    private boolean closed;
+
+    private Writer(ObjectId key) throws IOException {
+      this.key = key;
+      this.tmp = Files.createTempFile(directory, key.name(), TMP_SUFFIX);
+      this.out = Files.newOutputStream(tmp);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (overflow) {
+        return;
+      }
+      written += len;
+      if (written > maxSize) {
+        // The response would evict everything else, don't cache it.
+        overflow = true;
+        return;
+      }
+      out.write(b, off, len);
+    }
+
+    /** Adds the written response to the cache. */
+    public void commit() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      out.close();
+      if (overflow) {
+        Files.deleteIfExists(tmp);
+        return;
+      }
+      Files.move(
+          tmp, path(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      synchronized (UploadPackResponseCache.this) {
+        add(key, written);
+        evict();
+      }
+    }
+
+    /** Discards the response unless it was committed. */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      out.close();
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
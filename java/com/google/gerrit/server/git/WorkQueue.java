@@ -19,20 +19,26 @@ import static java.util.stream.Collectors.toList;
 
 import com.google.common.base.CaseFormat;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.math.LongMath;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.events.LifecycleListener;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Counter1;
 import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
 import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.ScheduleConfig.Schedule;
 import com.google.gerrit.server.logging.LoggingContext;
 import com.google.gerrit.server.logging.LoggingContextAwareRunnable;
 import com.google.gerrit.server.plugincontext.PluginMapContext;
 import com.google.gerrit.server.util.IdGenerator;
+import com.google.gerrit.server.util.VirtualThreads;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.lang.reflect.Field;
@@ -71,6 +77,8 @@ import org.eclipse.jgit.lib.Config;
 public class WorkQueue {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  private static final long DEFAULT_PRIORITY_AGING_SECONDS = 30;
+
   /**
    * To register a TaskListener, which will be called directly before Tasks run, and directly after
    * they complete, bind the TaskListener like this:
@@ -174,6 +182,8 @@ public class WorkQueue {
   private final MetricMaker metrics;
   private final CopyOnWriteArrayList<Executor> queues;
   private final PluginMapContext<TaskListener> listeners;
+  private final boolean virtualThreads;
+  private final long priorityAgingNanos;
 
   @Inject
   WorkQueue(
@@ -185,7 +195,15 @@ public class WorkQueue {
         idGenerator,
         Math.max(cfg.getInt("execution", "defaultThreadPoolSize", 2), 2),
         metrics,
-        listeners);
+        listeners,
+        cfg.getBoolean("execution", "virtualThreads", false),
+        ConfigUtil.getTimeUnit(
+            cfg,
+            "execution",
+            null,
+            "priorityAging",
+            DEFAULT_PRIORITY_AGING_SECONDS,
+            TimeUnit.SECONDS));
   }
 
   /** Constructor to allow binding the WorkQueue more explicitly in a vhost setup. */
@@ -194,9 +212,42 @@ public class WorkQueue {
       int defaultThreadPoolSize,
       MetricMaker metrics,
       PluginMapContext<TaskListener> listeners) {
+    this(idGenerator, defaultThreadPoolSize, metrics, listeners, false);
+  }
+
+  /**
+   * Constructor to allow binding the WorkQueue more explicitly in a vhost setup.
+   *
+   * @param virtualThreads whether the queues should execute their tasks on virtual threads, if the
+   *     Java runtime supports them
+   */
+  public WorkQueue(
+      IdGenerator idGenerator,
+      int defaultThreadPoolSize,
+      MetricMaker metrics,
+      PluginMapContext<TaskListener> listeners,
+      boolean virtualThreads) {
+    this(
+        idGenerator,
+        defaultThreadPoolSize,
+        metrics,
+        listeners,
+        virtualThreads,
+        DEFAULT_PRIORITY_AGING_SECONDS);
+  }
+
+  private WorkQueue(
+      IdGenerator idGenerator,
+      int defaultThreadPoolSize,
+      MetricMaker metrics,
+      PluginMapContext<TaskListener> listeners,
+      boolean virtualThreads,
+      long priorityAgingSeconds) {
     this.idGenerator = idGenerator;
     this.metrics = metrics;
     this.queues = new CopyOnWriteArrayList<>();
+    this.virtualThreads = virtualThreads;
+    this.priorityAgingNanos = TimeUnit.SECONDS.toNanos(Math.max(0, priorityAgingSeconds));
     this.defaultQueue = createQueue(defaultThreadPoolSize, "WorkQueue", true);
     this.listeners = listeners;
   }
@@ -412,12 +463,17 @@ public class WorkQueue {
     private final String queueName;
     private final AtomicLong priorityGenerator = new AtomicLong();
     private final PriorityBlockingQueue<ParkedTask> parked = new PriorityBlockingQueue<>();
+    @Nullable private Timer1<Priority> waitTime;
+    @Nullable private Timer1<Priority> runTime;
+    @Nullable private Counter1<Priority> deadlineMissed;
 
     Executor(int corePoolSize, final String queueName) {
       super(
           corePoolSize,
           new ThreadFactory() {
-            private final ThreadFactory parent = Executors.defaultThreadFactory();
+            private final ThreadFactory parent =
+                VirtualThreads.threadFactory(
+                    virtualThreads, Executors.defaultThreadFactory(), queueName);
             private final AtomicInteger tid = new AtomicInteger(1);
 
             @Override
@@ -555,6 +611,46 @@ public class WorkQueue {
               .setCumulative()
               .setUnit("tasks"),
           this::getCompletedTaskCount);
+
+      com.google.gerrit.metrics.Field<Priority> priorityField =
+          com.google.gerrit.metrics.Field.ofEnum(
+                  Priority.class, "priority", com.google.gerrit.metrics.Field.ignoreMetadata())
+              .description("The priority of the task.")
+              .build();
+      waitTime =
+          metrics.newTimer(
+              getMetricName(queueName, "wait_time"),
+              new Description("Time tasks waited in the queue after they became ready to run")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS),
+              priorityField);
+      runTime =
+          metrics.newTimer(
+              getMetricName(queueName, "run_time"),
+              new Description("Time tasks were running")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS),
+              priorityField);
+      deadlineMissed =
+          metrics.newCounter(
+              getMetricName(queueName, "deadline_missed_count"),
+              new Description("Tasks that started after their deadline").setRate().setUnit("tasks"),
+              priorityField);
+    }
+
+    void recordStart(Task<?> task) {
+      if (waitTime != null) {
+        waitTime.record(task.priority, -task.getDelay(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        if (task.isOverdue()) {
+          deadlineMissed.increment(task.priority);
+        }
+      }
+    }
+
+    void recordRunTime(Task<?> task, long nanos) {
+      if (runTime != null) {
+        runTime.record(task.priority, nanos, TimeUnit.NANOSECONDS);
+      }
     }
 
     private String getMetricName(String queueName, String metricName) {
@@ -634,6 +730,46 @@ public class WorkQueue {
       return all.values();
     }
 
+    /**
+     * Returns the task to start on the worker thread that just took the given ready task from the
+     * queue.
+     *
+     * <p>The queue orders tasks by the time at which they become ready, so that a task that is not
+     * ready yet never delays ready tasks. Among the ready tasks, the one with the earliest
+     * effective deadline is started (see {@link PrioritizedRunnable}), the others are queued
+     * again.
+     */
+    Task<?> pickReady(Task<?> taken) {
+      List<Runnable> ready = new ArrayList<>();
+      getQueue().drainTo(ready); // Only drains tasks that are ready.
+      if (ready.isEmpty()) {
+        return taken;
+      }
+
+      long now = System.nanoTime();
+      Task<?> next = taken;
+      for (Runnable r : ready) {
+        // Tasks of periodic runs that overlap with the previous run aren't decorated, these are
+        // started in the order in which they became ready.
+        if (r instanceof Task<?> && !((Task<?>) r).isCancelled()) {
+          Task<?> t = (Task<?>) r;
+          if (t.compareReady(next, now) < 0) {
+            next = t;
+          }
+        }
+      }
+      if (next != taken) {
+        ready.remove(next);
+        ready.add(taken);
+      }
+      for (Runnable r : ready) {
+        if (!(r instanceof Future<?>) || !((Future<?>) r).isCancelled()) {
+          getQueue().add(r);
+        }
+      }
+      return next;
+    }
+
     public void waitUntilReadyToStart(Task<?> task) {
       if (!listeners.isEmpty() && !isReadyToStart(task)) {
         ParkedTask parkedTask = new ParkedTask(task);
@@ -715,6 +851,10 @@ public class WorkQueue {
     public synchronized void setCorePoolSize(int s) {
       super.setCorePoolSize(s);
     }
+
+    long priorityAgingNanos() {
+      return priorityAgingNanos;
+    }
   }
 
   private static void logUncaughtException(Thread t, Throwable e) {
@@ -730,6 +870,37 @@ public class WorkQueue {
     void cancel();
   }
 
+  /** Priority of a task among the tasks of its queue that are ready to run. */
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+  }
+
+  /**
+   * Runnable that has a priority and optionally a deadline.
+   *
+   * <p>Tasks that are ready to run are started in the order of their effective deadlines. The
+   * effective deadline of a task is the time at which it became ready, plus the {@code
+   * execution.priorityAging} interval for {@link Priority#NORMAL} and twice that interval for
+   * {@link Priority#LOW} tasks, or its explicit deadline if that is earlier. This way a task of
+   * lower priority is started before tasks of higher priority that became ready sufficiently later,
+   * and can't starve. Tasks that don't implement this interface have {@link Priority#NORMAL}
+   * priority.
+   */
+  public interface PrioritizedRunnable extends Runnable {
+    Priority getPriority();
+
+    /**
+     * Returns the time by which the task should be started, {@code null} if the task has no
+     * deadline. Deadlines of periodic tasks are ignored.
+     */
+    @Nullable
+    default Instant getDeadline() {
+      return null;
+    }
+  }
+
   /**
    * Base interface handles the case when task was canceled before actual execution and in case it
    * was started cancel method is not called yet the task itself will be destroyed anyway (it will
@@ -780,6 +951,10 @@ public class WorkQueue {
     private final int taskId;
     private final Instant startTime;
     private final long nanosPeriod;
+    private final Priority priority;
+    private final long maxWaitNanos;
+    @Nullable private final Instant deadline;
+    private final long deadlineNanos;
 
     // runningState is non-null when listener or task code is running in an executor thread
     private final AtomicReference<State> runningState = new AtomicReference<>();
@@ -796,6 +971,22 @@ public class WorkQueue {
       this.executor = executor;
       this.taskId = taskId;
       this.startTime = Instant.now();
+
+      if (runnable instanceof PrioritizedRunnable) {
+        PrioritizedRunnable prioritized = (PrioritizedRunnable) runnable;
+        this.priority = firstNonNull(prioritized.getPriority(), Priority.NORMAL);
+        this.deadline = task.isPeriodic() ? null : prioritized.getDeadline();
+      } else {
+        this.priority = Priority.NORMAL;
+        this.deadline = null;
+      }
+      this.maxWaitNanos = priority.ordinal() * executor.priorityAgingNanos();
+      this.deadlineNanos =
+          deadline != null
+              ? LongMath.saturatedAdd(
+                  System.nanoTime(),
+                  TimeUnit.MILLISECONDS.toNanos(deadline.toEpochMilli() - startTime.toEpochMilli()))
+              : 0;
     }
 
     public int getTaskId() {
@@ -829,6 +1020,21 @@ public class WorkQueue {
       return executor.queueName;
     }
 
+    public Priority getPriority() {
+      return priority;
+    }
+
+    /** Returns the time by which the task should be started, {@code null} if it has no deadline. */
+    @Nullable
+    public Instant getDeadline() {
+      return deadline;
+    }
+
+    /** Whether the task has a deadline that has passed. */
+    public boolean isOverdue() {
+      return deadline != null && System.nanoTime() - deadlineNanos > 0;
+    }
+
     @Override
     @CanIgnoreReturnValue
     public boolean cancel(boolean mayInterruptIfRunning) {
@@ -864,7 +1070,30 @@ public class WorkQueue {
 
     @Override
     public int compareTo(Delayed o) {
-      return task.compareTo(o);
+      // The queue of the executor orders tasks by the time at which they become ready, see
+      // Executor#pickReady(Task) for the order in which ready tasks are started.
+      return task.compareTo(o instanceof Task<?> ? ((Task<?>) o).task : o);
+    }
+
+    /**
+     * Compares two tasks that are ready to run by their effective deadlines, see {@link
+     * PrioritizedRunnable}.
+     */
+    int compareReady(Task<?> other, long now) {
+      long d = effectiveDeadlineNanos(now) - other.effectiveDeadlineNanos(now);
+      if (d != 0) {
+        return d < 0 ? -1 : 1;
+      }
+      return task.compareTo(other.task);
+    }
+
+    /** Returns the effective deadline of this task in {@link System#nanoTime()} units. */
+    private long effectiveDeadlineNanos(long now) {
+      long nanos = task.getDelay(TimeUnit.NANOSECONDS) + maxWaitNanos;
+      if (deadline != null) {
+        nanos = Math.min(nanos, LongMath.saturatedSubtract(deadlineNanos, now));
+      }
+      return now + nanos;
     }
 
     @Override
@@ -900,15 +1129,25 @@ public class WorkQueue {
 
     @Override
     public void run() {
+      executor.pickReady(this).runNow();
+    }
+
+    private void runNow() {
       if (runningState.compareAndSet(null, State.READY)) {
         String oldThreadName = Thread.currentThread().getName();
         try {
           Thread.currentThread().setName(oldThreadName + "[" + this + "]");
           executor.waitUntilReadyToStart(this); // Transitions to PARKED while not ready to start
+          executor.recordStart(this);
           runningState.set(State.STARTING);
           executor.onStart(this);
           runningState.set(State.RUNNING);
-          task.run();
+          long runStart = System.nanoTime();
+          try {
+            task.run();
+          } finally {
+            executor.recordRunTime(this, System.nanoTime() - runStart);
+          }
         } finally {
           Thread.currentThread().setName(oldThreadName);
           runningState.set(State.STOPPING);
@@ -708,6 +708,8 @@ class ReceiveCommits {
           RequestInfo.builder(RequestInfo.RequestType.GIT_RECEIVE, user, traceContext)
               .project(project.getNameKey())
               .build();
+      performanceLogContext.accountResourceUsage(
+          requestInfo.formatForLogging(), requestInfo.resourceUsage());
       requestListeners.runEach(l -> l.onRequest(requestInfo));
       traceContext.addTag(RequestId.Type.RECEIVE_ID, new RequestId(project.getNameKey().get()));
 
@@ -50,6 +50,7 @@ import com.google.gerrit.server.index.change.ChangeIndexDefinition;
 import com.google.gerrit.server.index.change.ChangeIndexRewriter;
 import com.google.gerrit.server.index.change.ChangeIndexer;
 import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gerrit.server.index.change.CoalescingReindexScheduler;
 import com.google.gerrit.server.index.change.StalenessChecker;
 import com.google.gerrit.server.index.group.GroupIndexCollection;
 import com.google.gerrit.server.index.group.GroupIndexDefinition;
@@ -156,6 +157,9 @@ public class IndexModule extends LifecycleModule {
       // registration of the ShutdownIndexExecutors LifecycleListener must happen afterwards.
       listener().to(ShutdownIndexExecutors.class);
     }
+    // Pending debounced reindex requests are flushed to the index executors on shutdown, so the
+    // listener doing that must be stopped before the executors and is registered last.
+    listener().to(CoalescingReindexScheduler.Lifecycle.class);
 
     DynamicSet.setOf(binder(), OnlineUpgradeListener.class);
     OptionalBinder.newOptionalBinder(binder(), IsFirstInsertForEntry.class)
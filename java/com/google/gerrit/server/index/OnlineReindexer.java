@@ -23,6 +23,8 @@ import com.google.gerrit.index.IndexCollection;
 import com.google.gerrit.index.IndexDefinition;
 import com.google.gerrit.index.SiteIndexer;
 import com.google.gerrit.server.plugincontext.PluginSetContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -121,6 +123,11 @@ public class OnlineReindexer<K, V, I extends Index<K, V>> {
       return;
     }
     logger.atInfo().log("Reindex %s to version %s complete", name, version(index));
+    try {
+      index.finishBuild();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
     activateIndex();
     listeners.runEach(listener -> listener.onSuccess(name, oldVersion, newVersion));
   }
@@ -18,14 +18,20 @@ import static com.google.common.util.concurrent.Futures.successfulAsList;
 import static com.google.common.util.concurrent.Futures.transform;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.gerrit.server.git.QueueProvider.QueueType.BATCH;
+import static java.util.stream.Collectors.toList;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
@@ -46,13 +52,17 @@ import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.lib.Config;
@@ -78,6 +88,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
   private VolatileTask doneTask;
   private Task failedTask;
   private static final int PROJECT_SLICE_MAX_REFS = 1000;
+  private static final int READ_CHUNK_SIZE = 100;
 
   private final MultiProgressMonitor.Factory multiProgressMonitorFactory;
 
@@ -98,6 +109,12 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
   private final ProjectCache projectCache;
   private final Set<Project.NameKey> projectsToSkip;
   private final boolean reuseExistingDocuments;
+  private final Stage readStage = new Stage("read");
+  private final Stage indexStage = new Stage("compute fields and write");
+  private final AtomicInteger skippedCount = new AtomicInteger();
+  @Nullable private ReindexCheckpoint checkpoint;
+  private int prefetchThreads;
+  private ListeningExecutorService readExecutor = MoreExecutors.newDirectExecutorService();
 
   @AssistedInject
   AllChangesIndexer(
@@ -161,7 +178,8 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
 
     public abstract ImmutableMap<Change.Id, ObjectId> metaIdByChange();
 
-    private static ProjectSlice create(
+    @VisibleForTesting
+    static ProjectSlice create(
         Project.NameKey name,
         int slice,
         int slices,
@@ -175,6 +193,22 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     }
   }
 
+  /**
+   * Sets the checkpoint that records the fully indexed project slices, and skips the slices that
+   * were recorded by a previous reindex.
+   */
+  public void setCheckpoint(@Nullable ReindexCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  /**
+   * Sets the number of threads that read the next changes of a project slice from NoteDb while the
+   * current changes of the slice are being indexed. If 0, changes are read by the indexing thread.
+   */
+  public void setPrefetchThreads(int prefetchThreads) {
+    this.prefetchThreads = prefetchThreads;
+  }
+
   @Override
   public Result indexAll(ChangeIndex index) {
     return indexAll(index, true);
@@ -198,6 +232,25 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     // in 2020.
 
     Stopwatch sw = Stopwatch.createStarted();
+    if (prefetchThreads > 0) {
+      readExecutor =
+          MoreExecutors.listeningDecorator(
+              Executors.newFixedThreadPool(
+                  prefetchThreads,
+                  new ThreadFactoryBuilder()
+                      .setNameFormat("Reindex-Prefetch-%d")
+                      .setDaemon(true)
+                      .build()));
+    }
+    try {
+      return indexAll(index, notifyListeners, sw);
+    } finally {
+      readExecutor.shutdown();
+      readExecutor = MoreExecutors.newDirectExecutorService();
+    }
+  }
+
+  private Result indexAll(ChangeIndex index, boolean notifyListeners, Stopwatch sw) {
     AtomicBoolean ok = new AtomicBoolean(true);
     mpm = multiProgressMonitorFactory.create(progressOut, TaskKind.INDEXING, "Reindexing changes");
     doneTask = mpm.beginVolatileSubTask("changes");
@@ -238,6 +291,19 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     } else if (nFailed > 0) {
       logger.atWarning().log("Failed %s/%s changes", nFailed, nTotal);
     }
+    if (checkpoint != null) {
+      try {
+        checkpoint.checkpoint(index);
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Failed to write reindex checkpoint");
+      }
+    }
+    PrintWriter progressWriter = newPrintWriter(progressOut);
+    if (skippedCount.get() > 0) {
+      progressWriter.format("Skipped %d changes indexed by a previous run\n", skippedCount.get());
+    }
+    progressWriter.println(readStage);
+    progressWriter.println(indexStage);
     return Result.create(sw, ok.get(), nDone, nFailed);
   }
 
@@ -258,7 +324,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
 
   public Callable<Void> reindexProjectSlice(
       ChangeIndexer indexer, ProjectSlice projectSlice, Task done, Task failed) {
-    return new ProjectSliceIndexer(indexer, projectSlice, done, failed);
+    return new ProjectSliceIndexer(indexer, projectSlice, null, done, failed);
   }
 
   private class ProjectSliceIndexer implements Callable<Void> {
@@ -266,13 +332,17 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     private final ProgressMonitor done;
     private final ProgressMonitor failed;
     private final Consumer<ChangeData> indexAction;
+    @Nullable private final ChangeIndex index;
+    private int failedCount;
 
     private ProjectSliceIndexer(
         ChangeIndexer indexer,
         ProjectSlice projectSlice,
+        @Nullable ChangeIndex index,
         ProgressMonitor done,
         ProgressMonitor failed) {
       this.projectSlice = projectSlice;
+      this.index = index;
       this.done = done;
       this.failed = failed;
       if (reuseExistingDocuments) {
@@ -298,17 +368,36 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
                     + projectSlice.slice()
                     + "]");
         OnlineReindexMode.begin();
-        // Order of scanning changes is undefined. This is ok if we assume that packfile locality is
-        // not important for indexing, since sites should have a fully populated DiffSummary cache.
-        // It does mean that reindexing after invalidating the DiffSummary cache will be expensive,
-        // but the goal is to invalidate that cache as infrequently as we possibly can. And besides,
-        // we don't have concrete proof that improving packfile locality would help.
-        notesFactory
-            .scan(
-                projectSlice.metaIdByChange(),
-                projectSlice.name(),
-                id -> (id.get() % projectSlice.slices()) == projectSlice.slice())
-            .forEach(r -> index(r));
+        ImmutableMap<Change.Id, ObjectId> changes =
+            ImmutableMap.copyOf(
+                Maps.filterKeys(
+                    projectSlice.metaIdByChange(),
+                    id -> (id.get() % projectSlice.slices()) == projectSlice.slice()));
+        String checkpointKey =
+            checkpoint != null && index != null
+                ? ReindexCheckpoint.key(projectSlice, changes)
+                : null;
+        if (checkpointKey != null && checkpoint.isDone(checkpointKey)) {
+          skippedCount.addAndGet(changes.size());
+          done.update(changes.size());
+          verboseWriter.format(
+              "Skipped slice %d/%d of project %s, it was indexed by a previous run\n",
+              projectSlice.slice(), projectSlice.slices(), projectSlice.name());
+        } else {
+          // Order of scanning changes is undefined. This is ok if we assume that packfile locality
+          // is not important for indexing, since sites should have a fully populated DiffSummary
+          // cache. It does mean that reindexing after invalidating the DiffSummary cache will be
+          // expensive, but the goal is to invalidate that cache as infrequently as we possibly can.
+          // And besides, we don't have concrete proof that improving packfile locality would help.
+          indexInChunks(changes);
+          if (checkpointKey != null && failedCount == 0) {
+            try {
+              checkpoint.markDone(checkpointKey, index);
+            } catch (IOException e) {
+              logger.atWarning().withCause(e).log("Failed to write reindex checkpoint");
+            }
+          }
+        }
         OnlineReindexMode.end();
       } finally {
         Thread.currentThread().setName(oldThreadName);
@@ -316,13 +405,49 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
       return null;
     }
 
+    /**
+     * Reads the changes in chunks. The next chunk is read by the read executor while the changes of
+     * the current chunk are indexed.
+     */
+    private void indexInChunks(ImmutableMap<Change.Id, ObjectId> changes) throws Exception {
+      List<List<Map.Entry<Change.Id, ObjectId>>> chunks =
+          Lists.partition(changes.entrySet().asList(), READ_CHUNK_SIZE);
+      if (chunks.isEmpty()) {
+        return;
+      }
+      ListenableFuture<List<ChangeNotesResult>> next = read(chunks.get(0));
+      for (int i = 0; i < chunks.size(); i++) {
+        List<ChangeNotesResult> current = next.get();
+        if (i + 1 < chunks.size()) {
+          next = read(chunks.get(i + 1));
+        }
+        current.forEach(this::index);
+      }
+    }
+
+    private ListenableFuture<List<ChangeNotesResult>> read(
+        List<Map.Entry<Change.Id, ObjectId>> chunk) {
+      return readExecutor.submit(
+          () -> {
+            long start = System.nanoTime();
+            List<ChangeNotesResult> results =
+                notesFactory
+                    .scan(ImmutableMap.copyOf(chunk), projectSlice.name(), null)
+                    .collect(toList());
+            readStage.add(results.size(), System.nanoTime() - start);
+            return results;
+          });
+    }
+
     private void index(ChangeNotesResult r) {
       if (r.error().isPresent()) {
         fail("Failed to read change " + r.id() + " for indexing", true, r.error().get());
         return;
       }
       try {
+        long start = System.nanoTime();
         indexAction.accept(changeDataFactory.create(r.notes()));
+        indexStage.add(1, System.nanoTime() - start);
         done.update(1);
         verboseWriter.format(
             "Reindexed change %d (project: %s)\n", r.id().get(), r.notes().getProjectName().get());
@@ -337,6 +462,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     private void fail(String error, boolean failed, Throwable e) {
       if (failed) {
         this.failed.update(1);
+        failedCount++;
       }
 
       logger.atWarning().withCause(e).log("%s", error);
@@ -345,6 +471,7 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
 
     private void failSilently() {
       this.failed.update(1);
+      failedCount++;
     }
 
     @Override
@@ -361,6 +488,31 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
     }
   }
 
+  /** Time spent in one stage of indexing changes, summed up over all threads. */
+  private static class Stage {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    Stage(String name) {
+      this.name = name;
+    }
+
+    void add(int n, long elapsedNanos) {
+      count.add(n);
+      nanos.add(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+      long n = count.sum();
+      double seconds = nanos.sum() / 1e9;
+      return String.format(
+          "Stage %s: %d changes in %.01fs thread time (%.01f/s per thread)",
+          name, n, seconds, seconds > 0 ? n / seconds : 0);
+    }
+  }
+
   private class SliceScheduler {
     final ChangeIndex index;
     final AtomicBoolean ok;
@@ -449,7 +601,9 @@ public class AllChangesIndexer extends SiteIndexer<Change.Id, ChangeData, Change
                 indexer = indexerFactory.create(executor, index, doNotifyListeners);
               }
               ListenableFuture<?> future =
-                  executor.submit(reindexProjectSlice(indexer, projectSlice, doneTask, failedTask));
+                  executor.submit(
+                      new ProjectSliceIndexer(
+                          indexer, projectSlice, index, doneTask, failedTask));
               String description = "project " + name + " (" + slice + "/" + slices + ")";
               addErrorListener(future, description, projTask, ok);
               sliceIndexerFutures.add(future);
@@ -245,6 +245,38 @@ public class ChangeField {
           // Named for backwards compatibility.
           .exact(ChangeQueryBuilder.FIELD_FILE);
 
+  /**
+   * List of full file paths modified in the current patch set, stored so that they can be reused
+   * when the change is reindexed without a new patch set (see {@link ChangeFieldReuser}). Empty if
+   * the paths were computed from coarse diffs, which must not be reused.
+   */
+  public static final IndexedField<ChangeData, Iterable<byte[]>> STORED_CURRENT_FILE_PATHS_FIELD =
+      IndexedField.<ChangeData>iterableByteArrayBuilder("StoredCurrentFilePaths")
+          .stored()
+          .build(
+              ChangeField::getStoredCurrentFilePaths,
+              (cd, field) -> {
+                ImmutableList<String> paths =
+                    StreamSupport.stream(field.spliterator(), false)
+                        .map(f -> new String(f, UTF_8))
+                        .collect(toImmutableList());
+                if (!paths.isEmpty()) {
+                  cd.setCurrentFilePaths(paths);
+                }
+              });
+
+  public static final IndexedField<ChangeData, Iterable<byte[]>>.SearchSpec
+      STORED_CURRENT_FILE_PATHS_SPEC =
+          STORED_CURRENT_FILE_PATHS_FIELD.storedOnly("_current_file_paths");
+
+  private static ImmutableList<byte[]> getStoredCurrentFilePaths(ChangeData cd) {
+    List<String> paths = firstNonNull(cd.currentFilePaths(), ImmutableList.<String>of());
+    if (cd.hasApproximateDiffSummary()) {
+      return ImmutableList.of();
+    }
+    return paths.stream().map(p -> p.getBytes(UTF_8)).collect(toImmutableList());
+  }
+
   public static Set<String> getFileParts(ChangeData cd) {
     List<String> paths = cd.currentFilePaths();
 
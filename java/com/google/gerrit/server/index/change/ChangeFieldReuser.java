@@ -0,0 +1,131 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.List;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Reuses values of expensive change fields from the existing index document when a change is
+ * reindexed.
+ *
+ * <p>Most updates of a change, e.g. votes, hashtags or attention set changes, don't create a new
+ * patch set. The values that are derived from the diff of the current patch set, i.e. the modified
+ * file paths and the number of inserted and deleted lines, only depend on the commit of the current
+ * patch set. If this commit is the same as in the existing index document, the values that are
+ * stored in the document are reused instead of loading the diff again. Values that were computed
+ * from coarse diffs (see {@link com.google.gerrit.server.patch.DiffSummary#isApproximate()}) are
+ * not stored and hence never reused.
+ *
+ * <p>Fields that depend on other inputs are always recomputed: mergeability depends on the tip of
+ * the destination branch, and submit requirements depend on the votes and the project config.
+ */
+@Singleton
+public class ChangeFieldReuser {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Fields that are read from the existing index document. */
+  public static final ImmutableSet<String> FIELDS =
+      ImmutableSet.of(
+          ChangeField.CHANGE_SPEC.getName(),
+          ChangeField.PATCH_SET_SPEC.getName(),
+          ChangeField.ADDED_LINES_SPEC.getName(),
+          ChangeField.DELETED_LINES_SPEC.getName(),
+          ChangeField.STORED_CURRENT_FILE_PATHS_SPEC.getName());
+
+  private final IndexConfig indexConfig;
+  private final boolean enabled;
+
+  @Inject
+  ChangeFieldReuser(@GerritServerConfig Config cfg, IndexConfig indexConfig) {
+    this.indexConfig = indexConfig;
+    this.enabled = cfg.getBoolean("index", null, "reuseStoredFields", true);
+  }
+
+  /**
+   * Populates the given change data with the diff-derived values that are stored in the existing
+   * index document of the change, if the current patch set of the change didn't change since the
+   * document was written.
+   *
+   * @param index index from which the existing document should be read, may be {@code null} if
+   *     there is no index
+   * @param cd change data that is about to be written to the index
+   * @return whether values have been reused
+   */
+  @CanIgnoreReturnValue
+  public boolean reuse(@Nullable ChangeIndex index, ChangeData cd) {
+    if (!enabled
+        || index == null
+        || !index.getSchema().hasField(ChangeField.STORED_CURRENT_FILE_PATHS_SPEC)) {
+      return false;
+    }
+
+    try {
+      PatchSet ps = cd.currentPatchSet();
+      if (ps == null) {
+        return false;
+      }
+
+      Optional<ChangeData> result =
+          index.get(cd.getId(), IndexedChangeQuery.createOptions(indexConfig, 0, 1, FIELDS));
+      if (!result.isPresent()) {
+        return false;
+      }
+
+      // Only use what is stored in the document, never compute missing values for it.
+      ChangeData previous = result.get();
+      previous.setStorageConstraint(ChangeData.StorageConstraint.INDEX_ONLY);
+      PatchSet previousPs = previous.currentPatchSet();
+      if (previousPs == null || !previousPs.commitId().equals(ps.commitId())) {
+        return false;
+      }
+
+      // An empty list of paths and missing line counts are not reused, they may be the result of a
+      // diff that couldn't be computed. Paths that were computed from coarse diffs are not stored,
+      // so that the diff is computed again on the next reindex.
+      List<String> paths = previous.currentFilePaths();
+      Optional<ChangeData.ChangedLines> changedLines = previous.changedLines();
+      if (paths.isEmpty()
+          || !changedLines.isPresent()
+          || changedLines.get().insertions < 0
+          || changedLines.get().deletions < 0) {
+        return false;
+      }
+
+      cd.setCurrentFilePaths(paths);
+      cd.setChangedLines(changedLines.get().insertions, changedLines.get().deletions);
+      logger.atFine().log(
+          "Reusing diff fields of patch set %s from index for change %s",
+          ps.id().getId(), cd.getId());
+      return true;
+    } catch (StorageException e) {
+      logger.atWarning().withCause(e).log(
+          "Failed to read change %s from index, recomputing all fields", cd.getId());
+      return false;
+    }
+  }
+}
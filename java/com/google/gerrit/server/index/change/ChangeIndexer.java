@@ -94,6 +94,8 @@ public class ChangeIndexer {
   private final ListeningExecutorService executor;
   private final PluginSetContext<ChangeIndexedListener> indexedListeners;
   private final StalenessChecker stalenessChecker;
+  private final ChangeFieldReuser fieldReuser;
+  private final CoalescingReindexScheduler reindexScheduler;
   private final boolean autoReindexIfStale;
   private final IsFirstInsertForEntry isFirstInsertForEntry;
   private final boolean notifyListeners;
@@ -110,6 +112,8 @@ public class ChangeIndexer {
       ThreadLocalRequestContext context,
       PluginSetContext<ChangeIndexedListener> indexedListeners,
       StalenessChecker stalenessChecker,
+      ChangeFieldReuser fieldReuser,
+      CoalescingReindexScheduler reindexScheduler,
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       @Assisted ListeningExecutorService executor,
       @Assisted ChangeIndex index,
@@ -121,6 +125,8 @@ public class ChangeIndexer {
         context,
         indexedListeners,
         stalenessChecker,
+        fieldReuser,
+        reindexScheduler,
         batchExecutor,
         executor,
         index,
@@ -136,6 +142,8 @@ public class ChangeIndexer {
       ThreadLocalRequestContext context,
       PluginSetContext<ChangeIndexedListener> indexedListeners,
       StalenessChecker stalenessChecker,
+      ChangeFieldReuser fieldReuser,
+      CoalescingReindexScheduler reindexScheduler,
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       @Assisted ListeningExecutorService executor,
       @Assisted ChangeIndex index,
@@ -147,6 +155,8 @@ public class ChangeIndexer {
     this.context = context;
     this.indexedListeners = indexedListeners;
     this.stalenessChecker = stalenessChecker;
+    this.fieldReuser = fieldReuser;
+    this.reindexScheduler = reindexScheduler;
     this.batchExecutor = batchExecutor;
     this.autoReindexIfStale = autoReindexIfStale(cfg);
     this.index = index;
@@ -162,6 +172,8 @@ public class ChangeIndexer {
       ChangeNotes.Factory notesFactory,
       ThreadLocalRequestContext context,
       PluginSetContext<ChangeIndexedListener> indexedListeners,
+      ChangeFieldReuser fieldReuser,
+      CoalescingReindexScheduler reindexScheduler,
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       IsFirstInsertForEntry isFirstInsertForEntry,
       @Assisted ListeningExecutorService executor,
@@ -173,6 +185,8 @@ public class ChangeIndexer {
     this.notesFactory = notesFactory;
     this.context = context;
     this.indexedListeners = indexedListeners;
+    this.fieldReuser = fieldReuser;
+    this.reindexScheduler = reindexScheduler;
     this.batchExecutor = batchExecutor;
     this.autoReindexIfStale = autoReindexIfStale(cfg);
     this.isFirstInsertForEntry = isFirstInsertForEntry;
@@ -190,6 +204,8 @@ public class ChangeIndexer {
       ThreadLocalRequestContext context,
       PluginSetContext<ChangeIndexedListener> indexedListeners,
       StalenessChecker stalenessChecker,
+      ChangeFieldReuser fieldReuser,
+      CoalescingReindexScheduler reindexScheduler,
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       @Assisted ListeningExecutorService executor,
       @Assisted ChangeIndexCollection indexes,
@@ -201,6 +217,8 @@ public class ChangeIndexer {
         context,
         indexedListeners,
         stalenessChecker,
+        fieldReuser,
+        reindexScheduler,
         batchExecutor,
         executor,
         indexes,
@@ -216,6 +234,8 @@ public class ChangeIndexer {
       ThreadLocalRequestContext context,
       PluginSetContext<ChangeIndexedListener> indexedListeners,
       StalenessChecker stalenessChecker,
+      ChangeFieldReuser fieldReuser,
+      CoalescingReindexScheduler reindexScheduler,
       @IndexExecutor(BATCH) ListeningExecutorService batchExecutor,
       @Assisted ListeningExecutorService executor,
       @Assisted ChangeIndexCollection indexes,
@@ -227,6 +247,8 @@ public class ChangeIndexer {
     this.context = context;
     this.indexedListeners = indexedListeners;
     this.stalenessChecker = stalenessChecker;
+    this.fieldReuser = fieldReuser;
+    this.reindexScheduler = reindexScheduler;
     this.batchExecutor = batchExecutor;
     this.autoReindexIfStale = autoReindexIfStale(cfg);
     this.index = null;
@@ -279,7 +301,29 @@ public class ChangeIndexer {
     //   contain the new entry yet and the removal has no effect as it is done before the entry is
     //   added to the map, or the removal fails with {@link IllegalStateException} as recursive
     //   updates from within the computeIfAbsent callback are not allowed.
-    return task.submitIfNeeded();
+    ListenableFuture<ChangeData> future = task.submitIfNeeded();
+    // The task loads the change when it starts, hence its index write also covers the updates for
+    // which a debounced index request is pending.
+    reindexScheduler.absorb(changeId, future);
+    return future;
+  }
+
+  /**
+   * Start indexing a change after the updates to the change have settled.
+   *
+   * <p>Index requests for the same change that arrive within {@code index.debounceDelay} are
+   * coalesced into a single index write (see {@link CoalescingReindexScheduler}). If debouncing is
+   * disabled, this is the same as {@link #indexAsync(Project.NameKey, Change.Id)}.
+   *
+   * <p>Must only be used if the caller doesn't need to read the update from the index.
+   *
+   * @param project the project to which the change belongs.
+   * @param changeId change to index.
+   * @return future for the indexing task.
+   */
+  public ListenableFuture<ChangeData> indexAsyncDebounced(
+      Project.NameKey project, Change.Id changeId) {
+    return reindexScheduler.schedule(changeId, () -> indexAsync(project, changeId));
   }
 
   /**
@@ -324,6 +368,9 @@ public class ChangeIndexer {
       logger.atFine().log("Reindex change %d in index.", cd.getId().get());
     }
     try {
+      if (isFirstInsertForEntry.equals(IsFirstInsertForEntry.NO)) {
+        fieldReuser.reuse(getSearchIndex(), cd);
+      }
       for (Index<?, ChangeData> i : getWriteIndexes()) {
         try (TraceTimer traceTimer =
             TraceContext.newTimer(
@@ -513,6 +560,11 @@ public class ChangeIndexer {
     return indexes != null ? indexes.getWriteIndexes() : Collections.singleton(index);
   }
 
+  @Nullable
+  private ChangeIndex getSearchIndex() {
+    return indexes != null ? indexes.getSearchIndex() : index;
+  }
+
   private <T> ListenableFuture<T> submit(Callable<T> task) {
     return submit(task, executor);
   }
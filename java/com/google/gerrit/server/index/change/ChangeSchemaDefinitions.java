@@ -269,6 +269,14 @@ public class ChangeSchemaDefinitions extends SchemaDefinitions<ChangeData> {
           .addSearchSpecs(ChangeField.CHANGENUM_SPEC)
           .build();
 
+  /** Store the file paths of the current patch set so that they can be reused on reindex. */
+  static final Schema<ChangeData> V87 =
+      new Schema.Builder<ChangeData>()
+          .add(V86)
+          .addIndexedFields(ChangeField.STORED_CURRENT_FILE_PATHS_FIELD)
+          .addSearchSpecs(ChangeField.STORED_CURRENT_FILE_PATHS_SPEC)
+          .build();
+
   /**
    * Name of the change index to be used when contacting index backends or loading configurations.
    */
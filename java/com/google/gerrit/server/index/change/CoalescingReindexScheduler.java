@@ -0,0 +1,254 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Scheduler that coalesces requests to reindex the same change.
+ *
+ * <p>A request to reindex a change is delayed by {@code index.debounceDelay}. Further requests for
+ * the same change that arrive while the request is pending are merged into it and push the index
+ * write back by another {@code index.debounceDelay}, but not further than {@code
+ * index.maxDebounceDelay} after the first request. This way a burst of updates to one change, e.g.
+ * votes of several CI systems, results in a single index write.
+ *
+ * <p>Only index requests for which the caller doesn't need to read its own write should be
+ * debounced. Callers that need to see their update in the index use {@link
+ * ChangeIndexer#indexAsync(com.google.gerrit.entities.Project.NameKey, Change.Id)} which indexes
+ * the change immediately and also completes the pending debounced request of the change, since the
+ * immediate index write includes all updates that happened before.
+ *
+ * <p>Pending requests only live in memory. On shutdown they are indexed right away by {@link
+ * Lifecycle}, before the index executors are shut down.
+ */
+@Singleton
+public class CoalescingReindexScheduler {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /**
+   * Indexes the changes of all pending requests on shutdown.
+   *
+   * <p>Must be registered after the listeners that shut down the index executors, since listeners
+   * are stopped in reverse order.
+   */
+  public static class Lifecycle implements LifecycleListener {
+    private final CoalescingReindexScheduler scheduler;
+
+    @Inject
+    Lifecycle(CoalescingReindexScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void stop() {
+      scheduler.flush();
+    }
+  }
+
+  private final long debounceNanos;
+  private final long maxDelayNanos;
+  private final Ticker ticker;
+  private final Map<Change.Id, Pending> pending = new HashMap<>();
+  private final Supplier<ScheduledExecutorService> executor;
+  private ScheduledExecutorService timer;
+  private boolean stopped;
+
+  @Inject
+  CoalescingReindexScheduler(@GerritServerConfig Config cfg, WorkQueue workQueue) {
+    this(
+        ConfigUtil.getTimeUnit(cfg, "index", null, "debounceDelay", 0, MILLISECONDS),
+        ConfigUtil.getTimeUnit(cfg, "index", null, "maxDebounceDelay", 10_000, MILLISECONDS),
+        Ticker.systemTicker(),
+        () -> workQueue.createQueue(1, "Index-Debounce"));
+  }
+
+  @VisibleForTesting
+  CoalescingReindexScheduler(
+      long debounceMs,
+      long maxDelayMs,
+      Ticker ticker,
+      Supplier<ScheduledExecutorService> executor) {
+    this.debounceNanos = MILLISECONDS.toNanos(Math.max(0, debounceMs));
+    this.maxDelayNanos = Math.max(debounceNanos, MILLISECONDS.toNanos(maxDelayMs));
+    this.ticker = ticker;
+    this.executor = executor;
+  }
+
+  /** Whether index requests are debounced. */
+  public boolean isEnabled() {
+    return debounceNanos > 0;
+  }
+
+  /**
+   * Schedules the reindex of a change.
+   *
+   * @param id ID of the change to index
+   * @param index starts indexing the change when the debounce delay is over
+   * @return future for the result of the index write that includes this request
+   */
+  public synchronized ListenableFuture<ChangeData> schedule(
+      Change.Id id, Supplier<ListenableFuture<ChangeData>> index) {
+    if (!isEnabled() || stopped) {
+      return index.get();
+    }
+    long now = ticker.read();
+    Pending p = pending.get(id);
+    if (p != null) {
+      p.dueNanos = Math.min(now + debounceNanos, p.firstRequestNanos + maxDelayNanos);
+      return p.result;
+    }
+    p = new Pending(index, now, now + debounceNanos);
+    if (!scheduleTimer(id, p, debounceNanos)) {
+      return index.get();
+    }
+    pending.put(id, p);
+    return p.result;
+  }
+
+  /**
+   * Completes the pending request for the change with the given index write.
+   *
+   * <p>Must only be called for an index write that loads the change after this method is called, so
+   * that the write includes all updates for which the pending request was scheduled.
+   */
+  void absorb(Change.Id id, ListenableFuture<ChangeData> indexWrite) {
+    Pending p;
+    synchronized (this) {
+      p = pending.remove(id);
+      if (p == null) {
+        return;
+      }
+      p.timer.cancel(false);
+    }
+    p.result.setFuture(indexWrite);
+  }
+
+  @VisibleForTesting
+  void fire(Change.Id id) {
+    Pending p;
+    synchronized (this) {
+      p = pending.get(id);
+      if (p == null) {
+        return;
+      }
+      long remaining = p.dueNanos - ticker.read();
+      if (remaining > 0 && scheduleTimer(id, p, remaining)) {
+        return;
+      }
+      pending.remove(id);
+    }
+    index(p);
+  }
+
+  /**
+   * Indexes the changes of all pending requests and waits for the index writes. Requests that
+   * arrive afterwards are indexed immediately.
+   */
+  @VisibleForTesting
+  void flush() {
+    List<Pending> toIndex;
+    synchronized (this) {
+      stopped = true;
+      toIndex = new ArrayList<>(pending.values());
+      pending.clear();
+      for (Pending p : toIndex) {
+        p.timer.cancel(false);
+      }
+    }
+    for (Pending p : toIndex) {
+      index(p);
+    }
+    for (Pending p : toIndex) {
+      try {
+        p.result.get();
+      } catch (ExecutionException e) {
+        logger.atWarning().withCause(e).log("Failed to index change on shutdown");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int pendingCount() {
+    return pending.size();
+  }
+
+  /** Returns false if the timer was rejected, e.g. because the server is shutting down. */
+  private boolean scheduleTimer(Change.Id id, Pending p, long delayNanos) {
+    if (timer == null) {
+      timer = executor.get();
+    }
+    try {
+      p.timer = timer.schedule(() -> fire(id), delayNanos, NANOSECONDS);
+      return true;
+    } catch (RejectedExecutionException e) {
+      logger.atWarning().withCause(e).log("Cannot delay reindex of change %s, indexing it now", id);
+      return false;
+    }
+  }
+
+  private static void index(Pending p) {
+    try {
+      p.result.setFuture(p.index.get());
+    } catch (RuntimeException e) {
+      p.result.setException(e);
+    }
+  }
+
+  private static class Pending {
+    final Supplier<ListenableFuture<ChangeData>> index;
+    final long firstRequestNanos;
+    final SettableFuture<ChangeData> result = SettableFuture.create();
+    long dueNanos;
+    ScheduledFuture<?> timer;
+
+    Pending(Supplier<ListenableFuture<ChangeData>> index, long firstRequestNanos, long dueNanos) {
+      this.index = index;
+      this.firstRequestNanos = firstRequestNanos;
+      this.dueNanos = dueNanos;
+    }
+  }
+}
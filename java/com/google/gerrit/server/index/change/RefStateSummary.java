@@ -0,0 +1,165 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.index.RefState;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Compact summary of the ref states that the change index stores for the changes of one project.
+ *
+ * <p>The summary consists of a bloom filter over the {@link RefState}s of the change documents and
+ * a bit set of the numbers of the indexed changes. Comparing it with the refs of the project's
+ * repository finds stale documents without loading any change from NoteDb.
+ *
+ * <p>A bloom filter may report a ref state that was never added. Hence, with a probability of
+ * {@link #FALSE_POSITIVE_PROBABILITY}, an updated ref is missed. Each summary hashes the ref states
+ * with a random seed, so that a ref which is missed by one summary is most likely found by the next
+ * one.
+ */
+class RefStateSummary {
+  static final double FALSE_POSITIVE_PROBABILITY = 0.001;
+
+  private static final int MIN_EXPECTED_STATES = 1024;
+
+  /**
+   * Returns the refs of a project repository that are recorded in the ref states of the change
+   * documents: the NoteDb meta refs and the change edit refs.
+   */
+  static ImmutableList<Ref> changeRefs(Repository repo) throws IOException {
+    return repo
+        .getRefDatabase()
+        .getRefsByPrefix(RefNames.REFS_CHANGES, RefNames.REFS_USERS)
+        .stream()
+        .filter(r -> r.getObjectId() != null)
+        .filter(r -> RefNames.isNoteDbMetaRef(r.getName()) || RefNames.isRefsEdit(r.getName()))
+        .collect(toImmutableList());
+  }
+
+  static RefStateSummary create(int expectedStates) {
+    return new RefStateSummary(
+        Math.max(expectedStates, MIN_EXPECTED_STATES), ThreadLocalRandom.current().nextLong());
+  }
+
+  private final BloomFilter<RefState> states;
+  private final BitSet changes = new BitSet();
+
+  private RefStateSummary(int expectedStates, long seed) {
+    states =
+        BloomFilter.create(new RefStateFunnel(seed), expectedStates, FALSE_POSITIVE_PROBABILITY);
+  }
+
+  /**
+   * Adds the document of a change.
+   *
+   * @param id ID of the change.
+   * @param refStates ref states of the document that belong to the project of the change.
+   */
+  void add(Change.Id id, Iterable<RefState> refStates) {
+    changes.set(id.get());
+    for (RefState s : refStates) {
+      // A zero ID records that the ref didn't exist, which is covered by the ref not being added.
+      if (!ObjectId.zeroId().equals(s.id())) {
+        states.put(s);
+      }
+    }
+  }
+
+  /** Returns the number of changes that were added. */
+  int changeCount() {
+    return changes.cardinality();
+  }
+
+  /**
+   * Compares the summary with the current refs of the project.
+   *
+   * @param refs refs of the project as returned by {@link #changeRefs(Repository)}.
+   * @return changes whose document doesn't match the refs.
+   */
+  Result compare(Collection<Ref> refs) {
+    Set<Change.Id> stale = new LinkedHashSet<>();
+    BitSet existing = new BitSet();
+    for (Ref ref : refs) {
+      Change.Id id = Change.Id.fromRef(ref.getName());
+      if (id == null) {
+        continue;
+      }
+      if (ref.getName().endsWith(RefNames.META_SUFFIX)) {
+        existing.set(id.get());
+      }
+      if (!changes.get(id.get()) || !states.mightContain(RefState.of(ref))) {
+        stale.add(id);
+      }
+    }
+
+    BitSet deleted = (BitSet) changes.clone();
+    deleted.andNot(existing);
+    ImmutableSet.Builder<Change.Id> missing = ImmutableSet.builder();
+    for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1)) {
+      missing.add(Change.id(i));
+    }
+    return Result.create(ImmutableSet.copyOf(stale), missing.build());
+  }
+
+  @AutoValue
+  abstract static class Result {
+    static Result create(ImmutableSet<Change.Id> stale, ImmutableSet<Change.Id> missingMetaRef) {
+      return new AutoValue_RefStateSummary_Result(stale, missingMetaRef);
+    }
+
+    /** Changes that have no document or whose refs were updated since they were indexed. */
+    abstract ImmutableSet<Change.Id> stale();
+
+    /** Changes that have a document, but no longer have a meta ref in the repository. */
+    abstract ImmutableSet<Change.Id> missingMetaRef();
+  }
+
+  private static class RefStateFunnel implements Funnel<RefState> {
+    private static final long serialVersionUID = 1L;
+
+    private final long seed;
+
+    RefStateFunnel(long seed) {
+      this.seed = seed;
+    }
+
+    @Override
+    public void funnel(RefState from, PrimitiveSink into) {
+      into.putLong(seed)
+          .putString(from.ref(), UTF_8)
+          .putByte((byte) 0)
+          .putString(from.id().name(), UTF_8);
+    }
+  }
+}
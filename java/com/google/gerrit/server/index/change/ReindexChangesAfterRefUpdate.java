@@ -106,7 +106,7 @@ public class ReindexChangesAfterRefUpdate implements GitBatchRefUpdateListener {
                 Future<?> possiblyIgnoredError =
                     changeIndexerFactory
                         .create(executor, changeIndexes)
-                        .indexAsync(c.getProject(), c.getId());
+                        .indexAsyncDebounced(c.getProject(), c.getId());
               }
             }
 
@@ -0,0 +1,140 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingInt;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.index.Index;
+import com.google.gerrit.server.index.change.AllChangesIndexer.ProjectSlice;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Progress file of an offline reindex of all changes.
+ *
+ * <p>Records the project slices that {@link AllChangesIndexer} has fully indexed, so that an
+ * interrupted reindex can be resumed without indexing these slices again. A slice is identified by
+ * its project, its position and the meta ref states of its changes, hence a slice that got new or
+ * updated changes after it was recorded is indexed again.
+ *
+ * <p>Slices are only written to the progress file after the index has been committed, so that
+ * every slice listed in the file is durably stored in the index.
+ */
+public class ReindexCheckpoint {
+  private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  /**
+   * Opens the progress file.
+   *
+   * @param file the progress file.
+   * @param resume whether the slices recorded in an existing progress file should be skipped. If
+   *     {@code false}, an existing progress file is discarded.
+   */
+  public static ReindexCheckpoint open(Path file, boolean resume) throws IOException {
+    ImmutableSet<String> done = ImmutableSet.of();
+    if (resume && Files.exists(file)) {
+      done = ImmutableSet.copyOf(Files.readAllLines(file, UTF_8));
+    } else {
+      Files.deleteIfExists(file);
+    }
+    return new ReindexCheckpoint(file, done, Ticker.systemTicker());
+  }
+
+  /** Returns the key that identifies the slice with the given changes in the progress file. */
+  static String key(ProjectSlice slice, Map<Change.Id, ObjectId> changes) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    changes.entrySet().stream()
+        .sorted(comparingInt(e -> e.getKey().get()))
+        .forEach(e -> hasher.putInt(e.getKey().get()).putString(e.getValue().name(), UTF_8));
+    return String.format(
+        "%s %d/%d %s", slice.name().get(), slice.slice(), slice.slices(), hasher.hash());
+  }
+
+  private final Path file;
+  private final ImmutableSet<String> done;
+  private final Ticker ticker;
+  private final List<String> pending = new ArrayList<>();
+  private long lastCheckpoint;
+
+  @VisibleForTesting
+  ReindexCheckpoint(Path file, ImmutableSet<String> done, Ticker ticker) {
+    this.file = file;
+    this.done = done;
+    this.ticker = ticker;
+    this.lastCheckpoint = ticker.read();
+  }
+
+  /** Returns whether this checkpoint continues a previous reindex. */
+  public boolean isResumed() {
+    return !done.isEmpty();
+  }
+
+  /** Returns whether the slice was indexed by a previous reindex. */
+  boolean isDone(String key) {
+    return done.contains(key);
+  }
+
+  /**
+   * Records that a slice was fully indexed.
+   *
+   * <p>The progress file is updated at most once per checkpoint interval, see {@link
+   * #checkpoint(Index)}.
+   */
+  void markDone(String key, Index<?, ?> index) throws IOException {
+    synchronized (this) {
+      pending.add(key);
+      if (ticker.read() - lastCheckpoint < CHECKPOINT_INTERVAL_NANOS) {
+        return;
+      }
+    }
+    checkpoint(index);
+  }
+
+  /** Commits the index and records all slices that were marked as done since the last call. */
+  public synchronized void checkpoint(Index<?, ?> index) throws IOException {
+    lastCheckpoint = ticker.read();
+    if (pending.isEmpty()) {
+      return;
+    }
+    index.commit();
+    Files.write(
+        file,
+        pending,
+        UTF_8,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND,
+        StandardOpenOption.SYNC);
+    pending.clear();
+  }
+
+  /** Deletes the progress file, e.g. after the reindex has completed. */
+  public void delete() throws IOException {
+    Files.deleteIfExists(file);
+  }
+}
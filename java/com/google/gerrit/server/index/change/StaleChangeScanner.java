@@ -0,0 +1,222 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.PaginationType;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.index.query.ResultSet;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.ScheduleConfig;
+import com.google.gerrit.server.config.ScheduleConfig.Schedule;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangePredicates;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Background scanner that finds stale documents in the change index.
+ *
+ * <p>{@link StalenessChecker} only checks a single change when it is accessed. After an unclean
+ * shutdown or a gap in replication, the index may however contain many stale documents that are
+ * not accessed for a long time. The scanner periodically goes through all projects. For each
+ * project it reads the ref states stored in the change index into a {@link RefStateSummary} and
+ * compares the summary with the refs of the project's repository. Neither changes nor NoteDb
+ * commits are loaded for this.
+ *
+ * <p>Changes which are found to be stale are passed to the {@link ChangeIndexer}, which checks them
+ * once more and reindexes them. The rate at which they are passed on is limited by {@code
+ * index.stalenessScanReindexRate}, so that a scan doesn't starve the interactive index updates.
+ */
+@Singleton
+public class StaleChangeScanner implements Runnable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int PAGE_SIZE = 1000;
+  private static final ImmutableSet<String> FIELDS =
+      ImmutableSet.of(ChangeField.REF_STATE_SPEC.getName());
+
+  public static class StaleChangeScannerModule extends LifecycleModule {
+    @Override
+    protected void configure() {
+      listener().to(Lifecycle.class);
+    }
+  }
+
+  static class Lifecycle implements LifecycleListener {
+    private final WorkQueue queue;
+    private final StaleChangeScanner scanner;
+    private final Optional<Schedule> schedule;
+
+    @Inject
+    Lifecycle(WorkQueue queue, StaleChangeScanner scanner, @GerritServerConfig Config cfg) {
+      this.queue = queue;
+      this.scanner = scanner;
+      this.schedule =
+          ScheduleConfig.builder(cfg, "index")
+              .setKeyInterval("stalenessScanInterval")
+              .setKeyStartTime("stalenessScanStartTime")
+              .buildSchedule();
+    }
+
+    @Override
+    public void start() {
+      if (schedule.isPresent()) {
+        // Use a dedicated queue since the scanner blocks its thread while it is rate limited.
+        @SuppressWarnings("unused")
+        Future<?> possiblyIgnoredError =
+            queue
+                .createQueue(1, "Index-Staleness-Scan")
+                .scheduleAtFixedRate(
+                    scanner,
+                    schedule.get().initialDelay(),
+                    schedule.get().interval(),
+                    MILLISECONDS);
+      }
+    }
+
+    @Override
+    public void stop() {
+      // handled by WorkQueue.stop() already
+    }
+  }
+
+  private final ProjectCache projectCache;
+  private final GitRepositoryManager repoManager;
+  private final ChangeIndexCollection indexes;
+  private final ChangeIndexer indexer;
+  private final IndexConfig indexConfig;
+  private final RateLimiter reindexRate;
+
+  @Inject
+  StaleChangeScanner(
+      @GerritServerConfig Config cfg,
+      ProjectCache projectCache,
+      GitRepositoryManager repoManager,
+      ChangeIndexCollection indexes,
+      ChangeIndexer indexer,
+      IndexConfig indexConfig) {
+    this.projectCache = projectCache;
+    this.repoManager = repoManager;
+    this.indexes = indexes;
+    this.indexer = indexer;
+    this.indexConfig = indexConfig;
+    this.reindexRate =
+        RateLimiter.create(Math.max(1, cfg.getInt("index", "stalenessScanReindexRate", 10)));
+  }
+
+  @Override
+  public void run() {
+    ChangeIndex index = indexes.getSearchIndex();
+    if (index == null || !index.getSchema().hasField(ChangeField.REF_STATE_SPEC)) {
+      return;
+    }
+    logger.atInfo().log("Scanning change index for stale documents");
+    int projects = 0;
+    int stale = 0;
+    for (Project.NameKey project : projectCache.all()) {
+      try {
+        stale += scan(index, project);
+        projects++;
+      } catch (RepositoryNotFoundException e) {
+        logger.atFine().log("Project %s was deleted, skipping staleness scan", project);
+      } catch (IOException | QueryParseException | StorageException e) {
+        logger.atWarning().withCause(e).log("Failed to scan changes of %s for staleness", project);
+      }
+    }
+    logger.atInfo().log(
+        "Staleness scan of %d projects done, %d changes scheduled for reindexing", projects, stale);
+  }
+
+  private int scan(ChangeIndex index, Project.NameKey project)
+      throws IOException, QueryParseException {
+    // Read the refs before the index, so that a change that is updated in between is at worst
+    // reported as stale and then found to be up to date by the indexer.
+    ImmutableList<Ref> refs;
+    try (Repository repo = repoManager.openRepository(project)) {
+      refs = RefStateSummary.changeRefs(repo);
+    }
+    RefStateSummary summary = RefStateSummary.create(refs.size());
+    readIndex(index, project, summary);
+
+    RefStateSummary.Result result = summary.compare(refs);
+    for (Change.Id id : result.stale()) {
+      reindexRate.acquire();
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError = indexer.asyncReindexIfStale(project, id);
+    }
+    for (Change.Id id : result.missingMetaRef()) {
+      // The index task deletes the document if the change doesn't exist anymore.
+      reindexRate.acquire();
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError = indexer.indexAsync(project, id);
+    }
+    int stale = result.stale().size() + result.missingMetaRef().size();
+    if (stale > 0) {
+      logger.atInfo().log(
+          "Found %d stale changes in %s (%d changes indexed)",
+          stale, project, summary.changeCount());
+    }
+    return stale;
+  }
+
+  private void readIndex(ChangeIndex index, Project.NameKey project, RefStateSummary summary)
+      throws QueryParseException {
+    int pageSize = Math.min(PAGE_SIZE, Math.min(indexConfig.maxPageSize(), indexConfig.maxLimit()));
+    IndexedChangeQuery query =
+        new IndexedChangeQuery(
+            index,
+            ChangePredicates.project(project),
+            IndexedChangeQuery.createOptions(indexConfig, 0, pageSize, FIELDS));
+    ResultSet<ChangeData> rs = query.read();
+    int start = 0;
+    while (true) {
+      int count = 0;
+      for (ChangeData cd : rs) {
+        summary.add(cd.getId(), cd.getRefStates().get(project));
+        count++;
+      }
+      if (count < pageSize) {
+        return;
+      }
+      start += count;
+      rs =
+          indexConfig.paginationType().equals(PaginationType.SEARCH_AFTER)
+              ? query.restart(rs.searchAfter(), pageSize)
+              : query.restart(start, pageSize);
+    }
+  }
+}
@@ -18,12 +18,17 @@ import static java.util.Objects.requireNonNull;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.flogger.context.Tags;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.gerrit.common.Nullable;
 import com.google.inject.Provider;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 /**
@@ -41,6 +46,16 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
   private static final LoggingContext INSTANCE = new LoggingContext();
 
   private static final ThreadLocal<MutableTags> tags = new ThreadLocal<>();
+
+  /**
+   * The tags of all threads that changed their tags while {@link #trackTagsOfAllThreads} is set.
+   * Allows to find out for which request a thread is working from another thread, e.g. for
+   * profiling.
+   */
+  private static final ConcurrentMap<Thread, MutableTags> tagsByThread = new ConcurrentHashMap<>();
+
+  private static volatile boolean trackTagsOfAllThreads;
+
   private static final ThreadLocal<Boolean> forceLogging = new ThreadLocal<>();
   private static final ThreadLocal<Boolean> performanceLogging = new ThreadLocal<>();
   private static final ThreadLocal<Boolean> aclLogging = new ThreadLocal<>();
@@ -58,6 +73,13 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
 
   private static final ThreadLocal<MutableAclLogRecords> aclLogRecords = new ThreadLocal<>();
 
+  /**
+   * Like the performance log records the resource usage instance is shared with the threads to which
+   * the logging context is copied, so that the resources that are used by these threads are
+   * accounted to the request.
+   */
+  private static final ThreadLocal<ResourceUsage> resourceUsage = new ThreadLocal<>();
+
   private LoggingContext() {}
 
   /** This method is expected to be called via reflection (and might otherwise be unused). */
@@ -93,16 +115,18 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
         && performanceLogging.get() == null
         && (performanceLogRecords.get() == null || performanceLogRecords.get().isEmtpy())
         && aclLogging.get() == null
-        && (aclLogRecords.get() == null || aclLogRecords.get().isEmpty());
+        && (aclLogRecords.get() == null || aclLogRecords.get().isEmpty())
+        && resourceUsage.get() == null;
   }
 
   public void clear() {
-    tags.remove();
+    removeTags();
     forceLogging.remove();
     performanceLogging.remove();
     performanceLogRecords.remove();
     aclLogging.remove();
     aclLogRecords.remove();
+    resourceUsage.remove();
   }
 
   @Override
@@ -129,20 +153,20 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
     MutableTags mutableTags = getMutableTags();
     mutableTags.remove(name, value);
     if (mutableTags.isEmpty()) {
-      tags.remove();
+      removeTags();
     }
   }
 
   void setTags(ImmutableSetMultimap<String, String> newTags) {
     if (newTags.isEmpty()) {
-      tags.remove();
+      removeTags();
       return;
     }
     getMutableTags().set(newTags);
   }
 
   void clearTags() {
-    tags.remove();
+    removeTags();
   }
 
   private MutableTags getMutableTags() {
@@ -151,9 +175,54 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
       mutableTags = new MutableTags();
       tags.set(mutableTags);
     }
+    if (trackTagsOfAllThreads) {
+      tagsByThread.putIfAbsent(Thread.currentThread(), mutableTags);
+    }
     return mutableTags;
   }
 
+  private static void removeTags() {
+    tags.remove();
+    tagsByThread.remove(Thread.currentThread());
+  }
+
+  /**
+   * Sets whether the tags of all threads are tracked, so that they can be retrieved by {@link
+   * #getTagsOfAllThreads()}.
+   *
+   * <p>Tracking is off by default, since it costs a map update whenever a thread changes its tags.
+   * A thread is tracked once it changes its tags after tracking was switched on.
+   */
+  public static void setTrackTagsOfAllThreads(boolean track) {
+    trackTagsOfAllThreads = track;
+    if (!track) {
+      tagsByThread.clear();
+    }
+  }
+
+  /**
+   * Returns the tags of all live threads that currently have tags and are tracked (see {@link
+   * #setTrackTagsOfAllThreads(boolean)}).
+   *
+   * <p>The tags are a snapshot, the threads may have changed their tags by the time the caller looks
+   * at them.
+   */
+  public static ImmutableMap<Thread, Tags> getTagsOfAllThreads() {
+    ImmutableMap.Builder<Thread, Tags> result = ImmutableMap.builder();
+    for (Map.Entry<Thread, MutableTags> e : tagsByThread.entrySet()) {
+      if (!e.getKey().isAlive()) {
+        // The thread terminated without clearing its logging context.
+        tagsByThread.remove(e.getKey(), e.getValue());
+        continue;
+      }
+      Tags threadTags = e.getValue().getTags();
+      if (!threadTags.isEmpty()) {
+        result.put(e.getKey(), threadTags);
+      }
+    }
+    return result.build();
+  }
+
   boolean isLoggingForced() {
     return Boolean.TRUE.equals(forceLogging.get());
   }
@@ -352,6 +421,67 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
     return records;
   }
 
+  /**
+   * Returns the {@link ResourceUsage} to which the resources used by the current thread are
+   * accounted, {@code null} if resources are not accounted.
+   */
+  @Nullable
+  ResourceUsage getResourceUsage() {
+    return resourceUsage.get();
+  }
+
+  /**
+   * Sets the {@link ResourceUsage} to which the resources used by the current thread are accounted.
+   *
+   * @param newResourceUsage the resource usage, {@code null} to stop accounting resources
+   */
+  void setResourceUsage(@Nullable ResourceUsage newResourceUsage) {
+    if (newResourceUsage == null) {
+      resourceUsage.remove();
+    } else {
+      resourceUsage.set(newResourceUsage);
+    }
+  }
+
+  /**
+   * Counts the usage of a resource, if resources are accounted for the current request.
+   *
+   * @param counter the resource that was used
+   * @param count how often the resource was used
+   */
+  public void addResourceUsage(ResourceUsage.Counter counter, long count) {
+    ResourceUsage usage = resourceUsage.get();
+    if (usage != null) {
+      usage.add(counter, count);
+    }
+  }
+
+  /**
+   * Counts cache hits, if resources are accounted for the current request.
+   *
+   * @param cacheName the name of the cache
+   * @param count the number of hits
+   */
+  public void addCacheHits(String cacheName, long count) {
+    ResourceUsage usage = resourceUsage.get();
+    if (usage != null) {
+      usage.addCacheHits(cacheName, count);
+    }
+  }
+
+  /**
+   * Counts cache misses, if resources are accounted for the current request.
+   *
+   * @param cacheName the name of the cache
+   * @param count the number of misses
+   */
+  public void addCacheMisses(String cacheName, long count) {
+    ResourceUsage usage = resourceUsage.get();
+    if (usage != null) {
+      usage.addCacheMisses(cacheName, count);
+    }
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -361,6 +491,7 @@ public class LoggingContext extends com.google.common.flogger.backend.system.Log
         .add("performanceLogRecords", performanceLogRecords.get())
         .add("aclLogging", aclLogging.get())
         .add("aclLogRecords", aclLogRecords.get())
+        .add("resourceUsage", resourceUsage.get())
         .toString();
   }
 }
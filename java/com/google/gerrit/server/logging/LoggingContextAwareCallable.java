@@ -16,6 +16,7 @@ package com.google.gerrit.server.logging;
 
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import java.util.concurrent.Callable;
 
 /**
@@ -42,6 +43,7 @@ class LoggingContextAwareCallable<T> implements Callable<T> {
   private final MutablePerformanceLogRecords mutablePerformanceLogRecords;
   private final boolean aclLogging;
   private final MutableAclLogRecords mutableAclLogRecords;
+  @Nullable private final ResourceUsage resourceUsage;
 
   /**
    * Creates a LoggingContextAwareCallable that wraps the given {@link Callable}.
@@ -64,6 +66,7 @@ class LoggingContextAwareCallable<T> implements Callable<T> {
     this.mutablePerformanceLogRecords = mutablePerformanceLogRecords;
     this.aclLogging = LoggingContext.getInstance().isAclLogging();
     this.mutableAclLogRecords = mutableAclLogRecords;
+    this.resourceUsage = LoggingContext.getInstance().getResourceUsage();
   }
 
   @Override
@@ -86,9 +89,15 @@ class LoggingContextAwareCallable<T> implements Callable<T> {
     loggingCtx.setMutablePerformanceLogRecords(mutablePerformanceLogRecords);
     loggingCtx.aclLogging(aclLogging);
     loggingCtx.setMutableAclLogRecords(mutableAclLogRecords);
+    loggingCtx.setResourceUsage(resourceUsage);
+    ResourceUsage.ThreadMeter threadMeter =
+        resourceUsage != null ? resourceUsage.startThreadMeter() : null;
     try {
       return callable.call();
     } finally {
+      if (threadMeter != null) {
+        threadMeter.close();
+      }
       // Cleanup logging context. This is important if the thread is pooled and reused.
       loggingCtx.clear();
     }
@@ -16,6 +16,7 @@ package com.google.gerrit.server.logging;
 
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 
 /**
  * Wrapper for a {@link Runnable} that copies the {@link LoggingContext} from the current thread to
@@ -60,6 +61,7 @@ public class LoggingContextAwareRunnable implements Runnable {
   private final MutablePerformanceLogRecords mutablePerformanceLogRecords;
   private final boolean aclLogging;
   private final MutableAclLogRecords mutableAclLogRecords;
+  @Nullable private final ResourceUsage resourceUsage;
 
   /**
    * Creates a LoggingContextAwareRunnable that wraps the given {@link Runnable}.
@@ -82,6 +84,7 @@ public class LoggingContextAwareRunnable implements Runnable {
     this.mutablePerformanceLogRecords = mutablePerformanceLogRecords;
     this.aclLogging = LoggingContext.getInstance().isAclLogging();
     this.mutableAclLogRecords = mutableAclLogRecords;
+    this.resourceUsage = LoggingContext.getInstance().getResourceUsage();
   }
 
   public Runnable unwrap() {
@@ -109,9 +112,15 @@ public class LoggingContextAwareRunnable implements Runnable {
     loggingCtx.setMutablePerformanceLogRecords(mutablePerformanceLogRecords);
     loggingCtx.aclLogging(aclLogging);
     loggingCtx.setMutableAclLogRecords(mutableAclLogRecords);
+    loggingCtx.setResourceUsage(resourceUsage);
+    ResourceUsage.ThreadMeter threadMeter =
+        resourceUsage != null ? resourceUsage.startThreadMeter() : null;
     try {
       runnable.run();
     } finally {
+      if (threadMeter != null) {
+        threadMeter.close();
+      }
       // Cleanup logging context. This is important if the thread is pooled and reused.
       loggingCtx.clear();
     }
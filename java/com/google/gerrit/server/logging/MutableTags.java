@@ -26,7 +26,9 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 public class MutableTags {
   private final SetMultimap<String, String> tagMap =
       MultimapBuilder.hashKeys().hashSetValues().build();
-  private Tags tags = Tags.empty();
+  // Volatile since the tags of a thread are read by other threads (see
+  // LoggingContext#getTagsOfAllThreads()).
+  private volatile Tags tags = Tags.empty();
 
   public Tags getTags() {
     return tags;
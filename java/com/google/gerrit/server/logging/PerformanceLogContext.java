@@ -17,6 +17,7 @@ package com.google.gerrit.server.logging;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.registration.Extension;
 import org.eclipse.jgit.lib.Config;
@@ -32,6 +33,10 @@ import org.eclipse.jgit.lib.Config;
  * consume the captured performance log records. Otherwise captured performance log records might
  * leak into other requests that are executed by the same thread (if a thread pool is used to
  * process requests).
+ *
+ * <p>Optionally the context accounts the resources that are used by the request (see {@link
+ * #accountResourceUsage(String, ResourceUsage)}). The resource usage is handed over to the
+ * registered {@link PerformanceLogger}s together with the performance log records.
  */
 public class PerformanceLogContext implements AutoCloseable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -43,6 +48,11 @@ public class PerformanceLogContext implements AutoCloseable {
 
   private final boolean oldPerformanceLogging;
   private final ImmutableList<PerformanceLogRecord> oldPerformanceLogRecords;
+  @Nullable private final ResourceUsage oldResourceUsage;
+
+  @Nullable private String request;
+  @Nullable private ResourceUsage resourceUsage;
+  @Nullable private ResourceUsage.ThreadMeter threadMeter;
 
   public PerformanceLogContext(
       Config gerritConfig, DynamicSet<PerformanceLogger> performanceLoggers) {
@@ -51,6 +61,7 @@ public class PerformanceLogContext implements AutoCloseable {
     // Just in case remember the old state and reset performance log entries.
     this.oldPerformanceLogging = LoggingContext.getInstance().isPerformanceLogging();
     this.oldPerformanceLogRecords = LoggingContext.getInstance().getPerformanceLogRecords();
+    this.oldResourceUsage = LoggingContext.getInstance().getResourceUsage();
     LoggingContext.getInstance().clearPerformanceLogEntries();
 
     // Do not create performance log entries if performance logging is disabled or if no
@@ -62,15 +73,45 @@ public class PerformanceLogContext implements AutoCloseable {
             enablePerformanceLogging && !Iterables.isEmpty(performanceLoggers.entries()));
   }
 
+  /**
+   * Accounts the resources that are used by the request until this context is closed.
+   *
+   * <p>Resources are only accounted if performance logging is enabled. The resources that are used
+   * by other threads are accounted too, if the work is handed over to them with a copy of the
+   * {@link LoggingContext}.
+   *
+   * @param request the request for which resources are accounted (format = '<request-type>
+   *     <redacted-request-uri>')
+   * @param resourceUsage the instance to which the used resources are added
+   */
+  public void accountResourceUsage(String request, ResourceUsage resourceUsage) {
+    if (!LoggingContext.getInstance().isPerformanceLogging() || this.resourceUsage != null) {
+      return;
+    }
+    this.request = request;
+    this.resourceUsage = resourceUsage;
+    LoggingContext.getInstance().setResourceUsage(resourceUsage);
+    threadMeter = resourceUsage.startThreadMeter();
+  }
+
   @Override
   public void close() {
+    if (threadMeter != null) {
+      threadMeter.close();
+    }
+
     if (LoggingContext.getInstance().isPerformanceLogging()) {
-      runEach(performanceLoggers, LoggingContext.getInstance().getPerformanceLogRecords());
+      runEach(
+          performanceLoggers,
+          LoggingContext.getInstance().getPerformanceLogRecords(),
+          request,
+          resourceUsage);
     }
 
     // Restore old state. Required to support nesting of PerformanceLogContext's.
     LoggingContext.getInstance().performanceLogging(oldPerformanceLogging);
     LoggingContext.getInstance().setPerformanceLogRecords(oldPerformanceLogRecords);
+    LoggingContext.getInstance().setResourceUsage(oldResourceUsage);
   }
 
   /**
@@ -82,16 +123,25 @@ public class PerformanceLogContext implements AutoCloseable {
    * @param performanceLoggers the performance loggers that should be invoked
    * @param performanceLogRecords the performance log records that should be handed over to the
    *     performance loggers
+   * @param request the request for which resources were accounted, {@code null} if resources were
+   *     not accounted
+   * @param resourceUsage the accounted resource usage, {@code null} if resources were not
+   *     accounted
    */
   private static void runEach(
       DynamicSet<PerformanceLogger> performanceLoggers,
-      ImmutableList<PerformanceLogRecord> performanceLogRecords) {
+      ImmutableList<PerformanceLogRecord> performanceLogRecords,
+      @Nullable String request,
+      @Nullable ResourceUsage resourceUsage) {
     performanceLoggers
         .entries()
         .forEach(
             p -> {
               try (TraceContext traceContext = newPluginTrace(p)) {
                 performanceLogRecords.forEach(r -> r.writeTo(p.get()));
+                if (resourceUsage != null) {
+                  p.get().logResourceUsage(request, resourceUsage);
+                }
                 p.get().done();
               } catch (RuntimeException e) {
                 logger.atWarning().withCause(e).log(
@@ -49,6 +49,19 @@ public interface PerformanceLogger {
    */
   void logNanos(String operation, long durationNanos, Instant endTime, Metadata metadata);
 
+  /**
+   * Record the resources that were used for executing a request.
+   *
+   * <p>Only invoked for requests for which resources are accounted (see {@link
+   * PerformanceLogContext#accountResourceUsage(String, ResourceUsage)}). Invoked after the
+   * performance log records of the request have been logged and before {@link #done()} is called.
+   *
+   * @param request the request for which the resources were used (format = '<request-type>
+   *     <redacted-request-uri>')
+   * @param resourceUsage the resources that were used by all threads that executed the request
+   */
+  default void logResourceUsage(String request, ResourceUsage resourceUsage) {}
+
   /**
    * Called after all performance events of a request have been logged via {@link #logNanos(String,
    * long, Instant)} or {@link #logNanos(String, long, Instant, Metadata)}.
@@ -0,0 +1,181 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.logging;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resources that were used for executing a request.
+ *
+ * <p>The resource usage of a request is collected in the {@link LoggingContext} while a {@link
+ * PerformanceLogContext} is open that accounts resources (see {@link
+ * PerformanceLogContext#accountResourceUsage(String, ResourceUsage)}). The logging context, and
+ * with it the resource usage instance, is propagated to the threads of executors that run work on
+ * behalf of the request (see {@link LoggingContextAwareRunnable} and {@link
+ * LoggingContextAwareCallable}), so that the resources used by these threads are accounted to the
+ * request too. At the end of the request the resource usage is handed over to the registered
+ * {@link PerformanceLogger}s.
+ *
+ * <p>This class is thread-safe.
+ */
+public class ResourceUsage {
+  /** Resources that are counted. */
+  public enum Counter {
+    /** Number of NoteDb refs that were read. */
+    NOTEDB_REFS_READ,
+
+    /** Number of queries that were sent to the secondary index. */
+    INDEX_QUERIES,
+
+    /** Number of repositories that were opened. */
+    REPO_OPENS;
+  }
+
+  private static final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+
+  private final LongAdder cpuTimeNanos = new LongAdder();
+  private final LongAdder userTimeNanos = new LongAdder();
+  private final LongAdder allocatedBytes = new LongAdder();
+  private final LongAdder[] counters = new LongAdder[Counter.values().length];
+  private final ConcurrentMap<String, LongAdder> cacheHits = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongAdder> cacheMisses = new ConcurrentHashMap<>();
+
+  public ResourceUsage() {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = new LongAdder();
+    }
+  }
+
+  /** Returns the CPU time in nanoseconds that was used by all threads that executed the request. */
+  public long cpuTimeNanos() {
+    return cpuTimeNanos.sum();
+  }
+
+  /**
+   * Returns the CPU time in user mode in nanoseconds that was used by all threads that executed the
+   * request.
+   */
+  public long userTimeNanos() {
+    return userTimeNanos.sum();
+  }
+
+  /**
+   * Returns the number of bytes that were allocated by all threads that executed the request, 0 if
+   * measuring allocations is not supported by the JVM.
+   */
+  public long allocatedBytes() {
+    return allocatedBytes.sum();
+  }
+
+  /** Returns the value of the given counter. */
+  public long get(Counter counter) {
+    return counters[counter.ordinal()].sum();
+  }
+
+  /** Returns the number of cache hits by cache name. */
+  public ImmutableMap<String, Long> cacheHits() {
+    return snapshot(cacheHits);
+  }
+
+  /** Returns the number of cache misses by cache name. */
+  public ImmutableMap<String, Long> cacheMisses() {
+    return snapshot(cacheMisses);
+  }
+
+  void add(Counter counter, long count) {
+    counters[counter.ordinal()].add(count);
+  }
+
+  void addCacheHits(String cacheName, long count) {
+    cacheHits.computeIfAbsent(cacheName, n -> new LongAdder()).add(count);
+  }
+
+  void addCacheMisses(String cacheName, long count) {
+    cacheMisses.computeIfAbsent(cacheName, n -> new LongAdder()).add(count);
+  }
+
+  /**
+   * Starts measuring the CPU time and the allocations of the current thread.
+   *
+   * <p>The measured values are added to this resource usage when the returned meter is closed. The
+   * meter must be closed by the same thread that started it.
+   */
+  ThreadMeter startThreadMeter() {
+    return new ThreadMeter();
+  }
+
+  private static ImmutableMap<String, Long> snapshot(Map<String, LongAdder> counts) {
+    return counts.entrySet().stream()
+        .collect(toImmutableMap(Map.Entry::getKey, e -> e.getValue().sum()));
+  }
+
+  private static long currentThreadAllocatedBytes() {
+    if (threadMxBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadMxBean =
+          (com.sun.management.ThreadMXBean) threadMxBean;
+      if (sunThreadMxBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadMxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("cpuTimeNanos", cpuTimeNanos())
+        .add("userTimeNanos", userTimeNanos())
+        .add("allocatedBytes", allocatedBytes())
+        .add("notedbRefsRead", get(Counter.NOTEDB_REFS_READ))
+        .add("indexQueries", get(Counter.INDEX_QUERIES))
+        .add("repoOpens", get(Counter.REPO_OPENS))
+        .add("cacheHits", cacheHits())
+        .add("cacheMisses", cacheMisses())
+        .toString();
+  }
+
+  /** Measures the resources used by one thread, see {@link #startThreadMeter()}. */
+  class ThreadMeter implements AutoCloseable {
+    private final long startCpuTimeNanos;
+    private final long startUserTimeNanos;
+    private final long startAllocatedBytes;
+
+    private ThreadMeter() {
+      startCpuTimeNanos = threadMxBean.getCurrentThreadCpuTime();
+      startUserTimeNanos = threadMxBean.getCurrentThreadUserTime();
+      startAllocatedBytes = currentThreadAllocatedBytes();
+    }
+
+    @Override
+    public void close() {
+      if (startCpuTimeNanos >= 0) {
+        cpuTimeNanos.add(threadMxBean.getCurrentThreadCpuTime() - startCpuTimeNanos);
+        userTimeNanos.add(threadMxBean.getCurrentThreadUserTime() - startUserTimeNanos);
+      }
+      if (startAllocatedBytes >= 0) {
+        allocatedBytes.add(currentThreadAllocatedBytes() - startAllocatedBytes);
+      }
+    }
+  }
+}
@@ -131,7 +131,7 @@ public abstract class MailReceiver implements LifecycleListener {
       if (async) {
         @SuppressWarnings("unused")
         Future<?> possiblyIgnoredError =
-            workQueue.getDefaultQueue().submit(() -> processMessage(m));
+            workQueue.getDefaultQueue().submit(new ProcessMessage(m));
       } else {
         // Synchronous processing is used only in tests.
         processMessage(m);
@@ -147,4 +147,28 @@ public abstract class MailReceiver implements LifecycleListener {
       logger.atSevere().withCause(e).log("Mail: Can't process message %s . Won't delete.", m.id());
     }
   }
+
+  /** Processes a received email ahead of the background tasks of the default queue. */
+  private class ProcessMessage implements WorkQueue.PrioritizedRunnable {
+    private final MailMessage message;
+
+    ProcessMessage(MailMessage message) {
+      this.message = message;
+    }
+
+    @Override
+    public void run() {
+      processMessage(message);
+    }
+
+    @Override
+    public WorkQueue.Priority getPriority() {
+      return WorkQueue.Priority.HIGH;
+    }
+
+    @Override
+    public String toString() {
+      return "process received email " + message.id();
+    }
+  }
 }
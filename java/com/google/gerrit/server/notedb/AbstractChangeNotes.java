@@ -29,6 +29,8 @@ import com.google.gerrit.server.config.AllUsersName;
 import com.google.gerrit.server.config.GerritImportedServerIds;
 import com.google.gerrit.server.config.GerritServerId;
 import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.logging.LoggingContext;
+import com.google.gerrit.server.logging.ResourceUsage;
 import com.google.gerrit.server.notedb.ChangeNotesCommit.ChangeNotesRevWalk;
 import com.google.gerrit.server.project.NoSuchChangeException;
 import com.google.inject.Inject;
@@ -177,6 +179,7 @@ public abstract class AbstractChangeNotes<T> {
 
   @Nullable
   protected ObjectId readRef(Repository repo) throws IOException {
+    LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.NOTEDB_REFS_READ, 1);
     Ref ref = repo.getRefDatabase().exactRef(getRefName());
     return ref != null ? ref.getObjectId() : null;
   }
@@ -213,6 +216,7 @@ public abstract class AbstractChangeNotes<T> {
       return getRevision();
     }
     try (Repository repo = args.repoManager.openRepository(getProjectName())) {
+      LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.NOTEDB_REFS_READ, 1);
       Ref ref = repo.getRefDatabase().exactRef(getRefName());
       return ref != null ? ref.getObjectId() : null;
     } catch (IOException e) {
@@ -428,6 +428,11 @@ public class ChangeNotes extends AbstractChangeNotes<ChangeNotes> {
     return state.serverId();
   }
 
+  /** Returns the folded state, as written into a checkpoint by {@link MetaSquashRewriter}. */
+  ChangeNotesState getState() {
+    return state;
+  }
+
   public ImmutableSortedMap<PatchSet.Id, PatchSet> getPatchSets() {
     if (patchSets == null) {
       ImmutableSortedMap.Builder<PatchSet.Id, PatchSet> b = ImmutableSortedMap.naturalOrder();
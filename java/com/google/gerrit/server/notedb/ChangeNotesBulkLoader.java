@@ -0,0 +1,212 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Table;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.server.FanOutExecutor;
+import com.google.gerrit.server.logging.LoggingContext;
+import com.google.gerrit.server.logging.ResourceUsage;
+import com.google.gerrit.server.notedb.ChangeNotesCommit.ChangeNotesRevWalk;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Loads the {@link ChangeNotes} of many changes at once.
+ *
+ * <p>Each repository is opened once and all requested meta refs are read in one lookup. The changes
+ * of a repository are split into batches that are parsed in parallel on the fan-out executor, each
+ * batch sharing one {@link ChangeNotesRevWalk}, and the parsed states are added to the {@link
+ * ChangeNotesCache}. Batches that no executor thread picked up yet are parsed by the caller, which
+ * may itself run on the fan-out executor.
+ *
+ * <p>Loading is best effort: changes that don't exist or fail to load are left out of the result,
+ * so that loading them one by one reports the error to the caller as usual.
+ */
+@Singleton
+public class ChangeNotesBulkLoader {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Number of changes parsed with one walk by one fan-out task. */
+  @VisibleForTesting static final int BATCH_SIZE = 50;
+
+  private final AbstractChangeNotes.Args args;
+  private final ExecutorService executor;
+
+  @Inject
+  ChangeNotesBulkLoader(AbstractChangeNotes.Args args, @FanOutExecutor ExecutorService executor) {
+    this.args = args;
+    this.executor = executor;
+  }
+
+  /**
+   * Loads the notes of the given changes.
+   *
+   * @param changes changes to load by project, with the meta revision to load or {@code
+   *     Optional.empty()} to load the current revision of the meta ref.
+   * @return the loaded notes, by project and change.
+   */
+  public ImmutableTable<Project.NameKey, Change.Id, ChangeNotes> load(
+      Table<Project.NameKey, Change.Id, Optional<ObjectId>> changes) {
+    if (changes.isEmpty() || args.failOnLoadForTest.get()) {
+      return ImmutableTable.of();
+    }
+
+    List<Repository> repos = new ArrayList<>(changes.rowKeySet().size());
+    List<BatchLoad> batches = new ArrayList<>();
+    try {
+      for (Map.Entry<Project.NameKey, Map<Change.Id, Optional<ObjectId>>> e :
+          changes.rowMap().entrySet()) {
+        Project.NameKey project = e.getKey();
+        Repository repo;
+        Map<Change.Id, ObjectId> metaIds;
+        try {
+          repo = args.repoManager.openRepository(project);
+          repos.add(repo);
+          metaIds = readMetaIds(repo, e.getValue());
+        } catch (IOException ex) {
+          logger.atWarning().withCause(ex).log(
+              "Unable to read changes %s of project %s", e.getValue().keySet(), project);
+          continue;
+        }
+        for (List<Map.Entry<Change.Id, ObjectId>> batch :
+            Iterables.partition(metaIds.entrySet(), BATCH_SIZE)) {
+          BatchLoad b = new BatchLoad(repo, project, batch);
+          b.future = executor.submit(b::runIfUnclaimed);
+          batches.add(b);
+        }
+      }
+
+      // Batches that were not picked up by the executor yet are loaded by the calling thread, so
+      // that loading makes progress even if the caller runs on the executor and all of its threads
+      // are busy.
+      ImmutableTable.Builder<Project.NameKey, Change.Id, ChangeNotes> result =
+          ImmutableTable.builder();
+      for (BatchLoad b : batches) {
+        try {
+          if (!b.runIfUnclaimed()) {
+            Uninterruptibles.getUninterruptibly(b.future);
+          }
+          for (ChangeNotes notes : b.notes) {
+            result.put(notes.getProjectName(), notes.getChangeId(), notes);
+          }
+        } catch (ExecutionException | RuntimeException ex) {
+          logger.atWarning().withCause(ex).log("Unable to load changes in bulk");
+        }
+      }
+      return result.build();
+    } finally {
+      // All batches are done, or are claimed so that they never run.
+      batches.forEach(b -> b.claimed.set(true));
+      repos.forEach(Repository::close);
+    }
+  }
+
+  private static Map<Change.Id, ObjectId> readMetaIds(
+      Repository repo, Map<Change.Id, Optional<ObjectId>> changes) throws IOException {
+    Map<Change.Id, ObjectId> metaIds = new LinkedHashMap<>();
+    List<String> refNames = new ArrayList<>();
+    for (Map.Entry<Change.Id, Optional<ObjectId>> e : changes.entrySet()) {
+      if (e.getValue().isPresent()) {
+        metaIds.put(e.getKey(), e.getValue().get());
+      } else {
+        refNames.add(RefNames.changeMetaRef(e.getKey()));
+      }
+    }
+    if (!refNames.isEmpty()) {
+      LoggingContext.getInstance()
+          .addResourceUsage(ResourceUsage.Counter.NOTEDB_REFS_READ, refNames.size());
+      for (Ref ref : repo.getRefDatabase().exactRef(refNames.toArray(new String[0])).values()) {
+        Change.Id id = Change.Id.fromRef(ref.getName());
+        if (id != null && ref.getObjectId() != null) {
+          metaIds.put(id, ref.getObjectId());
+        }
+      }
+    }
+    return metaIds;
+  }
+
+  private List<ChangeNotes> loadBatch(
+      Repository repo, Project.NameKey project, List<Map.Entry<Change.Id, ObjectId>> batch) {
+    ImmutableMap<Change.Id, ChangeNotesState> states;
+    try (ChangeNotesRevWalk walk = ChangeNotesCommit.newRevWalk(repo)) {
+      states = args.cache.get().getAll(project, ImmutableMap.copyOf(batch), walk);
+    }
+
+    List<ChangeNotes> result = new ArrayList<>(states.size());
+    for (Map.Entry<Change.Id, ObjectId> e : batch) {
+      if (!states.containsKey(e.getKey())) {
+        continue;
+      }
+      ChangeNotes notes =
+          new ChangeNotes(
+              args, ChangeNotes.Factory.newChange(project, e.getKey()), true, null, e.getValue());
+      try {
+        // Served from the cache populated above.
+        result.add(notes.load(repo));
+      } catch (StorageException | InvalidServerIdException ex) {
+        logger.atFine().withCause(ex).log(
+            "Skipping change %s of project %s in bulk load", e.getKey(), project);
+      }
+    }
+    return result;
+  }
+
+  private class BatchLoad {
+    final Repository repo;
+    final Project.NameKey project;
+    final List<Map.Entry<Change.Id, ObjectId>> batch;
+    final AtomicBoolean claimed = new AtomicBoolean();
+    List<ChangeNotes> notes;
+    Future<Boolean> future;
+
+    BatchLoad(
+        Repository repo, Project.NameKey project, List<Map.Entry<Change.Id, ObjectId>> batch) {
+      this.repo = repo;
+      this.project = project;
+      this.batch = batch;
+    }
+
+    boolean runIfUnclaimed() {
+      if (!claimed.compareAndSet(false, true)) {
+        return false;
+      }
+      notes = loadBatch(repo, project, batch);
+      return true;
+    }
+  }
+}
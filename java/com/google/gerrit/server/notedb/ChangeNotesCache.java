@@ -17,8 +17,11 @@ package com.google.gerrit.server.notedb;
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.Project;
@@ -412,4 +415,39 @@ public class ChangeNotesCache {
           e);
     }
   }
+
+  /**
+   * Gets the states of several changes of one project, parsing all cache misses with one walk.
+   *
+   * <p>Changes that fail to load are logged and left out of the result; loading them with {@link
+   * #get} reports the error to the caller.
+   *
+   * @param project project of the changes.
+   * @param metaIds meta commits to load, by change.
+   * @param walk walk to parse cache misses with; it is reset before each change.
+   * @return the loaded states, by change.
+   */
+  ImmutableMap<Change.Id, ChangeNotesState> getAll(
+      Project.NameKey project, Map<Change.Id, ObjectId> metaIds, ChangeNotesRevWalk walk) {
+    Map<Key, Change.Id> keys = Maps.newLinkedHashMapWithExpectedSize(metaIds.size());
+    for (Map.Entry<Change.Id, ObjectId> e : metaIds.entrySet()) {
+      keys.put(Key.create(project, e.getKey(), e.getValue()), e.getKey());
+    }
+    ImmutableMap<Key, ChangeNotesState> present = cache.getAllPresent(keys.keySet());
+    ImmutableMap.Builder<Change.Id, ChangeNotesState> result = ImmutableMap.builder();
+    for (Map.Entry<Key, Change.Id> e : keys.entrySet()) {
+      ChangeNotesState s = present.get(e.getKey());
+      if (s == null) {
+        try {
+          s = cache.get(e.getKey(), new Loader(e.getKey(), () -> walk));
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+          logger.atFine().withCause(ex).log(
+              "Skipping change %s of project %s in bulk load", e.getValue(), project);
+          continue;
+        }
+      }
+      result.put(e.getValue(), s);
+    }
+    return result.build();
+  }
 }
@@ -0,0 +1,198 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_CHECKPOINT;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.proto.Protos;
+import com.google.gerrit.server.cache.proto.Cache.ChangeNotesCheckpointProto;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Stores a folded {@link ChangeNotesState} at the root of a squashed change meta ref.
+ *
+ * <p>A checkpoint is a root commit carrying the {@link ChangeNoteFooters#FOOTER_CHECKPOINT} footer,
+ * which names the meta commit whose state was folded. Its tree is the revision notes tree of that
+ * commit plus a {@link #STATE_FILE} blob holding the serialized state, so published comments and
+ * submit requirement results keep being read from the notes and are left out of the blob.
+ */
+final class ChangeNotesCheckpoint {
+  /** Name of the non-note entry holding the serialized state. */
+  static final String STATE_FILE = "checkpoint";
+
+  /**
+   * Version of the format of the {@link #STATE_FILE} blob, see {@code ChangeNotesCheckpointProto}.
+   * Checkpoints of other versions are rejected by {@link #readState}.
+   */
+  static final int FORMAT_VERSION = 1;
+
+  static boolean isCheckpoint(RevCommit commit) {
+    return commit.getParentCount() == 0 && !commit.getFooterLines(FOOTER_CHECKPOINT).isEmpty();
+  }
+
+  /**
+   * Reads the state folded into a checkpoint commit.
+   *
+   * @param reader reader to load the state blob with.
+   * @param commit checkpoint commit, see {@link #isCheckpoint(RevCommit)}.
+   * @return the folded state; its meta ID is the last commit of the squashed history.
+   */
+  static ChangeNotesState readState(ObjectReader reader, RevCommit commit)
+      throws IOException, ConfigInvalidException {
+    ObjectId blobId = stateBlob(reader, commit.getTree());
+    if (blobId == null) {
+      throw new ConfigInvalidException(
+          String.format("checkpoint %s is missing %s", commit.name(), STATE_FILE));
+    }
+    ChangeNotesCheckpointProto proto;
+    try {
+      proto =
+          Protos.parseUnchecked(
+              ChangeNotesCheckpointProto.parser(),
+              reader.open(blobId, OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+    } catch (IllegalArgumentException e) {
+      throw new ConfigInvalidException(
+          String.format("invalid %s in checkpoint %s", STATE_FILE, commit.name()), e);
+    }
+    if (proto.getVersion() != FORMAT_VERSION) {
+      throw new ConfigInvalidException(
+          String.format(
+              "checkpoint %s has unsupported format version %d, expected %d",
+              commit.name(), proto.getVersion(), FORMAT_VERSION));
+    }
+    try {
+      return ChangeNotesState.Serializer.INSTANCE.deserialize(proto.getState().toByteArray());
+    } catch (IllegalArgumentException e) {
+      throw new ConfigInvalidException(
+          String.format("invalid %s in checkpoint %s", STATE_FILE, commit.name()), e);
+    }
+  }
+
+  /**
+   * Returns the message of a checkpoint commit whose footer names the rewritten squashed history.
+   *
+   * @param checkpoint checkpoint commit, see {@link #isCheckpoint(RevCommit)}.
+   * @param rewrittenTips new tips of the squashed histories that were rewritten, by their old tip.
+   * @return the message to use for the rewritten checkpoint; the original message if its squashed
+   *     history wasn't rewritten.
+   */
+  static String rewriteMessage(RevCommit checkpoint, Map<ObjectId, ObjectId> rewrittenTips) {
+    return rewriteMessage(checkpoint, checkpoint.getFullMessage(), rewrittenTips);
+  }
+
+  /**
+   * Like {@link #rewriteMessage(RevCommit, Map)}, but updates the footer in a message that was
+   * already rewritten otherwise.
+   *
+   * @param checkpoint checkpoint commit, see {@link #isCheckpoint(RevCommit)}.
+   * @param message message of the rewritten checkpoint, with the original footers.
+   * @param rewrittenTips new tips of the squashed histories that were rewritten, by their old tip.
+   * @return {@code message} with the footer naming the rewritten squashed history.
+   */
+  static String rewriteMessage(
+      RevCommit checkpoint, String message, Map<ObjectId, ObjectId> rewrittenTips) {
+    List<String> footers = checkpoint.getFooterLines(FOOTER_CHECKPOINT);
+    if (footers.size() != 1 || !ObjectId.isId(footers.get(0))) {
+      return message;
+    }
+    ObjectId newTip = rewrittenTips.get(ObjectId.fromString(footers.get(0)));
+    if (newTip == null) {
+      return message;
+    }
+    String footer = FOOTER_CHECKPOINT.getName() + ": ";
+    return message.replace(footer + footers.get(0), footer + newTip.name());
+  }
+
+  /** Returns the state blob of the given tree, or null if the tree has none. */
+  @Nullable
+  static ObjectId stateBlob(ObjectReader reader, AnyObjectId treeId) throws IOException {
+    try (TreeWalk tw = TreeWalk.forPath(reader, STATE_FILE, treeId)) {
+      return tw != null ? tw.getObjectId(0) : null;
+    }
+  }
+
+  /**
+   * Inserts the serialized form of the state in the current {@link #FORMAT_VERSION}, without the
+   * data kept in the notes tree.
+   */
+  static ObjectId insertState(ObjectInserter ins, ChangeNotesState state) throws IOException {
+    ChangeNotesState stripped =
+        state.toBuilder()
+            .publishedComments(ImmutableListMultimap.of())
+            .submitRequirementsResult(ImmutableList.of())
+            .build();
+    ChangeNotesCheckpointProto proto =
+        ChangeNotesCheckpointProto.newBuilder()
+            .setVersion(FORMAT_VERSION)
+            .setState(ByteString.copyFrom(ChangeNotesState.Serializer.INSTANCE.serialize(stripped)))
+            .build();
+    return ins.insert(OBJ_BLOB, Protos.toByteArray(proto));
+  }
+
+  /**
+   * Inserts a copy of a notes tree that holds the given state blob.
+   *
+   * @param ins inserter to write the new tree with.
+   * @param reader reader to load the base tree with.
+   * @param baseTreeId tree to copy all entries other than {@link #STATE_FILE} from.
+   * @param stateBlobId state blob to store in the new tree.
+   * @return ID of the new tree.
+   */
+  static ObjectId insertTree(
+      ObjectInserter ins, ObjectReader reader, AnyObjectId baseTreeId, ObjectId stateBlobId)
+      throws IOException {
+    DirCache dc = DirCache.newInCore();
+    DirCacheBuilder b = dc.builder();
+    try (TreeWalk tw = new TreeWalk(reader)) {
+      tw.addTree(baseTreeId);
+      tw.setRecursive(true);
+      while (tw.next()) {
+        if (tw.getPathString().equals(STATE_FILE)) {
+          continue;
+        }
+        DirCacheEntry e = new DirCacheEntry(tw.getRawPath());
+        e.setFileMode(tw.getFileMode(0));
+        e.setObjectId(tw.getObjectId(0));
+        b.add(e);
+      }
+    }
+    DirCacheEntry state = new DirCacheEntry(STATE_FILE);
+    state.setFileMode(FileMode.REGULAR_FILE);
+    state.setObjectId(stateBlobId);
+    b.add(state);
+    b.finish();
+    return dc.writeTree(ins);
+  }
+
+  private ChangeNotesCheckpoint() {}
+}
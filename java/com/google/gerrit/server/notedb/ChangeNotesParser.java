@@ -18,6 +18,7 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_ATTENTION;
 import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_BRANCH;
+import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_CHECKPOINT;
 import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_CHANGE_ID;
 import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_CHERRY_PICK_OF;
 import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_COMMIT;
@@ -255,6 +256,19 @@ class ChangeNotesParser {
     try (Timer0.Context timer = metrics.parseLatency.start()) {
       ChangeNotesCommit commit;
       while ((commit = walk.next()) != null) {
+        if (ChangeNotesCheckpoint.isCheckpoint(commit)) {
+          ChangeNotesState checkpoint =
+              ChangeNotesCheckpoint.readState(walk.getObjectReader(), commit);
+          ObjectId squashedTip = squashedHistoryToParse(commit, checkpoint);
+          if (squashedTip == null) {
+            // The history older than the checkpoint is already folded into its state.
+            parseCheckpoint(commit, checkpoint);
+            break;
+          }
+          walk.reset();
+          walk.markStart(walk.parseCommit(squashedTip));
+          continue;
+        }
         parse(commit);
       }
       if (hasReviewStarted == null) {
@@ -265,7 +279,9 @@ class ChangeNotesParser {
         }
       }
       parseNotes();
-      allPastReviewers.addAll(reviewers.rowKeySet());
+      reviewers.rowKeySet().stream()
+          .filter(r -> !allPastReviewers.contains(r))
+          .forEach(allPastReviewers::add);
       pruneReviewers();
       pruneReviewersByEmail();
 
@@ -610,6 +626,213 @@ class ChangeNotesParser {
     }
   }
 
+  /**
+   * Returns the squashed history of a checkpoint if it must be parsed instead of the folded state.
+   *
+   * <p>Deleting a patch set discards everything the commits of that patch set changed, which the
+   * folded state no longer tells apart. If a patch set of the checkpoint was deleted later, the
+   * squashed history is parsed instead, which must still be available.
+   *
+   * @return the last commit of the squashed history, or null if the folded state can be used.
+   * @throws ConfigInvalidException if the squashed history must be parsed but is missing.
+   */
+  @Nullable
+  private ObjectId squashedHistoryToParse(ChangeNotesCommit commit, ChangeNotesState checkpoint)
+      throws IOException, ConfigInvalidException {
+    if (checkpoint.patchSets().stream().noneMatch(e -> deletedPatchSets.contains(e.getKey()))) {
+      return null;
+    }
+    String squashedTip = parseExactlyOneFooter(commit, FOOTER_CHECKPOINT);
+    if (!ObjectId.isId(squashedTip)) {
+      throw invalidFooter(FOOTER_CHECKPOINT, squashedTip);
+    }
+    ObjectId id = ObjectId.fromString(squashedTip);
+    if (!walk.getObjectReader().has(id)) {
+      throw parseException(
+          "squashed history %s of checkpoint %s is missing, but a patch set of it was deleted",
+          squashedTip, commit.name());
+    }
+    return id;
+  }
+
+  /**
+   * Folds the state of a checkpoint into the state parsed so far, as if the checkpoint was the
+   * oldest commit and carried the whole squashed history.
+   *
+   * <p>All commits parsed before are newer than the checkpoint, so the same "newest value wins"
+   * rules as in {@link #parse(ChangeNotesCommit)} apply.
+   */
+  private void parseCheckpoint(ChangeNotesCommit commit, ChangeNotesState checkpoint)
+      throws ConfigInvalidException {
+    if (!checkpoint.changeId().equals(id)) {
+      throw parseException(
+          "checkpoint %s belongs to change %s", commit.name(), checkpoint.changeId());
+    }
+    ChangeNotesState.ChangeColumns c = checkpoint.columns();
+
+    createdOn = c.createdOn();
+    ownerId = c.owner();
+    serverId = checkpoint.serverId();
+    if (c.originalSubject() != null) {
+      originalSubject = c.originalSubject();
+    }
+    if (lastUpdatedOn == null || c.lastUpdatedOn().isAfter(lastUpdatedOn)) {
+      lastUpdatedOn = c.lastUpdatedOn();
+    }
+    updateCount += checkpoint.updateCount();
+
+    if (branch == null) {
+      branch = c.branch();
+    }
+    // Newer patch sets without a branch footer inherit the branch at the time of the checkpoint.
+    patchSets.keySet().forEach(p -> branchByPatchSet.putIfAbsent(p, c.branch()));
+    if (changeId == null) {
+      changeId = c.changeKey().get();
+    }
+    if (subject == null) {
+      subject = c.subject();
+    }
+    if (topic == null) {
+      topic = c.topic();
+    }
+    if (hashtags == null) {
+      hashtags = new HashSet<>(checkpoint.hashtags());
+    }
+    checkpoint
+        .customKeyedValues()
+        .forEach(e -> customKeyedValues.putIfAbsent(e.getKey(), e.getValue()));
+    checkpoint.attentionSet().forEach(u -> latestAttentionStatus.putIfAbsent(u.account(), u));
+    allAttentionSetUpdates.addAll(checkpoint.allAttentionSetUpdates());
+    allChangeMessages.addAll(Lists.reverse(checkpoint.changeMessages()));
+
+    if (submissionId == null) {
+      submissionId = c.submissionId();
+    }
+    if (mergedOn == null) {
+      mergedOn = checkpoint.mergedOn();
+    }
+    if (submitRecords.isEmpty()) {
+      submitRecords.addAll(checkpoint.submitRecords());
+    }
+
+    for (Map.Entry<PatchSet.Id, PatchSet> e : checkpoint.patchSets()) {
+      PatchSet ps = e.getValue();
+      if (deletedPatchSets.contains(ps.id())) {
+        continue;
+      }
+      if (patchSetCommitParsed(ps.id())) {
+        throw parseException(
+            "patch set %s of checkpoint %s was created again later", ps.id().get(), commit.name());
+      }
+      PatchSet.Builder pending = patchSets.computeIfAbsent(ps.id(), p -> PatchSet.builder());
+      pending
+          .id(ps.id())
+          .commitId(ps.commitId())
+          .uploader(ps.uploader())
+          .realUploader(ps.realUploader())
+          .createdOn(ps.createdOn())
+          .pushCertificate(ps.pushCertificate());
+      if (pending.groups().isEmpty()) {
+        pending.groups(ps.groups());
+      }
+      if (!pending.description().isPresent()) {
+        pending.description(ps.description());
+      }
+      ps.branch().ifPresent(b -> branchByPatchSet.putIfAbsent(ps.id(), b));
+    }
+    if (c.currentPatchSetId() != null) {
+      currentPatchSets.add(c.currentPatchSetId());
+    }
+
+    if (status == null) {
+      // As in parseStatus, which is only called until the newest status is found.
+      if (c.status() == Change.Status.MERGED) {
+        for (PatchSetApproval.Builder psa : bufferedApprovals) {
+          if (!psa.key().isLegacySubmit()) {
+            psa.postSubmit(true);
+          }
+        }
+      }
+      bufferedApprovals.clear();
+      status = c.status();
+    }
+    for (Map.Entry<PatchSet.Id, PatchSetApproval> e : checkpoint.approvals()) {
+      PatchSetApproval psa = e.getValue();
+      PatchSetApproval.Builder b = psa.toBuilder();
+      if (removedReviewers.contains(psa.accountId())) {
+        b.value(0);
+      }
+      approvals.putIfAbsent(psa.key(), b);
+    }
+
+    if (workInProgress == null) {
+      workInProgress = c.workInProgress();
+      if (c.workInProgress()) {
+        // The change went into WIP before the checkpoint, so reviewers added since then are
+        // pending as well.
+        pendingReviewers =
+            ReviewerSet.fromTable(
+                Tables.transpose(
+                    withOlderRows(reviewers, checkpoint.pendingReviewers().asTable())));
+        pendingReviewersByEmail =
+            ReviewerByEmailSet.fromTable(
+                Tables.transpose(
+                    withOlderRows(
+                        reviewersByEmail, checkpoint.pendingReviewersByEmail().asTable())));
+      }
+    }
+    if (hasReviewStarted == null) {
+      hasReviewStarted = c.reviewStarted();
+    }
+    // Reviewers are listed in the order of their latest update, newest first, which puts the
+    // reviewers updated after the checkpoint before the older ones.
+    reviewers.rowKeySet().stream()
+        .filter(r -> !allPastReviewers.contains(r))
+        .forEach(allPastReviewers::add);
+    checkpoint.allPastReviewers().stream()
+        .filter(r -> !allPastReviewers.contains(r))
+        .forEach(allPastReviewers::add);
+    for (Table.Cell<ReviewerStateInternal, Account.Id, Instant> r :
+        checkpoint.reviewers().asTable().cellSet()) {
+      if (!reviewers.containsRow(r.getColumnKey())) {
+        reviewers.put(r.getColumnKey(), r.getRowKey(), r.getValue());
+      }
+    }
+    for (Table.Cell<ReviewerStateInternal, Address, Instant> r :
+        checkpoint.reviewersByEmail().asTable().cellSet()) {
+      if (!reviewersByEmail.containsRow(r.getColumnKey())) {
+        reviewersByEmail.put(r.getColumnKey(), r.getRowKey(), r.getValue());
+      }
+    }
+    reviewerUpdates.addAll(Lists.reverse(checkpoint.reviewerUpdates()));
+
+    if (isPrivate == null) {
+      isPrivate = c.isPrivate();
+    }
+    if (revertOf == null) {
+      revertOf = c.revertOf();
+    }
+    if (cherryPickOf == null) {
+      cherryPickOf = Optional.ofNullable(c.cherryPickOf());
+    }
+  }
+
+  /**
+   * Returns a copy of {@code newer} that also contains the rows of {@code older}, which is keyed
+   * by state, for which {@code newer} has no entry yet.
+   */
+  private static <R> Table<R, ReviewerStateInternal, Instant> withOlderRows(
+      Table<R, ReviewerStateInternal, Instant> newer,
+      Table<ReviewerStateInternal, R, Instant> older) {
+    Table<R, ReviewerStateInternal, Instant> result = HashBasedTable.create(newer);
+    for (Table.Cell<ReviewerStateInternal, R, Instant> c : older.cellSet()) {
+      if (!newer.containsRow(c.getColumnKey())) {
+        result.put(c.getColumnKey(), c.getRowKey(), c.getValue());
+      }
+    }
+    return result;
+  }
+
   private void parseSubmission(ChangeNotesCommit commit, Instant commitTimestamp)
       throws ConfigInvalidException {
     // Only parse the most recent sumbit commit (there should be exactly one).
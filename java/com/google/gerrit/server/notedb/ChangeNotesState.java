@@ -391,6 +391,8 @@ public abstract class ChangeNotesState {
     }
   }
 
+  abstract Builder toBuilder();
+
   @AutoValue.Builder
   abstract static class Builder {
 
@@ -200,6 +200,7 @@ public class ChangeUpdate extends AbstractChangeUpdate {
   private RobotCommentUpdate robotCommentUpdate;
   private DeleteCommentRewriter deleteCommentRewriter;
   private DeleteChangeMessageRewriter deleteChangeMessageRewriter;
+  private MetaSquashRewriter metaSquashRewriter;
   private List<SubmitRequirementResult> submitRequirementResults;
 
   private ImmutableList.Builder<AttentionSetUpdate> attentionSetUpdatesBuilder =
@@ -436,6 +437,17 @@ public class ChangeUpdate extends AbstractChangeUpdate {
         new DeleteChangeMessageRewriter(getChange().getId(), targetMessageId, newMessage);
   }
 
+  /**
+   * Replaces the history of the meta ref by a single checkpoint commit holding the current state.
+   *
+   * <p>The replaced history is kept reachable from the {@code meta-history} ref of the change.
+   */
+  public void squashMetaHistory() {
+    ChangeNotes notes = getNotes();
+    checkState(notes != null, "cannot squash meta history of change %s", getChange().getId());
+    metaSquashRewriter = new MetaSquashRewriter(notes.getState(), serverIdent);
+  }
+
   @VisibleForTesting
   @CanIgnoreReturnValue
   ChangeDraftUpdate createDraftUpdateIfNull() {
@@ -749,7 +761,9 @@ public class ChangeUpdate extends AbstractChangeUpdate {
   protected CommitBuilder applyImpl(RevWalk rw, ObjectInserter ins, ObjectId curr)
       throws IOException {
     checkState(
-        deleteCommentRewriter == null && deleteChangeMessageRewriter == null,
+        deleteCommentRewriter == null
+            && deleteChangeMessageRewriter == null
+            && metaSquashRewriter == null,
         "cannot update and rewrite ref in one BatchUpdate");
 
     PatchSet.Id patchSetId = psId != null ? psId : getChange().currentPatchSetId();
@@ -1246,6 +1260,10 @@ public class ChangeUpdate extends AbstractChangeUpdate {
     return deleteChangeMessageRewriter;
   }
 
+  MetaSquashRewriter getMetaSquashRewriter() {
+    return metaSquashRewriter;
+  }
+
   public void setAllowWriteToNewRef(boolean allow) {
     isAllowWriteToNewtRef = allow;
   }
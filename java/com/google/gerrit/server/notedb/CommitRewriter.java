@@ -31,12 +31,15 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.flogger.FluentLogger;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.UsedAt;
 import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AttentionSetUpdate;
 import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.ChangeMessage;
 import com.google.gerrit.entities.HumanComment;
 import com.google.gerrit.entities.PatchSetApproval;
 import com.google.gerrit.entities.Project;
@@ -88,6 +91,7 @@ import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
@@ -257,6 +261,9 @@ public class CommitRewriter {
    * Rewrites commit history of {@link RefNames#changeMetaRef}s in single {@code repo}. Only
    * rewrites branch if necessary, i.e. if there were any commits that contained user data.
    *
+   * <p>Squashed histories archived in {@link RefNames#changeMetaHistoryRef} are rewritten together
+   * with the meta ref of their change, and are reported in {@link BackfillResult} on their own.
+   *
    * <p>See {@link RunOptions} for the execution and output options.
    *
    * @param project project to backfill
@@ -303,8 +310,37 @@ public class CommitRewriter {
           if (refsUpdate == null) {
             refsUpdate = RefsUpdate.create(repo);
           }
+          // The archive is fixed first, so that the checkpoint of the meta ref can name the fixed
+          // squashed history.
+          Map<ObjectId, ObjectId> rewrittenTips = new HashMap<>();
+          Ref archiveRef = repo.exactRef(RefNames.changeMetaHistoryRef(changeId));
+          ChangeFixProgress archiveFixProgress = null;
+          if (archiveRef != null) {
+            archiveFixProgress =
+                backfillArchive(refsUpdate, archiveRef, accountsInChange, options, rewrittenTips);
+          }
           ChangeFixProgress changeFixProgress =
-              backfillChange(refsUpdate, ref, accountsInChange, options);
+              backfillChange(
+                  refsUpdate,
+                  ref.getName(),
+                  ref.getObjectId(),
+                  accountsInChange,
+                  options,
+                  rewrittenTips);
+          if (archiveFixProgress != null && archiveFixProgress.anyFixesApplied) {
+            refsInUpdate++;
+            refsUpdate
+                .batchRefUpdate()
+                .addCommand(
+                    new ReceiveCommand(
+                        archiveRef.getObjectId(),
+                        archiveFixProgress.newTipId,
+                        archiveRef.getName()));
+            result.fixedRefDiff.put(archiveRef.getName(), archiveFixProgress.commitDiffs);
+          }
+          if (archiveFixProgress != null && !archiveFixProgress.isValidAfterFix) {
+            result.refsStillInvalidAfterFix.add(archiveRef.getName());
+          }
           if (changeFixProgress.anyFixesApplied) {
             refsInUpdate++;
             refsUpdate
@@ -436,20 +472,108 @@ public class CommitRewriter {
     return true;
   }
 
+  /**
+   * Fixes the squashed histories archived in {@link RefNames#changeMetaHistoryRef}, see {@link
+   * MetaSquashRewriter#archive}. Each squashed history is fixed like a meta ref, oldest first, so
+   * that the checkpoint of a later one can name its fixed predecessor. The merges joining them are
+   * recreated on top of the fixed histories.
+   *
+   * @param rewrittenTips receives the new tips of the squashed histories that were fixed, by their
+   *     old tip.
+   */
+  private ChangeFixProgress backfillArchive(
+      RefsUpdate refsUpdate,
+      Ref archiveRef,
+      ImmutableSet<AccountState> accountsInChange,
+      RunOptions options,
+      Map<ObjectId, ObjectId> rewrittenTips)
+      throws IOException, ConfigInvalidException {
+    // The second parent of each merge is the archive of the previous squashes.
+    List<RevCommit> merges = new ArrayList<>();
+    RevCommit oldest = refsUpdate.revWalk().parseCommit(archiveRef.getObjectId());
+    while (oldest.getParentCount() == 2) {
+      merges.add(oldest);
+      oldest = refsUpdate.revWalk().parseCommit(oldest.getParent(1));
+    }
+
+    ChangeFixProgress archiveFixProgress = new ChangeFixProgress(archiveRef.getName());
+    ObjectId newTip =
+        backfillSquashedHistory(
+            refsUpdate, archiveFixProgress, oldest, accountsInChange, options, rewrittenTips);
+    for (RevCommit merge : Lists.reverse(merges)) {
+      ObjectId squashedTip =
+          backfillSquashedHistory(
+              refsUpdate,
+              archiveFixProgress,
+              merge.getParent(0),
+              accountsInChange,
+              options,
+              rewrittenTips);
+      if (squashedTip.equals(merge.getParent(0)) && newTip.equals(merge.getParent(1))) {
+        newTip = merge;
+        continue;
+      }
+      CommitBuilder cb = new CommitBuilder();
+      cb.setParentIds(squashedTip, newTip);
+      cb.setTreeId(refsUpdate.revWalk().parseCommit(squashedTip).getTree());
+      cb.setMessage(merge.getFullMessage());
+      cb.setAuthor(merge.getAuthorIdent());
+      cb.setCommitter(merge.getCommitterIdent());
+      cb.setEncoding(merge.getEncoding());
+      newTip = refsUpdate.inserter().insert(cb);
+    }
+    archiveFixProgress.newTipId = newTip;
+    return archiveFixProgress;
+  }
+
+  /**
+   * Fixes a single squashed history of the archive, see {@link #backfillArchive}.
+   *
+   * @return the new tip of the squashed history.
+   */
+  private ObjectId backfillSquashedHistory(
+      RefsUpdate refsUpdate,
+      ChangeFixProgress archiveFixProgress,
+      ObjectId squashedTip,
+      ImmutableSet<AccountState> accountsInChange,
+      RunOptions options,
+      Map<ObjectId, ObjectId> rewrittenTips)
+      throws IOException, ConfigInvalidException {
+    ChangeFixProgress fixProgress =
+        backfillChange(
+            refsUpdate,
+            archiveFixProgress.changeMetaRef,
+            squashedTip,
+            accountsInChange,
+            options,
+            rewrittenTips);
+    archiveFixProgress.anyFixesApplied |= fixProgress.anyFixesApplied;
+    archiveFixProgress.isValidAfterFix &= fixProgress.isValidAfterFix;
+    archiveFixProgress.commitDiffs.addAll(fixProgress.commitDiffs);
+    return fixProgress.newTipId;
+  }
+
   /**
    * Walks the ref history from oldest update to the most recent update, fixing the commits that
    * contain user data case by case. Commit history is rewritten from the first commit, that needs
    * to be updated, for all subsequent updates. The new ref tip is returned in {@link
    * ChangeFixProgress#newTipId}.
+   *
+   * <p>If the history starts with a checkpoint, see {@link ChangeNotesCheckpoint}, the state folded
+   * into it is fixed as well, and its footer is updated to name the fixed squashed history.
+   *
+   * @param rewrittenTips new tips of the squashed histories that were fixed, by their old tip;
+   *     receives the new tip of this history if it was fixed.
    */
   public ChangeFixProgress backfillChange(
       RefsUpdate refsUpdate,
-      Ref ref,
+      String refName,
+      ObjectId oldTip,
       ImmutableSet<AccountState> accountsInChange,
-      RunOptions options)
+      RunOptions options,
+      Map<ObjectId, ObjectId> rewrittenTips)
       throws IOException, ConfigInvalidException {
 
-    ObjectId oldTip = ref.getObjectId();
     // Walk from the first commit of the branch.
     refsUpdate.revWalk().reset();
     refsUpdate.revWalk().markStart(refsUpdate.revWalk().parseCommit(oldTip));
@@ -457,10 +581,14 @@ public class CommitRewriter {
 
     refsUpdate.revWalk().sort(RevSort.REVERSE);
 
+    ObjectReader reader = refsUpdate.revWalk().getObjectReader();
     RevCommit originalCommit;
 
     boolean rewriteStarted = false;
-    ChangeFixProgress changeFixProgress = new ChangeFixProgress(ref.getName());
+    ObjectId oldStateBlob = null;
+    ObjectId newStateBlob = null;
+    Map<ObjectId, ObjectId> rewrittenTrees = new HashMap<>();
+    ChangeFixProgress changeFixProgress = new ChangeFixProgress(refName);
     while ((originalCommit = refsUpdate.revWalk().next()) != null) {
 
       changeFixProgress.updateAuthorId =
@@ -479,6 +607,43 @@ public class CommitRewriter {
           fixedCommitMessage.isPresent()
               ? fixedCommitMessage.get()
               : originalCommit.getFullMessage();
+      boolean stateFixed = false;
+      String stateDiff = "";
+      if (ChangeNotesCheckpoint.isCheckpoint(originalCommit)) {
+        // The squashed history may have been fixed before, when fixing the archive.
+        String checkpointMessage =
+            ChangeNotesCheckpoint.rewriteMessage(originalCommit, commitMessage, rewrittenTips);
+        if (!checkpointMessage.equals(commitMessage)) {
+          commitMessage = checkpointMessage;
+          fixedCommitMessage = Optional.of(checkpointMessage);
+        }
+        // Change messages and attention set updates of the squashed history are folded into the
+        // state of the checkpoint, which is carried along in the tree of every later commit.
+        ChangeNotesState state = ChangeNotesCheckpoint.readState(reader, originalCommit);
+        Optional<ChangeNotesState> fixedState = fixedCheckpointState(state, changeFixProgress);
+        if (options.verifyCommits) {
+          boolean isStateValid =
+              verifyCommit(
+                  checkpointStateText(fixedState.orElse(state)),
+                  fixedAuthorIdent,
+                  accountsInChange);
+          changeFixProgress.isValidAfterFix &= isStateValid;
+          if (!isStateValid) {
+            logger.atWarning().log(
+                "State of checkpoint %s of ref %s failed verification after fix",
+                originalCommit.getId(), refName);
+          }
+        }
+        if (fixedState.isPresent()) {
+          stateFixed = true;
+          oldStateBlob = ChangeNotesCheckpoint.stateBlob(reader, originalCommit.getTree());
+          newStateBlob = ChangeNotesCheckpoint.insertState(refsUpdate.inserter(), fixedState.get());
+          stateDiff =
+              computeTextDiff(
+                  checkpointStateText(state).getBytes(UTF_8),
+                  checkpointStateText(fixedState.get()).getBytes(UTF_8));
+        }
+      }
       if (options.verifyCommits) {
         boolean isCommitValid = verifyCommit(commitMessage, fixedAuthorIdent, accountsInChange);
         changeFixProgress.isValidAfterFix &= isCommitValid;
@@ -487,7 +652,7 @@ public class CommitRewriter {
               new StringBuilder(
                   String.format(
                       "Commit %s of ref %s failed verification after fix",
-                      originalCommit.getId(), ref));
+                      originalCommit.getId(), refName));
           detailedVerificationStatus.append("\nCommit body:\n");
           detailedVerificationStatus.append(commitMessage);
           if (fixedCommitMessage.isPresent()) {
@@ -498,9 +663,22 @@ public class CommitRewriter {
           logger.atWarning().log("%s", detailedVerificationStatus);
         }
       }
+      ObjectId treeId = originalCommit.getTree();
+      if (newStateBlob != null
+          && oldStateBlob.equals(ChangeNotesCheckpoint.stateBlob(reader, treeId))) {
+        ObjectId newTreeId = rewrittenTrees.get(treeId);
+        if (newTreeId == null) {
+          newTreeId =
+              ChangeNotesCheckpoint.insertTree(
+                  refsUpdate.inserter(), reader, treeId, newStateBlob);
+          rewrittenTrees.put(treeId, newTreeId);
+        }
+        treeId = newTreeId;
+      }
       boolean needsFix =
           !fixedAuthorIdent.equals(originalCommit.getAuthorIdent())
-              || fixedCommitMessage.isPresent();
+              || fixedCommitMessage.isPresent()
+              || stateFixed;
 
       if (!rewriteStarted && !needsFix) {
         changeFixProgress.newTipId = originalCommit;
@@ -512,7 +690,7 @@ public class CommitRewriter {
       if (changeFixProgress.newTipId != null) {
         cb.setParentId(changeFixProgress.newTipId);
       }
-      cb.setTreeId(originalCommit.getTree());
+      cb.setTreeId(treeId);
       cb.setMessage(commitMessage);
       cb.setAuthor(fixedAuthorIdent);
       cb.setCommitter(originalCommit.getCommitterIdent());
@@ -523,21 +701,118 @@ public class CommitRewriter {
           refsUpdate.inserter().insert(Constants.OBJ_COMMIT, newCommitContent);
       // Only compute diff if the content of the commit was actually changed.
       if (options.outputDiff && needsFix) {
-        String diff = computeDiff(originalCommit.getRawBuffer(), newCommitContent);
+        String diff = computeDiff(originalCommit.getRawBuffer(), newCommitContent) + stateDiff;
         checkState(
             !Strings.isNullOrEmpty(diff),
             "Expected diff for commit %s of ref %s",
             originalCommit.getId(),
-            ref.getName());
+            refName);
         changeFixProgress.commitDiffs.add(CommitDiff.create(originalCommit.getId(), diff));
       } else if (needsFix) {
         // Always output old commits SHA1
         changeFixProgress.commitDiffs.add(CommitDiff.create(originalCommit.getId(), ""));
       }
     }
+    if (changeFixProgress.anyFixesApplied) {
+      rewrittenTips.put(oldTip.copy(), changeFixProgress.newTipId);
+    }
     return changeFixProgress;
   }
 
+  /**
+   * Fixes the change messages and attention set reasons folded into the state of a checkpoint, so
+   * they do not contain user data. Reviewer updates and votes only hold account IDs and never need
+   * a fix.
+   *
+   * @return the fixed state, or {@link Optional#empty} if no fixes were applied.
+   */
+  private Optional<ChangeNotesState> fixedCheckpointState(
+      ChangeNotesState state, ChangeFixProgress fixProgress) {
+    // The commits that added the accounts to the change were squashed, so take them from the state
+    // to match the names in the change messages against.
+    Set<Account.Id> accounts = new HashSet<>();
+    accounts.add(state.columns().owner());
+    accounts.addAll(state.reviewers().all());
+    accounts.addAll(state.allPastReviewers());
+    state.changeMessages().stream()
+        .map(ChangeMessage::getAuthor)
+        .filter(Objects::nonNull)
+        .forEach(accounts::add);
+    accounts.forEach(id -> fixProgress.parsedAccounts.putIfAbsent(id, Optional.empty()));
+
+    Optional<Account.Id> updateAuthorId = fixProgress.updateAuthorId;
+    String tag = fixProgress.tag;
+    boolean anyFixed = false;
+    List<ChangeMessage> messages = new ArrayList<>(state.changeMessages().size());
+    for (ChangeMessage m : state.changeMessages()) {
+      fixProgress.updateAuthorId = Optional.ofNullable(m.getAuthor());
+      fixProgress.tag = m.getTag();
+      Optional<String> fixedMessage =
+          fixedChangeMessage(fixProgress, Strings.nullToEmpty(m.getMessage()).trim());
+      if (fixedMessage.isPresent()) {
+        anyFixed = true;
+        m =
+            ChangeMessage.create(
+                m.getKey(),
+                m.getAuthor(),
+                m.getWrittenOn(),
+                m.getPatchSetId(),
+                fixedMessage.get(),
+                m.getRealAuthor(),
+                m.getTag());
+      }
+      messages.add(m);
+    }
+    fixProgress.updateAuthorId = updateAuthorId;
+    fixProgress.tag = tag;
+
+    List<AttentionSetUpdate> attentionSet = new ArrayList<>(state.attentionSet().size());
+    for (AttentionSetUpdate u : state.attentionSet()) {
+      Optional<AttentionSetUpdate> fixedUpdate = fixedAttentionSetUpdate(u);
+      anyFixed |= fixedUpdate.isPresent();
+      attentionSet.add(fixedUpdate.orElse(u));
+    }
+    List<AttentionSetUpdate> allAttentionSetUpdates =
+        new ArrayList<>(state.allAttentionSetUpdates().size());
+    for (AttentionSetUpdate u : state.allAttentionSetUpdates()) {
+      Optional<AttentionSetUpdate> fixedUpdate = fixedAttentionSetUpdate(u);
+      anyFixed |= fixedUpdate.isPresent();
+      allAttentionSetUpdates.add(fixedUpdate.orElse(u));
+    }
+    if (!anyFixed) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        state.toBuilder()
+            .changeMessages(messages)
+            .attentionSet(ImmutableSet.copyOf(attentionSet))
+            .allAttentionSetUpdates(allAttentionSetUpdates)
+            .build());
+  }
+
+  private Optional<AttentionSetUpdate> fixedAttentionSetUpdate(AttentionSetUpdate update) {
+    return fixAttentionSetReason(update.reason())
+        .map(
+            reason ->
+                AttentionSetUpdate.createFromRead(
+                    update.timestamp(), update.account(), update.operation(), reason));
+  }
+
+  /**
+   * Returns the user provided texts of a checkpoint state, to verify and to diff them like commit
+   * messages.
+   */
+  private static String checkpointStateText(ChangeNotesState state) {
+    StringBuilder text = new StringBuilder();
+    for (ChangeMessage m : state.changeMessages()) {
+      text.append(Strings.nullToEmpty(m.getMessage())).append('\n');
+    }
+    for (AttentionSetUpdate u : state.allAttentionSetUpdates()) {
+      text.append(Strings.nullToEmpty(u.reason())).append('\n');
+    }
+    return text.toString();
+  }
+
   /**
    * In NoteDb, all the meta information is stored in footer lines. If we accidentally drop some of
    * the footer lines, the original meta information will be lost, and the change might become
@@ -1032,8 +1307,30 @@ public class CommitRewriter {
     // need the fix. For such cases, try to guess or replace with the default string (see
     // getPossibleAccountReplacement)
     if (!fixedChangeMessage.isPresent()) {
-      fixedChangeMessage = fixReviewerChangeMessage(originalChangeMessage);
+      fixedChangeMessage = fixedChangeMessage(fixProgress, originalChangeMessage);
+    }
+    if (!anyFootersFixed && !fixedChangeMessage.isPresent()) {
+      return Optional.empty();
+    }
+    StringBuilder fixedCommitBuilder = new StringBuilder();
+    fixedCommitBuilder.append(changeSubject);
+    fixedCommitBuilder.append("\n\n");
+    if (commitMessageRange.get().hasChangeMessage()) {
+      fixedCommitBuilder.append(fixedChangeMessage.orElse(originalChangeMessage));
+      fixedCommitBuilder.append("\n\n");
     }
+    fixedCommitBuilder.append(footerLinesBuilder);
+    return Optional.of(fixedCommitBuilder.toString());
+  }
+
+  /**
+   * Fixes a change message case by case, without the help of the footers of its update, so it does
+   * not contain user data. Returns fixed change message, or {@link Optional#empty} if no fixes were
+   * applied.
+   */
+  private Optional<String> fixedChangeMessage(
+      ChangeFixProgress fixProgress, @Nullable String originalChangeMessage) {
+    Optional<String> fixedChangeMessage = fixReviewerChangeMessage(originalChangeMessage);
     if (!fixedChangeMessage.isPresent()) {
       fixedChangeMessage = fixRemoveVotesChangeMessage(fixProgress, originalChangeMessage);
     }
@@ -1061,18 +1358,7 @@ public class CommitRewriter {
       fixedChangeMessage =
           fixCodeOwnersOnAddReviewerChangeMessage(fixProgress, originalChangeMessage);
     }
-    if (!anyFootersFixed && !fixedChangeMessage.isPresent()) {
-      return Optional.empty();
-    }
-    StringBuilder fixedCommitBuilder = new StringBuilder();
-    fixedCommitBuilder.append(changeSubject);
-    fixedCommitBuilder.append("\n\n");
-    if (commitMessageRange.get().hasChangeMessage()) {
-      fixedCommitBuilder.append(fixedChangeMessage.orElse(originalChangeMessage));
-      fixedCommitBuilder.append("\n\n");
-    }
-    fixedCommitBuilder.append(footerLinesBuilder);
-    return Optional.of(fixedCommitBuilder.toString());
+    return fixedChangeMessage;
   }
 
   @CanIgnoreReturnValue
@@ -1255,8 +1541,12 @@ public class CommitRewriter {
   }
 
   private String computeDiff(byte[] oldCommit, byte[] newCommit) throws IOException {
-    RawText oldBody = new RawText(cutTreeAndParents(oldCommit));
-    RawText newBody = new RawText(cutTreeAndParents(newCommit));
+    return computeTextDiff(cutTreeAndParents(oldCommit), cutTreeAndParents(newCommit));
+  }
+
+  private String computeTextDiff(byte[] oldText, byte[] newText) throws IOException {
+    RawText oldBody = new RawText(oldText);
+    RawText newBody = new RawText(newText);
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     EditList diff = diffAlgorithm.diff(RawTextComparator.DEFAULT, oldBody, newBody);
     try (DiffFormatter fmt = new DiffFormatter(out)) {
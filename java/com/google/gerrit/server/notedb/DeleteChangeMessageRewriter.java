@@ -20,14 +20,22 @@ import static com.google.gerrit.server.notedb.ChangeNoteUtil.parseCommitMessageR
 import static java.util.Objects.requireNonNull;
 import static org.eclipse.jgit.util.RawParseUtils.decode;
 
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.ChangeMessage;
 import com.google.gerrit.entities.RefNames;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -43,6 +51,7 @@ public class DeleteChangeMessageRewriter implements NoteDbRewriter {
   private final Change.Id changeId;
   private final String targetMessageId;
   private final String newChangeMessage;
+  private final Map<ObjectId, ObjectId> rewrittenTips = new HashMap<>();
 
   DeleteChangeMessageRewriter(Change.Id changeId, String targetMessageId, String newChangeMessage) {
     this.changeId = changeId;
@@ -57,7 +66,7 @@ public class DeleteChangeMessageRewriter implements NoteDbRewriter {
 
   @Override
   public ObjectId rewriteCommitHistory(RevWalk revWalk, ObjectInserter inserter, ObjectId currTip)
-      throws IOException {
+      throws IOException, ConfigInvalidException {
     checkArgument(!currTip.equals(ObjectId.zeroId()));
 
     // Walk from the first commit of the branch.
@@ -66,10 +75,29 @@ public class DeleteChangeMessageRewriter implements NoteDbRewriter {
     revWalk.sort(RevSort.TOPO);
     revWalk.sort(RevSort.REVERSE);
 
+    ObjectReader reader = revWalk.getObjectReader();
     ObjectId newTipId = null;
     RevCommit originalCommit;
     boolean startRewrite = false;
+    ObjectId oldStateBlob = null;
+    ObjectId newStateBlob = null;
+    Map<ObjectId, ObjectId> rewrittenTrees = new HashMap<>();
+    String checkpointMessage = null;
     while ((originalCommit = revWalk.next()) != null) {
+      if (newTipId == null && ChangeNotesCheckpoint.isCheckpoint(originalCommit)) {
+        // The target message may have been folded into the state of a squashed history, which is
+        // carried along in the tree of every later commit.
+        newStateBlob = rewriteCheckpointState(reader, inserter, originalCommit);
+        if (newStateBlob != null) {
+          oldStateBlob = ChangeNotesCheckpoint.stateBlob(reader, originalCommit.getTree());
+          startRewrite = true;
+        }
+        // The squashed history may have been rewritten before, when rewriting the archive.
+        checkpointMessage = ChangeNotesCheckpoint.rewriteMessage(originalCommit, rewrittenTips);
+        if (!checkpointMessage.equals(originalCommit.getFullMessage())) {
+          startRewrite = true;
+        }
+      }
       boolean isTargetCommit = originalCommit.getId().getName().equals(targetMessageId);
       if (!startRewrite && !isTargetCommit) {
         newTipId = originalCommit;
@@ -77,13 +105,66 @@ public class DeleteChangeMessageRewriter implements NoteDbRewriter {
       }
 
       startRewrite = true;
-      String newCommitMessage =
-          isTargetCommit ? createNewCommitMessage(originalCommit) : originalCommit.getFullMessage();
-      newTipId = rewriteOneCommit(originalCommit, newTipId, newCommitMessage, inserter);
+      String newCommitMessage;
+      if (isTargetCommit) {
+        newCommitMessage = createNewCommitMessage(originalCommit);
+      } else if (newTipId == null && checkpointMessage != null) {
+        newCommitMessage = checkpointMessage;
+      } else {
+        newCommitMessage = originalCommit.getFullMessage();
+      }
+      ObjectId treeId = originalCommit.getTree();
+      if (newStateBlob != null
+          && oldStateBlob.equals(ChangeNotesCheckpoint.stateBlob(reader, treeId))) {
+        ObjectId newTreeId = rewrittenTrees.get(treeId);
+        if (newTreeId == null) {
+          newTreeId = ChangeNotesCheckpoint.insertTree(inserter, reader, treeId, newStateBlob);
+          rewrittenTrees.put(treeId, newTreeId);
+        }
+        treeId = newTreeId;
+      }
+      newTipId = rewriteOneCommit(originalCommit, newTipId, newCommitMessage, treeId, inserter);
+    }
+    if (newTipId != null && !newTipId.equals(currTip)) {
+      rewrittenTips.put(currTip.copy(), newTipId);
     }
     return newTipId;
   }
 
+  /**
+   * Replaces the target message in the state of a checkpoint.
+   *
+   * @return the new state blob, or {@code null} if the checkpoint doesn't hold the target message.
+   */
+  @Nullable
+  private ObjectId rewriteCheckpointState(
+      ObjectReader reader, ObjectInserter inserter, RevCommit checkpoint)
+      throws IOException, ConfigInvalidException {
+    ChangeNotesState state = ChangeNotesCheckpoint.readState(reader, checkpoint);
+    boolean found = false;
+    List<ChangeMessage> messages = new ArrayList<>(state.changeMessages().size());
+    for (ChangeMessage m : state.changeMessages()) {
+      if (m.getKey().uuid().equals(targetMessageId)) {
+        found = true;
+        m =
+            ChangeMessage.create(
+                m.getKey(),
+                m.getAuthor(),
+                m.getWrittenOn(),
+                m.getPatchSetId(),
+                newChangeMessage,
+                m.getRealAuthor(),
+                m.getTag());
+      }
+      messages.add(m);
+    }
+    if (!found) {
+      return null;
+    }
+    return ChangeNotesCheckpoint.insertState(
+        inserter, state.toBuilder().changeMessages(messages).build());
+  }
+
   private String createNewCommitMessage(RevCommit commit) {
     byte[] raw = commit.getRawBuffer();
 
@@ -108,6 +189,7 @@ public class DeleteChangeMessageRewriter implements NoteDbRewriter {
    *     parent of 'originalCommit'. For the latter rewritten commits, it's the commit rewritten
    *     just before it.
    * @param commitMessage the full commit message of the new commit.
+   * @param treeId the tree of the new commit.
    * @param inserter the {@code ObjectInserter} for the rewrite process.
    * @return the {@code objectId} of the new commit.
    */
@@ -115,13 +197,14 @@ public class DeleteChangeMessageRewriter implements NoteDbRewriter {
       RevCommit originalCommit,
       ObjectId parentCommitId,
       String commitMessage,
+      ObjectId treeId,
       ObjectInserter inserter)
       throws IOException {
     CommitBuilder cb = new CommitBuilder();
     if (parentCommitId != null) {
       cb.setParentId(parentCommitId);
     }
-    cb.setTreeId(originalCommit.getTree());
+    cb.setTreeId(treeId);
     cb.setMessage(commitMessage);
     cb.setCommitter(originalCommit.getCommitterIdent());
     cb.setAuthor(originalCommit.getAuthorIdent());
@@ -20,6 +20,9 @@ import static java.util.stream.Collectors.toMap;
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.HumanComment;
 import com.google.gerrit.entities.RefNames;
@@ -27,6 +30,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -63,6 +67,7 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
   private final Change.Id changeId;
   private final String uuid;
   private final String newMessage;
+  private final Map<ObjectId, ObjectId> rewrittenTips = new HashMap<>();
 
   @Inject
   DeleteCommentRewriter(
@@ -92,11 +97,35 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
     revWalk.sort(RevSort.REVERSE);
 
     ObjectReader reader = revWalk.getObjectReader();
-    RevCommit newTipCommit = revWalk.next(); // The first commit will not be rewritten.
+    RevCommit newTipCommit = revWalk.next(); // The first commit is only rewritten if squashed.
     Map<String, HumanComment> parentComments =
         getPublishedComments(noteUtil, reader, NoteMap.read(reader, newTipCommit));
 
     boolean rewrite = false;
+    // The squashed history of a checkpoint may have been rewritten before, when rewriting the
+    // archive.
+    String firstMessage =
+        ChangeNotesCheckpoint.isCheckpoint(newTipCommit)
+            ? ChangeNotesCheckpoint.rewriteMessage(newTipCommit, rewrittenTips)
+            : newTipCommit.getFullMessage();
+    if (parentComments.containsKey(uuid)
+        || !firstMessage.equals(newTipCommit.getFullMessage())) {
+      // Only a checkpoint written by MetaSquashRewriter can start with published comments.
+      List<HumanComment> putInComments = getPutInComments(ImmutableMap.of(), parentComments);
+      putInComments.removeIf(c -> !c.key.uuid.equals(uuid));
+      newTipCommit =
+          revWalk.parseCommit(
+              rewriteCommit(
+                  newTipCommit,
+                  null,
+                  firstMessage,
+                  inserter,
+                  reader,
+                  putInComments,
+                  ImmutableList.of()));
+      rewrite = true;
+    }
+
     RevCommit originalCommit;
     while ((originalCommit = revWalk.next()) != null) {
       NoteMap noteMap = NoteMap.read(reader, originalCommit);
@@ -117,10 +146,19 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
       newTipCommit =
           revWalk.parseCommit(
               rewriteCommit(
-                  originalCommit, newTipCommit, inserter, reader, putInComments, deletedComments));
+                  originalCommit,
+                  newTipCommit,
+                  originalCommit.getFullMessage(),
+                  inserter,
+                  reader,
+                  putInComments,
+                  deletedComments));
       parentComments = currComments;
     }
 
+    if (!newTipCommit.equals(currTip)) {
+      rewrittenTips.put(currTip.copy(), newTipCommit.copy());
+    }
     return newTipCommit;
   }
 
@@ -186,7 +224,9 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
    * Rewrites one commit.
    *
    * @param originalCommit the original commit to be rewritten.
-   * @param parentCommit the parent of the new commit.
+   * @param parentCommit the parent of the new commit, or {@code null} if the original commit is a
+   *     root commit whose own notes should be rewritten.
+   * @param commitMessage the full commit message of the new commit.
    * @param inserter the {@code ObjectInserter} for the rewrite process.
    * @param reader the {@code ObjectReader} for the rewrite process.
    * @param putInComments the comments put in by this commit.
@@ -195,7 +235,8 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
    */
   private ObjectId rewriteCommit(
       RevCommit originalCommit,
-      RevCommit parentCommit,
+      @Nullable RevCommit parentCommit,
+      String commitMessage,
       ObjectInserter inserter,
       ObjectReader reader,
       List<HumanComment> putInComments,
@@ -205,7 +246,7 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
         RevisionNoteMap.parse(
             noteUtil.getChangeNoteJson(),
             reader,
-            NoteMap.read(reader, parentCommit),
+            NoteMap.read(reader, parentCommit != null ? parentCommit : originalCommit),
             HumanComment.Status.PUBLISHED);
     RevisionNoteBuilder.Cache cache = new RevisionNoteBuilder.Cache(revNotesMap);
 
@@ -229,9 +270,11 @@ public class DeleteCommentRewriter implements NoteDbRewriter {
     }
 
     CommitBuilder cb = new CommitBuilder();
-    cb.setParentId(parentCommit);
+    if (parentCommit != null) {
+      cb.setParentId(parentCommit);
+    }
     cb.setTreeId(revNotesMap.noteMap.writeTree(inserter));
-    cb.setMessage(originalCommit.getFullMessage());
+    cb.setMessage(commitMessage);
     cb.setCommitter(originalCommit.getCommitterIdent());
     cb.setAuthor(originalCommit.getAuthorIdent());
     cb.setEncoding(originalCommit.getEncoding());
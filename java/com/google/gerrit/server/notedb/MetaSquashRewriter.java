@@ -0,0 +1,183 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_CHECKPOINT;
+import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_PATCH_SET;
+
+import com.google.common.collect.Lists;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.exceptions.StorageException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Squashes the history of a change meta ref into a single checkpoint commit, see {@link
+ * ChangeNotesCheckpoint}.
+ *
+ * <p>The state to fold is the one the caller loaded; the rewrite fails if the meta ref moved since.
+ * The squashed history stays reachable from {@link RefNames#changeMetaHistoryRef}, which is
+ * updated by {@link NoteDbUpdateManager} with the result of {@link #archive}. Rewriters that delete
+ * content from the meta ref are also applied to the archive, see {@link #rewriteArchive}.
+ */
+class MetaSquashRewriter implements NoteDbRewriter {
+  private final ChangeNotesState state;
+  private final PersonIdent serverIdent;
+
+  @Nullable private ObjectId squashedTip;
+
+  MetaSquashRewriter(ChangeNotesState state, PersonIdent serverIdent) {
+    checkArgument(state.metaId() != null, "meta ID is required to squash %s", state.changeId());
+    this.state = state;
+    this.serverIdent = serverIdent;
+  }
+
+  @Override
+  public String getRefName() {
+    return RefNames.changeMetaRef(state.changeId());
+  }
+
+  String getArchiveRefName() {
+    return RefNames.changeMetaHistoryRef(state.changeId());
+  }
+
+  @Override
+  public ObjectId rewriteCommitHistory(RevWalk revWalk, ObjectInserter inserter, ObjectId currTip)
+      throws IOException {
+    checkArgument(!currTip.equals(ObjectId.zeroId()));
+    if (!currTip.equals(state.metaId())) {
+      throw new StorageException(
+          String.format(
+              "Cannot squash %s: expected %s but found %s",
+              getRefName(), state.metaId().name(), currTip.name()));
+    }
+
+    RevCommit tip = revWalk.parseCommit(currTip);
+    if (ChangeNotesCheckpoint.isCheckpoint(tip)) {
+      // Nothing happened since the last squash.
+      return currTip;
+    }
+
+    CommitBuilder cb = new CommitBuilder();
+    cb.setTreeId(
+        ChangeNotesCheckpoint.insertTree(
+            inserter,
+            revWalk.getObjectReader(),
+            tip.getTree(),
+            ChangeNotesCheckpoint.insertState(inserter, state)));
+    cb.setAuthor(serverIdent);
+    cb.setCommitter(serverIdent);
+    cb.setMessage(checkpointMessage(currTip));
+    squashedTip = currTip;
+    return inserter.insert(cb);
+  }
+
+  private String checkpointMessage(ObjectId currTip) {
+    StringBuilder msg = new StringBuilder("Squash change meta history\n\n");
+    PatchSet.Id psId = state.columns().currentPatchSetId();
+    if (psId != null) {
+      msg.append(FOOTER_PATCH_SET.getName()).append(": ").append(psId.get()).append('\n');
+    }
+    msg.append(FOOTER_CHECKPOINT.getName()).append(": ").append(currTip.name()).append('\n');
+    return msg.toString();
+  }
+
+  /**
+   * Archives the squashed history.
+   *
+   * @param revWalk a {@code RevWalk} instance.
+   * @param inserter a {@code ObjectInserter} instance.
+   * @param archiveTip current tip of the archive ref, or the zero ID if it doesn't exist yet.
+   * @return the new tip of the archive ref, or null if nothing was squashed.
+   */
+  @Nullable
+  ObjectId archive(RevWalk revWalk, ObjectInserter inserter, ObjectId archiveTip)
+      throws IOException {
+    if (squashedTip == null) {
+      return null;
+    }
+    if (archiveTip.equals(ObjectId.zeroId())) {
+      return squashedTip;
+    }
+    // The squashed history ends at the previous checkpoint; keep what was archived before it.
+    CommitBuilder cb = new CommitBuilder();
+    cb.setParentIds(squashedTip, archiveTip);
+    cb.setTreeId(revWalk.parseCommit(squashedTip).getTree());
+    cb.setAuthor(serverIdent);
+    cb.setCommitter(serverIdent);
+    cb.setMessage("Archive change meta history\n");
+    return inserter.insert(cb);
+  }
+
+  /**
+   * Applies a rewrite of the meta ref history to the archived history.
+   *
+   * <p>The archive consists of the linear histories that were squashed, which are joined by the
+   * merge commits created by {@link #archive}. Each of these histories is rewritten on its own,
+   * oldest first, so that the rewriter can update the checkpoint footers naming the older ones.
+   *
+   * @param revWalk a {@code RevWalk} instance.
+   * @param inserter a {@code ObjectInserter} instance.
+   * @param archiveTip current tip of the archive ref.
+   * @param rewriter rewriter of the meta ref history.
+   * @return the new tip of the archive ref.
+   */
+  static ObjectId rewriteArchive(
+      RevWalk revWalk, ObjectInserter inserter, ObjectId archiveTip, NoteDbRewriter rewriter)
+      throws IOException, ConfigInvalidException {
+    // The second parent of each merge is the archive of the previous squashes.
+    List<RevCommit> merges = new ArrayList<>();
+    RevCommit oldest = revWalk.parseCommit(archiveTip);
+    while (oldest.getParentCount() == 2) {
+      merges.add(oldest);
+      oldest = revWalk.parseCommit(oldest.getParent(1));
+    }
+
+    ObjectId newTip = rewrite(revWalk, inserter, oldest, rewriter);
+    for (RevCommit merge : Lists.reverse(merges)) {
+      ObjectId squashedTip = rewrite(revWalk, inserter, merge.getParent(0), rewriter);
+      if (squashedTip.equals(merge.getParent(0)) && newTip.equals(merge.getParent(1))) {
+        newTip = merge;
+        continue;
+      }
+      CommitBuilder cb = new CommitBuilder();
+      cb.setParentIds(squashedTip, newTip);
+      cb.setTreeId(revWalk.parseCommit(squashedTip).getTree());
+      cb.setAuthor(merge.getAuthorIdent());
+      cb.setCommitter(merge.getCommitterIdent());
+      cb.setMessage(merge.getFullMessage());
+      newTip = inserter.insert(cb);
+    }
+    return newTip;
+  }
+
+  private static ObjectId rewrite(
+      RevWalk revWalk, ObjectInserter inserter, ObjectId tip, NoteDbRewriter rewriter)
+      throws IOException, ConfigInvalidException {
+    ObjectId newTip = rewriter.rewriteCommitHistory(revWalk, inserter, tip);
+    return newTip != null ? newTip : tip;
+  }
+}
@@ -14,8 +14,10 @@
 
 package com.google.gerrit.server.notedb;
 
+import com.google.gerrit.metrics.Counter0;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Histogram0;
 import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.metrics.Timer0;
 import com.google.inject.Inject;
@@ -43,6 +45,12 @@ class NoteDbMetrics {
    */
   final Timer0 parseLatency;
 
+  /** Number of updates that were combined into one batch ref update by group commit. */
+  final Histogram0 groupCommitBatchSize;
+
+  /** Number of updates that were executed on their own after a combined update failed. */
+  final Counter0 groupCommitFallbacks;
+
   @Inject
   NoteDbMetrics(MetricMaker metrics) {
     updateLatency =
@@ -72,5 +80,17 @@ class NoteDbMetrics {
             new Description("NoteDb parse latency for changes")
                 .setCumulative()
                 .setUnit(Units.MICROSECONDS));
+
+    groupCommitBatchSize =
+        metrics.newHistogram(
+            "notedb/group_commit_batch_size",
+            new Description("Number of NoteDb updates combined into one batch ref update")
+                .setCumulative());
+
+    groupCommitFallbacks =
+        metrics.newCounter(
+            "notedb/group_commit_fallback_count",
+            new Description("NoteDb updates executed on their own after a combined update failed")
+                .setRate());
   }
 }
@@ -18,7 +18,6 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.common.Nullable;
-import com.google.gerrit.git.RefUpdateUtil;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.update.BatchUpdateListener;
 import com.google.gerrit.server.update.ChainedReceiveCommands;
@@ -34,10 +33,14 @@ import org.eclipse.jgit.transport.ReceiveCommand;
 /** Utility class for executing commands on a given repository. */
 class NoteDbUpdateExecutor {
   private final Provider<PersonIdent> serverIdent;
+  private final RefUpdateGroupCommitter groupCommitter;
 
   @Inject
-  NoteDbUpdateExecutor(@GerritPersonIdent Provider<PersonIdent> serverIdent) {
+  NoteDbUpdateExecutor(
+      @GerritPersonIdent Provider<PersonIdent> serverIdent,
+      RefUpdateGroupCommitter groupCommitter) {
     this.serverIdent = serverIdent;
+    this.groupCommitter = groupCommitter;
   }
 
   Optional<BatchRefUpdate> execute(
@@ -77,7 +80,9 @@ class NoteDbUpdateExecutor {
     }
 
     if (!dryrun) {
-      RefUpdateUtil.executeChecked(bru, or.rw);
+      // Listeners may replace the batch ref update, which must then be executed as it is.
+      groupCommitter.execute(
+          or.repo, bru, or.rw, pushCert == null && batchUpdateListeners.isEmpty());
     }
     return Optional.of(bru);
   }
@@ -49,8 +49,10 @@ import com.google.gerrit.server.update.ChainedReceiveCommands;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -96,6 +98,8 @@ public class NoteDbUpdateManager implements AutoCloseable {
   private final ChangeDraftUpdateExecutor.AbstractFactory draftUpdatesExecutorFactory;
   private final ListMultimap<String, RobotCommentUpdate> robotCommentUpdates;
   private final ListMultimap<String, NoteDbRewriter> rewriters;
+  private final List<MetaSquashRewriter> metaSquashRewriters;
+  private final ListMultimap<String, NoteDbRewriter> archiveRewriters;
   private final Set<Change.Id> changesToDelete;
 
   private OpenRepo changeRepo;
@@ -129,6 +133,8 @@ public class NoteDbUpdateManager implements AutoCloseable {
     draftUpdates = MultimapBuilder.hashKeys().arrayListValues().build();
     robotCommentUpdates = MultimapBuilder.hashKeys().arrayListValues().build();
     rewriters = MultimapBuilder.hashKeys().arrayListValues().build();
+    metaSquashRewriters = new ArrayList<>();
+    archiveRewriters = MultimapBuilder.hashKeys().arrayListValues().build();
     changesToDelete = new HashSet<>();
     batchUpdateListeners = ImmutableList.of();
   }
@@ -254,6 +260,7 @@ public class NoteDbUpdateManager implements AutoCloseable {
           "cannot rewrite the same ref %s in one BatchUpdate",
           deleteCommentRewriter.getRefName());
       rewriters.put(deleteCommentRewriter.getRefName(), deleteCommentRewriter);
+      archiveRewriters.put(RefNames.changeMetaHistoryRef(update.getId()), deleteCommentRewriter);
     }
 
     DeleteChangeMessageRewriter deleteChangeMessageRewriter =
@@ -269,6 +276,23 @@ public class NoteDbUpdateManager implements AutoCloseable {
           "cannot rewrite the same ref %s in one BatchUpdate",
           deleteChangeMessageRewriter.getRefName());
       rewriters.put(deleteChangeMessageRewriter.getRefName(), deleteChangeMessageRewriter);
+      archiveRewriters.put(
+          RefNames.changeMetaHistoryRef(update.getId()), deleteChangeMessageRewriter);
+    }
+
+    MetaSquashRewriter metaSquashRewriter = update.getMetaSquashRewriter();
+    if (metaSquashRewriter != null) {
+      // Checks whether there is any ChangeUpdate or rewriter added earlier for the same ref.
+      checkArgument(
+          !changeUpdates.containsKey(metaSquashRewriter.getRefName()),
+          "cannot update & rewrite ref %s in one BatchUpdate",
+          metaSquashRewriter.getRefName());
+      checkArgument(
+          !rewriters.containsKey(metaSquashRewriter.getRefName()),
+          "cannot rewrite the same ref %s in one BatchUpdate",
+          metaSquashRewriter.getRefName());
+      rewriters.put(metaSquashRewriter.getRefName(), metaSquashRewriter);
+      metaSquashRewriters.add(metaSquashRewriter);
     }
 
     changeUpdates.put(update.getRefName(), update);
@@ -383,7 +407,11 @@ public class NoteDbUpdateManager implements AutoCloseable {
       changeRepo.addUpdatesNoLimits(robotCommentUpdates);
     }
     if (!rewriters.isEmpty()) {
+      // The archive is rewritten first, so that the rewritten checkpoints of the meta refs can
+      // name the rewritten squashed histories.
+      addArchiveRewrites(archiveRewriters, changeRepo);
       addRewrites(rewriters, changeRepo);
+      addMetaArchives(metaSquashRewriters, changeRepo);
     }
 
     for (Change.Id id : changesToDelete) {
@@ -433,6 +461,48 @@ public class NoteDbUpdateManager implements AutoCloseable {
     }
   }
 
+  private static void addMetaArchives(List<MetaSquashRewriter> squashes, OpenRepo openRepo)
+      throws IOException {
+    for (MetaSquashRewriter squash : squashes) {
+      String refName = squash.getArchiveRefName();
+      ObjectId oldTip = openRepo.cmds.get(refName).orElse(ObjectId.zeroId());
+      ObjectId newTip = squash.archive(openRepo.rw, openRepo.tempIns, oldTip);
+      if (newTip != null) {
+        openRepo.cmds.add(new ReceiveCommand(oldTip, newTip, refName));
+      }
+    }
+  }
+
+  /**
+   * Applies the rewriters of the meta refs to the squashed history that is archived for the
+   * changes, so that content which is deleted by rewriting the history doesn't stay reachable.
+   */
+  private static void addArchiveRewrites(
+      ListMultimap<String, NoteDbRewriter> rewriters, OpenRepo openRepo) throws IOException {
+    for (Map.Entry<String, Collection<NoteDbRewriter>> entry : rewriters.asMap().entrySet()) {
+      String refName = entry.getKey();
+      ObjectId oldTip = openRepo.cmds.get(refName).orElse(ObjectId.zeroId());
+      if (oldTip.equals(ObjectId.zeroId())) {
+        continue;
+      }
+
+      ObjectId currTip = oldTip;
+      try {
+        for (NoteDbRewriter noteDbRewriter : entry.getValue()) {
+          currTip =
+              MetaSquashRewriter.rewriteArchive(
+                  openRepo.rw, openRepo.tempIns, currTip, noteDbRewriter);
+        }
+      } catch (ConfigInvalidException e) {
+        throw new StorageException("Cannot rewrite archived commit history", e);
+      }
+
+      if (!oldTip.equals(currTip)) {
+        openRepo.cmds.add(new ReceiveCommand(oldTip, currTip, refName));
+      }
+    }
+  }
+
   /**
    * Returns true if we should allow non-fast-forwards while performing the batch ref update. Non-ff
    * updates are necessary in some specific cases:
@@ -0,0 +1,234 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.git.RefUpdateUtil;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Combines concurrent NoteDb ref updates on the same repository into one batch ref update.
+ *
+ * <p>Each {@link NoteDbUpdateManager} executes its own atomic {@link BatchRefUpdate}. Under a high
+ * write load, concurrent updates of the same project then contend for the same ref database locks
+ * and are retried. If {@code noteDb.groupCommitWindow} is set, the first update that arrives for a
+ * repository waits for that long and collects the updates that arrive for the same repository in
+ * the meantime, up to {@code noteDb.groupCommitMaxUpdates}. All of them are then executed as a
+ * single atomic batch ref update.
+ *
+ * <p>Each caller still sees the outcome of its own update: if the combined update fails, e.g.
+ * because one of the updates lost a race, the commands are reset and every caller executes its own
+ * update individually, just as without grouping.
+ *
+ * <p>Updates are only combined if they can share a batch ref update, i.e. if they have the same
+ * reflog identity and non-fast-forward setting, touch disjoint refs and the ref database performs
+ * atomic transactions.
+ */
+@Singleton
+class RefUpdateGroupCommitter {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final NoteDbMetrics metrics;
+  private final long windowNanos;
+  private final int maxUpdates;
+  private final Map<GroupKey, Group> openGroups = new HashMap<>();
+
+  @Inject
+  RefUpdateGroupCommitter(@GerritServerConfig Config cfg, NoteDbMetrics metrics) {
+    this(
+        metrics,
+        ConfigUtil.getTimeUnit(cfg, "noteDb", null, "groupCommitWindow", 0, MILLISECONDS),
+        cfg.getInt("noteDb", "groupCommitMaxUpdates", 100));
+  }
+
+  @VisibleForTesting
+  RefUpdateGroupCommitter(NoteDbMetrics metrics, long windowMs, int maxUpdates) {
+    this.metrics = metrics;
+    this.windowNanos = MILLISECONDS.toNanos(Math.max(0, windowMs));
+    this.maxUpdates = maxUpdates;
+  }
+
+  /**
+   * Executes a batch ref update, possibly combined with concurrent updates of the same repository.
+   *
+   * <p>Has the same semantics as {@link RefUpdateUtil#executeChecked(BatchRefUpdate, RevWalk)}.
+   *
+   * @param repo repository that created {@code bru}.
+   * @param bru batch ref update to execute.
+   * @param rw walk for executing the update if it is executed on its own.
+   * @param combinable whether the update may be combined with other updates; must be false if
+   *     {@code bru} carries a push certificate or was modified by a batch update listener.
+   * @throws IOException if any result was not {@code OK}.
+   */
+  void execute(Repository repo, BatchRefUpdate bru, RevWalk rw, boolean combinable)
+      throws IOException {
+    if (!combinable
+        || windowNanos == 0
+        || maxUpdates < 2
+        || !bru.isAtomic()
+        || !bru.getProposedTimestamps().isEmpty()
+        || !repo.getRefDatabase().performsAtomicTransactions()) {
+      RefUpdateUtil.executeChecked(bru, rw);
+      return;
+    }
+
+    GroupKey key = GroupKey.create(repo, bru);
+    Group group;
+    boolean leader = false;
+    synchronized (openGroups) {
+      group = openGroups.get(key);
+      if (group == null || !group.add(bru)) {
+        group = new Group(repo, key);
+        group.add(bru);
+        openGroups.put(key, group);
+        leader = true;
+      }
+      if (group.updates.size() >= maxUpdates) {
+        openGroups.remove(key, group);
+        group.full.countDown();
+      }
+    }
+
+    if (leader) {
+      Uninterruptibles.awaitUninterruptibly(group.full, windowNanos, NANOSECONDS);
+      synchronized (openGroups) {
+        openGroups.remove(key, group);
+      }
+      group.execute();
+    } else {
+      Uninterruptibles.awaitUninterruptibly(group.done);
+    }
+
+    if (!group.succeeded) {
+      // Redo the update on its own so that the caller gets the result of its own commands.
+      for (ReceiveCommand cmd : bru.getCommands()) {
+        cmd.setResult(ReceiveCommand.Result.NOT_ATTEMPTED);
+      }
+      metrics.groupCommitFallbacks.increment();
+      RefUpdateUtil.executeChecked(bru, rw);
+    }
+  }
+
+  @AutoValue
+  abstract static class GroupKey {
+    static GroupKey create(Repository repo, BatchRefUpdate bru) {
+      PersonIdent ident = bru.getRefLogIdent();
+      return new AutoValue_RefUpdateGroupCommitter_GroupKey(
+          repo,
+          ident != null ? ident.getName() : null,
+          ident != null ? ident.getEmailAddress() : null,
+          bru.isAllowNonFastForwards());
+    }
+
+    // Repository doesn't override equals, hence only updates on the same instance are combined.
+    abstract Repository repo();
+
+    @Nullable
+    abstract String refLogName();
+
+    @Nullable
+    abstract String refLogEmail();
+
+    abstract boolean allowNonFastForwards();
+  }
+
+  private class Group {
+    final Repository repo;
+    final GroupKey key;
+    final List<BatchRefUpdate> updates = new ArrayList<>();
+    final Set<String> refs = new HashSet<>();
+    final CountDownLatch full = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile boolean succeeded;
+
+    Group(Repository repo, GroupKey key) {
+      this.repo = repo;
+      this.key = key;
+    }
+
+    /** Adds an update to the group, unless it touches a ref that is already updated. */
+    boolean add(BatchRefUpdate bru) {
+      for (ReceiveCommand cmd : bru.getCommands()) {
+        if (refs.contains(cmd.getRefName())) {
+          return false;
+        }
+      }
+      for (ReceiveCommand cmd : bru.getCommands()) {
+        refs.add(cmd.getRefName());
+      }
+      updates.add(bru);
+      return true;
+    }
+
+    void execute() {
+      List<BatchRefUpdate> toExecute;
+      synchronized (openGroups) {
+        toExecute = new ArrayList<>(updates);
+      }
+      try {
+        BatchRefUpdate combined = repo.getRefDatabase().newBatchUpdate();
+        combined.setAtomic(true);
+        combined.setAllowNonFastForwards(key.allowNonFastForwards());
+        combined.setRefLogIdent(toExecute.get(0).getRefLogIdent());
+        for (BatchRefUpdate bru : toExecute) {
+          for (ReceiveCommand cmd : bru.getCommands()) {
+            // The reflog message is per command, so that each update keeps its own.
+            if (bru.isRefLogDisabled()) {
+              cmd.disableRefLog();
+            } else if (!cmd.hasCustomRefLog() && bru.getRefLogMessage() != null) {
+              cmd.setRefLogMessage(bru.getRefLogMessage(), bru.isRefLogIncludingResult());
+            }
+            combined.addCommand(cmd);
+          }
+        }
+        try (RevWalk rw = new RevWalk(repo)) {
+          RefUpdateUtil.executeChecked(combined, rw);
+        }
+        succeeded = true;
+        metrics.groupCommitBatchSize.record(toExecute.size());
+      } catch (IOException | RuntimeException e) {
+        logger.atFine().withCause(e).log(
+            "Combined update of %d batch ref updates failed, executing them one by one",
+            toExecute.size());
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+}
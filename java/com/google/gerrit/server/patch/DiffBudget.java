@@ -0,0 +1,158 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.gerrit.server.cancellation.RequestCancelledException;
+import com.google.gerrit.server.cancellation.RequestStateContext;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+
+/**
+ * Time budget for a single diff computation that runs on the {@link DiffExecutor}.
+ *
+ * <p>The JGit diff algorithms do not react to thread interrupts, hence cancelling the {@link
+ * Future} of a diff computation leaves the computation running until it finishes. Comparators and
+ * algorithms that are wrapped by a {@code DiffBudget} check the budget periodically and abort the
+ * computation by throwing {@link DiffBudgetExceededException} once the budget is exhausted or has
+ * been cancelled.
+ *
+ * <p>The thread that waits for the result uses {@link #await(Future)}, which in addition to the
+ * time budget aborts the wait as soon as the current request is cancelled (see {@link
+ * RequestStateContext}), e.g. because the client disconnected or a request deadline was exceeded.
+ */
+public class DiffBudget {
+  /** Number of comparator invocations between two budget checks. Must be a power of 2. */
+  private static final int CHECK_INTERVAL = 1 << 12;
+
+  /** Maximum time for which the waiting thread blocks before checking for request cancellation. */
+  private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /** Creates a budget that is exhausted {@code timeoutMillis} milliseconds from now. */
+  public static DiffBudget create(long timeoutMillis) {
+    return new DiffBudget(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+  }
+
+  private final long deadlineNanos;
+  private volatile boolean cancelled;
+
+  private DiffBudget(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /** Cancels the budget so that computations using it are aborted at their next check. */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /** Whether the budget has been used up or was cancelled. */
+  public boolean isExhausted() {
+    return cancelled || System.nanoTime() - deadlineNanos >= 0;
+  }
+
+  /**
+   * Waits for the result of a diff computation that uses this budget.
+   *
+   * <p>On return with an exception the caller is responsible for cancelling both this budget and
+   * the {@code future}, except for {@link RequestCancelledException} for which this is already
+   * done.
+   *
+   * @throws TimeoutException if the budget was exhausted before the result became available
+   * @throws RequestCancelledException if the current request was cancelled while waiting
+   */
+  public <T> T await(Future<T> future)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    while (true) {
+      long remainingNanos = deadlineNanos - System.nanoTime();
+      if (remainingNanos <= 0 || cancelled) {
+        throw new TimeoutException();
+      }
+      try {
+        return future.get(Math.min(remainingNanos, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        try {
+          RequestStateContext.abortIfCancelled();
+        } catch (RequestCancelledException rce) {
+          cancel();
+          future.cancel(true);
+          throw rce;
+        }
+      }
+    }
+  }
+
+  /** Wraps a diff algorithm so that it stops the computation once this budget is exhausted. */
+  public DiffAlgorithm wrap(DiffAlgorithm algorithm) {
+    return new DiffAlgorithm() {
+      @Override
+      public <S extends Sequence> EditList diffNonCommon(
+          SequenceComparator<? super S> cmp, S a, S b) {
+        return algorithm.diffNonCommon(wrap(cmp), a, b);
+      }
+    };
+  }
+
+  /** Wraps a sequence comparator so that it stops the computation once this budget is exhausted. */
+  public <S extends Sequence> SequenceComparator<S> wrap(SequenceComparator<? super S> cmp) {
+    return new CheckingComparator<>(cmp);
+  }
+
+  private class CheckingComparator<S extends Sequence> extends SequenceComparator<S> {
+    private final SequenceComparator<? super S> delegate;
+    private int calls;
+
+    CheckingComparator(SequenceComparator<? super S> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean equals(S a, int ai, S b, int bi) {
+      checkBudget();
+      return delegate.equals(a, ai, b, bi);
+    }
+
+    @Override
+    public int hash(S seq, int ptr) {
+      checkBudget();
+      return delegate.hash(seq, ptr);
+    }
+
+    @Override
+    public Edit reduceCommonStartEnd(S a, S b, Edit e) {
+      return delegate.reduceCommonStartEnd(a, b, e);
+    }
+
+    private void checkBudget() {
+      if ((++calls & (CHECK_INTERVAL - 1)) == 0 && isExhausted()) {
+        throw new DiffBudgetExceededException();
+      }
+    }
+  }
+
+  /** Thrown from within a diff computation whose {@link DiffBudget} is exhausted. */
+  public static class DiffBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    DiffBudgetExceededException() {
+      super("diff computation exceeded its time budget");
+    }
+  }
+}
@@ -79,9 +79,30 @@ class DiffContentCalculator {
   private ImmutableList<Edit> correctForDifferencesInNewlineAtEnd(
       TextSource a, TextSource b, ImmutableList<Edit> edits) {
     // a.src.size() is the size ignoring a newline at the end whereas a.size() considers it.
-    int aSize = a.src.size();
-    int bSize = b.src.size();
+    return correctForDifferencesInNewlineAtEnd(
+        a.src.size(),
+        a.src.isMissingNewlineAtEnd(),
+        b.src.size(),
+        b.src.isMissingNewlineAtEnd(),
+        edits);
+  }
 
+  /**
+   * Adds or extends the edit at the end of the file if a newline at the end of the file was added
+   * or deleted.
+   *
+   * @param aSize number of lines of the old text, ignoring a newline at the end
+   * @param aMissingNewlineAtEnd whether the old text doesn't end with a newline
+   * @param bSize number of lines of the new text, ignoring a newline at the end
+   * @param bMissingNewlineAtEnd whether the new text doesn't end with a newline
+   * @param edits sorted edits between the old and the new text
+   */
+  static ImmutableList<Edit> correctForDifferencesInNewlineAtEnd(
+      int aSize,
+      boolean aMissingNewlineAtEnd,
+      int bSize,
+      boolean bMissingNewlineAtEnd,
+      ImmutableList<Edit> edits) {
     if (edits.isEmpty() && (aSize == 0 || bSize == 0)) {
       // The diff was requested for a file which was either added or deleted but which JGit doesn't
       // consider a file addition/deletion (e.g. requesting a diff for the old file name of a
@@ -96,7 +117,7 @@ class DiffContentCalculator {
     }
 
     Optional<Edit> lastEdit = getLast(edits);
-    if (isNewlineAtEndDeleted(a, b)) {
+    if (!aMissingNewlineAtEnd && bMissingNewlineAtEnd) {
       Optional<Edit> lastLineEdit = lastEdit.filter(edit -> edit.getEndA() == aSize);
 
       if (lastLineEdit.isPresent()) {
@@ -123,7 +144,7 @@ class DiffContentCalculator {
       Edit newlineEdit = new Edit(aSize, aSize + 1, bSize, bSize);
       return newEditsBuilder.addAll(edits).add(newlineEdit).build();
 
-    } else if (isNewlineAtEndAdded(a, b)) {
+    } else if (aMissingNewlineAtEnd && !bMissingNewlineAtEnd) {
       Optional<Edit> lastLineEdit = lastEdit.filter(edit -> edit.getEndB() == bSize);
       if (lastLineEdit.isPresent()) {
         Edit edit = lastLineEdit.get();
@@ -156,14 +177,6 @@ class DiffContentCalculator {
     return list.isEmpty() ? Optional.empty() : Optional.ofNullable(list.get(list.size() - 1));
   }
 
-  private boolean isNewlineAtEndDeleted(TextSource a, TextSource b) {
-    return !a.src.isMissingNewlineAtEnd() && b.src.isMissingNewlineAtEnd();
-  }
-
-  private boolean isNewlineAtEndAdded(TextSource a, TextSource b) {
-    return a.src.isMissingNewlineAtEnd() && !b.src.isMissingNewlineAtEnd();
-  }
-
   private DiffContent packContent(
       TextSource a, TextSource b, boolean ignoredWhitespace, ImmutableList<Edit> edits) {
     SparseFileContentBuilder diffA = new SparseFileContentBuilder(a.size());
@@ -32,6 +32,7 @@ import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
 import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.patch.diff.ModifiedFilesCache;
 import com.google.gerrit.server.patch.diff.ModifiedFilesCacheImpl;
@@ -83,6 +84,7 @@ public class DiffOperationsImpl implements DiffOperations {
   private final ModifiedFilesLoader.Factory modifiedFilesLoaderFactory;
   private final FileDiffCache fileDiffCache;
   private final BaseCommitUtil baseCommitUtil;
+  private final boolean coarseFallback;
 
   public static Module module() {
     return new CacheModule() {
@@ -104,13 +106,15 @@ public class DiffOperationsImpl implements DiffOperations {
       ModifiedFilesCacheImpl modifiedFilesCacheImpl,
       ModifiedFilesLoader.Factory modifiedFilesLoaderFactory,
       FileDiffCache fileDiffCache,
-      BaseCommitUtil baseCommit) {
+      BaseCommitUtil baseCommit,
+      @GerritServerConfig Config cfg) {
     this.repoManager = repoManager;
     this.modifiedFilesCache = modifiedFilesCache;
     this.modifiedFilesCacheImpl = modifiedFilesCacheImpl;
     this.modifiedFilesLoaderFactory = modifiedFilesLoaderFactory;
     this.fileDiffCache = fileDiffCache;
     this.baseCommitUtil = baseCommit;
+    this.coarseFallback = cfg.getBoolean("cache", "git_file_diff", "coarseFallback", false);
   }
 
   @Override
@@ -312,38 +316,66 @@ public class DiffOperationsImpl implements DiffOperations {
    * Lookup the file diffs for the input {@code keys}. For results where the cache reports negative
    * results, e.g. due to timeouts in the cache loader, this method requests the diff again using
    * the fallback algorithm {@link DiffAlgorithm#HISTOGRAM_NO_FALLBACK}.
+   *
+   * <p>If {@code cache.git_file_diff.coarseFallback} is enabled, the fallback algorithm is run with
+   * the same time budget, and if that is exceeded as well the diff is computed with the degraded
+   * {@link DiffAlgorithm#HISTOGRAM_COARSE} algorithm. Since the diff algorithm is part of the cache
+   * key, the results of each step are cached separately and are not recomputed on later requests.
    */
   private ImmutableMap<String, FileDiffOutput> getModifiedFilesForKeys(
       List<FileDiffCacheKey> keys, DiffOptions diffOptions) throws DiffNotAvailableException {
-    ImmutableMap<FileDiffCacheKey, FileDiffOutput> fileDiffs = fileDiffCache.getAll(keys);
-    List<FileDiffCacheKey> fallbackKeys = new ArrayList<>();
-
     ImmutableList.Builder<FileDiffOutput> result = ImmutableList.builder();
 
     // Use the fallback diff algorithm for negative results
+    List<FileDiffCacheKey> fallbackKeys =
+        collectNegativeResults(
+            fileDiffCache.getAll(keys),
+            result,
+            DiffAlgorithm.HISTOGRAM_NO_FALLBACK,
+            // We don't enforce timeouts with the fallback algorithm unless the coarse fallback is
+            // enabled. Timeouts were introduced because of a bug in JGit that happens only when the
+            // histogram algorithm uses Myers as fallback. See
+            // https://issues.gerritcodereview.com/issues/40000618
+            /* useTimeout= */ coarseFallback);
+    if (coarseFallback) {
+      fallbackKeys =
+          collectNegativeResults(
+              fileDiffCache.getAll(fallbackKeys),
+              result,
+              DiffAlgorithm.HISTOGRAM_COARSE,
+              /* useTimeout= */ false);
+    }
+    result.addAll(fileDiffCache.getAll(fallbackKeys).values());
+    return mapByFilePath(result.build(), diffOptions);
+  }
+
+  /**
+   * Adds all non-negative {@code fileDiffs} to {@code result} and returns the keys with which the
+   * negative ones should be requested again.
+   */
+  private static List<FileDiffCacheKey> collectNegativeResults(
+      ImmutableMap<FileDiffCacheKey, FileDiffOutput> fileDiffs,
+      ImmutableList.Builder<FileDiffOutput> result,
+      DiffAlgorithm fallbackAlgorithm,
+      boolean useTimeout) {
+    List<FileDiffCacheKey> fallbackKeys = new ArrayList<>();
     for (FileDiffCacheKey key : fileDiffs.keySet()) {
       FileDiffOutput diff = fileDiffs.get(key);
       if (diff.isNegative()) {
-        FileDiffCacheKey fallbackKey =
+        fallbackKeys.add(
             createFileDiffCacheKey(
                 key.project(),
                 key.oldCommit(),
                 key.newCommit(),
                 key.newFilePath(),
-                // Use the fallback diff algorithm
-                DiffAlgorithm.HISTOGRAM_NO_FALLBACK,
-                // We don't enforce timeouts with the fallback algorithm. Timeouts were introduced
-                // because of a bug in JGit that happens only when the histogram algorithm uses
-                // Myers as fallback. See https://issues.gerritcodereview.com/issues/40000618
-                /* useTimeout= */ false,
-                key.whitespace());
-        fallbackKeys.add(fallbackKey);
+                fallbackAlgorithm,
+                useTimeout,
+                key.whitespace()));
       } else {
         result.add(diff);
       }
     }
-    result.addAll(fileDiffCache.getAll(fallbackKeys).values());
-    return mapByFilePath(result.build(), diffOptions);
+    return fallbackKeys;
   }
 
   /**
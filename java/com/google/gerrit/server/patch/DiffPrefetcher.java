@@ -0,0 +1,236 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.BooleanProjectConfig;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.update.RepoView;
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Computes the file lists and file diffs of new patch sets in the background so that they are
+ * already cached when the first reviewer opens the change.
+ *
+ * <p>Prefetching is enabled per project by {@link BooleanProjectConfig#PREFETCH_DIFFS}. The diffs
+ * are computed against the parent commit (or auto-merge) and against the previous patch set on a
+ * low priority queue. Patch sets that modify more than {@code diff.prefetchMaxFiles} files only get
+ * their file lists prefetched.
+ */
+@Singleton
+public class DiffPrefetcher implements RevisionCreatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  public static Module module() {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        DynamicSet.bind(binder(), RevisionCreatedListener.class).to(DiffPrefetcher.class);
+      }
+    };
+  }
+
+  private enum Result {
+    SCHEDULED,
+    QUEUE_FULL,
+    PREFETCHED,
+    FILE_LIST_ONLY,
+    FAILED
+  }
+
+  private final ProjectCache projectCache;
+  private final ChangeNotes.Factory notesFactory;
+  private final GitRepositoryManager repoManager;
+  private final DiffOperations diffOperations;
+  private final Counter1<Result> prefetchCount;
+  private final int maxFiles;
+  private final int maxQueued;
+  @Nullable private final ScheduledThreadPoolExecutor executor;
+
+  @Inject
+  DiffPrefetcher(
+      @GerritServerConfig Config cfg,
+      WorkQueue workQueue,
+      MetricMaker metricMaker,
+      ProjectCache projectCache,
+      ChangeNotes.Factory notesFactory,
+      GitRepositoryManager repoManager,
+      DiffOperations diffOperations) {
+    this.projectCache = projectCache;
+    this.notesFactory = notesFactory;
+    this.repoManager = repoManager;
+    this.diffOperations = diffOperations;
+    this.maxFiles = cfg.getInt("diff", "prefetchMaxFiles", 500);
+    this.maxQueued = cfg.getInt("diff", "prefetchMaxQueued", 1000);
+    this.prefetchCount =
+        metricMaker.newCounter(
+            "diff/prefetch/count",
+            new Description("Number of patch sets for which diff prefetching was attempted")
+                .setRate()
+                .setUnit("patch sets"),
+            Field.ofEnum(Result.class, "result", Metadata.Builder::eventType)
+                .description("The result of the prefetch attempt.")
+                .build());
+    int threads = cfg.getInt("diff", "prefetchThreads", 1);
+    this.executor =
+        threads > 0
+            ? workQueue.createQueue(threads, "DiffPrefetch", Thread.MIN_PRIORITY, true)
+            : null;
+  }
+
+  @Override
+  public void onRevisionCreated(RevisionCreatedListener.Event event) {
+    if (executor == null) {
+      return;
+    }
+    Project.NameKey project = Project.nameKey(event.getChange().project);
+    PatchSet.Id psId =
+        PatchSet.id(Change.id(event.getChange()._number), event.getRevision()._number);
+    try {
+      if (!projectCache
+          .get(project)
+          .map(p -> p.is(BooleanProjectConfig.PREFETCH_DIFFS))
+          .orElse(false)) {
+        return;
+      }
+      if (executor.getQueue().size() >= maxQueued) {
+        logger.atFine().log(
+            "Skipping diff prefetch for patch set %s in project %s: queue is full",
+            psId, project);
+        prefetchCount.increment(Result.QUEUE_FULL);
+        return;
+      }
+      executor.execute(new PrefetchTask(project, psId));
+      prefetchCount.increment(Result.SCHEDULED);
+    } catch (RuntimeException e) {
+      // Prefetching must never fail the update that created the patch set.
+      logger.atWarning().withCause(e).log(
+          "Failed to schedule diff prefetch for patch set %s in project %s", psId, project);
+      prefetchCount.increment(Result.FAILED);
+    }
+  }
+
+  private class PrefetchTask implements Runnable {
+    private final Project.NameKey project;
+    private final PatchSet.Id psId;
+
+    PrefetchTask(Project.NameKey project, PatchSet.Id psId) {
+      this.project = project;
+      this.psId = psId;
+    }
+
+    @Override
+    public void run() {
+      try {
+        ChangeNotes notes = notesFactory.createChecked(project, psId.changeId());
+        PatchSet ps = notes.getPatchSets().get(psId);
+        if (ps == null) {
+          return;
+        }
+        PatchSet prior = notes.getPatchSets().get(PatchSet.id(psId.changeId(), psId.get() - 1));
+        boolean complete = prefetch(ps.commitId(), prior != null ? prior.commitId() : null);
+        prefetchCount.increment(complete ? Result.PREFETCHED : Result.FILE_LIST_ONLY);
+      } catch (Exception e) {
+        // Prefetching is best effort, the diffs will be computed when they are requested.
+        logger.atWarning().withCause(e).log(
+            "Failed to prefetch diffs for patch set %s in project %s", psId, project);
+        prefetchCount.increment(Result.FAILED);
+      }
+    }
+
+    /**
+     * Loads the file lists of the patch set and, if they don't exceed {@link #maxFiles}, the file
+     * diffs.
+     *
+     * @return whether the file diffs were prefetched
+     */
+    private boolean prefetch(ObjectId commit, @Nullable ObjectId priorCommit)
+        throws IOException, DiffNotAvailableException {
+      Map<String, ?> filesAgainstParent;
+      Map<String, ?> filesAgainstPrior = null;
+      try (Repository repo = repoManager.openRepository(project);
+          ObjectInserter ins = repo.newObjectInserter();
+          ObjectReader reader = ins.newReader();
+          RevWalk rw = new RevWalk(reader)) {
+        filesAgainstParent =
+            diffOperations.loadModifiedFilesAgainstParentIfNecessary(
+                project,
+                commit,
+                /* parentNum= */ 0,
+                new RepoView(repo, rw, ins),
+                ins,
+                /* enableRenameDetection= */ true);
+        if (priorCommit != null) {
+          filesAgainstPrior =
+              diffOperations.loadModifiedFilesIfNecessary(
+                  project,
+                  priorCommit,
+                  commit,
+                  rw,
+                  repo.getConfig(),
+                  /* enableRenameDetection= */ true);
+        }
+      }
+
+      boolean complete = true;
+      if (filesAgainstParent.size() <= maxFiles) {
+        diffOperations.listModifiedFilesAgainstParent(
+            project, commit, /* parentNum= */ 0, DiffOptions.DEFAULTS);
+      } else {
+        complete = false;
+      }
+      if (filesAgainstPrior != null) {
+        if (filesAgainstPrior.size() <= maxFiles) {
+          diffOperations.listModifiedFiles(project, priorCommit, commit, DiffOptions.DEFAULTS);
+        } else {
+          complete = false;
+        }
+      }
+      return complete;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("prefetch diffs of patch set %s in project %s", psId, project);
+    }
+  }
+}
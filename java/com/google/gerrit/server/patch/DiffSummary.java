@@ -36,11 +36,13 @@ public class DiffSummary implements Serializable {
   private transient String[] paths;
   private transient int insertions;
   private transient int deletions;
+  private transient boolean approximate;
 
-  public DiffSummary(String[] paths, int insertions, int deletions) {
+  public DiffSummary(String[] paths, int insertions, int deletions, boolean approximate) {
     this.paths = paths;
     this.insertions = insertions;
     this.deletions = deletions;
+    this.approximate = approximate;
   }
 
   public List<String> getPaths() {
@@ -51,9 +53,18 @@ public class DiffSummary implements Serializable {
     return new ChangedLines(insertions, deletions);
   }
 
+  /**
+   * Whether the summary includes coarse diffs, which were computed because the regular diff of a
+   * file exceeded its time budget. The number of inserted and deleted lines is then approximate.
+   */
+  public boolean isApproximate() {
+    return approximate;
+  }
+
   private void writeObject(ObjectOutputStream output) throws IOException {
     writeVarInt32(output, insertions);
     writeVarInt32(output, deletions);
+    output.writeBoolean(approximate);
     writeVarInt32(output, paths.length);
     try (DeflaterOutputStream out = new DeflaterOutputStream(output)) {
       for (String p : paths) {
@@ -65,6 +76,7 @@ public class DiffSummary implements Serializable {
   private void readObject(ObjectInputStream input) throws IOException {
     insertions = readVarInt32(input);
     deletions = readVarInt32(input);
+    approximate = input.readBoolean();
     paths = new String[readVarInt32(input)];
     try (InflaterInputStream in = new InflaterInputStream(input)) {
       for (int i = 0; i < paths.length; i++) {
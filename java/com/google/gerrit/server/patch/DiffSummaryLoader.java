@@ -58,6 +58,7 @@ public class DiffSummaryLoader implements Callable<DiffSummary> {
     List<String> r = new ArrayList<>(fileDiffs.size());
     int linesInserted = 0;
     int linesDeleted = 0;
+    boolean approximate = false;
     for (String path : fileDiffs.keySet()) {
       if (Patch.isMagic(path)) {
         continue;
@@ -65,6 +66,7 @@ public class DiffSummaryLoader implements Callable<DiffSummary> {
       FileDiffOutput fileDiff = fileDiffs.get(path);
       linesInserted += fileDiff.insertions();
       linesDeleted += fileDiff.deletions();
+      approximate |= fileDiff.isCoarse();
       switch (fileDiff.changeType()) {
         case ADDED:
         case MODIFIED:
@@ -84,6 +86,7 @@ public class DiffSummaryLoader implements Callable<DiffSummary> {
           break;
       }
     }
-    return new DiffSummary(r.stream().sorted().toArray(String[]::new), linesInserted, linesDeleted);
+    return new DiffSummary(
+        r.stream().sorted().toArray(String[]::new), linesInserted, linesDeleted, approximate);
   }
 }
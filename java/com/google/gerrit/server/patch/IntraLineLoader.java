@@ -19,9 +19,11 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.jgit.diff.ReplaceEdit;
 import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.patch.DiffBudget.DiffBudgetExceededException;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.util.ArrayList;
@@ -38,6 +40,7 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.MyersDiff;
+import org.eclipse.jgit.diff.SequenceComparator;
 import org.eclipse.jgit.lib.Config;
 
 public class IntraLineLoader implements Callable<IntraLineDiff> {
@@ -78,13 +81,14 @@ public class IntraLineLoader implements Callable<IntraLineDiff> {
 
   @Override
   public IntraLineDiff call() throws Exception {
+    DiffBudget budget = DiffBudget.create(timeoutMillis);
     Future<IntraLineDiff> result =
         diffExecutor.submit(
             () ->
                 IntraLineLoader.compute(
-                    args.aText(), args.bText(), args.edits(), args.editsDueToRebase()));
+                    args.aText(), args.bText(), args.edits(), args.editsDueToRebase(), budget));
     try {
-      return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      return budget.await(result);
     } catch (InterruptedException | TimeoutException e) {
       logger.atWarning().log(
           "%s ms timeout reached for IntraLineDiff"
@@ -95,9 +99,13 @@ public class IntraLineLoader implements Callable<IntraLineDiff> {
           args.path(),
           key.getBlobA().name(),
           key.getBlobB().name());
+      budget.cancel();
       result.cancel(true);
       return new IntraLineDiff(IntraLineDiff.Status.TIMEOUT);
     } catch (ExecutionException e) {
+      if (e.getCause() instanceof DiffBudgetExceededException) {
+        return new IntraLineDiff(IntraLineDiff.Status.TIMEOUT);
+      }
       // If there was an error computing the result, carry it
       // up to the caller so the cache knows this key is invalid.
       Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
@@ -110,6 +118,19 @@ public class IntraLineLoader implements Callable<IntraLineDiff> {
       Text bText,
       ImmutableList<Edit> immutableEdits,
       ImmutableSet<Edit> immutableEditsDueToRebase) {
+    return compute(aText, bText, immutableEdits, immutableEditsDueToRebase, null);
+  }
+
+  /**
+   * Computes the intraline diff. If a {@code budget} is given, the computation is aborted with a
+   * {@link DiffBudgetExceededException} as soon as the budget is exhausted.
+   */
+  static IntraLineDiff compute(
+      Text aText,
+      Text bText,
+      ImmutableList<Edit> immutableEdits,
+      ImmutableSet<Edit> immutableEditsDueToRebase,
+      @Nullable DiffBudget budget) {
     List<Edit> edits = new ArrayList<>(immutableEdits);
     combineLineEdits(edits, immutableEditsDueToRebase, aText, bText);
 
@@ -119,7 +140,8 @@ public class IntraLineLoader implements Callable<IntraLineDiff> {
       if (e.getType() == Edit.Type.REPLACE) {
         CharText a = new CharText(aText, e.getBeginA(), e.getEndA());
         CharText b = new CharText(bText, e.getBeginB(), e.getEndB());
-        CharTextComparator cmp = new CharTextComparator();
+        SequenceComparator<CharText> cmp =
+            budget != null ? budget.wrap(new CharTextComparator()) : new CharTextComparator();
 
         List<Edit> wordEdits = MyersDiff.INSTANCE.diff(cmp, a, b);
 
@@ -48,6 +48,7 @@ public class PatchListCacheImpl implements PatchListCache {
 
         factory(DiffSummaryLoader.Factory.class);
         persist(DIFF_SUMMARY, DiffSummaryKey.class, DiffSummary.class)
+            .version(1)
             .maximumWeight(10 << 20)
             .weigher(DiffSummaryWeigher.class)
             .diskLimit(1 << 30);
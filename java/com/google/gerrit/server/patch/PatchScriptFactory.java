@@ -16,6 +16,7 @@ package com.google.gerrit.server.patch;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.gerrit.server.project.ProjectCache.illegalState;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.flogger.FluentLogger;
@@ -26,6 +27,7 @@ import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.client.DiffPreferencesInfo;
+import com.google.gerrit.extensions.client.DiffPreferencesInfo.Whitespace;
 import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.PatchSetUtil;
@@ -33,6 +35,7 @@ import com.google.gerrit.server.edit.ChangeEdit;
 import com.google.gerrit.server.edit.ChangeEditUtil;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.LargeObjectException;
+import com.google.gerrit.server.mime.FileTypeRegistry;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.patch.PatchScriptBuilder.IntraLineDiffCalculatorResult;
 import com.google.gerrit.server.patch.filediff.FileDiffOutput;
@@ -95,6 +98,7 @@ public class PatchScriptFactory implements Callable<PatchScript> {
   private final ProjectCache projectCache;
   private final DiffOperations diffOperations;
   private final DiffValidators diffValidators;
+  private final FileTypeRegistry registry;
 
   private final Change.Id changeId;
 
@@ -111,6 +115,7 @@ public class PatchScriptFactory implements Callable<PatchScript> {
       ProjectCache projectCache,
       DiffOperations diffOperations,
       DiffValidators diffValidators,
+      FileTypeRegistry registry,
       @Assisted ChangeNotes notes,
       @Assisted String fileName,
       @Assisted("patchSetA") @Nullable PatchSet.Id patchSetA,
@@ -127,6 +132,7 @@ public class PatchScriptFactory implements Callable<PatchScript> {
     this.projectCache = projectCache;
     this.diffOperations = diffOperations;
     this.diffValidators = diffValidators;
+    this.registry = registry;
 
     this.fileName = fileName;
     this.psa = patchSetA;
@@ -148,6 +154,7 @@ public class PatchScriptFactory implements Callable<PatchScript> {
       ProjectCache projectCache,
       DiffOperations diffOperations,
       DiffValidators diffValidators,
+      FileTypeRegistry registry,
       @Assisted ChangeNotes notes,
       @Assisted String fileName,
       @Assisted int parentNum,
@@ -164,6 +171,7 @@ public class PatchScriptFactory implements Callable<PatchScript> {
     this.projectCache = projectCache;
     this.diffOperations = diffOperations;
     this.diffValidators = diffValidators;
+    this.registry = registry;
 
     this.fileName = fileName;
     this.psa = null;
@@ -179,6 +187,25 @@ public class PatchScriptFactory implements Callable<PatchScript> {
   public PatchScript call()
       throws LargeObjectException, AuthException, InvalidChangeOperationException, IOException,
           PermissionBackendException {
+    return load(this::getPatchScript);
+  }
+
+  /**
+   * Returns the diff as a {@link StreamingDiff} that writes the JSON representation of the diff
+   * directly to the response.
+   *
+   * <p>Permissions are checked and the file diff is computed (or loaded from the diff cache)
+   * eagerly, the file contents are only read when the result is written.
+   */
+  public StreamingDiff stream()
+      throws LargeObjectException, AuthException, InvalidChangeOperationException, IOException,
+          PermissionBackendException {
+    return load((git, aId, bId) -> getStreamingDiff(aId, bId));
+  }
+
+  private <T> T load(DiffLoader<T> loader)
+      throws LargeObjectException, AuthException, InvalidChangeOperationException, IOException,
+          PermissionBackendException {
 
     if (!permissionBackend.user(currentUser).change(notes).test(ChangePermission.READ)) {
       throw new NoSuchChangeException(changeId);
@@ -206,7 +233,7 @@ public class PatchScriptFactory implements Callable<PatchScript> {
           }
           bId = edit.get().getEditCommit();
         }
-        return getPatchScript(git, aId, bId);
+        return loader.load(git, aId, bId);
       } catch (DiffNotAvailableException e) {
         throw new StorageException(e);
       } catch (IOException e) {
@@ -224,16 +251,40 @@ public class PatchScriptFactory implements Callable<PatchScript> {
     }
   }
 
+  @FunctionalInterface
+  private interface DiffLoader<T> {
+    T load(Repository git, @Nullable ObjectId aId, ObjectId bId)
+        throws IOException, DiffNotAvailableException, LargeObjectException;
+  }
+
   private PatchScript getPatchScript(Repository git, ObjectId aId, ObjectId bId)
       throws IOException, DiffNotAvailableException, LargeObjectException {
-    FileDiffOutput fileDiffOutput =
-        aId == null
-            ? diffOperations.getModifiedFileAgainstParent(
-                notes.getProjectName(), bId, parentNum, fileName, diffPrefs.ignoreWhitespace)
-            : diffOperations.getModifiedFile(
-                notes.getProjectName(), aId, bId, fileName, diffPrefs.ignoreWhitespace);
+    FileDiffOutput fileDiffOutput = getFileDiffOutput(aId, bId);
     diffValidators.validate(fileDiffOutput);
-    return newBuilder().toPatchScript(git, fileDiffOutput);
+    return newBuilder(fileDiffOutput.isCoarse()).toPatchScript(git, fileDiffOutput);
+  }
+
+  private StreamingDiff getStreamingDiff(@Nullable ObjectId aId, ObjectId bId)
+      throws DiffNotAvailableException, LargeObjectException {
+    FileDiffOutput fileDiffOutput = getFileDiffOutput(aId, bId);
+    diffValidators.validate(fileDiffOutput);
+    ProjectState projectState =
+        projectCache.get(notes.getProjectName()).orElseThrow(illegalState(notes.getProjectName()));
+    return new StreamingDiff(
+        repoManager,
+        registry,
+        projectState,
+        fileDiffOutput,
+        diffPrefs.ignoreWhitespace != Whitespace.IGNORE_NONE);
+  }
+
+  private FileDiffOutput getFileDiffOutput(@Nullable ObjectId aId, ObjectId bId)
+      throws DiffNotAvailableException {
+    return aId == null
+        ? diffOperations.getModifiedFileAgainstParent(
+            notes.getProjectName(), bId, parentNum, fileName, diffPrefs.ignoreWhitespace)
+        : diffOperations.getModifiedFile(
+            notes.getProjectName(), aId, bId, fileName, diffPrefs.ignoreWhitespace);
   }
 
   private Optional<ObjectId> getAId() {
@@ -253,10 +304,12 @@ public class PatchScriptFactory implements Callable<PatchScript> {
     return Optional.of(getCommitId(psb));
   }
 
-  private PatchScriptBuilder newBuilder() {
+  private PatchScriptBuilder newBuilder(boolean coarseDiff) {
     final PatchScriptBuilder b = builderFactory.get();
     b.setDiffPrefs(diffPrefs);
-    if (diffPrefs.intralineDifference) {
+    // Coarse diffs are only computed if the regular diff exceeded its time budget. Computing
+    // intraline differences for them would likely run into the intraline timeout as well.
+    if (diffPrefs.intralineDifference && !coarseDiff) {
       b.setIntraLineDiffCalculator(
           new IntraLineDiffCalculator(patchListCache, notes.getProjectName(), diffPrefs));
     }
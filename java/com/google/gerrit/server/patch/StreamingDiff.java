@@ -0,0 +1,553 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.PatchScript;
+import com.google.gerrit.entities.Patch;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.restapi.BinaryResult;
+import com.google.gerrit.server.change.FileContentUtil;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.mime.FileTypeRegistry;
+import com.google.gerrit.server.patch.filediff.FileDiffOutput;
+import com.google.gerrit.server.patch.filediff.TaggedEdit;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gson.stream.JsonWriter;
+import eu.medsea.mimeutil.MimeUtil2;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.RawParseUtils;
+import org.mozilla.universalchardet.UniversalDetector;
+
+/**
+ * Diff of a single file that is written as JSON {@code DiffInfo} directly to the response.
+ *
+ * <p>In contrast to {@link PatchScriptFactory} + {@code DiffInfoCreator} neither the file contents
+ * nor the content entries are held in memory. The file contents are read twice as streams: once
+ * to count the lines and detect charset and MIME type, and once to emit the content entries while
+ * walking the edits of the {@link FileDiffOutput}. Memory usage is bounded by the longest line,
+ * independent of the size of the files.
+ *
+ * <p>Intraline differences and web links are not supported. For binary files no content lines
+ * are emitted.
+ */
+public class StreamingDiff extends BinaryResult {
+  /** Prefix that protects JSON responses against XSSI, see {@code RestApiServlet}. */
+  private static final byte[] JSON_MAGIC = ")]}'\n".getBytes(UTF_8);
+
+  /** Number of leading bytes of a file that are used to detect its MIME type. */
+  private static final int MIME_DETECTION_BYTES = 8 << 10;
+
+  /**
+   * Maximum number of lines in a single common entry of lines that only differ in whitespace.
+   * Longer runs are split into several entries since these lines need to be buffered.
+   */
+  private static final int MAX_COMMON_ENTRY_LINES = 1000;
+
+  private final GitRepositoryManager repoManager;
+  private final FileTypeRegistry registry;
+  private final ProjectState projectState;
+  private final FileDiffOutput diff;
+  private final boolean ignoreWhitespace;
+
+  StreamingDiff(
+      GitRepositoryManager repoManager,
+      FileTypeRegistry registry,
+      ProjectState projectState,
+      FileDiffOutput diff,
+      boolean ignoreWhitespace) {
+    this.repoManager = repoManager;
+    this.registry = registry;
+    this.projectState = projectState;
+    this.diff = diff;
+    this.ignoreWhitespace = ignoreWhitespace;
+    setContentType("application/json");
+    setCharacterEncoding(UTF_8);
+  }
+
+  @Override
+  public void writeTo(OutputStream os) throws IOException {
+    Project.NameKey project = projectState.getNameKey();
+    try (Repository repo = repoManager.openRepository(project);
+        ObjectReader reader = repo.newObjectReader()) {
+      String oldName = FilePathAdapter.getOldPath(diff.oldPath(), diff.changeType());
+      String newName =
+          FilePathAdapter.getNewPath(diff.oldPath(), diff.newPath(), diff.changeType());
+      Side a = resolve(reader, sideAPath(oldName, newName), diff.oldCommitId(), null);
+      Side b = resolve(reader, sideBPath(newName), diff.newCommitId(), a);
+
+      os.write(JSON_MAGIC);
+      JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(os, UTF_8)));
+      json.setHtmlSafe(true);
+      json.beginObject();
+      writeMeta(json, "meta_a", a, MoreObjects.firstNonNull(oldName, newName));
+      writeMeta(json, "meta_b", b, newName);
+      json.name("change_type").value(diff.changeType().name());
+      if (!diff.headerLines().isEmpty()) {
+        json.name("diff_header").beginArray();
+        for (String line : diff.headerLines()) {
+          json.value(line);
+        }
+        json.endArray();
+      }
+      json.name("content").beginArray();
+      boolean binary = diff.patchType().orElse(null) == Patch.PatchType.BINARY;
+      if (!binary) {
+        try (LineReader readerA = a.open(reader);
+            LineReader readerB = b.open(reader)) {
+          new ContentWriter(json, readerA, readerB).write(a, b);
+        }
+      }
+      json.endArray();
+      if (binary) {
+        json.name("binary").value(true);
+      }
+      json.endObject();
+      json.flush();
+      os.write('\n');
+    }
+  }
+
+  @Nullable
+  private String sideAPath(@Nullable String oldName, String newName) {
+    switch (diff.changeType()) {
+      case ADDED:
+        return null;
+      case DELETED:
+      case MODIFIED:
+        return newName;
+      case COPIED:
+      case RENAMED:
+      case REWRITE:
+      default:
+        return oldName;
+    }
+  }
+
+  @Nullable
+  private String sideBPath(String newName) {
+    return diff.changeType() == Patch.ChangeType.DELETED ? null : newName;
+  }
+
+  private void writeMeta(JsonWriter json, String field, Side side, String name)
+      throws IOException {
+    if (side.mode == FileMode.MISSING) {
+      return;
+    }
+    json.name(field).beginObject();
+    json.name("name").value(name);
+    json.name("content_type")
+        .value(
+            FileContentUtil.resolveContentType(
+                projectState,
+                name,
+                PatchScript.FileMode.fromJgitFileMode(side.mode),
+                side.mimeType));
+    json.name("lines").value(side.displayLines());
+    json.endObject();
+  }
+
+  private Side resolve(
+      ObjectReader reader, @Nullable String path, ObjectId within, @Nullable Side other)
+      throws IOException {
+    try {
+      if (Patch.COMMIT_MSG.equals(path) || Patch.MERGE_LIST.equals(path)) {
+        if (other == null && diff.comparisonType().isAgainstParentOrAutoMerge()) {
+          return Side.missing(path);
+        }
+        Text src =
+            Patch.COMMIT_MSG.equals(path)
+                ? Text.forCommit(reader, within)
+                : Text.forMergeList(diff.comparisonType(), reader, within);
+        if (src == Text.EMPTY) {
+          return Side.missing(path);
+        }
+        Side side = new Side(path, ObjectId.zeroId(), FileMode.REGULAR_FILE, src.getContent());
+        side.scan(reader, null);
+        return side;
+      }
+
+      TreeWalk tw = null;
+      if (path != null) {
+        try (RevWalk rw = new RevWalk(reader)) {
+          tw = TreeWalk.forPath(reader, path, rw.parseTree(within));
+        }
+      }
+      if (tw == null) {
+        return Side.missing(path);
+      }
+      ObjectId id = tw.getObjectId(0);
+      FileMode mode = tw.getFileMode(0);
+      Side side;
+      if (mode.getObjectType() == Constants.OBJ_BLOB) {
+        side = new Side(path, id, mode, null);
+      } else if (mode.getObjectType() == Constants.OBJ_COMMIT) {
+        byte[] content = ("Subproject commit " + ObjectId.toString(id)).getBytes(UTF_8);
+        side = new Side(path, id, mode, content);
+      } else {
+        side = new Side(path, id, mode, Text.NO_BYTES);
+      }
+      if (other != null && side.isSameContent(other)) {
+        side.copyScanResult(other);
+      } else {
+        side.scan(reader, registry);
+      }
+      return side;
+    } catch (IOException err) {
+      throw new IOException("Cannot read " + within.name() + ":" + path, err);
+    }
+  }
+
+  /** One side of the diff. */
+  private static class Side {
+    static Side missing(@Nullable String path) {
+      Side side = new Side(path, ObjectId.zeroId(), FileMode.MISSING, Text.NO_BYTES);
+      side.missingNewlineAtEnd = true;
+      return side;
+    }
+
+    @Nullable final String path;
+    final ObjectId id;
+    final FileMode mode;
+
+    /** In-memory content, {@code null} if the content is streamed from the blob {@link #id}. */
+    @Nullable final byte[] content;
+
+    /** Number of lines, ignoring a newline at the end (see {@link Text#size()}). */
+    int lines;
+
+    boolean missingNewlineAtEnd;
+    Charset charset = Text.charset(null);
+    String mimeType = MimeUtil2.UNKNOWN_MIME_TYPE.toString();
+
+    Side(@Nullable String path, ObjectId id, FileMode mode, @Nullable byte[] content) {
+      this.path = path;
+      this.id = id;
+      this.mode = mode;
+      this.content = content;
+    }
+
+    /** Number of lines as shown in the diff, including an empty line after a newline at the end. */
+    int displayLines() {
+      return missingNewlineAtEnd ? lines : lines + 1;
+    }
+
+    boolean isSameContent(Side other) {
+      return content == null && other.content == null && id.equals(other.id);
+    }
+
+    void copyScanResult(Side other) {
+      lines = other.lines;
+      missingNewlineAtEnd = other.missingNewlineAtEnd;
+      charset = other.charset;
+      mimeType = other.mimeType;
+    }
+
+    /**
+     * Reads the content once to count the lines, and to detect the charset and, if {@code
+     * registry} is set, the MIME type.
+     */
+    void scan(ObjectReader reader, @Nullable FileTypeRegistry registry) throws IOException {
+      UniversalDetector detector = new UniversalDetector(null);
+      byte[] head = new byte[MIME_DETECTION_BYTES];
+      int headLength = 0;
+      int newlines = 0;
+      long length = 0;
+      int last = -1;
+      byte[] buf = new byte[8192];
+      try (InputStream in = openStream(reader)) {
+        int n;
+        while ((n = in.read(buf)) > 0) {
+          for (int i = 0; i < n; i++) {
+            if (buf[i] == '\n') {
+              newlines++;
+            }
+          }
+          if (headLength < head.length) {
+            int len = Math.min(n, head.length - headLength);
+            System.arraycopy(buf, 0, head, headLength, len);
+            headLength += len;
+          }
+          if (!detector.isDone()) {
+            detector.handleData(buf, 0, n);
+          }
+          length += n;
+          last = buf[n - 1];
+        }
+      }
+      detector.dataEnd();
+      charset = Text.charset(detector.getDetectedCharset());
+      missingNewlineAtEnd = last != '\n';
+      lines = length == 0 ? 0 : (missingNewlineAtEnd ? newlines + 1 : newlines);
+      if (registry != null && length > 0 && mode != FileMode.SYMLINK) {
+        mimeType = registry.getMimeType(path, Arrays.copyOf(head, headLength)).toString();
+      }
+    }
+
+    LineReader open(ObjectReader reader) throws IOException {
+      return new LineReader(openStream(reader), charset, displayLines());
+    }
+
+    private InputStream openStream(ObjectReader reader) throws IOException {
+      if (content != null) {
+        return new ByteArrayInputStream(content);
+      }
+      return reader.open(id, Constants.OBJ_BLOB).openStream();
+    }
+  }
+
+  /** Reads the lines of a file one by one, each line without its terminating newline. */
+  private static class LineReader implements AutoCloseable {
+    private final InputStream in;
+    private final Charset charset;
+    private final int size;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    private int limit;
+    private byte[] line = new byte[256];
+    private int next;
+
+    LineReader(InputStream in, Charset charset, int size) {
+      this.in = in;
+      this.charset = charset;
+      this.size = size;
+    }
+
+    int size() {
+      return size;
+    }
+
+    /** Index of the line that is returned by the next call of {@link #readLine()}. */
+    int next() {
+      return next;
+    }
+
+    String readLine() throws IOException {
+      int len = read(true);
+      return RawParseUtils.decode(charset, line, 0, len);
+    }
+
+    /** Skips the next line without decoding it. */
+    void skipLine() throws IOException {
+      read(false);
+    }
+
+    private int read(boolean keep) throws IOException {
+      checkState(next < size, "no more lines: size = %s", size);
+      int len = 0;
+      while (true) {
+        if (pos == limit) {
+          limit = Math.max(in.read(buf), 0);
+          pos = 0;
+          if (limit == 0) {
+            break;
+          }
+        }
+        byte c = buf[pos++];
+        if (c == '\n') {
+          break;
+        }
+        if (keep) {
+          if (len == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+          }
+          line[len++] = c;
+        }
+      }
+      next++;
+      return len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the content entries. Produces the same entries as {@code DiffInfoCreator} does for a
+   * {@link PatchScript} with unlimited context, except that long runs of lines which differ only in
+   * whitespace are split into several entries.
+   */
+  private class ContentWriter {
+    private final JsonWriter json;
+    private final LineReader a;
+    private final LineReader b;
+    private final List<String> commonA = new ArrayList<>();
+    private final List<String> commonB = new ArrayList<>();
+    private boolean inAbEntry;
+
+    ContentWriter(JsonWriter json, LineReader a, LineReader b) {
+      this.json = json;
+      this.a = a;
+      this.b = b;
+    }
+
+    void write(Side sideA, Side sideB) throws IOException {
+      if (sideA.isSameContent(sideB) && diff.edits().isEmpty()) {
+        // The files are identical (100% rename or copy), send the entire file.
+        while (a.next() < a.size()) {
+          appendAb(a.readLine());
+        }
+        closeEntry();
+        return;
+      }
+
+      ImmutableList<Edit> edits =
+          DiffContentCalculator.correctForDifferencesInNewlineAtEnd(
+              sideA.lines,
+              sideA.missingNewlineAtEnd,
+              sideB.lines,
+              sideB.missingNewlineAtEnd,
+              diff.edits().stream().map(TaggedEdit::jgitEdit).collect(toImmutableList()));
+      ImmutableSet<Edit> editsDueToRebase =
+          diff.edits().stream()
+              .filter(TaggedEdit::dueToRebase)
+              .map(TaggedEdit::jgitEdit)
+              .collect(toImmutableSet());
+      for (Edit edit : edits) {
+        if (edit.getType() == Edit.Type.EMPTY) {
+          continue;
+        }
+        addCommon(edit.getBeginA());
+        checkState(
+            a.next() == edit.getBeginA(), "nextA = %s; want %s", a.next(), edit.getBeginA());
+        checkState(
+            b.next() == edit.getBeginB(), "nextB = %s; want %s", b.next(), edit.getBeginB());
+        addDiff(edit.getEndA(), edit.getEndB(), editsDueToRebase.contains(edit));
+      }
+      addCommon(a.size());
+      closeEntry();
+    }
+
+    private void addCommon(int end) throws IOException {
+      end = Math.min(end, a.size());
+      while (a.next() < end) {
+        if (!ignoreWhitespace) {
+          appendAb(a.readLine());
+          b.skipLine();
+          continue;
+        }
+        String lineA = a.readLine();
+        String lineB = b.readLine();
+        if (lineA.equals(lineB)) {
+          appendAb(lineA);
+        } else {
+          appendCommon(lineA, lineB);
+        }
+      }
+    }
+
+    private void addDiff(int endA, int endB, boolean dueToRebase) throws IOException {
+      checkState(a.next() < endA || b.next() < endB);
+      closeEntry();
+      json.beginObject();
+      if (a.next() < endA) {
+        json.name("a").beginArray();
+        while (a.next() < endA) {
+          json.value(a.readLine());
+        }
+        json.endArray();
+      }
+      if (b.next() < endB) {
+        json.name("b").beginArray();
+        while (b.next() < endB) {
+          json.value(b.readLine());
+        }
+        json.endArray();
+      }
+      if (dueToRebase) {
+        json.name("due_to_rebase").value(true);
+      }
+      json.endObject();
+    }
+
+    private void appendAb(String line) throws IOException {
+      flushCommon();
+      if (!inAbEntry) {
+        json.beginObject().name("ab").beginArray();
+        inAbEntry = true;
+      }
+      json.value(line);
+    }
+
+    private void appendCommon(String lineA, String lineB) throws IOException {
+      closeAb();
+      commonA.add(lineA);
+      commonB.add(lineB);
+      if (commonA.size() >= MAX_COMMON_ENTRY_LINES) {
+        flushCommon();
+      }
+    }
+
+    private void closeEntry() throws IOException {
+      closeAb();
+      flushCommon();
+    }
+
+    private void closeAb() throws IOException {
+      if (inAbEntry) {
+        json.endArray().endObject();
+        inAbEntry = false;
+      }
+    }
+
+    private void flushCommon() throws IOException {
+      if (commonA.isEmpty()) {
+        return;
+      }
+      json.beginObject();
+      json.name("a").beginArray();
+      for (String line : commonA) {
+        json.value(line);
+      }
+      json.endArray();
+      json.name("b").beginArray();
+      for (String line : commonB) {
+        json.value(line);
+      }
+      json.endArray();
+      json.name("common").value(true);
+      json.endObject();
+      commonA.clear();
+      commonB.clear();
+    }
+  }
+}
@@ -18,6 +18,7 @@ import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
@@ -63,6 +64,11 @@ public class Text extends RawText {
       d.dataEnd();
       encoding = d.getDetectedCharset();
     }
+    return charset(encoding);
+  }
+
+  /** Returns the charset for the given detected encoding, falling back to ISO-8859-1. */
+  static Charset charset(@Nullable String encoding) {
     if (encoding == null) {
       return ISO_8859_1;
     }
@@ -449,6 +449,11 @@ public class FileDiffCacheImpl implements FileDiffCache {
                 .edits(asTaggedEdits(mainGitDiff.edits(), rebaseEdits))
                 .size(newSize)
                 .sizeDelta(newSize - oldSize)
+                .coarse(
+                    augmentedKey.key().diffAlgorithm()
+                        == GitFileDiffCacheImpl.DiffAlgorithm.HISTOGRAM_COARSE
+                        ? Optional.of(true)
+                        : Optional.empty())
                 .build();
 
         result.put(augmentedKey.key(), fileDiff);
@@ -107,6 +107,13 @@ public abstract class FileDiffOutput implements Serializable {
    */
   public abstract Optional<Boolean> negative();
 
+  /**
+   * Returns {@code true} if the diff was computed with the degraded block-level algorithm because
+   * the regular diff computation exceeded its time budget. Intraline differences are not computed
+   * for coarse diffs.
+   */
+  public abstract Optional<Boolean> coarse();
+
   public abstract Builder toBuilder();
 
   /** A boolean indicating if all underlying edits of the file diff are due to rebase. */
@@ -177,6 +184,14 @@ public abstract class FileDiffOutput implements Serializable {
     return negative().isPresent() && negative().get();
   }
 
+  /**
+   * Returns {@code true} if the diff was computed with the degraded block-level algorithm and hence
+   * is less precise than a regular diff.
+   */
+  public boolean isCoarse() {
+    return coarse().isPresent() && coarse().get();
+  }
+
   public static Builder builder() {
     return new AutoValue_FileDiffOutput.Builder();
   }
@@ -204,6 +219,9 @@ public abstract class FileDiffOutput implements Serializable {
     if (negative().isPresent()) {
       result += 1;
     }
+    if (coarse().isPresent()) {
+      result += 1;
+    }
     return result;
   }
 
@@ -238,6 +256,8 @@ public abstract class FileDiffOutput implements Serializable {
 
     public abstract Builder negative(Optional<Boolean> value);
 
+    public abstract Builder coarse(Optional<Boolean> value);
+
     public abstract FileDiffOutput build();
   }
 
@@ -265,6 +285,9 @@ public abstract class FileDiffOutput implements Serializable {
     private static final FieldDescriptor NEW_MODE_DESCRIPTOR =
         FileDiffOutputProto.getDescriptor().findFieldByNumber(14);
 
+    private static final FieldDescriptor COARSE_DESCRIPTOR =
+        FileDiffOutputProto.getDescriptor().findFieldByNumber(15);
+
     @Override
     public byte[] serialize(FileDiffOutput fileDiff) {
       ObjectIdConverter idConverter = ObjectIdConverter.create();
@@ -309,6 +332,10 @@ public abstract class FileDiffOutput implements Serializable {
         builder.setNegative(fileDiff.negative().get());
       }
 
+      if (fileDiff.coarse().isPresent()) {
+        builder.setCoarse(fileDiff.coarse().get());
+      }
+
       if (fileDiff.oldMode().isPresent()) {
         builder.setOldMode(FILE_MODE_CONVERTER.reverse().convert(fileDiff.oldMode().get()));
       }
@@ -357,6 +384,9 @@ public abstract class FileDiffOutput implements Serializable {
       if (proto.hasField(NEGATIVE_DESCRIPTOR)) {
         builder.negative(Optional.of(proto.getNegative()));
       }
+      if (proto.hasField(COARSE_DESCRIPTOR)) {
+        builder.coarse(Optional.of(proto.getCoarse()));
+      }
       if (proto.hasField(OLD_MODE_DESCRIPTOR)) {
         builder.oldMode(Optional.of(FILE_MODE_CONVERTER.convert(proto.getOldMode())));
       }
@@ -42,6 +42,8 @@ import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.TraceContext;
 import com.google.gerrit.server.logging.TraceContext.TraceTimer;
+import com.google.gerrit.server.patch.DiffBudget;
+import com.google.gerrit.server.patch.DiffBudget.DiffBudgetExceededException;
 import com.google.gerrit.server.patch.DiffExecutor;
 import com.google.gerrit.server.patch.DiffNotAvailableException;
 import com.google.gerrit.server.util.git.CloseablePool;
@@ -115,15 +117,31 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
   /** Enum for the supported diff algorithms for the file diff computation. */
   public enum DiffAlgorithm {
     HISTOGRAM_WITH_FALLBACK_MYERS,
-    HISTOGRAM_NO_FALLBACK
+    HISTOGRAM_NO_FALLBACK,
+
+    /**
+     * Degraded block-level histogram diff. Regions with many repeated lines are not broken down
+     * further but reported as a single replace edit, which bounds the computation time for very
+     * large or generated files.
+     */
+    HISTOGRAM_COARSE
   }
 
+  /**
+   * Maximum number of entries per hash chain for the {@link DiffAlgorithm#HISTOGRAM_COARSE}
+   * algorithm. Regions exceeding this limit are emitted as a single edit.
+   */
+  private static final int COARSE_MAX_CHAIN_LENGTH = 16;
+
   /** Creates a new JGit diff algorithm instance using the Gerrit's {@link DiffAlgorithm} enum. */
   public static class DiffAlgorithmFactory {
     public static org.eclipse.jgit.diff.DiffAlgorithm create(DiffAlgorithm diffAlgorithm) {
       HistogramDiff result = new HistogramDiff();
       if (diffAlgorithm.equals(DiffAlgorithm.HISTOGRAM_NO_FALLBACK)) {
         result.setFallbackAlgorithm(null);
+      } else if (diffAlgorithm.equals(DiffAlgorithm.HISTOGRAM_COARSE)) {
+        result.setFallbackAlgorithm(null);
+        result.setMaxChainLength(COARSE_MAX_CHAIN_LENGTH);
       }
       return result;
     }
@@ -330,10 +348,12 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
      * of the {@code key} parameter.
      *
      * <ul>
-     *   <li>If {@code useTimeout} is true, the computation is performed with timeout enforcement
-     *       (identified by {@link #timeoutMillis}). If the timeout is exceeded, this method returns
-     *       a negative result using {@link GitFileDiff#createNegative(AbbreviatedObjectId,
-     *       AbbreviatedObjectId, String)}.
+     *   <li>If {@code useTimeout} is true, the computation is performed with a {@link DiffBudget}
+     *       of {@link #timeoutMillis}. If the budget is exhausted, the computation is aborted and
+     *       this method returns a negative result using {@link
+     *       GitFileDiff#createNegative(AbbreviatedObjectId, AbbreviatedObjectId, String)}. If the
+     *       current request is cancelled while waiting, the computation is aborted as well and the
+     *       {@link com.google.gerrit.server.cancellation.RequestCancelledException} is propagated.
      *   <li>If {@code useTimeouts} is false, the computation is performed synchronously without
      *       timeout enforcement.
      */
@@ -345,6 +365,7 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
           return GitFileDiff.create(diffEntry, getFileHeader(formatter, diffEntry));
         }
       }
+      DiffBudget budget = DiffBudget.create(timeoutMillis);
       // This submits the DiffFormatter to a different thread. The CloseablePool and our usage of it
       // ensures that any DiffFormatter instance and the ObjectReader it references internally is
       // only used by a single thread concurrently. However, ObjectReaders have a reference to
@@ -354,22 +375,36 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
           diffExecutor.submit(
               () -> {
                 try (CloseablePool<DiffFormatter>.Handle formatter = diffPool.get()) {
-                  return GitFileDiff.create(diffEntry, getFileHeader(formatter, diffEntry));
+                  // The diff algorithms don't react on interrupts. Use an algorithm that checks the
+                  // budget so that abandoned computations don't keep occupying the diff executor.
+                  formatter
+                      .get()
+                      .setDiffAlgorithm(
+                          budget.wrap(DiffAlgorithmFactory.create(key.diffAlgorithm())));
+                  try {
+                    return GitFileDiff.create(diffEntry, getFileHeader(formatter, diffEntry));
+                  } finally {
+                    formatter
+                        .get()
+                        .setDiffAlgorithm(DiffAlgorithmFactory.create(key.diffAlgorithm()));
+                  }
                 }
               });
       try {
         // We employ the timeout because of a bug in Myers diff in JGit. See
         // https://issues.gerritcodereview.com/issues/40000618 for more details. The bug may happen
-        // if the algorithm used in diffs is HISTOGRAM_WITH_FALLBACK_MYERS.
-        return fileDiffFuture.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        // if the algorithm used in diffs is HISTOGRAM_WITH_FALLBACK_MYERS. The timeout also bounds
+        // the time that is spent on diffs of huge files.
+        return budget.await(fileDiffFuture);
       } catch (InterruptedException | TimeoutException e) {
         // If timeout happens, create a negative result
-        metrics.timeouts.increment();
-        return GitFileDiff.createNegative(
-            AbbreviatedObjectId.fromObjectId(key.oldTree()),
-            AbbreviatedObjectId.fromObjectId(key.newTree()),
-            key.newFilePath());
+        budget.cancel();
+        fileDiffFuture.cancel(true);
+        return createTimeoutResult(key);
       } catch (ExecutionException e) {
+        if (e.getCause() instanceof DiffBudgetExceededException) {
+          return createTimeoutResult(key);
+        }
         // If there was an error computing the result, carry it
         // up to the caller so the cache knows this key is invalid.
         Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
@@ -377,6 +412,14 @@ public class GitFileDiffCacheImpl implements GitFileDiffCache {
       }
     }
 
+    private GitFileDiff createTimeoutResult(GitFileDiffCacheKey key) {
+      metrics.timeouts.increment();
+      return GitFileDiff.createNegative(
+          AbbreviatedObjectId.fromObjectId(key.oldTree()),
+          AbbreviatedObjectId.fromObjectId(key.newTree()),
+          key.newFilePath());
+    }
+
     /**
      * Extract the file path from a {@link DiffEntry}. Returns the old file path if the entry
      * corresponds to a deleted file, otherwise it returns the new file path.
@@ -14,6 +14,8 @@
 
 package com.google.gerrit.server.permissions;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
@@ -23,6 +25,7 @@ import com.google.gerrit.server.git.ChangesByProjectCache;
 import com.google.gerrit.server.query.change.ChangeData;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -73,8 +76,36 @@ public class GitVisibleChangeFilter {
       }
     }
     HashMap<Change.Id, ChangeData> result = new HashMap<>();
-    changeDatas
-        .filter(cd -> changes.contains(cd.getId()))
+    filterReadable(
+            forProject,
+            changeDatas
+                .filter(cd -> changes.contains(cd.getId()))
+                .collect(toImmutableList()))
+        .forEach(
+            cd -> {
+              if (result.containsKey(cd.getId())) {
+                logger.atWarning().log(
+                    "Duplicate change datas for the repo %s: [%s, %s]",
+                    projectName, cd, result.get(cd.getId()));
+              }
+              result.put(cd.getId(), cd);
+            });
+    return ImmutableMap.copyOf(result);
+  }
+
+  /**
+   * Returns the readable changes. Visibility is checked in bulk, grouped by destination branch. If
+   * that fails, visibility is checked one by one so that only the changes which cannot be checked
+   * are pretended to be invisible.
+   */
+  private static List<ChangeData> filterReadable(
+      PermissionBackend.ForProject forProject, List<ChangeData> changeDatas) {
+    try {
+      return forProject.filterReadable(changeDatas);
+    } catch (PermissionBackendException e) {
+      logger.atFine().withCause(e).log("Cannot test read permission in bulk");
+    }
+    return changeDatas.stream()
         .filter(
             cd -> {
               try {
@@ -87,16 +118,7 @@ public class GitVisibleChangeFilter {
                 return false;
               }
             })
-        .forEach(
-            cd -> {
-              if (result.containsKey(cd.getId())) {
-                logger.atWarning().log(
-                    "Duplicate change datas for the repo %s: [%s, %s]",
-                    projectName, cd, result.get(cd.getId()));
-              }
-              result.put(cd.getId(), cd);
-            });
-    return ImmutableMap.copyOf(result);
+        .collect(toImmutableList());
   }
 
   /** Get a stream of changes by loading them individually. */
@@ -14,11 +14,14 @@
 
 package com.google.gerrit.server.permissions;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toSet;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.Sets;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
@@ -42,6 +45,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Ref;
@@ -264,6 +268,42 @@ public abstract class PermissionBackend {
       return allowed;
     }
 
+    /**
+     * Filter a collection of changes to the changes that the scoped user can read.
+     *
+     * <p>Changes are grouped by project and destination branch, so that permissions are evaluated
+     * once per branch rather than once per change. Changes of projects whose repository does not
+     * exist are filtered out.
+     *
+     * @param changes candidate changes; may be empty.
+     * @return the readable changes, in the order of {@code changes}.
+     * @throws PermissionBackendException backend cannot access its internal state.
+     */
+    public ImmutableList<ChangeData> filterReadable(Collection<ChangeData> changes)
+        throws PermissionBackendException {
+      requireNonNull(changes, "changes");
+      ListMultimap<Project.NameKey, ChangeData> byProject =
+          MultimapBuilder.linkedHashKeys().arrayListValues().build();
+      for (ChangeData cd : changes) {
+        byProject.put(cd.project(), cd);
+      }
+      Set<ChangeData> readable = Sets.newIdentityHashSet();
+      for (Map.Entry<Project.NameKey, Collection<ChangeData>> e : byProject.asMap().entrySet()) {
+        try {
+          readable.addAll(project(e.getKey()).filterReadable(e.getValue()));
+        } catch (PermissionBackendException err) {
+          if (err.getCause() instanceof RepositoryNotFoundException) {
+            logger.atWarning().withCause(err).log(
+                "Could not find repository of the project %s", e.getKey().get());
+            // Do not include changes of this project because it doesn't exist
+          } else {
+            throw err;
+          }
+        }
+      }
+      return inOrder(changes, readable);
+    }
+
     /**
      * Additional filter for changes query for reducing the cardinality of the results for current
      * user.
@@ -347,6 +387,35 @@ public abstract class PermissionBackend {
     public abstract Collection<Ref> filter(
         Collection<Ref> refs, Repository repo, RefFilterOptions opts)
         throws PermissionBackendException;
+
+    /**
+     * Filter a collection of changes of this project to the changes that the scoped user can read.
+     *
+     * <p>Changes are grouped by destination branch and checked by {@link
+     * ForRef#filterReadable(Collection)}.
+     *
+     * @param changes candidate changes of this project; may be empty.
+     * @return the readable changes, in the order of {@code changes}.
+     * @throws PermissionBackendException backend cannot access its internal state, or a change
+     *     could not be loaded.
+     */
+    public ImmutableList<ChangeData> filterReadable(Collection<ChangeData> changes)
+        throws PermissionBackendException {
+      ListMultimap<String, ChangeData> byBranch =
+          MultimapBuilder.linkedHashKeys().arrayListValues().build();
+      for (ChangeData cd : changes) {
+        try {
+          byBranch.put(cd.branchOrThrow().branch(), cd);
+        } catch (StorageException e) {
+          throw new PermissionBackendException("unavailable", e);
+        }
+      }
+      Set<ChangeData> readable = Sets.newIdentityHashSet();
+      for (Map.Entry<String, Collection<ChangeData>> e : byBranch.asMap().entrySet()) {
+        readable.addAll(ref(e.getKey()).filterReadable(e.getValue()));
+      }
+      return inOrder(changes, readable);
+    }
   }
 
   /** Options for filtering refs using {@link ForProject}. */
@@ -431,6 +500,30 @@ public abstract class PermissionBackend {
     }
 
     public abstract BooleanCondition testCond(RefPermission perm);
+
+    /**
+     * Filter a collection of changes that target this reference to the changes that the scoped
+     * user can read.
+     *
+     * <p>The default implementation tests {@link ChangePermission#READ} for each change.
+     * Implementations should override this method if the visibility of the reference can be
+     * checked once for all changes.
+     *
+     * @param changes candidate changes with this reference as destination; may be empty.
+     * @return the readable changes, in the order of {@code changes}.
+     * @throws PermissionBackendException backend cannot access its internal state, or a change
+     *     could not be loaded.
+     */
+    public ImmutableList<ChangeData> filterReadable(Collection<ChangeData> changes)
+        throws PermissionBackendException {
+      ImmutableList.Builder<ChangeData> readable = ImmutableList.builder();
+      for (ChangeData cd : changes) {
+        if (change(cd).test(ChangePermission.READ)) {
+          readable.add(cd);
+        }
+      }
+      return readable.build();
+    }
   }
 
   /** PermissionBackend scoped to a user, project, reference and change. */
@@ -538,4 +631,9 @@ public abstract class PermissionBackend {
           .collect(toSet());
     }
   }
+
+  private static ImmutableList<ChangeData> inOrder(
+      Collection<ChangeData> changes, Set<ChangeData> readable) {
+    return changes.stream().filter(readable::contains).collect(toImmutableList());
+  }
 }
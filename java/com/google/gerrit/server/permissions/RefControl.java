@@ -517,6 +517,38 @@ public class RefControl {
       return getProjectControl().controlFor(changeDataFactory.create(notes)).asForChange();
     }
 
+    @Override
+    public ImmutableList<ChangeData> filterReadable(Collection<ChangeData> changes)
+        throws PermissionBackendException {
+      // A change is only visible if its destination branch is visible, so the branch is checked
+      // once for all changes. Private changes and changes of other branches are checked one by one.
+      Boolean refReadable = null;
+      ImmutableList.Builder<ChangeData> readable = ImmutableList.builder();
+      for (ChangeData cd : changes) {
+        boolean onThisRef;
+        boolean isPrivate;
+        try {
+          onThisRef = refName.equals(cd.branchOrThrow().branch());
+          isPrivate = cd.isPrivateOrThrow();
+        } catch (StorageException e) {
+          throw new PermissionBackendException("unavailable", e);
+        }
+        if (!onThisRef || isPrivate) {
+          if (change(cd).test(ChangePermission.READ)) {
+            readable.add(cd);
+          }
+          continue;
+        }
+        if (refReadable == null) {
+          refReadable = testOrFalse(RefPermission.READ);
+        }
+        if (refReadable) {
+          readable.add(cd);
+        }
+      }
+      return readable.build();
+    }
+
     @Override
     public void check(RefPermission perm) throws AuthException, PermissionBackendException {
       if (!can(perm)) {
@@ -23,7 +23,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 @Singleton
-class PluginCleanerTask implements Runnable {
+class PluginCleanerTask implements WorkQueue.PrioritizedRunnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   private final WorkQueue workQueue;
@@ -59,6 +59,11 @@ class PluginCleanerTask implements Runnable {
     }
   }
 
+  @Override
+  public WorkQueue.Priority getPriority() {
+    return WorkQueue.Priority.LOW;
+  }
+
   @Override
   public String toString() {
     int p = pending;
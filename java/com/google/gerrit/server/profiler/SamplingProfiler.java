@@ -0,0 +1,326 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.profiler;
+
+import static com.google.common.collect.ImmutableSortedMap.toImmutableSortedMap;
+import static java.util.Comparator.naturalOrder;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.flogger.context.Tags;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.TraceRequestListener;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.logging.LoggingContext;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Profiler that periodically samples the stack traces of the threads that execute requests.
+ *
+ * <p>Threads are attributed to requests by the {@link TraceRequestListener#TAG_REQUEST} tag of
+ * their logging context, threads without this tag are not sampled. The stack traces of all request
+ * threads are taken with a single {@link ThreadMXBean#getThreadInfo(long[], int)} call per sample,
+ * so that each sample costs one safepoint regardless of the number of sampled threads.
+ *
+ * <p>The logging context only tracks the tags of all threads while the profiler is running. A
+ * request that was already running when the profiler was started is sampled once it changes its
+ * tags.
+ *
+ * <p>Samples are aggregated per request type in the collapsed stack format that is consumed by
+ * flame graph tools: one line per distinct stack with the frames from the root to the leaf
+ * separated by semicolons, followed by the number of samples that hit this stack.
+ *
+ * <p>In {@link Mode#WALL} mode all request threads are sampled, which shows where requests spend
+ * their time, including waiting. In {@link Mode#CPU} mode only threads that are runnable are
+ * sampled, which shows where requests burn CPU.
+ */
+@Singleton
+public class SamplingProfiler implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Key under which the samples of stacks are counted that exceed {@code profiler.maxStacks}. */
+  @VisibleForTesting static final String TRUNCATED = "[truncated]";
+
+  /** Which threads are sampled. */
+  public enum Mode {
+    /** Sample all request threads. */
+    WALL,
+    /** Sample only request threads that are runnable. */
+    CPU
+  }
+
+  /** Status of the profiler. */
+  public static class Status {
+    public final boolean running;
+    public final Mode mode;
+    public final long intervalMs;
+    public final long samples;
+    public final long samplingTimeMs;
+    public final ImmutableSortedMap<String, Long> samplesByRequest;
+
+    private Status(
+        boolean running,
+        Mode mode,
+        long intervalMs,
+        long samples,
+        long samplingTimeMs,
+        ImmutableSortedMap<String, Long> samplesByRequest) {
+      this.running = running;
+      this.mode = mode;
+      this.intervalMs = intervalMs;
+      this.samples = samples;
+      this.samplingTimeMs = samplingTimeMs;
+      this.samplesByRequest = samplesByRequest;
+    }
+  }
+
+  public static Module module() {
+    return new LifecycleModule() {
+      @Override
+      protected void configure() {
+        listener().to(SamplingProfiler.class);
+      }
+    };
+  }
+
+  private final WorkQueue workQueue;
+  private final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+  private final boolean enabled;
+  private final int maxDepth;
+  private final int maxStacks;
+  private final ConcurrentMap<String, RequestProfile> profiles = new ConcurrentHashMap<>();
+  private final LongAdder samples = new LongAdder();
+  private final LongAdder samplingTimeNanos = new LongAdder();
+
+  private volatile Mode mode;
+  private volatile long intervalMs;
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> task;
+
+  @Inject
+  SamplingProfiler(@GerritServerConfig Config cfg, WorkQueue workQueue) {
+    this.workQueue = workQueue;
+    this.enabled = cfg.getBoolean("profiler", "enabled", false);
+    this.mode = cfg.getEnum("profiler", null, "mode", Mode.WALL);
+    this.intervalMs =
+        Math.max(1, ConfigUtil.getTimeUnit(cfg, "profiler", null, "interval", 100, MILLISECONDS));
+    this.maxDepth = Math.max(1, cfg.getInt("profiler", "maxDepth", 128));
+    this.maxStacks = Math.max(1, cfg.getInt("profiler", "maxStacks", 10000));
+  }
+
+  @Override
+  public void start() {
+    if (enabled) {
+      start(mode, intervalMs);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    stopSampling();
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Starts sampling, restarts sampling with the new settings if the profiler is already running.
+   *
+   * <p>Samples that were collected before are kept.
+   */
+  public synchronized void start(Mode mode, long intervalMs) {
+    stopSampling();
+    this.mode = mode;
+    this.intervalMs = Math.max(1, intervalMs);
+    if (executor == null) {
+      executor = workQueue.createQueue(1, "SamplingProfiler");
+    }
+    LoggingContext.setTrackTagsOfAllThreads(true);
+    task =
+        executor.scheduleAtFixedRate(
+            this::sampleSafely, this.intervalMs, this.intervalMs, MILLISECONDS);
+    logger.atInfo().log(
+        "Started profiler in %s mode, sampling every %d ms", this.mode, this.intervalMs);
+  }
+
+  /** Stops sampling, the samples that were collected so far are kept. */
+  public synchronized void stopSampling() {
+    if (task != null) {
+      task.cancel(false);
+      task = null;
+      LoggingContext.setTrackTagsOfAllThreads(false);
+      logger.atInfo().log("Stopped profiler");
+    }
+  }
+
+  /** Discards all samples that were collected so far. */
+  public void reset() {
+    profiles.clear();
+    samples.reset();
+    samplingTimeNanos.reset();
+  }
+
+  public synchronized boolean isRunning() {
+    return task != null;
+  }
+
+  public Status getStatus() {
+    return new Status(
+        isRunning(),
+        mode,
+        intervalMs,
+        samples.sum(),
+        NANOSECONDS.toMillis(samplingTimeNanos.sum()),
+        profiles.entrySet().stream()
+            .collect(
+                toImmutableSortedMap(
+                    naturalOrder(), Map.Entry::getKey, e -> e.getValue().samples.sum())));
+  }
+
+  /**
+   * Returns the collected samples in the collapsed stack format.
+   *
+   * @param request request type for which the samples should be returned, if {@code null} the
+   *     samples of all requests are returned and the request type is added as root frame to each
+   *     stack
+   */
+  public String getCollapsedStacks(@Nullable String request) {
+    StringBuilder out = new StringBuilder();
+    if (request != null) {
+      RequestProfile profile = profiles.get(request);
+      if (profile != null) {
+        profile.appendTo(out, null);
+      }
+    } else {
+      ImmutableSortedMap.copyOf(profiles).forEach((r, profile) -> profile.appendTo(out, r));
+    }
+    return out.toString();
+  }
+
+  private void sampleSafely() {
+    try {
+      sample();
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log("Failed to take profiler sample");
+    }
+  }
+
+  /** Takes one sample of the stacks of all request threads. */
+  @VisibleForTesting
+  void sample() {
+    long start = System.nanoTime();
+    ImmutableMap<Thread, Tags> tagsByThread = LoggingContext.getTagsOfAllThreads();
+    List<Long> threadIds = new ArrayList<>(tagsByThread.size());
+    Map<Long, String> requestByThreadId = new HashMap<>();
+    for (Map.Entry<Thread, Tags> e : tagsByThread.entrySet()) {
+      String request = getRequest(e.getValue());
+      if (request != null && e.getKey() != Thread.currentThread()) {
+        threadIds.add(e.getKey().getId());
+        requestByThreadId.put(e.getKey().getId(), request);
+      }
+    }
+    if (!threadIds.isEmpty()) {
+      ThreadInfo[] infos =
+          threadMxBean.getThreadInfo(
+              threadIds.stream().mapToLong(Long::longValue).toArray(), maxDepth);
+      Mode currentMode = mode;
+      for (ThreadInfo info : infos) {
+        if (info == null
+            || (currentMode == Mode.CPU && info.getThreadState() != Thread.State.RUNNABLE)) {
+          continue;
+        }
+        String request = requestByThreadId.get(info.getThreadId());
+        StackTraceElement[] stack = info.getStackTrace();
+        if (request == null || stack.length == 0) {
+          continue;
+        }
+        profiles.computeIfAbsent(request, r -> new RequestProfile()).add(collapse(stack));
+      }
+    }
+    samples.increment();
+    samplingTimeNanos.add(System.nanoTime() - start);
+  }
+
+  @Nullable
+  private static String getRequest(Tags tags) {
+    Set<Object> values = tags.asMap().get(TraceRequestListener.TAG_REQUEST);
+    return values != null && !values.isEmpty() ? values.iterator().next().toString() : null;
+  }
+
+  private static String collapse(StackTraceElement[] stack) {
+    StringBuilder b = new StringBuilder();
+    for (int i = stack.length - 1; i >= 0; i--) {
+      if (b.length() > 0) {
+        b.append(';');
+      }
+      b.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+    }
+    return b.toString();
+  }
+
+  /** Samples of one request type. */
+  private class RequestProfile {
+    final LongAdder samples = new LongAdder();
+    final ConcurrentMap<String, LongAdder> stacks = new ConcurrentHashMap<>();
+
+    void add(String stack) {
+      samples.increment();
+      LongAdder count = stacks.get(stack);
+      if (count == null) {
+        count =
+            stacks.size() < maxStacks
+                ? stacks.computeIfAbsent(stack, s -> new LongAdder())
+                : stacks.computeIfAbsent(TRUNCATED, s -> new LongAdder());
+      }
+      count.increment();
+    }
+
+    void appendTo(StringBuilder out, @Nullable String rootFrame) {
+      ImmutableSortedMap.copyOf(stacks)
+          .forEach(
+              (stack, count) -> {
+                if (rootFrame != null) {
+                  out.append(rootFrame).append(';');
+                }
+                out.append(stack).append(' ').append(count.sum()).append('\n');
+              });
+    }
+  }
+}
@@ -76,6 +76,9 @@ public class BooleanProjectConfigTransformations {
               new Mapper(
                   i -> i.skipAddingAuthorAndCommitterAsReviewers,
                   (i, v) -> i.skipAddingAuthorAndCommitterAsReviewers = v))
+          .put(
+              BooleanProjectConfig.PREFETCH_DIFFS,
+              new Mapper(i -> i.prefetchDiffs, (i, v) -> i.prefetchDiffs = v))
           .build();
 
   static {
@@ -30,6 +30,22 @@ public interface SubmitRequirementsEvaluator {
    */
   ImmutableMap<SubmitRequirement, SubmitRequirementResult> evaluateAllRequirements(ChangeData cd);
 
+  /**
+   * Same as {@link #evaluateAllRequirements(ChangeData)}, but if {@code allowCached} is true, may
+   * return the results of an earlier evaluation for the same change meta revision, patch set and
+   * submit requirement configuration.
+   *
+   * <p>Cached results don't reflect changes to data that is not part of the change or the project
+   * configs, e.g. group memberships that are checked by the submit requirement expressions.
+   *
+   * @param cd change data corresponding to a specific gerrit change
+   * @param allowCached whether cached results may be returned
+   */
+  default ImmutableMap<SubmitRequirement, SubmitRequirementResult> evaluateAllRequirements(
+      ChangeData cd, boolean allowCached) {
+    return evaluateAllRequirements(cd);
+  }
+
   /** Evaluate a single {@link SubmitRequirement} using change data. */
   SubmitRequirementResult evaluateRequirement(SubmitRequirement sr, ChangeData cd);
 
@@ -18,6 +18,7 @@ import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.gerrit.server.project.ProjectCache.illegalState;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.SubmitRequirement;
@@ -25,8 +26,12 @@ import com.google.gerrit.entities.SubmitRequirementExpression;
 import com.google.gerrit.entities.SubmitRequirementExpressionResult;
 import com.google.gerrit.entities.SubmitRequirementExpressionResult.PredicateResult;
 import com.google.gerrit.entities.SubmitRequirementResult;
+import com.google.gerrit.index.query.AndPredicate;
+import com.google.gerrit.index.query.NotPredicate;
+import com.google.gerrit.index.query.OrPredicate;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.server.cache.CacheModule;
 import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.TraceContext;
 import com.google.gerrit.server.logging.TraceContext.TraceTimer;
@@ -35,11 +40,16 @@ import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gerrit.server.query.change.SubmitRequirementChangeQueryBuilder;
 import com.google.gerrit.server.util.ManualRequestContext;
 import com.google.gerrit.server.util.OneOffRequestContext;
-import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Module;
 import com.google.inject.Provider;
 import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
@@ -50,6 +60,8 @@ import java.util.stream.Stream;
 public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvaluator {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  private static final String PREDICATE_CACHE = "submit_requirement_predicates";
+
   private final Provider<SubmitRequirementChangeQueryBuilder> queryBuilder;
   private final ProjectCache projectCache;
   private final PluginSetContext<SubmitRequirement> globalSubmitRequirements;
@@ -59,10 +71,26 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
   // a "ownerin" predicate with group that is not visible to the person making this request).
   private final OneOffRequestContext requestContext;
 
+  /**
+   * Parsed predicate trees by expression string.
+   *
+   * <p>Predicate trees are immutable and don't depend on the change or project they are evaluated
+   * for, so the same tree can be shared by all evaluations of an expression. Operands that name
+   * accounts or groups are resolved when the expression is parsed, hence entries expire after a
+   * while to pick up renames.
+   */
+  private final Cache<String, Predicate<ChangeData>> predicateCache;
+
+  private final SubmitRequirementsResultsCache resultsCache;
+
   public static Module module() {
-    return new AbstractModule() {
+    return new CacheModule() {
       @Override
       protected void configure() {
+        cache(PREDICATE_CACHE, String.class, new TypeLiteral<Predicate<ChangeData>>() {})
+            .maximumWeight(1024)
+            .expireAfterWrite(Duration.ofMinutes(10));
+        install(SubmitRequirementsResultsCache.module());
         bind(SubmitRequirementsEvaluator.class)
             .to(SubmitRequirementsEvaluatorImpl.class)
             .in(Scopes.SINGLETON);
@@ -75,11 +103,15 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
       Provider<SubmitRequirementChangeQueryBuilder> queryBuilder,
       ProjectCache projectCache,
       PluginSetContext<SubmitRequirement> globalSubmitRequirements,
-      OneOffRequestContext requestContext) {
+      OneOffRequestContext requestContext,
+      @Named(PREDICATE_CACHE) Cache<String, Predicate<ChangeData>> predicateCache,
+      SubmitRequirementsResultsCache resultsCache) {
     this.queryBuilder = queryBuilder;
     this.projectCache = projectCache;
     this.globalSubmitRequirements = globalSubmitRequirements;
     this.requestContext = requestContext;
+    this.predicateCache = predicateCache;
+    this.resultsCache = resultsCache;
   }
 
   @Override
@@ -94,8 +126,14 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
   @Override
   public ImmutableMap<SubmitRequirement, SubmitRequirementResult> evaluateAllRequirements(
       ChangeData cd) {
+    return evaluateAllRequirements(cd, /* allowCached= */ false);
+  }
+
+  @Override
+  public ImmutableMap<SubmitRequirement, SubmitRequirementResult> evaluateAllRequirements(
+      ChangeData cd, boolean allowCached) {
     try (ManualRequestContext ignored = requestContext.open()) {
-      return getRequirements(cd);
+      return getRequirements(cd, allowCached);
     }
   }
 
@@ -111,7 +149,7 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
   public SubmitRequirementExpressionResult evaluateExpression(
       SubmitRequirementExpression expression, ChangeData changeData) {
     try {
-      Predicate<ChangeData> predicate = queryBuilder.get().parse(expression.expressionString());
+      Predicate<ChangeData> predicate = parse(expression);
       PredicateResult predicateResult = evaluatePredicateTree(predicate, changeData);
       return SubmitRequirementExpressionResult.create(expression, predicateResult);
     } catch (QueryParseException | SubmitRequirementEvaluationException e) {
@@ -121,6 +159,61 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
     }
   }
 
+  /**
+   * Returns the predicate tree of the expression, parsing it only if it's not cached yet.
+   *
+   * <p>Expressions that fail to parse are not cached, so that the error is reported again.
+   * Neither are trees that contain predicates of plugin operands, as these must not outlive the
+   * plugin.
+   */
+  private Predicate<ChangeData> parse(SubmitRequirementExpression expression)
+      throws QueryParseException {
+    String expressionString = expression.expressionString();
+    Predicate<ChangeData> predicate = predicateCache.getIfPresent(expressionString);
+    if (predicate == null) {
+      predicate = queryBuilder.get().parse(expressionString);
+      if (isProvidedByCore(predicate)) {
+        predicateCache.put(expressionString, predicate);
+      }
+    }
+    return predicate;
+  }
+
+  /**
+   * Returns whether the results of the submit requirement can be cached. This is not the case if it
+   * uses operands of plugins, since these may depend on any data, or operands that depend on data
+   * which is not part of the cache key.
+   */
+  private boolean isCacheable(SubmitRequirement sr) {
+    List<SubmitRequirementExpression> expressions = new ArrayList<>(3);
+    sr.applicabilityExpression().ifPresent(expressions::add);
+    expressions.add(sr.submittabilityExpression());
+    sr.overrideExpression().ifPresent(expressions::add);
+    try {
+      for (SubmitRequirementExpression expression : expressions) {
+        if (!SubmitRequirementsResultsCache.isCacheable(expression)
+            || !isProvidedByCore(parse(expression))) {
+          return false;
+        }
+      }
+      return true;
+    } catch (QueryParseException e) {
+      return false;
+    }
+  }
+
+  private static boolean isProvidedByCore(Predicate<ChangeData> predicate) {
+    if (predicate.getClass().getClassLoader() != Predicate.class.getClassLoader()) {
+      return false;
+    }
+    for (Predicate<ChangeData> c : predicate.getChildren()) {
+      if (!isProvidedByCore(c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private SubmitRequirementResult evaluateRequirementInternal(SubmitRequirement sr, ChangeData cd) {
     Optional<SubmitRequirementExpressionResult> applicabilityResult =
         sr.applicabilityExpression().isPresent()
@@ -183,7 +276,8 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
    * <p>The behaviour in case of the name match is controlled by {@link
    * SubmitRequirement#allowOverrideInChildProjects} of global {@link SubmitRequirement}.
    */
-  private ImmutableMap<SubmitRequirement, SubmitRequirementResult> getRequirements(ChangeData cd) {
+  private ImmutableMap<SubmitRequirement, SubmitRequirementResult> getRequirements(
+      ChangeData cd, boolean allowCached) {
     try (TraceTimer timer =
         TraceContext.newTimer(
             "Get submit requirements",
@@ -207,13 +301,25 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
                           globalSubmitRequirement.allowOverrideInChildProjects()
                               ? projectConfigRequirement
                               : globalSubmitRequirement));
-      ImmutableMap.Builder<SubmitRequirement, SubmitRequirementResult> results =
-          ImmutableMap.builder();
-      for (SubmitRequirement requirement : requirements.values()) {
-        results.put(requirement, evaluateRequirementInternal(requirement, cd));
+      if (!allowCached || !requirements.values().stream().allMatch(this::isCacheable)) {
+        return evaluateRequirements(requirements.values(), cd);
       }
-      return results.build();
+      return resultsCache.get(
+          cd,
+          state,
+          globalRequirements.values(),
+          () -> evaluateRequirements(requirements.values(), cd));
+    }
+  }
+
+  private ImmutableMap<SubmitRequirement, SubmitRequirementResult> evaluateRequirements(
+      Collection<SubmitRequirement> requirements, ChangeData cd) {
+    ImmutableMap.Builder<SubmitRequirement, SubmitRequirementResult> results =
+        ImmutableMap.builder();
+    for (SubmitRequirement requirement : requirements) {
+      results.put(requirement, evaluateRequirementInternal(requirement, cd));
     }
+    return results.build();
   }
 
   /**
@@ -229,17 +335,42 @@ public class SubmitRequirementsEvaluatorImpl implements SubmitRequirementsEvalua
                 Function.identity()));
   }
 
-  /** Evaluate the predicate recursively using change data. */
+  /**
+   * Evaluate the predicate recursively using change data.
+   *
+   * <p>All atoms are evaluated since passing and failing atoms are reported. The status of plain
+   * {@code AND}, {@code OR} and {@code NOT} nodes is derived from the results of their children, so
+   * that each atom is matched only once rather than once per level of the tree.
+   */
   private PredicateResult evaluatePredicateTree(
       Predicate<ChangeData> predicate, ChangeData changeData) {
     PredicateResult.Builder predicateResult =
         PredicateResult.builder()
-            .predicateString(predicate.isLeaf() ? predicate.getPredicateString() : "")
-            .status(predicate.asMatchable().match(changeData));
-    predicate
-        .getChildren()
-        .forEach(
-            c -> predicateResult.addChildPredicateResult(evaluatePredicateTree(c, changeData)));
+            .predicateString(predicate.isLeaf() ? predicate.getPredicateString() : "");
+    List<Predicate<ChangeData>> children = predicate.getChildren();
+    if (children.isEmpty()) {
+      return predicateResult.status(predicate.asMatchable().match(changeData)).build();
+    }
+
+    boolean allMatch = true;
+    boolean anyMatch = false;
+    for (Predicate<ChangeData> c : children) {
+      PredicateResult childResult = evaluatePredicateTree(c, changeData);
+      predicateResult.addChildPredicateResult(childResult);
+      allMatch &= childResult.status();
+      anyMatch |= childResult.status();
+    }
+
+    Class<?> clazz = predicate.getClass();
+    if (clazz == AndPredicate.class) {
+      predicateResult.status(allMatch);
+    } else if (clazz == OrPredicate.class) {
+      predicateResult.status(anyMatch);
+    } else if (clazz == NotPredicate.class) {
+      predicateResult.status(!anyMatch);
+    } else {
+      predicateResult.status(predicate.asMatchable().match(changeData));
+    }
     return predicateResult.build();
   }
 }
@@ -0,0 +1,229 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.project;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.SubmitRequirement;
+import com.google.gerrit.entities.SubmitRequirementExpression;
+import com.google.gerrit.entities.SubmitRequirementResult;
+import com.google.gerrit.proto.Protos;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.proto.Cache.SubmitRequirementsResultsKeyProto;
+import com.google.gerrit.server.cache.proto.Cache.SubmitRequirementsResultsProto;
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.google.gerrit.server.cache.serialize.ObjectIdConverter;
+import com.google.gerrit.server.cache.serialize.ProtobufSerializer;
+import com.google.gerrit.server.cache.serialize.entities.SubmitRequirementSerializer;
+import com.google.gerrit.server.notedb.SubmitRequirementProtoConverter;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangeQueryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import com.google.protobuf.ByteString;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Caches the results of evaluating the submit requirements of a change.
+ *
+ * <p>Results are keyed by the inputs of the evaluation: the change meta revision, the current patch
+ * set, the revisions of the project configs in the project hierarchy and the globally bound submit
+ * requirements. Results that contain errors are not cached, since errors may be transient. Submit
+ * requirements that use operands which depend on other data must not be cached, see {@link
+ * #isCacheable(SubmitRequirementExpression)}.
+ */
+@Singleton
+public class SubmitRequirementsResultsCache {
+  static final String CACHE_NAME = "submit_requirements_results";
+
+  /**
+   * Operands that depend on group memberships, on the tip of the target branch or on the current
+   * time, none of which is part of the key.
+   */
+  private static final Pattern UNKEYED_OPERAND =
+      Pattern.compile(
+          "\\b(?:(?:ownerin|uploaderin|reviewerin|age):|is:\"?mergeable\\b)",
+          Pattern.CASE_INSENSITIVE);
+
+  private static final Splitter LABEL_ARGS_SPLITTER = Splitter.on(',').trimResults();
+
+  private static final Pattern LABEL_OPERAND =
+      Pattern.compile("\\blabel:(\"[^\"]*\"|[^\\s()]+)", Pattern.CASE_INSENSITIVE);
+
+  /** Users of label votes that are resolved from the change itself rather than by name. */
+  private static final ImmutableSet<String> CHANGE_USERS =
+      ImmutableSet.of(
+          ChangeQueryBuilder.ARG_ID_OWNER,
+          ChangeQueryBuilder.ARG_ID_NON_UPLOADER,
+          ChangeQueryBuilder.ARG_ID_NON_CONTRIBUTOR);
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        persist(
+                CACHE_NAME,
+                SubmitRequirementsResultsKeyProto.class,
+                new TypeLiteral<ImmutableList<SubmitRequirementResult>>() {})
+            .maximumWeight(10000)
+            .version(1)
+            .keySerializer(new ProtobufSerializer<>(SubmitRequirementsResultsKeyProto.parser()))
+            .valueSerializer(Serializer.INSTANCE);
+      }
+    };
+  }
+
+  private final Cache<SubmitRequirementsResultsKeyProto, ImmutableList<SubmitRequirementResult>>
+      cache;
+
+  @Inject
+  SubmitRequirementsResultsCache(
+      @Named(CACHE_NAME)
+          Cache<SubmitRequirementsResultsKeyProto, ImmutableList<SubmitRequirementResult>> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the cached results for the change, or the results of {@code evaluator} if there are
+   * none.
+   *
+   * @param cd the change
+   * @param projectState state of the project that contains the change
+   * @param globalRequirements the globally bound submit requirements
+   * @param evaluator evaluates the submit requirements of the change
+   */
+  ImmutableMap<SubmitRequirement, SubmitRequirementResult> get(
+      ChangeData cd,
+      ProjectState projectState,
+      Collection<SubmitRequirement> globalRequirements,
+      Supplier<ImmutableMap<SubmitRequirement, SubmitRequirementResult>> evaluator) {
+    Optional<SubmitRequirementsResultsKeyProto> key = key(cd, projectState, globalRequirements);
+    if (key.isEmpty()) {
+      return evaluator.get();
+    }
+    ImmutableList<SubmitRequirementResult> cached = cache.getIfPresent(key.get());
+    if (cached != null) {
+      return cached.stream()
+          .collect(toImmutableMap(SubmitRequirementResult::submitRequirement, Function.identity()));
+    }
+    ImmutableMap<SubmitRequirement, SubmitRequirementResult> results = evaluator.get();
+    if (results.values().stream()
+        .noneMatch(r -> r.status() == SubmitRequirementResult.Status.ERROR)) {
+      cache.put(key.get(), ImmutableList.copyOf(results.values()));
+    }
+    return results;
+  }
+
+  /**
+   * Returns whether the result of the expression only depends on data that is part of the key.
+   *
+   * <p>This is not the case for operands that check group memberships ({@code ownerin}, {@code
+   * uploaderin}, {@code reviewerin} and {@code label} with a group or a named user), the
+   * mergeability of the change ({@code is:mergeable}) or the current time ({@code age}). The check
+   * is conservative: operands that only occur within quoted values also make the expression
+   * uncacheable.
+   */
+  static boolean isCacheable(SubmitRequirementExpression expression) {
+    String expressionString = expression.expressionString();
+    if (UNKEYED_OPERAND.matcher(expressionString).find()) {
+      return false;
+    }
+    Matcher label = LABEL_OPERAND.matcher(expressionString);
+    while (label.find()) {
+      List<String> args =
+          LABEL_ARGS_SPLITTER.splitToList(CharMatcher.is('"').trimFrom(label.group(1)));
+      for (String arg : args.subList(1, args.size())) {
+        String value = arg.toLowerCase(Locale.US);
+        if (value.startsWith(ChangeQueryBuilder.ARG_COUNT)) {
+          continue;
+        }
+        if (value.startsWith(ChangeQueryBuilder.ARG_ID_USER + "=")) {
+          value = value.substring(ChangeQueryBuilder.ARG_ID_USER.length() + 1);
+        }
+        if (!CHANGE_USERS.contains(value)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  static Optional<SubmitRequirementsResultsKeyProto> key(
+      ChangeData cd, ProjectState projectState, Collection<SubmitRequirement> globalRequirements) {
+    ObjectId metaId = cd.notes().getMetaId();
+    if (metaId == null || cd.currentPatchSet() == null) {
+      return Optional.empty();
+    }
+    ObjectIdConverter idConverter = ObjectIdConverter.create();
+    SubmitRequirementsResultsKeyProto.Builder key =
+        SubmitRequirementsResultsKeyProto.newBuilder()
+            .setProject(cd.project().get())
+            .setChangeId(cd.getId().get())
+            .setMetaId(idConverter.toByteString(metaId))
+            .setPatchSetCommit(idConverter.toByteString(cd.currentPatchSet().commitId()));
+    for (ProjectState state : projectState.tree()) {
+      key.addProjectConfigRevision(
+          state.getConfig().getRevision().map(idConverter::toByteString).orElse(ByteString.EMPTY));
+    }
+    globalRequirements.stream()
+        .sorted(Comparator.comparing(SubmitRequirement::name))
+        .map(SubmitRequirementSerializer::serialize)
+        .forEach(key::addGlobalSubmitRequirement);
+    return Optional.of(key.build());
+  }
+
+  enum Serializer implements CacheSerializer<ImmutableList<SubmitRequirementResult>> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(ImmutableList<SubmitRequirementResult> object) {
+      SubmitRequirementsResultsProto.Builder proto = SubmitRequirementsResultsProto.newBuilder();
+      object.stream()
+          .map(SubmitRequirementProtoConverter.INSTANCE::toProto)
+          .forEach(proto::addResult);
+      return Protos.toByteArray(proto.build());
+    }
+
+    @Override
+    public ImmutableList<SubmitRequirementResult> deserialize(byte[] in) {
+      return Protos.parseUnchecked(SubmitRequirementsResultsProto.parser(), in)
+          .getResultList()
+          .stream()
+          .map(SubmitRequirementProtoConverter.INSTANCE::fromProto)
+          .collect(toImmutableList());
+    }
+  }
+}
@@ -14,21 +14,55 @@
 
 package com.google.gerrit.server.query.change;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.index.IndexConfig;
 import com.google.gerrit.index.query.AndSource;
 import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.server.cache.PerThreadCache;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AndChangeSource extends AndSource<ChangeData> implements ChangeDataSource {
+  /** Number of changes that are matched by one task when matching changes in parallel. */
+  private static final int MATCH_PARTITION_SIZE = 10;
+
+  @Nullable private final ExecutorService matchExecutor;
+  @Nullable private final ChangeIsVisibleToPredicate isVisibleTo;
 
   public AndChangeSource(Collection<Predicate<ChangeData>> that, IndexConfig indexConfig) {
-    super(that, indexConfig);
+    this(that, 0, indexConfig);
   }
 
   public AndChangeSource(
       Collection<Predicate<ChangeData>> that, int start, IndexConfig indexConfig) {
+    this(that, start, indexConfig, null);
+  }
+
+  /**
+   * Creates a source that matches the changes of each page in parallel on the given executor, if
+   * {@link IndexConfig#pipelinedPagination()} is enabled.
+   */
+  public AndChangeSource(
+      Collection<Predicate<ChangeData>> that,
+      int start,
+      IndexConfig indexConfig,
+      @Nullable ExecutorService matchExecutor) {
     super(that, start, indexConfig);
+    this.matchExecutor = indexConfig.pipelinedPagination() ? matchExecutor : null;
+    this.isVisibleTo =
+        getChildren().stream()
+            .filter(ChangeIsVisibleToPredicate.class::isInstance)
+            .map(ChangeIsVisibleToPredicate.class::cast)
+            .findFirst()
+            .orElse(null);
   }
 
   @Override
@@ -45,6 +79,97 @@ public class AndChangeSource extends AndSource<ChangeData> implements ChangeData
     return super.transformBuffer(buffer);
   }
 
+  @Override
+  protected List<ChangeData> matchAll(List<ChangeData> changes) {
+    if (matchExecutor == null || changes.size() <= MATCH_PARTITION_SIZE) {
+      return matchBatch(changes);
+    }
+
+    List<PartitionMatch> partitions = new ArrayList<>();
+    for (List<ChangeData> partition : Lists.partition(changes, MATCH_PARTITION_SIZE)) {
+      PartitionMatch m = new PartitionMatch(partition);
+      m.future = matchExecutor.submit(m::runIfUnclaimed);
+      partitions.add(m);
+    }
+
+    // Partitions that were not picked up by the executor yet are matched by the calling thread,
+    // so that matching makes progress even if all threads of the executor are busy.
+    List<ChangeData> matches = new ArrayList<>(changes.size());
+    try {
+      for (PartitionMatch m : partitions) {
+        if (!m.runIfUnclaimed()) {
+          m.future.get();
+        }
+        matches.addAll(m.matches);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while matching changes", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException("Failed to match changes", e.getCause());
+    } finally {
+      partitions.forEach(m -> m.claimed.set(true));
+    }
+    return matches;
+  }
+
+  private List<ChangeData> matchPartition(List<ChangeData> partition) {
+    if (PerThreadCache.get() != null) {
+      return matchBatch(partition);
+    }
+    // Executor threads have no request cache, open one so that the permission state of a project
+    // is computed only once per partition.
+    try (PerThreadCache ignored = PerThreadCache.create()) {
+      return matchBatch(partition);
+    }
+  }
+
+  /**
+   * Matches the changes against all predicates except the visibility predicate one by one, and
+   * then checks the visibility of the remaining changes in bulk.
+   */
+  private List<ChangeData> matchBatch(List<ChangeData> changes) {
+    if (isVisibleTo == null || !isMatchable()) {
+      return super.matchAll(changes);
+    }
+    List<ChangeData> candidates = new ArrayList<>(changes.size());
+    for (ChangeData cd : changes) {
+      if (matchExceptVisibility(cd)) {
+        candidates.add(cd);
+      }
+    }
+    return isVisibleTo.filter(candidates);
+  }
+
+  private boolean matchExceptVisibility(ChangeData cd) {
+    for (Predicate<ChangeData> p : getChildren()) {
+      if (p != isVisibleTo && !p.asMatchable().match(cd)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private class PartitionMatch {
+    final List<ChangeData> partition;
+    final AtomicBoolean claimed = new AtomicBoolean();
+    List<ChangeData> matches;
+    Future<Boolean> future;
+
+    PartitionMatch(List<ChangeData> partition) {
+      this.partition = partition;
+    }
+
+    boolean runIfUnclaimed() {
+      if (!claimed.compareAndSet(false, true)) {
+        return false;
+      }
+      matches = matchPartition(partition);
+      return true;
+    }
+  }
+
   @Override
   public int compare(Predicate<ChangeData> a, Predicate<ChangeData> b) {
     int cmp = super.compare(a, b);
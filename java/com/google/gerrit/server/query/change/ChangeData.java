@@ -82,6 +82,7 @@ import com.google.gerrit.server.config.TrackingFooters;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.MergeUtilFactory;
 import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.notedb.ChangeNotesBulkLoader;
 import com.google.gerrit.server.notedb.RobotCommentNotes;
 import com.google.gerrit.server.patch.DiffSummary;
 import com.google.gerrit.server.patch.DiffSummaryKey;
@@ -112,6 +113,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.eclipse.jgit.lib.Config;
@@ -166,6 +168,7 @@ public class ChangeData {
       return;
     }
 
+    ensureNotesLoaded(changes, cd -> cd.change == null);
     for (ChangeData cd : changes) {
       @SuppressWarnings("unused")
       var unused = cd.change();
@@ -178,6 +181,7 @@ public class ChangeData {
       return;
     }
 
+    ensureNotesLoaded(changes, cd -> cd.patchSets == null);
     for (ChangeData cd : changes) {
       @SuppressWarnings("unused")
       var unused = cd.patchSets();
@@ -202,6 +206,7 @@ public class ChangeData {
       return;
     }
 
+    ensureNotesLoaded(changes, cd -> cd.currentApprovals == null);
     for (ChangeData cd : changes) {
       @SuppressWarnings("unused")
       var unused = cd.currentApprovals();
@@ -220,6 +225,43 @@ public class ChangeData {
     }
   }
 
+  /**
+   * Loads the notes of all changes that need them with one {@link ChangeNotesBulkLoader} call, so
+   * that the lazy loaders called afterwards don't read NoteDb one change at a time.
+   *
+   * @param changes changes to load.
+   * @param needsNotes whether the data about to be loaded for a change requires its notes.
+   */
+  private static void ensureNotesLoaded(
+      Iterable<ChangeData> changes, Predicate<ChangeData> needsNotes) {
+    List<ChangeData> pending = new ArrayList<>();
+    for (ChangeData cd : changes) {
+      if (cd.notes == null && cd.lazyload() && needsNotes.test(cd)) {
+        pending.add(cd);
+      }
+    }
+    if (pending.size() < 2) {
+      // Nothing to gain over loading a single change lazily.
+      return;
+    }
+
+    Table<Project.NameKey, Change.Id, Optional<ObjectId>> request = HashBasedTable.create();
+    for (ChangeData cd : pending) {
+      request.put(cd.project, cd.legacyId, Optional.ofNullable(cd.metaRevision));
+    }
+    Table<Project.NameKey, Change.Id, ChangeNotes> loaded =
+        pending.get(0).notesBulkLoader.load(request);
+    for (ChangeData cd : pending) {
+      ChangeNotes notes = loaded.get(cd.project, cd.legacyId);
+      if (notes != null) {
+        cd.notes = notes;
+        cd.change = notes.getChange();
+        cd.changeServerId = notes.getServerId();
+        cd.setPatchSets(null);
+      }
+    }
+  }
+
   public static void ensureReviewedByLoadedForOpenChanges(Iterable<ChangeData> changes) {
     List<ChangeData> pending = new ArrayList<>();
     for (ChangeData cd : changes) {
@@ -350,6 +392,7 @@ public class ChangeData {
             null,
             null,
             null,
+            null,
             virtualIdAlgo,
             false,
             project,
@@ -374,6 +417,7 @@ public class ChangeData {
   private final ApprovalsUtil approvalsUtil;
   private final ChangeMessagesUtil cmUtil;
   private final ChangeNotes.Factory notesFactory;
+  private final ChangeNotesBulkLoader notesBulkLoader;
   private final CommentsUtil commentsUtil;
 
   private final DraftCommentsReader draftCommentsReader;
@@ -402,6 +446,7 @@ public class ChangeData {
       Maps.newLinkedHashMapWithExpectedSize(1);
 
   private Map<SubmitRequirement, SubmitRequirementResult> submitRequirements;
+  private boolean allowCachedSubmitRequirements = true;
 
   private StorageConstraint storageConstraint = StorageConstraint.NOTEDB_ONLY;
   private Change change;
@@ -471,6 +516,7 @@ public class ChangeData {
       AllUsersName allUsersName,
       ChangeMessagesUtil cmUtil,
       ChangeNotes.Factory notesFactory,
+      ChangeNotesBulkLoader notesBulkLoader,
       CommentsUtil commentsUtil,
       DraftCommentsReader draftCommentsReader,
       GitRepositoryManager repoManager,
@@ -496,6 +542,7 @@ public class ChangeData {
     this.allUsersName = allUsersName;
     this.cmUtil = cmUtil;
     this.notesFactory = notesFactory;
+    this.notesBulkLoader = notesBulkLoader;
     this.commentsUtil = commentsUtil;
     this.draftCommentsReader = draftCommentsReader;
     this.repoManager = repoManager;
@@ -582,6 +629,14 @@ public class ChangeData {
     return currentFiles;
   }
 
+  /**
+   * Whether the file paths and changed lines of the current patch set were computed from coarse
+   * diffs (see {@link DiffSummary#isApproximate()}). Never loads the diff.
+   */
+  public boolean hasApproximateDiffSummary() {
+    return diffSummary != null && diffSummary.isPresent() && diffSummary.get().isApproximate();
+  }
+
   private Optional<DiffSummary> getDiffSummary() {
     if (diffSummary == null) {
       if (!lazyload()) {
@@ -1214,7 +1269,9 @@ public class ChangeData {
       Change c = change();
       if (c == null || !c.isClosed()) {
         // Open changes: Evaluate submit requirements online.
-        submitRequirements = submitRequirementsEvaluator.evaluateAllRequirements(this);
+        submitRequirements =
+            submitRequirementsEvaluator.evaluateAllRequirements(
+                this, allowCachedSubmitRequirements);
         if (propagateSubmitRequirementErrors) {
           for (SubmitRequirementResult result : submitRequirements.values()) {
             if (result.status() == Status.ERROR) {
@@ -1239,6 +1296,19 @@ public class ChangeData {
     this.submitRequirements = submitRequirements;
   }
 
+  /**
+   * Sets whether {@link #submitRequirements()} may return cached results for open changes.
+   *
+   * <p>Cached results don't reflect changes of e.g. group memberships that submit requirement
+   * expressions depend on. Callers that enforce or store the results, e.g. when submitting or
+   * abandoning the change, should disallow them.
+   */
+  @CanIgnoreReturnValue
+  public ChangeData setAllowCachedSubmitRequirements(boolean allowCachedSubmitRequirements) {
+    this.allowCachedSubmitRequirements = allowCachedSubmitRequirements;
+    return this;
+  }
+
   public List<SubmitRecord> submitRecords(SubmitRuleOptions options) {
     // If the change is not submitted yet, 'strict' and 'lenient' both have the same result. If the
     // change is submitted, SubmitRecord requested with 'strict' will contain just a single entry
@@ -14,8 +14,9 @@
 
 package com.google.gerrit.server.query.change;
 
+import static java.util.stream.Collectors.toList;
+
 import com.google.common.flogger.FluentLogger;
-import com.google.gerrit.entities.Change;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.index.query.IsVisibleToPredicate;
 import com.google.gerrit.server.AnonymousUser;
@@ -30,6 +31,8 @@ import com.google.gerrit.server.project.ProjectState;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 
@@ -67,18 +70,7 @@ public class ChangeIsVisibleToPredicate extends IsVisibleToPredicate<ChangeData>
     if (cd.fastIsVisibleTo(user)) {
       return true;
     }
-    Change change = cd.change();
-    if (change == null) {
-      return false;
-    }
-
-    Optional<ProjectState> projectState = projectCache.get(cd.project());
-    if (!projectState.isPresent()) {
-      logger.atFine().log("Filter out change %s of non-existing project %s", cd, cd.project());
-      return false;
-    }
-    if (!projectState.get().statePermitsRead()) {
-      logger.atFine().log("Filter out change %s of non-readable project %s", cd, cd.project());
+    if (!isInReadableProject(cd)) {
       return false;
     }
 
@@ -102,6 +94,50 @@ public class ChangeIsVisibleToPredicate extends IsVisibleToPredicate<ChangeData>
     return true;
   }
 
+  /**
+   * Returns the changes that are visible to the user, in the given order.
+   *
+   * <p>Permissions are checked in bulk through {@link
+   * PermissionBackend.WithUser#filterReadable(java.util.Collection)}, which evaluates the
+   * permissions of a destination branch only once. If the bulk check fails, the changes are
+   * matched one by one so that only broken changes are filtered out.
+   */
+  public List<ChangeData> filter(List<ChangeData> changes) {
+    List<ChangeData> candidates = new ArrayList<>(changes.size());
+    for (ChangeData cd : changes) {
+      if (!cd.fastIsVisibleTo(user) && isInReadableProject(cd)) {
+        candidates.add(cd);
+      }
+    }
+
+    try {
+      for (ChangeData cd : withUser.filterReadable(candidates)) {
+        cd.cacheVisibleTo(user);
+      }
+    } catch (PermissionBackendException e) {
+      logger.atFine().withCause(e).log("Bulk permission check failed, matching changes one by one");
+      return changes.stream().filter(this::match).collect(toList());
+    }
+    return changes.stream().filter(cd -> cd.fastIsVisibleTo(user)).collect(toList());
+  }
+
+  private boolean isInReadableProject(ChangeData cd) {
+    if (cd.change() == null) {
+      return false;
+    }
+
+    Optional<ProjectState> projectState = projectCache.get(cd.project());
+    if (!projectState.isPresent()) {
+      logger.atFine().log("Filter out change %s of non-existing project %s", cd, cd.project());
+      return false;
+    }
+    if (!projectState.get().statePermitsRead()) {
+      logger.atFine().log("Filter out change %s of non-readable project %s", cd, cd.project());
+      return false;
+    }
+    return true;
+  }
+
   @Override
   public int getCost() {
     return 1;
@@ -33,6 +33,7 @@ import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.DynamicOptions;
 import com.google.gerrit.server.DynamicOptions.DynamicBean;
+import com.google.gerrit.server.FanOutExecutor;
 import com.google.gerrit.server.account.AccountLimits;
 import com.google.gerrit.server.change.ChangePluginDefinedInfoFactory;
 import com.google.gerrit.server.change.PluginDefinedAttributesFactories;
@@ -50,6 +51,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Query processor for the change index.
@@ -65,6 +67,7 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
   private final List<Extension<ChangePluginDefinedInfoFactory>>
       changePluginDefinedInfoFactoriesByPlugin = new ArrayList<>();
   private final IndexConfig indexConfig;
+  private final ExecutorService fanOutExecutor;
 
   @Singleton
   protected static class ChangeQueryMetrics extends QueryProcessor.Metrics {
@@ -90,7 +93,8 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
       ChangeIndexCollection indexes,
       ChangeIndexRewriter rewriter,
       ChangeIsVisibleToPredicate.Factory changeIsVisibleToPredicateFactory,
-      DynamicSet<ChangePluginDefinedInfoFactory> changePluginDefinedInfoFactories) {
+      DynamicSet<ChangePluginDefinedInfoFactory> changePluginDefinedInfoFactories,
+      @FanOutExecutor ExecutorService fanOutExecutor) {
     super(
         changeQueryMetrics,
         ChangeSchemaDefinitions.INSTANCE,
@@ -102,6 +106,7 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
     this.userProvider = userProvider;
     this.changeIsVisibleToPredicateFactory = changeIsVisibleToPredicateFactory;
     this.indexConfig = indexConfig;
+    this.fanOutExecutor = fanOutExecutor;
 
     changePluginDefinedInfoFactories
         .entries()
@@ -160,7 +165,8 @@ public class ChangeQueryProcessor extends QueryProcessor<ChangeData>
     return new AndChangeSource(
         ImmutableList.of(pred, changeIsVisibleToPredicateFactory.forUser(userProvider.get())),
         start,
-        indexConfig);
+        indexConfig,
+        fanOutExecutor);
   }
 
   @Override
@@ -128,7 +128,10 @@ public class Abandon
       throws RestApiException, UpdateException {
     AccountState accountState = user.isIdentifiedUser() ? user.asIdentifiedUser().state() : null;
     AbandonOp op = abandonOpFactory.create(accountState, msgTxt);
-    ChangeData changeData = changeDataFactory.create(notes.getProjectName(), notes.getChangeId());
+    ChangeData changeData =
+        changeDataFactory
+            .create(notes.getProjectName(), notes.getChangeId())
+            .setAllowCachedSubmitRequirements(false);
     try (RefUpdateContext ctx = RefUpdateContext.open(CHANGE_MODIFICATION)) {
       try (BatchUpdate u = updateFactory.create(notes.getProjectName(), user, TimeUtil.now())) {
         u.setNotify(notify);
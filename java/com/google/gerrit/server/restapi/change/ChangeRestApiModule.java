@@ -97,6 +97,7 @@ public class ChangeRestApiModule extends RestApiModule {
     post(CHANGE_KIND, "hashtags").to(PostHashtags.class);
     get(CHANGE_KIND, "in").to(ChangeIncludedIn.class);
     post(CHANGE_KIND, "index").to(Index.class);
+    post(CHANGE_KIND, "squash_meta").to(SquashMeta.class);
     get(CHANGE_KIND, "meta_diff").to(GetMetaDiff.class);
     post(CHANGE_KIND, "merge").to(CreateMergePatchSet.class);
     get(CHANGE_KIND, "message").to(GetMessage.class);
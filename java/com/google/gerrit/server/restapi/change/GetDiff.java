@@ -31,6 +31,7 @@ import com.google.gerrit.extensions.common.DiffWebLinkInfo;
 import com.google.gerrit.extensions.common.WebLinkInfo;
 import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.BinaryResult;
 import com.google.gerrit.extensions.restapi.CacheControl;
 import com.google.gerrit.extensions.restapi.IdString;
 import com.google.gerrit.extensions.restapi.ResourceConflictException;
@@ -47,6 +48,7 @@ import com.google.gerrit.server.diff.DiffWebLinksProvider;
 import com.google.gerrit.server.git.LargeObjectException;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.patch.PatchScriptFactory;
+import com.google.gerrit.server.patch.StreamingDiff;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.project.InvalidChangeOperationException;
 import com.google.gerrit.server.project.NoSuchChangeException;
@@ -93,6 +95,9 @@ public class GetDiff implements RestReadView<FileResource> {
   @Option(name = "--intraline")
   boolean intraline;
 
+  @Option(name = "--stream")
+  boolean stream;
+
   @Inject
   GetDiff(
       ProjectCache projectCache,
@@ -108,48 +113,20 @@ public class GetDiff implements RestReadView<FileResource> {
   }
 
   @Override
-  public Response<DiffInfo> apply(FileResource resource)
+  public Response<?> apply(FileResource resource)
       throws BadRequestException, ResourceConflictException, ResourceNotFoundException,
           AuthException, InvalidChangeOperationException, IOException, PermissionBackendException {
-    DiffPreferencesInfo prefs = new DiffPreferencesInfo();
-    if (whitespace != null) {
-      prefs.ignoreWhitespace = whitespace;
-    } else if (ignoreWhitespace != null) {
-      prefs.ignoreWhitespace = ignoreWhitespace.whitespace;
-    } else {
-      prefs.ignoreWhitespace = Whitespace.IGNORE_LEADING_AND_TRAILING;
-    }
-    prefs.intralineDifference = intraline;
-    logger.atFine().log(
-        "diff preferences: ignoreWhitespace = %s, intralineDifference = %s",
-        prefs.ignoreWhitespace, prefs.intralineDifference);
-
-    PatchScriptFactory psf;
-    PatchSet basePatchSet = null;
-    PatchSet.Id pId = resource.getPatchKey().patchSetId();
-    String fileName = resource.getPatchKey().fileName();
-    logger.atFine().log(
-        "patchSetId = %d, fileName = %s, base = %s, parentNum = %d",
-        pId.get(), fileName, base, parentNum);
-    ChangeNotes notes = resource.getRevision().getNotes();
-    if (base != null) {
-      RevisionResource baseResource =
-          revisions.parse(resource.getRevision().getChangeResource(), IdString.fromDecoded(base));
-      basePatchSet = baseResource.getPatchSet();
-      if (basePatchSet.id().get() == 0) {
-        throw new BadRequestException("edit not allowed as base");
-      }
-      psf =
-          patchScriptFactoryFactory.create(
-              notes, fileName, basePatchSet.id(), pId, prefs, currentUser.get());
-    } else if (parentNum > 0) {
-      psf =
-          patchScriptFactoryFactory.create(
-              notes, fileName, parentNum, pId, prefs, currentUser.get());
-    } else {
-      psf = patchScriptFactoryFactory.create(notes, fileName, null, pId, prefs, currentUser.get());
+    if (stream) {
+      return streamDiff(resource);
     }
+    return getDiffInfo(resource);
+  }
 
+  public Response<DiffInfo> getDiffInfo(FileResource resource)
+      throws BadRequestException, ResourceConflictException, ResourceNotFoundException,
+          AuthException, InvalidChangeOperationException, IOException, PermissionBackendException {
+    PatchSet basePatchSet = getBasePatchSet(resource);
+    PatchScriptFactory psf = newPatchScriptFactory(resource, basePatchSet);
     try {
       PatchScript ps = psf.call();
       Project.NameKey projectName = resource.getRevision().getChange().getProject();
@@ -177,6 +154,77 @@ public class GetDiff implements RestReadView<FileResource> {
     }
   }
 
+  /**
+   * Writes the diff directly to the response, without building the {@link DiffInfo} in memory (see
+   * {@link StreamingDiff}). Intraline differences and web links are not supported.
+   */
+  private Response<BinaryResult> streamDiff(FileResource resource)
+      throws BadRequestException, ResourceConflictException, ResourceNotFoundException,
+          AuthException, InvalidChangeOperationException, IOException, PermissionBackendException {
+    if (intraline) {
+      throw new BadRequestException("intraline is not supported for streamed diffs");
+    }
+    PatchScriptFactory psf = newPatchScriptFactory(resource, getBasePatchSet(resource));
+    try {
+      Response<BinaryResult> r = Response.ok(psf.stream());
+      if (resource.isCacheable()) {
+        r.caching(CacheControl.PRIVATE(7, TimeUnit.DAYS));
+      }
+      return r;
+    } catch (NoSuchChangeException e) {
+      throw new ResourceNotFoundException(e.getMessage(), e);
+    } catch (LargeObjectException e) {
+      throw new ResourceConflictException(e.getMessage(), e);
+    }
+  }
+
+  @Nullable
+  private PatchSet getBasePatchSet(FileResource resource)
+      throws BadRequestException, ResourceNotFoundException, AuthException, IOException,
+          PermissionBackendException {
+    if (base == null) {
+      return null;
+    }
+    RevisionResource baseResource =
+        revisions.parse(resource.getRevision().getChangeResource(), IdString.fromDecoded(base));
+    PatchSet basePatchSet = baseResource.getPatchSet();
+    if (basePatchSet.id().get() == 0) {
+      throw new BadRequestException("edit not allowed as base");
+    }
+    return basePatchSet;
+  }
+
+  private PatchScriptFactory newPatchScriptFactory(
+      FileResource resource, @Nullable PatchSet basePatchSet) {
+    DiffPreferencesInfo prefs = new DiffPreferencesInfo();
+    if (whitespace != null) {
+      prefs.ignoreWhitespace = whitespace;
+    } else if (ignoreWhitespace != null) {
+      prefs.ignoreWhitespace = ignoreWhitespace.whitespace;
+    } else {
+      prefs.ignoreWhitespace = Whitespace.IGNORE_LEADING_AND_TRAILING;
+    }
+    prefs.intralineDifference = intraline;
+    logger.atFine().log(
+        "diff preferences: ignoreWhitespace = %s, intralineDifference = %s",
+        prefs.ignoreWhitespace, prefs.intralineDifference);
+
+    PatchSet.Id pId = resource.getPatchKey().patchSetId();
+    String fileName = resource.getPatchKey().fileName();
+    logger.atFine().log(
+        "patchSetId = %d, fileName = %s, base = %s, parentNum = %d",
+        pId.get(), fileName, base, parentNum);
+    ChangeNotes notes = resource.getRevision().getNotes();
+    if (basePatchSet != null) {
+      return patchScriptFactoryFactory.create(
+          notes, fileName, basePatchSet.id(), pId, prefs, currentUser.get());
+    } else if (parentNum > 0) {
+      return patchScriptFactoryFactory.create(
+          notes, fileName, parentNum, pId, prefs, currentUser.get());
+    }
+    return patchScriptFactoryFactory.create(notes, fileName, null, pId, prefs, currentUser.get());
+  }
+
   private static class DiffWebLinksProviderImpl implements DiffWebLinksProvider {
 
     private final WebLinks webLinks;
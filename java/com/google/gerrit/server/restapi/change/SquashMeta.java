@@ -0,0 +1,74 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.restapi.change;
+
+import static com.google.gerrit.server.update.context.RefUpdateContext.RefUpdateType.CHANGE_MODIFICATION;
+
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.extensions.common.Input;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.server.change.ChangeResource;
+import com.google.gerrit.server.permissions.GlobalPermission;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.update.BatchUpdate;
+import com.google.gerrit.server.update.BatchUpdateOp;
+import com.google.gerrit.server.update.ChangeContext;
+import com.google.gerrit.server.update.UpdateException;
+import com.google.gerrit.server.update.context.RefUpdateContext;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Replaces the NoteDb meta history of a change by a single checkpoint commit.
+ *
+ * <p>The squashed history stays reachable from the {@code meta-history} ref of the change.
+ */
+@Singleton
+public class SquashMeta implements RestModifyView<ChangeResource, Input> {
+  private final PermissionBackend permissionBackend;
+  private final BatchUpdate.Factory updateFactory;
+
+  @Inject
+  SquashMeta(PermissionBackend permissionBackend, BatchUpdate.Factory updateFactory) {
+    this.permissionBackend = permissionBackend;
+    this.updateFactory = updateFactory;
+  }
+
+  @Override
+  public Response<Object> apply(ChangeResource rsrc, Input input)
+      throws RestApiException, UpdateException, PermissionBackendException {
+    permissionBackend.currentUser().check(GlobalPermission.MAINTAIN_SERVER);
+    try (RefUpdateContext ctx = RefUpdateContext.open(CHANGE_MODIFICATION)) {
+      try (BatchUpdate bu =
+          updateFactory.create(rsrc.getProject(), rsrc.getUser(), TimeUtil.now())) {
+        bu.addOp(rsrc.getId(), new SquashMetaOp()).execute();
+      }
+    }
+    return Response.none();
+  }
+
+  private static class SquashMetaOp implements BatchUpdateOp {
+    @Override
+    public boolean updateChange(ChangeContext ctx) {
+      PatchSet.Id psId = ctx.getChange().currentPatchSetId();
+      ctx.getUpdate(psId).squashMetaHistory();
+      return true;
+    }
+  }
+}
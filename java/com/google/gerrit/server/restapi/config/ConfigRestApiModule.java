@@ -40,6 +40,7 @@ public class ConfigRestApiModule extends RestApiModule {
     post(CONFIG_KIND, "check.consistency").to(CheckConsistency.class);
     post(CONFIG_KIND, "deactivate.stale.accounts").to(AccountDeactivation.class);
     put(CONFIG_KIND, "email.confirm").to(ConfirmEmail.class);
+    get(CONFIG_KIND, "events").to(GetEvents.class);
 
     child(CONFIG_KIND, "experiments").to(ExperimentsCollection.class);
     get(EXPERIMENT_KIND).to(GetExperiment.class);
@@ -52,6 +53,9 @@ public class ConfigRestApiModule extends RestApiModule {
     put(CONFIG_KIND, "preferences.diff").to(SetDiffPreferences.class);
     get(CONFIG_KIND, "preferences.edit").to(GetEditPreferences.class);
     put(CONFIG_KIND, "preferences.edit").to(SetEditPreferences.class);
+    get(CONFIG_KIND, "profiler").to(GetProfiler.class);
+    post(CONFIG_KIND, "profiler").to(PostProfiler.class);
+    get(CONFIG_KIND, "profiler.stacks").to(GetProfilerStacks.class);
     post(CONFIG_KIND, "reload").to(ReloadConfig.class);
     post(CONFIG_KIND, "snapshot.indexes").to(SnapshotIndexes.class);
     post(CONFIG_KIND, "cleanup.changes").to(CleanupChanges.class);
@@ -0,0 +1,153 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.restapi.config;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.MethodNotAllowedException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.events.EventBroker;
+import com.google.gerrit.server.events.EventJournal;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Lists the journaled events that follow a given sequence id, the REST equivalent of {@code
+ * stream-events --resume-from}.
+ */
+@RequiresCapability(GlobalCapability.STREAM_EVENTS)
+public class GetEvents implements RestReadView<ConfigResource> {
+  private static final int DEFAULT_LIMIT = 500;
+
+  /** Maximum number of journaled events that are checked per returned event. */
+  private static final int MAX_SCANNED_PER_EVENT = 10;
+
+  private final EventJournal journal;
+  private final EventBroker eventBroker;
+  private final Provider<CurrentUser> self;
+
+  @Option(
+      name = "--resume-from",
+      metaVar = "ID",
+      usage = "list the journaled events that follow the event with this sequence id")
+  private long resumeFrom;
+
+  @Option(
+      name = "--limit",
+      aliases = {"-n"},
+      metaVar = "CNT",
+      usage = "maximum number of events to list")
+  private int limit = DEFAULT_LIMIT;
+
+  @Option(
+      name = "--subscribe",
+      aliases = {"-s"},
+      metaVar = "TYPE",
+      usage = "only list events of this type")
+  private List<String> subscribedToEvents = new ArrayList<>();
+
+  @Inject
+  GetEvents(EventJournal journal, EventBroker eventBroker, Provider<CurrentUser> self) {
+    this.journal = journal;
+    this.eventBroker = eventBroker;
+    this.self = self;
+  }
+
+  @Override
+  public Response<EventsInfo> apply(ConfigResource rsrc)
+      throws BadRequestException,
+          MethodNotAllowedException,
+          IOException,
+          PermissionBackendException {
+    if (!journal.isEnabled()) {
+      throw new MethodNotAllowedException("event journal disabled");
+    }
+    if (limit <= 0) {
+      throw new BadRequestException("limit must be positive");
+    }
+
+    CurrentUser user = self.get();
+    EventJournal.Cursor cursor = journal.read(resumeFrom);
+    EventsInfo result = new EventsInfo();
+    result.events = new ArrayList<>();
+    result.resumeFrom = resumeFrom;
+    int maxScanned = MAX_SCANNED_PER_EVENT * limit;
+    int scanned = 0;
+    boolean exhausted = false;
+    while (result.events.size() < limit && scanned < maxScanned) {
+      List<EventJournal.Entry> entries =
+          cursor.next(Math.min(limit - result.events.size(), maxScanned - scanned));
+      if (entries.isEmpty()) {
+        exhausted = true;
+        break;
+      }
+      for (EventJournal.Entry entry : entries) {
+        scanned++;
+        result.resumeFrom = entry.id();
+        if ((subscribedToEvents.isEmpty() || subscribedToEvents.contains(entry.type()))
+            && eventBroker.isVisibleTo(entry, user)) {
+          result.events.add(new EventInfo(entry));
+        }
+      }
+    }
+    // Reading one more entry only moves the cursor, resumeFrom stays at the last checked entry.
+    if (!exhausted && !cursor.next(1).isEmpty()) {
+      result.moreEvents = true;
+    }
+    if (cursor.missedEvents()) {
+      result.missedEvents = true;
+    }
+    return Response.ok(result);
+  }
+
+  public static class EventsInfo {
+    /** The visible events, ordered by sequence id. */
+    public List<EventInfo> events;
+
+    /**
+     * The sequence id to resume from, the id of the last journaled event that was checked. It may
+     * be larger than the id of the last returned event.
+     */
+    public long resumeFrom;
+
+    public Boolean missedEvents;
+    public Boolean moreEvents;
+  }
+
+  public static class EventInfo {
+    public long sequenceId;
+    public String type;
+
+    /** The event in the format in which it is written by {@code stream-events}. */
+    public JsonElement event;
+
+    EventInfo(EventJournal.Entry entry) {
+      sequenceId = entry.id();
+      type = entry.type();
+      event = JsonParser.parseString(entry.event().toString());
+    }
+  }
+}
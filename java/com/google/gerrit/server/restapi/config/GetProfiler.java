@@ -0,0 +1,59 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.restapi.config;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.profiler.SamplingProfiler;
+import com.google.inject.Inject;
+import java.util.Map;
+
+/** Returns the status of the {@link SamplingProfiler}. */
+@RequiresCapability(GlobalCapability.MAINTAIN_SERVER)
+public class GetProfiler implements RestReadView<ConfigResource> {
+  private final SamplingProfiler profiler;
+
+  @Inject
+  GetProfiler(SamplingProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public Response<ProfilerInfo> apply(ConfigResource rsrc) {
+    return Response.ok(toInfo(profiler.getStatus()));
+  }
+
+  static ProfilerInfo toInfo(SamplingProfiler.Status status) {
+    ProfilerInfo info = new ProfilerInfo();
+    info.running = status.running ? true : null;
+    info.mode = status.mode;
+    info.intervalMs = status.intervalMs;
+    info.samples = status.samples;
+    info.samplingTimeMs = status.samplingTimeMs;
+    info.requests = status.samplesByRequest.isEmpty() ? null : status.samplesByRequest;
+    return info;
+  }
+
+  public static class ProfilerInfo {
+    public Boolean running;
+    public SamplingProfiler.Mode mode;
+    public Long intervalMs;
+    public Long samples;
+    public Long samplingTimeMs;
+    public Map<String, Long> requests;
+  }
+}
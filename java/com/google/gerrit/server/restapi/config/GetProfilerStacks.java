@@ -0,0 +1,55 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.restapi.config;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.BinaryResult;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.profiler.SamplingProfiler;
+import com.google.inject.Inject;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Downloads the samples of the {@link SamplingProfiler} in the collapsed stack format, which can be
+ * rendered as flame graph.
+ */
+@RequiresCapability(GlobalCapability.MAINTAIN_SERVER)
+public class GetProfilerStacks implements RestReadView<ConfigResource> {
+  private final SamplingProfiler profiler;
+
+  @Option(
+      name = "--request",
+      aliases = {"-r"},
+      metaVar = "REQUEST",
+      usage = "only return the samples of this request type, e.g. 'REST /changes/*/revisions/*'")
+  private String request;
+
+  @Inject
+  GetProfilerStacks(SamplingProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public Response<BinaryResult> apply(ConfigResource rsrc) {
+    return Response.ok(
+        BinaryResult.create(profiler.getCollapsedStacks(request))
+            .setContentType("text/plain")
+            .setCharacterEncoding(UTF_8));
+  }
+}
@@ -121,6 +121,8 @@ public class ListTasks implements RestReadView<ConfigResource> {
     public String remoteName;
     public String projectName;
     public String queueName;
+    public WorkQueue.Priority priority;
+    public Timestamp deadline;
 
     public TaskInfo(Task<?> task) {
       this.id = HexFormat.fromInt(task.getTaskId());
@@ -129,6 +131,10 @@ public class ListTasks implements RestReadView<ConfigResource> {
       this.delay = task.getDelay(TimeUnit.MILLISECONDS);
       this.command = task.toString();
       this.queueName = task.getQueueName();
+      this.priority = task.getPriority();
+      if (task.getDeadline() != null) {
+        this.deadline = Timestamp.from(task.getDeadline());
+      }
 
       if (task instanceof ProjectTask) {
         ProjectTask<?> projectTask = ((ProjectTask<?>) task);
@@ -0,0 +1,79 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.restapi.config;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.profiler.SamplingProfiler;
+import com.google.gerrit.server.restapi.config.GetProfiler.ProfilerInfo;
+import com.google.gerrit.server.restapi.config.PostProfiler.Input;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Starts, stops or resets the {@link SamplingProfiler}. */
+@RequiresCapability(GlobalCapability.MAINTAIN_SERVER)
+@Singleton
+public class PostProfiler implements RestModifyView<ConfigResource, Input> {
+  public static class Input {
+    public Operation operation;
+    public SamplingProfiler.Mode mode;
+    public Long intervalMs;
+  }
+
+  public enum Operation {
+    START,
+    STOP,
+    RESET
+  }
+
+  private final SamplingProfiler profiler;
+
+  @Inject
+  PostProfiler(SamplingProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public Response<ProfilerInfo> apply(ConfigResource rsrc, Input input)
+      throws BadRequestException {
+    if (input == null || input.operation == null) {
+      throw new BadRequestException("operation must be specified");
+    }
+
+    switch (input.operation) {
+      case START:
+        if (input.intervalMs != null && input.intervalMs <= 0) {
+          throw new BadRequestException("interval_ms must be positive");
+        }
+        SamplingProfiler.Status status = profiler.getStatus();
+        profiler.start(
+            input.mode != null ? input.mode : status.mode,
+            input.intervalMs != null ? input.intervalMs : status.intervalMs);
+        break;
+      case STOP:
+        profiler.stopSampling();
+        break;
+      case RESET:
+        profiler.reset();
+        break;
+      default:
+        throw new BadRequestException("unsupported operation: " + input.operation);
+    }
+    return Response.ok(GetProfiler.toInfo(profiler.getStatus()));
+  }
+}
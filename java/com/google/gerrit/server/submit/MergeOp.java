@@ -548,6 +548,7 @@ public class MergeOp implements AutoCloseable {
         return;
       }
       try {
+        cd.setAllowCachedSubmitRequirements(false);
         checkSubmitRequirements(cd);
       } catch (ResourceConflictException e) {
         // ResourceConflictException is thrown means submit requirement is not fulfilled.
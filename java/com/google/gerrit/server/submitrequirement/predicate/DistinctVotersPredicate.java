@@ -98,7 +98,7 @@ public class DistinctVotersPredicate extends SubmitRequirementPredicate {
 
   @Override
   public int getCost() {
-    return 1;
+    return 3;
   }
 
   private boolean filterPatchSetApproval(PatchSetApproval psa, ProjectState projectState) {
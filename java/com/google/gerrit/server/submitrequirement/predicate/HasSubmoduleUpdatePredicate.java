@@ -103,6 +103,6 @@ public class HasSubmoduleUpdatePredicate extends SubmitRequirementPredicate {
 
   @Override
   public int getCost() {
-    return 1;
+    return 10;
   }
 }
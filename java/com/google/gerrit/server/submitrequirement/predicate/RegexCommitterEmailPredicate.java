@@ -52,6 +52,6 @@ public class RegexCommitterEmailPredicate extends SubmitRequirementPredicate {
 
   @Override
   public int getCost() {
-    return 1;
+    return 2;
   }
 }
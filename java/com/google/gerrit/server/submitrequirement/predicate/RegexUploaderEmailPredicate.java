@@ -66,6 +66,6 @@ public class RegexUploaderEmailPredicate extends SubmitRequirementPredicate {
 
   @Override
   public int getCost() {
-    return 1;
+    return 2;
   }
 }
@@ -634,7 +634,11 @@ public class BatchUpdate implements AutoCloseable {
         Change.Id id = e.getKey();
         switch (e.getValue()) {
           case UPSERTED:
-            indexFutures.add(indexer.indexAsync(project, id));
+            // If the caller doesn't await the index write, updates of the change can be coalesced.
+            indexFutures.add(
+                indexAsync
+                    ? indexer.indexAsyncDebounced(project, id)
+                    : indexer.indexAsync(project, id));
             break;
           case DELETED:
             indexFutures.add(indexer.deleteAsync(project, id));
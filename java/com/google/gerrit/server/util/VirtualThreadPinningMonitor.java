@@ -0,0 +1,152 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import java.time.Duration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Counts the events in which a virtual thread blocked while being pinned to its carrier thread.
+ *
+ * <p>A virtual thread that blocks inside a {@code synchronized} block or a native frame can't
+ * unmount from its carrier thread, so that the carrier thread is blocked too. If this happens often,
+ * virtual threads perform worse than platform threads. The pinning events are received from the
+ * {@code jdk.VirtualThreadPinned} event of the Java Flight Recorder, which only reports pinning
+ * that lasted longer than {@code execution.virtualThreadPinnedThreshold}.
+ *
+ * <p>The monitor only runs if virtual threads are enabled for the work queues or for HTTP and if
+ * the Java runtime supports them.
+ */
+@Singleton
+public class VirtualThreadPinningMonitor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  public static Module module() {
+    return new LifecycleModule() {
+      @Override
+      protected void configure() {
+        listener().to(VirtualThreadPinningMonitor.class);
+      }
+    };
+  }
+
+  private final boolean enabled;
+  private final Duration threshold;
+  private final Counter0 pinnedCount;
+  private final Timer0 pinnedLatency;
+  private RecordingStream stream;
+
+  @Inject
+  VirtualThreadPinningMonitor(@GerritServerConfig Config cfg, MetricMaker metrics) {
+    this.enabled =
+        (cfg.getBoolean("execution", "virtualThreads", false)
+                || cfg.getBoolean("httpd", null, "virtualThreads", false))
+            && VirtualThreads.isSupported();
+    this.threshold =
+        Duration.ofMillis(
+            ConfigUtil.getTimeUnit(
+                cfg, "execution", null, "virtualThreadPinnedThreshold", 20, MILLISECONDS));
+    this.pinnedCount =
+        metrics.newCounter(
+            "execution/virtual_threads/pinned_count",
+            new Description(
+                    "Number of times a virtual thread blocked while pinned to its carrier thread")
+                .setRate()
+                .setUnit("events"));
+    this.pinnedLatency =
+        metrics.newTimer(
+            "execution/virtual_threads/pinned_latency",
+            new Description("Time virtual threads blocked while pinned to their carrier thread")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+
+  @Override
+  public synchronized void start() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      stream = new RecordingStream();
+      stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+      stream.onEvent(PINNED_EVENT, this::onPinned);
+      stream.startAsync();
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log("Cannot monitor pinning of virtual threads");
+      stream = null;
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (stream != null) {
+      stream.close();
+      stream = null;
+    }
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinnedCount.increment();
+    pinnedLatency.record(event.getDuration().toNanos(), NANOSECONDS);
+    logger.atFine().log(
+        "Virtual thread was pinned for %d ms in %s",
+        event.getDuration().toMillis(), new PinnedAt(event));
+  }
+
+  /** Formats the first frame of a pinning event that is not in the Java runtime, for logging. */
+  private static class PinnedAt {
+    private final RecordedEvent event;
+
+    PinnedAt(RecordedEvent event) {
+      this.event = event;
+    }
+
+    @Override
+    public String toString() {
+      RecordedStackTrace stackTrace = event.getStackTrace();
+      if (stackTrace != null) {
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+          String type = frame.getMethod().getType().getName();
+          if (!type.startsWith("java.") && !type.startsWith("jdk.")) {
+            return type + "." + frame.getMethod().getName();
+          }
+        }
+      }
+      return "unknown location";
+    }
+  }
+}
@@ -0,0 +1,130 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.util;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Access to the virtual threads of the Java runtime.
+ *
+ * <p>Gerrit is compiled for a Java version that doesn't have virtual threads yet, hence they are
+ * created reflectively. On runtimes without virtual threads {@link #newThreadFactory()} returns
+ * {@link Optional#empty()} and callers fall back to platform threads.
+ *
+ * <p>Virtual threads are always daemon threads and ignore priorities. Code running on virtual
+ * threads should avoid blocking while holding a monitor ({@code synchronized}), because that pins
+ * the virtual thread to its carrier thread.
+ */
+public class VirtualThreads {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @Nullable private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+  @Nullable private static final Method FACTORY =
+      OF_VIRTUAL != null ? findMethod(OF_VIRTUAL.getReturnType(), "factory") : null;
+  @Nullable private static final Method IS_VIRTUAL = findMethod(Thread.class, "isVirtual");
+
+  /** Whether the Java runtime supports virtual threads. */
+  public static boolean isSupported() {
+    return FACTORY != null;
+  }
+
+  /**
+   * Returns a factory that creates unnamed, unstarted virtual threads, {@link Optional#empty()} if
+   * the Java runtime doesn't support virtual threads.
+   */
+  public static Optional<ThreadFactory> newThreadFactory() {
+    if (!isSupported()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of((ThreadFactory) FACTORY.invoke(OF_VIRTUAL.invoke(null)));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("Cannot create virtual thread factory");
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns a factory that creates virtual threads if {@code virtual} is {@code true} and the Java
+   * runtime supports virtual threads, otherwise the given factory for platform threads.
+   *
+   * @param virtual whether virtual threads were requested
+   * @param platform factory for platform threads
+   * @param what description of the threads for the warning that is logged if virtual threads are
+   *     not supported
+   */
+  public static ThreadFactory threadFactory(boolean virtual, ThreadFactory platform, String what) {
+    return newThreadFactory(virtual, what).orElse(platform);
+  }
+
+  /**
+   * Returns a factory that creates virtual threads if {@code virtual} is {@code true} and the Java
+   * runtime supports virtual threads, {@link Optional#empty()} if the caller should use platform
+   * threads.
+   *
+   * @param virtual whether virtual threads were requested
+   * @param what description of the threads for the warning that is logged if virtual threads are
+   *     not supported
+   */
+  public static Optional<ThreadFactory> newThreadFactory(boolean virtual, String what) {
+    return newThreadFactory(virtual, what, VirtualThreads::newThreadFactory);
+  }
+
+  @VisibleForTesting
+  static Optional<ThreadFactory> newThreadFactory(
+      boolean virtual, String what, Supplier<Optional<ThreadFactory>> virtualFactory) {
+    if (!virtual) {
+      return Optional.empty();
+    }
+    Optional<ThreadFactory> factory = virtualFactory.get();
+    if (!factory.isPresent()) {
+      logger.atWarning().atMostEvery(1, MINUTES).log(
+          "Virtual threads are not supported by Java %s, using platform threads for %s",
+          Runtime.version(), what);
+    }
+    return factory;
+  }
+
+  /** Whether the given thread is a virtual thread, always {@code false} if not supported. */
+  public static boolean isVirtual(Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (Boolean) IS_VIRTUAL.invoke(thread);
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  @Nullable
+  private static Method findMethod(Class<?> clazz, String name) {
+    try {
+      return clazz.getMethod(name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private VirtualThreads() {}
+}
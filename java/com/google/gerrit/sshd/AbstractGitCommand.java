@@ -14,7 +14,10 @@
 
 package com.google.gerrit.sshd;
 
+import com.google.common.base.CharMatcher;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.ProjectUtil;
 import com.google.gerrit.server.AccessPath;
 import com.google.gerrit.server.DynamicOptions;
 import com.google.gerrit.server.IdentifiedUser;
@@ -86,6 +89,21 @@ public abstract class AbstractGitCommand extends BaseCommand {
     }
   }
 
+  @Override
+  @Nullable
+  protected Project.NameKey getProjectNameForScheduling() {
+    String[] args = getArguments();
+    if (args != null) {
+      for (String arg : args) {
+        if (!arg.startsWith("-")) {
+          String name = ProjectUtil.stripGitSuffix(CharMatcher.is('/').trimFrom(arg));
+          return name.isEmpty() ? null : Project.nameKey(name);
+        }
+      }
+    }
+    return null;
+  }
+
   private SshSession newSession() {
     SshSession n =
         new SshSession(
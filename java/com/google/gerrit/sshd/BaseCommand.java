@@ -30,6 +30,8 @@ import com.google.gerrit.server.DynamicOptions;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.RequestCleanup;
 import com.google.gerrit.server.git.ProjectRunnable;
+import com.google.gerrit.server.git.QoSPolicy;
+import com.google.gerrit.server.git.QoSScheduler;
 import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
 import com.google.gerrit.server.permissions.GlobalPermission;
 import com.google.gerrit.server.permissions.PermissionBackend;
@@ -52,8 +54,8 @@ import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.sshd.common.SshException;
 import org.apache.sshd.common.channel.exception.SshChannelClosedException;
 import org.apache.sshd.server.Environment;
@@ -92,7 +94,9 @@ public abstract class BaseCommand implements Command {
 
   @Inject protected RequestCleanup cleanup;
 
-  @Inject @CommandExecutor private ScheduledThreadPoolExecutor executor;
+  @Inject @CommandExecutor private QoSScheduler scheduler;
+
+  @Inject private QoSPolicy qosPolicy;
 
   @Inject private PermissionBackend permissionBackend;
 
@@ -299,10 +303,25 @@ public abstract class BaseCommand implements Command {
       //
       new Thread(tt, tt.toString()).start();
     } else {
-      task.set(executor.submit(tt));
+      try {
+        task.set(scheduler.submit(qosPolicy.getTenant(user), getProjectNameForScheduling(), tt));
+      } catch (QoSScheduler.QueueFullException e) {
+        tt.reject(e);
+      }
     }
   }
 
+  /**
+   * Returns the project that the command accesses, if it is known before the command is started.
+   *
+   * <p>The project is used to limit the number of concurrent commands per project if QoS
+   * scheduling is enabled (see {@link QoSScheduler}).
+   */
+  @Nullable
+  protected Project.NameKey getProjectNameForScheduling() {
+    return null;
+  }
+
   private boolean isAdminHighPriorityCommand() {
     if (getClass().getAnnotation(AdminHighPriorityCommand.class) != null) {
       try {
@@ -452,6 +471,9 @@ public abstract class BaseCommand implements Command {
     private final String taskName;
     private final AccessPath accessPath;
 
+    // Not a monitor, so that a command running on a virtual thread doesn't pin its carrier thread.
+    private final ReentrantLock lock = new ReentrantLock();
+
     private Project.NameKey projectName;
 
     private TaskThunk(final CommandRunnable thunk, AccessPath accessPath) {
@@ -462,19 +484,40 @@ public abstract class BaseCommand implements Command {
 
     @Override
     public void cancel() {
-      synchronized (this) {
+      lock.lock();
+      try {
         final Context old = sshScope.set(context);
         try {
           onExit(STATUS_CANCEL);
         } finally {
           sshScope.set(old);
         }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void reject(QoSScheduler.QueueFullException e) {
+      lock.lock();
+      try {
+        final Context old = sshScope.set(context);
+        try {
+          logger.atFine().log("Rejected %s: %s", taskName, e.getMessage());
+          writeError("fatal", "server is busy, try again later");
+          flushIgnoreException(err);
+          onExit(1);
+        } finally {
+          sshScope.set(old);
+        }
+      } finally {
+        lock.unlock();
       }
     }
 
     @Override
     public void run() {
-      synchronized (this) {
+      lock.lock();
+      try {
         final Thread thisThread = Thread.currentThread();
         final String thisName = thisThread.getName();
         int rc = 0;
@@ -514,6 +557,8 @@ public abstract class BaseCommand implements Command {
             thisThread.setName(thisName);
           }
         }
+      } finally {
+        lock.unlock();
       }
     }
 
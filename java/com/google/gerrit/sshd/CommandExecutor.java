@@ -20,7 +20,10 @@ import com.google.inject.BindingAnnotation;
 import java.lang.annotation.Retention;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
-/** Marker on {@link ScheduledThreadPoolExecutor} used by SSH threads. */
+/**
+ * Marker on the {@link ScheduledThreadPoolExecutor} used by SSH threads and on the {@link
+ * com.google.gerrit.server.git.QoSScheduler} that dispatches SSH commands to it.
+ */
 @Retention(RUNTIME)
 @BindingAnnotation
 public @interface CommandExecutor {}
@@ -16,6 +16,8 @@ package com.google.gerrit.sshd;
 
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.ThreadSettingsConfig;
+import com.google.gerrit.server.git.QoSPolicy;
+import com.google.gerrit.server.git.QoSScheduler;
 import com.google.gerrit.server.git.QueueProvider;
 import com.google.gerrit.server.git.WorkQueue;
 import com.google.inject.Inject;
@@ -30,12 +32,15 @@ public class CommandExecutorQueueProvider implements QueueProvider {
   private final int batchThreads;
   private final ScheduledThreadPoolExecutor interactiveExecutor;
   private final ScheduledThreadPoolExecutor batchExecutor;
+  private final QoSScheduler interactiveScheduler;
+  private final QoSScheduler batchScheduler;
 
   @Inject
   public CommandExecutorQueueProvider(
       @GerritServerConfig Config config,
       ThreadSettingsConfig threadsSettingsConfig,
-      WorkQueue queues) {
+      WorkQueue queues,
+      QoSPolicy qosPolicy) {
     poolSize = threadsSettingsConfig.getSshdThreads();
     batchThreads =
         config.getInt("sshd", "batchThreads", threadsSettingsConfig.getSshdBatchTreads());
@@ -51,6 +56,13 @@ public class CommandExecutorQueueProvider implements QueueProvider {
     } else {
       batchExecutor = interactiveExecutor;
     }
+    interactiveScheduler =
+        qosPolicy.newScheduler("interactive", interactiveExecutor, interactiveThreads);
+    if (batchExecutor != interactiveExecutor) {
+      batchScheduler = qosPolicy.newScheduler("batch", batchExecutor, batchThreads);
+    } else {
+      batchScheduler = interactiveScheduler;
+    }
   }
 
   @Override
@@ -63,4 +75,15 @@ public class CommandExecutorQueueProvider implements QueueProvider {
         return batchExecutor;
     }
   }
+
+  @Override
+  public QoSScheduler getScheduler(QueueType type) {
+    switch (type) {
+      case INTERACTIVE:
+        return interactiveScheduler;
+      case BATCH:
+      default:
+        return batchScheduler;
+    }
+  }
 }
@@ -71,8 +71,14 @@ public abstract class SshCommand extends BaseCommand {
             try (TraceContext traceContext = enableTracing();
                 PerformanceLogContext performanceLogContext =
                     new PerformanceLogContext(config, performanceLoggers)) {
-              RequestInfo requestInfo =
-                  RequestInfo.builder(RequestInfo.RequestType.SSH, user, traceContext).build();
+              RequestInfo.Builder requestInfoBuilder =
+                  RequestInfo.builder(RequestInfo.RequestType.SSH, user, traceContext);
+              if (!getName().isEmpty()) {
+                requestInfoBuilder.commandName(getName());
+              }
+              RequestInfo requestInfo = requestInfoBuilder.build();
+              performanceLogContext.accountResourceUsage(
+                  requestInfo.formatForLogging(), requestInfo.resourceUsage());
               try (RequestStateContext requestStateContext =
                   RequestStateContext.open()
                       .addRequestStateProvider(
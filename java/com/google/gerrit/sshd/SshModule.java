@@ -29,6 +29,7 @@ import com.google.gerrit.server.RemotePeer;
 import com.google.gerrit.server.config.GerritConfigListener;
 import com.google.gerrit.server.config.GerritRequestModule;
 import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.QoSScheduler;
 import com.google.gerrit.server.git.QueueProvider;
 import com.google.gerrit.server.git.receive.AsyncReceiveCommits.AsyncReceiveCommitsModule;
 import com.google.gerrit.server.plugins.ModuleGenerator;
@@ -140,6 +141,10 @@ public class SshModule extends LifecycleModule {
         .annotatedWith(CommandExecutor.class)
         .toProvider(CommandExecutorProvider.class)
         .in(SshScope.REQUEST);
+    bind(QoSScheduler.class)
+        .annotatedWith(CommandExecutor.class)
+        .toProvider(CommandSchedulerProvider.class)
+        .in(SshScope.REQUEST);
 
     install(new GerritRequestModule());
   }
@@ -54,6 +54,7 @@ public class DefaultCommandModule extends CommandModule {
     command(gerrit, ListMembersCommand.class);
     command(gerrit, ListGroupsCommand.class);
     command(gerrit, LsUserRefs.class);
+    command(gerrit, ProfilerCommand.class);
     command(gerrit, Query.class);
     command(gerrit, ReloadConfig.class);
     command(gerrit, ShowCaches.class);
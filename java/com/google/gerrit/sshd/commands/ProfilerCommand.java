@@ -0,0 +1,109 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.sshd.commands;
+
+import static com.google.gerrit.common.data.GlobalCapability.MAINTAIN_SERVER;
+import static com.google.gerrit.sshd.CommandMetaData.Mode.MASTER_OR_SLAVE;
+
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.server.profiler.SamplingProfiler;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import java.util.Map;
+import org.kohsuke.args4j.Option;
+
+/** Controls the sampling profiler and downloads its samples. */
+@RequiresCapability(MAINTAIN_SERVER)
+@CommandMetaData(
+    name = "profiler",
+    description = "Control the sampling profiler for request threads",
+    runsAt = MASTER_OR_SLAVE)
+final class ProfilerCommand extends SshCommand {
+  @Option(name = "--start", usage = "start sampling")
+  private boolean start;
+
+  @Option(name = "--stop", usage = "stop sampling")
+  private boolean stop;
+
+  @Option(name = "--reset", usage = "discard the samples that were collected so far")
+  private boolean reset;
+
+  @Option(name = "--mode", usage = "which request threads are sampled when starting")
+  private SamplingProfiler.Mode mode;
+
+  @Option(
+      name = "--interval",
+      metaVar = "MILLISECONDS",
+      usage = "sampling interval in milliseconds when starting")
+  private Long intervalMs;
+
+  @Option(name = "--stacks", usage = "print the samples in the collapsed stack format")
+  private boolean stacks;
+
+  @Option(
+      name = "--request",
+      metaVar = "REQUEST",
+      usage = "only print the samples of this request type")
+  private String request;
+
+  @Inject private SamplingProfiler profiler;
+
+  @Override
+  protected void run() throws Failure {
+    enableGracefulStop();
+    if (start && stop) {
+      throw die("cannot combine --start and --stop");
+    }
+    if (intervalMs != null && intervalMs <= 0) {
+      throw die("--interval must be positive");
+    }
+    if (request != null && !stacks) {
+      throw die("--request requires --stacks");
+    }
+
+    if (stop) {
+      profiler.stopSampling();
+    }
+    if (reset) {
+      profiler.reset();
+    }
+    if (start) {
+      SamplingProfiler.Status status = profiler.getStatus();
+      profiler.start(
+          mode != null ? mode : status.mode, intervalMs != null ? intervalMs : status.intervalMs);
+    }
+
+    if (stacks) {
+      stdout.print(profiler.getCollapsedStacks(request));
+      return;
+    }
+    printStatus(profiler.getStatus());
+  }
+
+  private void printStatus(SamplingProfiler.Status status) {
+    stdout.format(
+        "Profiler %s, mode %s, interval %d ms\n",
+        status.running ? "running" : "stopped", status.mode, status.intervalMs);
+    stdout.format("%d samples taken in %d ms\n", status.samples, status.samplingTimeMs);
+    if (!status.samplesByRequest.isEmpty()) {
+      stdout.print("\n");
+      stdout.format("%10s  %s\n", "Samples", "Request");
+      stdout.print("----------------------------------------------------------------------\n");
+      for (Map.Entry<String, Long> e : status.samplesByRequest.entrySet()) {
+        stdout.format("%10d  %s\n", e.getValue(), e.getKey());
+      }
+    }
+  }
+}
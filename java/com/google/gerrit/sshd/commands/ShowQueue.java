@@ -91,7 +91,7 @@ final class ShowQueue extends SshCommand {
     stdout.print(
         String.format(
             "%-8s %-12s %-12s %-4s %s\n", //
-            "Task", "State", "StartTime", "", "Command"));
+            "Task", "State", "StartTime", "Prio", "Command"));
     stdout.print(
         "------------------------------------------------------------------------------\n");
 
@@ -138,9 +138,14 @@ final class ShowQueue extends SshCommand {
         case STARTING:
         case RUNNING:
         case STOPPING:
-        case READY:
           start = format(task.state);
           break;
+        case READY:
+          start =
+              task.deadline != null && task.deadline.getTime() < now
+                  ? "overdue ...."
+                  : format(task.state);
+          break;
         case OTHER:
         case SLEEPING:
         default:
@@ -158,7 +163,11 @@ final class ShowQueue extends SshCommand {
         stdout.print(
             String.format(
                 "%8s %-12s %-12s %-4s %s\n",
-                task.id, start, startTime(task.startTime.toInstant()), "", command));
+                task.id,
+                start,
+                startTime(task.startTime.toInstant()),
+                format(task.priority),
+                command));
       } else {
         String remoteName =
             task.remoteName != null ? task.remoteName + "/" + task.projectName : task.projectName;
@@ -201,6 +210,18 @@ final class ShowQueue extends SshCommand {
         .format(when);
   }
 
+  private static String format(WorkQueue.Priority priority) {
+    switch (priority) {
+      case HIGH:
+        return "high";
+      case LOW:
+        return "low";
+      case NORMAL:
+      default:
+        return "";
+    }
+  }
+
   private static String format(Task.State state) {
     switch (state) {
       case DONE:
@@ -25,22 +25,29 @@ import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.DynamicOptions;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.events.Event;
-import com.google.gerrit.server.events.EventGson;
+import com.google.gerrit.server.events.EventBroker;
+import com.google.gerrit.server.events.EventJournal;
 import com.google.gerrit.server.events.EventTypes;
+import com.google.gerrit.server.events.SerializedEvents;
+import com.google.gerrit.server.events.SerializedEvents.SerializedEvent;
 import com.google.gerrit.server.events.UserScopedEventListener;
 import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
+import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.sshd.BaseCommand;
 import com.google.gerrit.sshd.CommandMetaData;
 import com.google.gerrit.sshd.StreamCommandExecutor;
-import com.google.gson.Gson;
 import com.google.inject.Inject;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
 import org.apache.sshd.server.Environment;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.kohsuke.args4j.Option;
@@ -63,17 +70,32 @@ public final class StreamEvents extends BaseCommand {
       usage = "subscribe to specific stream-events")
   private List<String> subscribedToEvents = new ArrayList<>();
 
+  @Option(
+      name = "--resume-from",
+      metaVar = "ID",
+      usage = "replay the journaled events that follow the event with this sequence id")
+  private Long resumeFrom;
+
   @Inject private IdentifiedUser currentUser;
 
   @Inject private DynamicSet<UserScopedEventListener> eventListeners;
 
   @Inject @StreamCommandExecutor private ScheduledThreadPoolExecutor pool;
 
-  @Inject @EventGson private Gson gson;
+  @Inject private SerializedEvents serializedEvents;
+
+  @Inject private StreamEventsMetrics metrics;
+
+  @Inject private EventJournal journal;
+
+  @Inject private EventBroker eventBroker;
 
   /** Queue of events to stream to the connected user. */
   private final LinkedBlockingQueue<Event> queue = new LinkedBlockingQueue<>(MAX_EVENTS);
 
+  /** Size of {@link #queue}, registered with {@link StreamEventsMetrics}. */
+  private final IntSupplier queueSize = queue::size;
+
   private RegistrationHandle eventListenerRegistration;
 
   /** Special event to notify clients they missed other events. */
@@ -92,6 +114,30 @@ public final class StreamEvents extends BaseCommand {
   /** True if {@link DroppedOutputEvent} needs to be sent. */
   private volatile boolean dropped;
 
+  /** Total number of events that were dropped for this connection. */
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  /** True if writing to the output failed, e.g. because the client disconnected. */
+  private volatile boolean outputFailed;
+
+  /**
+   * Cursor that reads the journaled events which are replayed for {@code --resume-from}, {@code
+   * null} once all of them were written. Only accessed by the writer task.
+   */
+  private EventJournal.Cursor replay;
+
+  /** True if the client was already notified that the journal misses events. */
+  private boolean replayGapReported;
+
+  /**
+   * True while live events are ignored because they are still read from the journal. Events are
+   * journaled before they are delivered to the listeners, hence none are lost.
+   */
+  private volatile boolean catchingUp;
+
+  /** Sequence id of the last replayed event, live events up to this id were already written. */
+  private volatile long replayedUpTo;
+
   /** Lock to protect {@link #queue}, {@link #task}, {@link #done}. */
   private final Object taskLock = new Object();
 
@@ -111,6 +157,9 @@ public final class StreamEvents extends BaseCommand {
     try (DynamicOptions pluginOptions = new DynamicOptions(injector, dynamicBeans)) {
       try {
         parseCommandLine(pluginOptions);
+        if (resumeFrom != null && !journal.isEnabled()) {
+          throw new UnloggedFailure(1, "fatal: the event journal is not enabled");
+        }
       } catch (UnloggedFailure e) {
         String msg = e.getMessage();
         if (!msg.endsWith("\n")) {
@@ -122,7 +171,7 @@ public final class StreamEvents extends BaseCommand {
         return;
       }
 
-      PrintWriter stdout = toPrintWriter(out);
+      OutputStream stdout = new BufferedOutputStream(out);
       CancelableRunnable writer =
           new CancelableRunnable() {
             @Override
@@ -142,18 +191,28 @@ public final class StreamEvents extends BaseCommand {
               if (currentUser.getUserName().isPresent()) {
                 b.append(" (").append(currentUser.getUserName().get()).append(")");
               }
+              b.append(" [queued: ").append(queue.size()).append('/').append(MAX_EVENTS);
+              long droppedEvents = droppedCount.get();
+              if (droppedEvents > 0) {
+                b.append(", dropped: ").append(droppedEvents);
+              }
+              b.append(']');
               return b.toString();
             }
           };
 
+      metrics.register(queueSize);
+      if (resumeFrom != null) {
+        replay = journal.read(resumeFrom);
+        catchingUp = true;
+      }
       eventListenerRegistration =
           eventListeners.add(
               "gerrit",
               new UserScopedEventListener() {
                 @Override
                 public void onEvent(Event event) {
-                  if (subscribedToEvents.isEmpty()
-                      || subscribedToEvents.contains(event.getType())) {
+                  if (!catchingUp && isSubscribedTo(event.getType())) {
                     offer(writer, event);
                   }
                 }
@@ -163,13 +222,23 @@ public final class StreamEvents extends BaseCommand {
                   return currentUser;
                 }
               });
+      if (replay != null) {
+        synchronized (taskLock) {
+          task = pool.submit(writer);
+        }
+      }
     }
   }
 
+  private boolean isSubscribedTo(String type) {
+    return subscribedToEvents.isEmpty() || subscribedToEvents.contains(type);
+  }
+
   private void removeEventListenerRegistration() {
     if (eventListenerRegistration != null) {
       eventListenerRegistration.remove();
     }
+    metrics.unregister(queueSize);
   }
 
   @Override
@@ -205,7 +274,13 @@ public final class StreamEvents extends BaseCommand {
   private void offer(CancelableRunnable writer, Event event) {
     synchronized (taskLock) {
       if (!queue.offer(event)) {
+        if (!dropped) {
+          logger.atFine().log(
+              "stream-events queue of %s is full, dropping events", currentUser.getLoggableName());
+        }
         dropped = true;
+        droppedCount.incrementAndGet();
+        metrics.dropped();
       }
 
       if (task == null && !done) {
@@ -224,11 +299,16 @@ public final class StreamEvents extends BaseCommand {
     }
   }
 
-  private void writeEvents(CancelableRunnable writer, PrintWriter stdout) {
+  private void writeEvents(CancelableRunnable writer, OutputStream stdout) {
+    if (replay != null) {
+      replayEvents(writer, stdout);
+      return;
+    }
+
     int processed = 0;
 
     while (processed < BATCH_SIZE) {
-      if (Thread.interrupted() || stdout.checkError()) {
+      if (Thread.interrupted() || outputFailed) {
         // The other side either requested a shutdown by calling our
         // destroy() above, or it closed the stream and is no longer
         // accepting output. Either way terminate this instance.
@@ -266,23 +346,85 @@ public final class StreamEvents extends BaseCommand {
     }
   }
 
-  private void write(PrintWriter stdout, Object message) {
-    String msg = null;
+  /** Writes the next batch of journaled events, then schedules the writer again. */
+  private void replayEvents(CancelableRunnable writer, OutputStream stdout) {
+    if (Thread.interrupted() || outputFailed) {
+      removeEventListenerRegistration();
+      flush(stdout);
+      onExit(0);
+      return;
+    }
+
     try {
-      msg = gson.toJson(message) + "\n";
-    } catch (Exception e) {
-      logger.atWarning().withCause(e).log("Could not deserialize the msg");
+      List<EventJournal.Entry> entries = replay.next(BATCH_SIZE);
+      if (replay.missedEvents() && !replayGapReported) {
+        write(stdout, new DroppedOutputEvent());
+        replayGapReported = true;
+      }
+      for (EventJournal.Entry entry : entries) {
+        if (isSubscribedTo(entry.type()) && eventBroker.isVisibleTo(entry, currentUser)) {
+          write(stdout, entry.event());
+        }
+      }
+      if (entries.isEmpty()) {
+        if (catchingUp) {
+          // From now on live events are queued. The events that were journaled before are read
+          // from the journal in the next round.
+          catchingUp = false;
+        } else {
+          finishReplay();
+        }
+      }
+    } catch (IOException | PermissionBackendException | RuntimeException e) {
+      logger.atWarning().withCause(e).log(
+          "Cannot replay journaled events for %s", currentUser.getLoggableName());
+      dropped = true;
+      catchingUp = false;
+      finishReplay();
+    }
+
+    flush(stdout);
+    synchronized (taskLock) {
+      task = pool.submit(writer);
     }
-    if (msg != null) {
+  }
+
+  private void finishReplay() {
+    replayedUpTo = replay.lastId();
+    replay = null;
+  }
+
+  private void write(OutputStream stdout, Event event) {
+    Optional<SerializedEvent> serialized = serializedEvents.get(event);
+    if (!serialized.isPresent()) {
+      return;
+    }
+    long sequenceId = serialized.get().sequenceId();
+    if (sequenceId != 0 && sequenceId <= replayedUpTo) {
+      // Already written when the journal was replayed.
+      return;
+    }
+    write(stdout, serialized.get());
+  }
+
+  private void write(OutputStream stdout, SerializedEvent serialized) {
+    try {
       synchronized (stdout) {
-        stdout.print(msg);
+        serialized.writeTo(stdout);
       }
+      metrics.delivered();
+    } catch (IOException e) {
+      outputFailed = true;
     }
   }
 
-  private void flush(PrintWriter stdout) {
-    synchronized (stdout) {
-      stdout.flush();
+  private void flush(OutputStream stdout) {
+    try {
+      synchronized (stdout) {
+        stdout.flush();
+      }
+    } catch (IOException e) {
+      outputFailed = true;
     }
   }
 }
@@ -0,0 +1,82 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.sshd.commands;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/** Metrics about the backpressure of {@code stream-events} subscribers. */
+@Singleton
+class StreamEventsMetrics {
+  private final Set<IntSupplier> queues = ConcurrentHashMap.newKeySet();
+  private final Counter0 delivered;
+  private final Counter0 dropped;
+
+  @Inject
+  StreamEventsMetrics(MetricMaker metricMaker) {
+    metricMaker.newCallbackMetric(
+        "sshd/stream_events/subscribers",
+        Integer.class,
+        new Description("Number of connected stream-events subscribers")
+            .setGauge()
+            .setUnit("subscribers"),
+        queues::size);
+    metricMaker.newCallbackMetric(
+        "sshd/stream_events/max_queued_events",
+        Integer.class,
+        new Description(
+                "Largest number of events that are queued for a single stream-events subscriber")
+            .setGauge()
+            .setUnit("events"),
+        () -> queues.stream().mapToInt(IntSupplier::getAsInt).max().orElse(0));
+    delivered =
+        metricMaker.newCounter(
+            "sshd/stream_events/delivered_events",
+            new Description("Number of events written to stream-events subscribers")
+                .setRate()
+                .setUnit("events"));
+    dropped =
+        metricMaker.newCounter(
+            "sshd/stream_events/dropped_events",
+            new Description(
+                    "Number of events dropped because the queue of a stream-events subscriber was"
+                        + " full")
+                .setRate()
+                .setUnit("events"));
+  }
+
+  /** Registers the queue of a subscriber, {@code queueSize} returns its current size. */
+  void register(IntSupplier queueSize) {
+    queues.add(queueSize);
+  }
+
+  void unregister(IntSupplier queueSize) {
+    queues.remove(queueSize);
+  }
+
+  void delivered() {
+    delivered.increment();
+  }
+
+  void dropped() {
+    dropped.increment();
+  }
+}
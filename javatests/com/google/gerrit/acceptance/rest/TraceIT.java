@@ -21,6 +21,7 @@ import static org.apache.http.HttpStatus.SC_OK;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -57,6 +58,7 @@ import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.gerrit.server.logging.LoggingContext;
 import com.google.gerrit.server.logging.Metadata;
 import com.google.gerrit.server.logging.PerformanceLogger;
+import com.google.gerrit.server.logging.ResourceUsage;
 import com.google.gerrit.server.logging.TraceContext;
 import com.google.gerrit.server.project.CreateProjectArgs;
 import com.google.gerrit.server.query.change.ChangeData;
@@ -394,6 +396,19 @@ public class TraceIT extends AbstractDaemonTest {
     }
   }
 
+  @Test
+  @GerritConfig(name = "tracing.performanceLogging", value = "true")
+  public void resourceUsageIsLoggedForRestCall() throws Exception {
+    PerformanceLogger testPerformanceLogger = mock(PerformanceLogger.class);
+    try (Registration registration =
+        extensionRegistry.newRegistration().add(testPerformanceLogger)) {
+      RestResponse response = adminRestSession.put("/projects/new11");
+      assertThat(response.getStatusCode()).isEqualTo(SC_CREATED);
+      verify(testPerformanceLogger, timeout(5000))
+          .logResourceUsage(eq("REST /projects/*"), any(ResourceUsage.class));
+    }
+  }
+
   @Test
   @GerritConfig(name = "tracing.performanceLogging", value = "true")
   public void performanceLoggingForPush() throws Exception {
@@ -75,6 +75,7 @@ public class ChangesRestApiBindingsIT extends AbstractDaemonTest {
           RestCall.get("/changes/%s/hashtags"),
           RestCall.get("/changes/%s/in"),
           RestCall.post("/changes/%s/index"),
+          RestCall.post("/changes/%s/squash_meta"),
           RestCall.get("/changes/%s/meta_diff"),
           RestCall.post("/changes/%s/merge"),
           RestCall.get("/changes/%s/messages"),
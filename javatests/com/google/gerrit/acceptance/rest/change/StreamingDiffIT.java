@@ -0,0 +1,145 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.rest.change;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.RestResponse;
+import com.google.gerrit.entities.Patch;
+import com.google.gerrit.extensions.restapi.Url;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingDiffIT extends AbstractDaemonTest {
+  private static final String FILE_NAME = "file.txt";
+  private static final String FILE_CONTENT =
+      "Line 1\nLine 2\nLine 3\nLine 4\nLine 5\nLine 6\nLine 7\nLine 8\nLine 9\nLine 10\n";
+
+  @Before
+  public void setUp() throws Exception {
+    pushFactory
+        .create(
+            admin.newIdent(),
+            testRepo,
+            "Base",
+            ImmutableMap.of(FILE_NAME, FILE_CONTENT, "deleted.txt", "to be deleted\n"))
+        .to("refs/heads/master")
+        .assertOkStatus();
+  }
+
+  @Test
+  public void modifiedFile() throws Exception {
+    String changeId =
+        createChange(
+                "Modify",
+                FILE_NAME,
+                "Line 1\nLine two\nLine 3\nLine 4\nLine 5\nLine 7\nLine 8\nLine 9\nLine 10\n"
+                    + "Line 11\n")
+            .getChangeId();
+    assertStreamedDiffMatches(changeId, FILE_NAME, "");
+  }
+
+  @Test
+  public void newlineAtEndRemoved() throws Exception {
+    String changeId =
+        createChange("Modify", FILE_NAME, FILE_CONTENT.substring(0, FILE_CONTENT.length() - 1))
+            .getChangeId();
+    assertStreamedDiffMatches(changeId, FILE_NAME, "");
+  }
+
+  @Test
+  public void whitespaceChangesIgnored() throws Exception {
+    String changeId =
+        createChange(
+                "Modify",
+                FILE_NAME,
+                "Line 1\n  Line 2\nLine 3 \nLine 4\nLine five\nLine 6\nLine 7\nLine 8\nLine 9\n"
+                    + "Line 10\n")
+            .getChangeId();
+    assertStreamedDiffMatches(changeId, FILE_NAME, "whitespace=IGNORE_ALL");
+    assertStreamedDiffMatches(changeId, FILE_NAME, "whitespace=IGNORE_NONE");
+  }
+
+  @Test
+  public void addedFile() throws Exception {
+    String changeId = createChange("Add", "added.txt", "new\ncontent").getChangeId();
+    assertStreamedDiffMatches(changeId, "added.txt", "");
+  }
+
+  @Test
+  public void deletedFile() throws Exception {
+    PushOneCommit.Result result =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "Delete", "deleted.txt", "")
+            .rm("refs/for/master");
+    result.assertOkStatus();
+    assertStreamedDiffMatches(result.getChangeId(), "deleted.txt", "");
+  }
+
+  @Test
+  public void commitMessage() throws Exception {
+    String changeId = createChange("Modify", FILE_NAME, "content\n").getChangeId();
+    assertStreamedDiffMatches(changeId, Patch.COMMIT_MSG, "");
+  }
+
+  @Test
+  public void againstOtherPatchSet() throws Exception {
+    PushOneCommit.Result result = createChange("Modify", FILE_NAME, "Line 1\n");
+    amendChange(result.getChangeId(), "Modify", FILE_NAME, "Line 1\nLine 2\n").assertOkStatus();
+    assertStreamedDiffMatches(result.getChangeId(), FILE_NAME, "base=1");
+  }
+
+  @Test
+  public void intralineIsRejected() throws Exception {
+    String changeId = createChange("Modify", FILE_NAME, "content\n").getChangeId();
+    adminRestSession.get(diffUrl(changeId, FILE_NAME) + "?stream&intraline").assertBadRequest();
+  }
+
+  private void assertStreamedDiffMatches(String changeId, String fileName, String options)
+      throws Exception {
+    String url = diffUrl(changeId, fileName);
+    JsonObject expected = getJson(options.isEmpty() ? url : url + "?" + options);
+    expected.remove("web_links");
+    expected.remove("edit_web_links");
+    removeWebLinks(expected.get("meta_a"));
+    removeWebLinks(expected.get("meta_b"));
+
+    JsonObject actual = getJson(url + "?stream" + (options.isEmpty() ? "" : "&" + options));
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  private JsonObject getJson(String url) throws Exception {
+    RestResponse res = adminRestSession.get(url);
+    res.assertOK();
+    return JsonParser.parseReader(res.getReader()).getAsJsonObject();
+  }
+
+  private static void removeWebLinks(JsonElement meta) {
+    if (meta != null) {
+      meta.getAsJsonObject().remove("web_links");
+    }
+  }
+
+  private static String diffUrl(String changeId, String fileName) {
+    return String.format(
+        "/changes/%s/revisions/current/files/%s/diff", changeId, Url.encode(fileName));
+  }
+}
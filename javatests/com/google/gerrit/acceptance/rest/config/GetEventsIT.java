@@ -0,0 +1,150 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.rest.config;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.allowCapability;
+import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.block;
+import static com.google.gerrit.server.group.SystemGroupBackend.REGISTERED_USERS;
+
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.RestResponse;
+import com.google.gerrit.acceptance.RestSession;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.entities.Permission;
+import com.google.gerrit.server.restapi.config.GetEvents.EventInfo;
+import com.google.gerrit.server.restapi.config.GetEvents.EventsInfo;
+import com.google.inject.Inject;
+import org.junit.Test;
+
+public class GetEventsIT extends AbstractDaemonTest {
+  @Inject private ProjectOperations projectOperations;
+
+
+  @Test
+  public void eventJournalDisabled() throws Exception {
+    adminRestSession.get("/config/server/events").assertMethodNotAllowed();
+  }
+
+  @Test
+  @GerritConfig(name = "event.journal.enabled", value = "true")
+  public void listEvents() throws Exception {
+    createChange();
+
+    EventsInfo events = getEvents(adminRestSession, "?subscribe=patchset-created");
+    assertThat(events.events).hasSize(1);
+    EventInfo info = events.events.get(0);
+    assertThat(info.type).isEqualTo("patchset-created");
+    assertThat(info.event.getAsJsonObject().get("type").getAsString())
+        .isEqualTo("patchset-created");
+    assertThat(info.event.getAsJsonObject().get("sequenceId").getAsLong())
+        .isEqualTo(info.sequenceId);
+    assertThat(events.resumeFrom).isAtLeast(info.sequenceId);
+    assertThat(events.moreEvents).isNull();
+    assertThat(events.missedEvents).isNull();
+
+    events =
+        getEvents(adminRestSession, "?subscribe=patchset-created&resume-from=" + info.sequenceId);
+    assertThat(events.events).isEmpty();
+    assertThat(events.moreEvents).isNull();
+  }
+
+  @Test
+  @GerritConfig(name = "event.journal.enabled", value = "true")
+  public void moreEventsIsSetIfJournalHasMoreEvents() throws Exception {
+    createChange();
+    createChange();
+
+    EventsInfo events = getEvents(adminRestSession, "?subscribe=patchset-created&limit=1");
+    assertThat(events.events).hasSize(1);
+    assertThat(events.moreEvents).isTrue();
+    assertThat(events.resumeFrom).isEqualTo(events.events.get(0).sequenceId);
+
+    EventsInfo next =
+        getEvents(
+            adminRestSession,
+            "?subscribe=patchset-created&limit=1&resume-from=" + events.resumeFrom);
+    assertThat(next.events).hasSize(1);
+    assertThat(next.events.get(0).sequenceId).isGreaterThan(events.events.get(0).sequenceId);
+  }
+
+  @Test
+  @GerritConfig(name = "event.journal.enabled", value = "true")
+  public void moreEventsIsNotSetOnExactlyFullLastPage() throws Exception {
+    createChange();
+    createChange();
+
+    EventsInfo all = getEvents(adminRestSession, "");
+    assertThat(all.moreEvents).isNull();
+    int count = all.events.size();
+    long lastId = all.events.get(count - 1).sequenceId;
+
+    EventsInfo exact = getEvents(adminRestSession, "?limit=" + count);
+    assertThat(exact.events).hasSize(count);
+    assertThat(exact.resumeFrom).isEqualTo(lastId);
+    assertThat(exact.moreEvents).isNull();
+
+    EventsInfo notAll = getEvents(adminRestSession, "?limit=" + (count - 1));
+    assertThat(notAll.events).hasSize(count - 1);
+    assertThat(notAll.moreEvents).isTrue();
+  }
+
+  @Test
+  @GerritConfig(name = "event.journal.enabled", value = "true")
+  public void scanIsBoundedIfNoEventIsVisible() throws Exception {
+    projectOperations
+        .allProjectsForUpdate()
+        .add(allowCapability(GlobalCapability.STREAM_EVENTS).group(REGISTERED_USERS))
+        .update();
+    projectOperations
+        .project(project)
+        .forUpdate()
+        .add(block(Permission.READ).ref("refs/*").group(REGISTERED_USERS))
+        .update();
+    // At most 10 journaled events are checked per requested event.
+    for (int i = 0; i < 11; i++) {
+      createChange();
+    }
+    EventsInfo visible = getEvents(adminRestSession, "?subscribe=patchset-created");
+    assertThat(visible.events).hasSize(11);
+
+    EventsInfo events = getEvents(userRestSession, "?subscribe=patchset-created&limit=1");
+    assertThat(events.events).isEmpty();
+    assertThat(events.moreEvents).isTrue();
+    assertThat(events.resumeFrom).isLessThan(visible.resumeFrom);
+
+    // Paging through the journal with the returned cursor makes progress and ends.
+    int pages = 1;
+    while (events.moreEvents != null) {
+      long resumeFrom = events.resumeFrom;
+      events =
+          getEvents(
+              userRestSession, "?subscribe=patchset-created&limit=1&resume-from=" + resumeFrom);
+      assertThat(events.events).isEmpty();
+      assertThat(events.resumeFrom).isGreaterThan(resumeFrom);
+      pages++;
+    }
+    assertThat(pages).isGreaterThan(1);
+    assertThat(events.resumeFrom).isAtLeast(visible.resumeFrom);
+  }
+
+  private EventsInfo getEvents(RestSession session, String query) throws Exception {
+    RestResponse r = session.get("/config/server/events" + query);
+    r.assertOK();
+    return newGson().fromJson(r.getReader(), EventsInfo.class);
+  }
+}
@@ -14,22 +14,27 @@
 
 package com.google.gerrit.acceptance.server.permissions;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.testsuite.change.ChangeOperations;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.permissions.ChangePermission;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
+import java.util.stream.Stream;
 import org.junit.Test;
 
 /** Asserts behavior on {@link PermissionBackend} using a fully-started Gerrit. */
 public class PermissionBackendIT extends AbstractDaemonTest {
   @Inject PermissionBackend pb;
   @Inject ChangeNotes.Factory changeNotesFactory;
+  @Inject ChangeOperations changeOperations;
 
   @Test
   public void changeDataFromIndex_canCheckReviewerState() throws Exception {
@@ -67,4 +72,26 @@ public class PermissionBackendIT extends AbstractDaemonTest {
     boolean reviewerCanSee = pb.absentUser(user.id()).change(notes).test(ChangePermission.READ);
     assertThat(reviewerCanSee).isTrue();
   }
+
+  @Test
+  public void filterReadable_checksBranchVisibilityAndPrivateChanges() throws Exception {
+    Change.Id publicChange = changeOperations.newChange().project(project).create();
+    Change.Id privateChange = changeOperations.newChange().project(project).create();
+    gApi.changes().id(privateChange.get()).setPrivate(true);
+    Change.Id privateChangeWithReviewer = changeOperations.newChange().project(project).create();
+    gApi.changes().id(privateChangeWithReviewer.get()).setPrivate(true);
+    gApi.changes().id(privateChangeWithReviewer.get()).addReviewer(user.email());
+    Change.Id changeOnInvisibleBranch =
+        changeOperations.newChange().project(project).branch("refs/meta/config").create();
+
+    ImmutableList<ChangeData> changes =
+        Stream.of(privateChangeWithReviewer, changeOnInvisibleBranch, privateChange, publicChange)
+            .map(id -> changeDataFactory.create(changeNotesFactory.create(project, id)))
+            .collect(toImmutableList());
+    ImmutableList<Change.Id> readable =
+        pb.absentUser(user.id()).filterReadable(changes).stream()
+            .map(ChangeData::getId)
+            .collect(toImmutableList());
+    assertThat(readable).containsExactly(privateChangeWithReviewer, publicChange).inOrder();
+  }
 }
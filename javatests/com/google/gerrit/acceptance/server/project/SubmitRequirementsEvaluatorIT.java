@@ -149,6 +149,35 @@ public class SubmitRequirementsEvaluatorIT extends AbstractDaemonTest {
     assertThat(result.failingAtoms()).containsExactly(String.format("branch:refs/heads/foo"));
   }
 
+  @Test
+  public void negatedCompositeExpression() throws Exception {
+    SubmitRequirementExpression expression =
+        SubmitRequirementExpression.create(
+            String.format(
+                "-(project:%s AND branch:refs/heads/foo) AND NOT message:\"Fix a bug\"",
+                project.get()));
+
+    SubmitRequirementExpressionResult result = evaluator.evaluateExpression(expression, changeData);
+
+    assertThat(result.status()).isEqualTo(Status.FAIL);
+    assertThat(result.passingAtoms())
+        .containsExactly(String.format("project:%s", project.get()), "message:\"Fix a bug\"");
+    assertThat(result.failingAtoms()).containsExactly("branch:refs/heads/foo");
+  }
+
+  @Test
+  public void expressionIsEvaluatedAgainWithCachedPredicates() throws Exception {
+    SubmitRequirementExpression expression =
+        SubmitRequirementExpression.create("label:Code-Review=+2");
+    assertThat(evaluator.evaluateExpression(expression, changeData).status())
+        .isEqualTo(Status.FAIL);
+
+    approve(changeId);
+    changeData = changeQueryProvider.get().byLegacyChangeId(changeData.getId()).get(0);
+    assertThat(evaluator.evaluateExpression(expression, changeData).status())
+        .isEqualTo(Status.PASS);
+  }
+
   @Test
   public void globalSubmitRequirementEvaluated() throws Exception {
     SubmitRequirement globalSubmitRequirement =
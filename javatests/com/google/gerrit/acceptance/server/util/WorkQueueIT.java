@@ -19,11 +19,16 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.gerrit.acceptance.AbstractDaemonTest;
 import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.git.WorkQueue.Priority;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Module;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
@@ -82,4 +87,58 @@ public class WorkQueueIT extends AbstractDaemonTest {
     assertThat(ifRunMoreThanOnce).isTrue();
     testExecutor.shutdownNow();
   }
+
+  @Test
+  public void readyTasksAreStartedInOrderOfPriority() throws Exception {
+    ScheduledExecutorService testExecutor = workQueue.createQueue(1, QUEUE_NAME);
+    CountDownLatch blocked = new CountDownLatch(1);
+    List<String> started = new CopyOnWriteArrayList<>();
+    Future<?> blocker =
+        testExecutor.submit(
+            () -> {
+              blocked.await();
+              return null;
+            });
+
+    Future<?> low = testExecutor.submit(new TestTask("low", Priority.LOW, null, started));
+    testExecutor.execute(new TestTask("normal", Priority.NORMAL, null, started));
+    testExecutor.execute(new TestTask("high", Priority.HIGH, null, started));
+    testExecutor.execute(
+        new TestTask("overdue", Priority.LOW, Instant.now().minusSeconds(3600), started));
+
+    blocked.countDown();
+    blocker.get();
+    low.get();
+    assertThat(started).containsExactly("overdue", "high", "normal", "low").inOrder();
+    testExecutor.shutdownNow();
+  }
+
+  private static class TestTask implements WorkQueue.PrioritizedRunnable {
+    private final String name;
+    private final Priority priority;
+    private final Instant deadline;
+    private final List<String> started;
+
+    TestTask(String name, Priority priority, Instant deadline, List<String> started) {
+      this.name = name;
+      this.priority = priority;
+      this.deadline = deadline;
+      this.started = started;
+    }
+
+    @Override
+    public void run() {
+      started.add(name);
+    }
+
+    @Override
+    public Priority getPriority() {
+      return priority;
+    }
+
+    @Override
+    public Instant getDeadline() {
+      return deadline;
+    }
+  }
 }
@@ -14,6 +14,7 @@
 
 package com.google.gerrit.acceptance.ssh;
 
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.gerrit.acceptance.WaitUtil.waitUntil;
 import static com.google.gerrit.entities.Patch.PATCHSET_LEVEL;
 
@@ -21,6 +22,7 @@ import com.google.common.base.Splitter;
 import com.google.gerrit.acceptance.AbstractDaemonTest;
 import com.google.gerrit.acceptance.NoHttpd;
 import com.google.gerrit.acceptance.Sandboxed;
+import com.google.gerrit.acceptance.TestMetricMaker;
 import com.google.gerrit.acceptance.UseSsh;
 import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.entities.RefNames;
@@ -29,6 +31,7 @@ import com.google.gerrit.extensions.api.changes.DraftInput;
 import com.google.gerrit.extensions.api.changes.ReviewInput;
 import com.google.gerrit.extensions.api.changes.ReviewInput.DraftHandling;
 import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
 import java.io.IOException;
 import java.io.Reader;
 import java.time.Duration;
@@ -51,6 +54,8 @@ public class StreamEventsIT extends AbstractDaemonTest {
   private static final Duration MAX_DURATION_FOR_RECEIVING_EVENTS = Duration.ofSeconds(2);
   private static final String TEST_REVIEW_COMMENT = "any comment";
   private static final String TEST_REVIEW_DRAFT_COMMENT = "any draft comment";
+  @Inject private TestMetricMaker testMetricMaker;
+
   private Reader streamEventsReader;
   private ChangeData change;
 
@@ -70,6 +75,16 @@ public class StreamEventsIT extends AbstractDaemonTest {
     waitForEvent(() -> pollEventsContaining("comment-added", TEST_REVIEW_COMMENT).size() == 1);
   }
 
+  @Test
+  public void deliveredEventsAreCounted() throws Exception {
+    testMetricMaker.reset();
+    reviewChange(new ReviewInput().message(TEST_REVIEW_COMMENT));
+    waitForEvent(() -> pollEventsContaining("comment-added", TEST_REVIEW_COMMENT).size() == 1);
+
+    assertThat(testMetricMaker.getCount("sshd/stream_events/delivered_events")).isAtLeast(1);
+    assertThat(testMetricMaker.getCount("sshd/stream_events/dropped_events")).isEqualTo(0);
+  }
+
   @Test
   public void publishedDraftPatchSetLevelCommentShowsUpInStreamEvents() throws Exception {
     change = createChange().getChange();
@@ -180,6 +195,24 @@ public class StreamEventsIT extends AbstractDaemonTest {
                 == 1);
   }
 
+  @Test
+  @GerritConfig(name = "event.journal.enabled", value = "true")
+  public void resumeFromReplaysJournaledEvents() throws Exception {
+    reviewChange(new ReviewInput().message(TEST_REVIEW_COMMENT));
+    waitForEvent(
+        () ->
+            pollEventsContaining("comment-added", TEST_REVIEW_COMMENT, "\"sequenceId\":").size()
+                == 1);
+
+    try (Reader resumedReader =
+        adminSshSession.execAndReturnReader("gerrit stream-events --resume-from 0")) {
+      waitForEvent(
+          () ->
+              pollEventsContaining(resumedReader, "comment-added", TEST_REVIEW_COMMENT).size()
+                  == 1);
+    }
+  }
+
   private void waitForEvent(Supplier<Boolean> waitCondition) throws InterruptedException {
     waitUntil(() -> waitCondition.get(), MAX_DURATION_FOR_RECEIVING_EVENTS);
   }
@@ -205,11 +238,16 @@ public class StreamEventsIT extends AbstractDaemonTest {
   }
 
   private List<String> pollEventsContaining(String eventType, String... expectedContent) {
+    return pollEventsContaining(streamEventsReader, eventType, expectedContent);
+  }
+
+  private static List<String> pollEventsContaining(
+      Reader reader, String eventType, String... expectedContent) {
     try {
       char[] cbuf = new char[2048];
       StringBuilder eventsOutput = new StringBuilder();
-      while (streamEventsReader.ready()) {
-        int read = streamEventsReader.read(cbuf);
+      while (reader.ready()) {
+        int read = reader.read(cbuf);
         eventsOutput.append(Arrays.copyOfRange(cbuf, 0, read));
       }
       return StreamSupport.stream(
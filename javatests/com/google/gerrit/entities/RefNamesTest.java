@@ -51,6 +51,11 @@ public class RefNamesTest {
     assertThat(robotCommentsRef).isEqualTo("refs/changes/73/67473/robot-comments");
     assertThat(RefNames.isNoteDbMetaRef(robotCommentsRef)).isTrue();
 
+    String changeMetaHistoryRef = RefNames.changeMetaHistoryRef(changeId);
+    assertThat(changeMetaHistoryRef).isEqualTo("refs/changes/73/67473/meta-history");
+    assertThat(RefNames.isNoteDbMetaRef(changeMetaHistoryRef)).isTrue();
+    assertThat(Change.Id.fromRef(changeMetaHistoryRef)).isNull();
+
     String changeRefPrefix = RefNames.changeRefPrefix(changeId);
     assertThat(changeRefPrefix).isEqualTo("refs/changes/73/67473/");
   }
@@ -0,0 +1,97 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.httpd;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashSet;
+import java.util.Set;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class AdvertisedObjectsTest {
+  private static final ObjectId ID1 =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private static final ObjectId ID2 =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+  private static final ObjectId ID3 =
+      ObjectId.fromString("3333333333333333333333333333333333333333");
+
+  @Test
+  public void addTo() {
+    AdvertisedObjects objects = new AdvertisedObjects(ImmutableList.of(ID3, ID1, ID2, ID1));
+    assertThat(objects.size()).isEqualTo(3);
+
+    Set<ObjectId> ids = new HashSet<>();
+    objects.addTo(ids);
+    assertThat(ids).containsExactly(ID1, ID2, ID3);
+  }
+
+  @Test
+  public void contains() {
+    AdvertisedObjects objects = new AdvertisedObjects(ImmutableList.of(ID3, ID1));
+    assertThat(objects.contains(ID1)).isTrue();
+    assertThat(objects.contains(ID2)).isFalse();
+    assertThat(objects.contains(ID3)).isTrue();
+  }
+
+  @Test
+  public void empty() {
+    AdvertisedObjects objects = new AdvertisedObjects(ImmutableList.of());
+    assertThat(objects.size()).isEqualTo(0);
+    assertThat(objects.contains(ID1)).isFalse();
+  }
+
+  @Test
+  public void containsExactly() {
+    AdvertisedObjects objects = new AdvertisedObjects(ImmutableList.of(ID3, ID1));
+    assertThat(objects.containsExactly(ImmutableSet.of(ID1, ID3))).isTrue();
+    assertThat(objects.containsExactly(ImmutableSet.of(ID1))).isFalse();
+    assertThat(objects.containsExactly(ImmutableSet.of(ID1, ID2))).isFalse();
+    assertThat(objects.containsExactly(ImmutableSet.of(ID1, ID2, ID3))).isFalse();
+  }
+
+  @Test
+  public void hashDoesNotDependOnOrder() {
+    assertThat(AdvertisedObjects.hash(ImmutableList.of(ID1, ID2)))
+        .isEqualTo(AdvertisedObjects.hash(ImmutableList.of(ID2, ID1)));
+    assertThat(AdvertisedObjects.hash(ImmutableList.of(ID1, ID2)))
+        .isNotEqualTo(AdvertisedObjects.hash(ImmutableList.of(ID1, ID3)));
+  }
+
+  @Test
+  public void snapshotsWithSameObjectsAreShared() {
+    AdvertisedObjects objects1 = AdvertisedObjects.create(ImmutableSet.of(ID1, ID2));
+    AdvertisedObjects objects2 = AdvertisedObjects.create(new HashSet<>(ImmutableSet.of(ID2, ID1)));
+    AdvertisedObjects objects3 = AdvertisedObjects.create(ImmutableSet.of(ID1, ID3));
+    assertThat(objects2).isSameInstanceAs(objects1);
+    assertThat(objects3).isNotSameInstanceAs(objects1);
+  }
+
+  @Test
+  public void snapshotsWithSameHashButDifferentObjectsAreNotShared() {
+    // ObjectId#hashCode() only covers 4 bytes of the object ID.
+    ObjectId id4 = ObjectId.fromString("4444444411111111444444444444444444444444");
+    assertThat(AdvertisedObjects.hash(ImmutableList.of(id4)))
+        .isEqualTo(AdvertisedObjects.hash(ImmutableList.of(ID1)));
+
+    AdvertisedObjects objects1 = AdvertisedObjects.create(ImmutableSet.of(ID1));
+    AdvertisedObjects objects2 = AdvertisedObjects.create(ImmutableSet.of(id4));
+    assertThat(objects2).isNotSameInstanceAs(objects1);
+    assertThat(objects2.contains(id4)).isTrue();
+    assertThat(objects2.contains(ID1)).isFalse();
+  }
+}
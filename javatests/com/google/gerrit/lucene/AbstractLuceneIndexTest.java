@@ -0,0 +1,130 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.lucene;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.index.project.ProjectSchemaDefinitions;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.index.options.AutoFlush;
+import java.io.IOException;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AbstractLuceneIndexTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private LuceneProjectIndex index;
+
+  @After
+  public void tearDown() {
+    if (index != null) {
+      index.close();
+    }
+  }
+
+  @Test
+  public void writerIsInBuildModeWithoutAutoFlush() throws Exception {
+    Config cfg = inMemoryConfig();
+    cfg.setString("index", "projects", "buildRamBufferSize", "128m");
+    index = newIndex(cfg, AutoFlush.DISABLED);
+
+    assertThat(index.getWriter().getConfig().getRAMBufferSizeMB()).isEqualTo(128.0);
+    assertThat(index.getWriter().getConfig().getMaxBufferedDocs())
+        .isEqualTo(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+  }
+
+  @Test
+  public void writerIsNotInBuildModeWithAutoFlush() throws Exception {
+    index = newIndex(inMemoryConfig(), AutoFlush.ENABLED);
+
+    assertThat(index.getWriter().getConfig().getRAMBufferSizeMB())
+        .isEqualTo(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    assertThat(index.getWriter().getConfig().getMaxBufferedDocs())
+        .isEqualTo(IndexWriterConfig.DEFAULT_MAX_BUFFERED_DOCS);
+  }
+
+  @Test
+  public void finishBuildMergesSegmentsAndCommits() throws Exception {
+    Config cfg = inMemoryConfig();
+    cfg.setInt("index", "projects", "buildMaxSegments", 2);
+    index = newIndex(cfg, AutoFlush.DISABLED);
+    addDocumentsInSegments(index.getWriter(), 7);
+    assertThat(index.getWriter().hasUncommittedChanges()).isTrue();
+
+    index.finishBuild();
+
+    assertThat(index.getWriter().hasUncommittedChanges()).isFalse();
+    try (DirectoryReader reader = DirectoryReader.open(index.getWriter().getDirectory())) {
+      assertThat(reader.numDocs()).isEqualTo(7);
+      assertThat(reader.leaves().size()).isAtMost(2);
+    }
+  }
+
+  @Test
+  public void finishBuildOnlyCommitsIfMergeIsDisabled() throws Exception {
+    Config cfg = inMemoryConfig();
+    cfg.setInt("index", "projects", "buildMaxSegments", 0);
+    index = newIndex(cfg, AutoFlush.DISABLED);
+    addDocumentsInSegments(index.getWriter(), 7);
+
+    index.finishBuild();
+
+    assertThat(index.getWriter().hasUncommittedChanges()).isFalse();
+    try (DirectoryReader reader = DirectoryReader.open(index.getWriter().getDirectory())) {
+      assertThat(reader.numDocs()).isEqualTo(7);
+      assertThat(reader.leaves().size()).isEqualTo(7);
+    }
+  }
+
+  private LuceneProjectIndex newIndex(Config cfg, AutoFlush autoFlush) throws IOException {
+    return new LuceneProjectIndex(
+        cfg,
+        new SitePaths(temporaryFolder.getRoot().toPath()),
+        () -> null,
+        ProjectSchemaDefinitions.INSTANCE.getLatest(),
+        autoFlush);
+  }
+
+  private static Config inMemoryConfig() {
+    Config cfg = new Config();
+    cfg.setBoolean("index", "lucene", "testInmemory", true);
+    // Only commit explicitly, so that the tests can tell which changes finishBuild() commits.
+    cfg.setLong("index", "projects", "commitWithin", -1);
+    return cfg;
+  }
+
+  /**
+   * Flushes after each document, so that every document ends up in its own segment. The default
+   * merge policy does not merge that few segments on its own.
+   */
+  private static void addDocumentsInSegments(IndexWriter writer, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("name", "project" + i, Field.Store.YES));
+      writer.addDocument(doc);
+      writer.flush();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.lucene;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.apache.lucene.index.IndexWriterConfig;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class GerritIndexWriterConfigTest {
+  @Test
+  public void buildModeUsesLargeRamBufferAndDisablesFlushByDocumentCount() {
+    GerritIndexWriterConfig writerConfig = new GerritIndexWriterConfig(new Config(), "changes");
+    assertThat(writerConfig.getLuceneConfig().getRAMBufferSizeMB())
+        .isEqualTo(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+
+    writerConfig.enableBuildMode();
+    assertThat(writerConfig.getLuceneConfig().getRAMBufferSizeMB()).isEqualTo(256.0);
+    assertThat(writerConfig.getLuceneConfig().getMaxBufferedDocs())
+        .isEqualTo(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+  }
+
+  @Test
+  public void buildModeHonorsConfiguredRamBufferSize() {
+    Config cfg = new Config();
+    cfg.setString("index", "changes", "buildRamBufferSize", "64m");
+    GerritIndexWriterConfig writerConfig = new GerritIndexWriterConfig(cfg, "changes");
+    writerConfig.enableBuildMode();
+    assertThat(writerConfig.getLuceneConfig().getRAMBufferSizeMB()).isEqualTo(64.0);
+  }
+
+  @Test
+  public void buildModeDoesNotShrinkLargerRamBuffer() {
+    Config cfg = new Config();
+    cfg.setString("index", "changes", "ramBufferSize", "512m");
+    GerritIndexWriterConfig writerConfig = new GerritIndexWriterConfig(cfg, "changes");
+    writerConfig.enableBuildMode();
+    assertThat(writerConfig.getLuceneConfig().getRAMBufferSizeMB()).isEqualTo(512.0);
+  }
+
+  @Test
+  public void buildWriterThreads() {
+    assertThat(new GerritIndexWriterConfig(new Config(), "changes").getBuildWriterThreads())
+        .isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    Config cfg = new Config();
+    cfg.setInt("index", "changes", "buildWriterThreads", 3);
+    assertThat(new GerritIndexWriterConfig(cfg, "changes").getBuildWriterThreads()).isEqualTo(3);
+
+    cfg.setInt("index", "changes", "buildWriterThreads", 0);
+    assertThat(new GerritIndexWriterConfig(cfg, "changes").getBuildWriterThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void buildMaxSegments() {
+    assertThat(new GerritIndexWriterConfig(new Config(), "changes").getBuildMaxSegments())
+        .isEqualTo(10);
+
+    Config cfg = new Config();
+    cfg.setInt("index", "changes", "buildMaxSegments", 0);
+    assertThat(new GerritIndexWriterConfig(cfg, "changes").getBuildMaxSegments()).isEqualTo(0);
+  }
+
+  @Test
+  public void settingsArePerIndex() {
+    Config cfg = new Config();
+    cfg.setInt("index", "accounts", "buildWriterThreads", 3);
+    assertThat(new GerritIndexWriterConfig(cfg, "accounts").getBuildWriterThreads()).isEqualTo(3);
+    assertThat(new GerritIndexWriterConfig(cfg, "changes").getBuildWriterThreads())
+        .isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+}
@@ -43,6 +43,11 @@ public class DropWizardReservoirProviderTest {
     assertThat(DropWizardReservoirProvider.get(configMock))
         .isInstanceOf(ExponentiallyDecayingReservoir.class);
 
+    when(configMock.reservoirType()).thenReturn(ReservoirType.HdrHistogram);
+    when(configMock.reservoirWindow()).thenReturn(Duration.ofMinutes(1));
+    assertThat(DropWizardReservoirProvider.get(configMock))
+        .isInstanceOf(HdrHistogramReservoir.class);
+
     when(configMock.reservoirType()).thenReturn(ReservoirType.SlidingTimeWindow);
     when(configMock.reservoirWindow()).thenReturn(Duration.ofMinutes(1));
     assertThat(DropWizardReservoirProvider.get(configMock))
@@ -0,0 +1,165 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.metrics.dropwizard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.codahale.metrics.Snapshot;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class HdrHistogramReservoirTest {
+  private static final double PRECISION = 1.0 / HdrHistogramReservoir.SUB_BUCKETS;
+
+  private final AtomicLong clock = new AtomicLong();
+  private final HdrHistogramReservoir reservoir =
+      new HdrHistogramReservoir(1, TimeUnit.MINUTES, clock::get);
+
+  @Test
+  public void emptySnapshot() {
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertThat(snapshot.size()).isEqualTo(0);
+    assertThat(snapshot.getMin()).isEqualTo(0);
+    assertThat(snapshot.getMax()).isEqualTo(0);
+    assertThat(snapshot.getMean()).isEqualTo(0.0);
+    assertThat(snapshot.getMedian()).isEqualTo(0.0);
+    assertThat(snapshot.getValues()).isEmpty();
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    for (long v = 0; v < 100; v++) {
+      reservoir.update(v);
+    }
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertThat(reservoir.size()).isEqualTo(100);
+    assertThat(snapshot.size()).isEqualTo(100);
+    assertThat(snapshot.getMin()).isEqualTo(0);
+    assertThat(snapshot.getMax()).isEqualTo(99);
+    assertThat(snapshot.getMedian()).isEqualTo(49.0);
+    assertThat(snapshot.get99thPercentile()).isEqualTo(98.0);
+    assertThat(snapshot.getMean()).isWithin(0.001).of(49.5);
+  }
+
+  @Test
+  public void largeValuesAreWithinPrecision() {
+    for (long v = 1; v <= 100_000; v++) {
+      reservoir.update(v * 1000);
+    }
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertThat(snapshot.size()).isEqualTo(100_000);
+    assertThat((double) snapshot.getMin()).isWithin(1000 * PRECISION).of(1000.0);
+    assertThat((double) snapshot.getMax()).isWithin(100_000_000 * PRECISION).of(100_000_000.0);
+    assertThat(snapshot.getMedian()).isWithin(50_000_000 * PRECISION).of(50_000_000.0);
+    assertThat(snapshot.get95thPercentile()).isWithin(95_000_000 * PRECISION).of(95_000_000.0);
+    assertThat(snapshot.get999thPercentile()).isWithin(99_900_000 * PRECISION).of(99_900_000.0);
+    assertThat(snapshot.getMean()).isWithin(50_000_000 * PRECISION).of(50_000_500.0);
+  }
+
+  @Test
+  public void stdDevIsComputedFromBuckets() {
+    long[] values = {1, 2, 3, 4, 10, 10, 10, 50, 100, 127};
+    for (long v : values) {
+      reservoir.update(v);
+    }
+    double mean = 0;
+    for (long v : values) {
+      mean += v;
+    }
+    mean /= values.length;
+    double variance = 0;
+    for (long v : values) {
+      variance += (v - mean) * (v - mean);
+    }
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertThat(snapshot.getMean()).isWithin(0.001).of(mean);
+    assertThat(snapshot.getStdDev())
+        .isWithin(0.001)
+        .of(Math.sqrt(variance / (values.length - 1)));
+  }
+
+  @Test
+  public void stdDevOfSingleValue() {
+    reservoir.update(1000);
+    assertThat(reservoir.getSnapshot().getStdDev()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void dumpWritesValues() {
+    reservoir.update(3);
+    reservoir.update(3);
+    reservoir.update(200);
+    Snapshot snapshot = reservoir.getSnapshot();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshot.dump(out);
+
+    StringBuilder expected = new StringBuilder();
+    for (long v : snapshot.getValues()) {
+      expected.append(v).append(System.lineSeparator());
+    }
+    assertThat(new String(out.toByteArray(), UTF_8)).isEqualTo(expected.toString());
+    assertThat(snapshot.getValues()).hasLength(3);
+  }
+
+  @Test
+  public void negativeValuesAreRecordedAsZero() {
+    reservoir.update(-5);
+    assertThat(reservoir.getSnapshot().getValues()).asList().containsExactly(0L);
+  }
+
+  @Test
+  public void maxLongValue() {
+    reservoir.update(Long.MAX_VALUE);
+    assertThat(reservoir.getSnapshot().getMax()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void bucketsAreContiguous() {
+    for (int i = 1; i < 64 * HdrHistogramReservoir.SUB_BUCKETS; i++) {
+      long low = HdrHistogramReservoir.lowestValue(i);
+      if (low < 0) {
+        break;
+      }
+      assertThat(low).isEqualTo(HdrHistogramReservoir.highestValue(i - 1) + 1);
+      assertThat(HdrHistogramReservoir.bucketIndex(low)).isEqualTo(i);
+      assertThat(HdrHistogramReservoir.bucketIndex(HdrHistogramReservoir.highestValue(i)))
+          .isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void valuesExpireAfterTwoWindows() {
+    reservoir.update(10);
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+    reservoir.update(20);
+    assertThat(reservoir.getSnapshot().getValues()).asList().containsExactly(10L, 20L);
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+    assertThat(reservoir.getSnapshot().getValues()).asList().containsExactly(20L);
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+    assertThat(reservoir.getSnapshot().size()).isEqualTo(0);
+  }
+
+  @Test
+  public void valuesExpireAfterInactivity() {
+    reservoir.update(10);
+    clock.addAndGet(TimeUnit.MINUTES.toNanos(5));
+    assertThat(reservoir.getSnapshot().size()).isEqualTo(0);
+  }
+}
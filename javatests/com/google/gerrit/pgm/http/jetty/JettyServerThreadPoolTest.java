@@ -0,0 +1,65 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.pgm.http.jetty;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.server.util.VirtualThreads;
+import java.util.concurrent.CompletableFuture;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class JettyServerThreadPoolTest {
+  @Test
+  public void platformThreadsByDefault() throws Exception {
+    QueuedThreadPool pool = JettyServer.threadPool(new Config(), 10);
+    assertThat(pool.getName()).isEqualTo("HTTP");
+    assertThat(pool.getMaxThreads()).isEqualTo(10);
+    assertThat(VirtualThreads.isVirtual(runOn(pool))).isFalse();
+  }
+
+  @Test
+  public void virtualThreadsIfEnabledAndSupported() throws Exception {
+    Config cfg = new Config();
+    cfg.setBoolean("httpd", null, "virtualThreads", true);
+    QueuedThreadPool pool = JettyServer.threadPool(cfg, 10);
+    // Falls back to platform threads if the Java runtime doesn't support virtual threads.
+    assertThat(VirtualThreads.isVirtual(runOn(pool))).isEqualTo(VirtualThreads.isSupported());
+    assertThat(pool.isDaemon()).isEqualTo(VirtualThreads.isSupported());
+  }
+
+  @Test
+  public void poolSizeIsHonored() {
+    Config cfg = new Config();
+    cfg.setInt("httpd", null, "minThreads", 3);
+    cfg.setBoolean("httpd", null, "virtualThreads", true);
+    QueuedThreadPool pool = JettyServer.threadPool(cfg, 7);
+    assertThat(pool.getMinThreads()).isEqualTo(3);
+    assertThat(pool.getMaxThreads()).isEqualTo(7);
+  }
+
+  private static Thread runOn(QueuedThreadPool pool) throws Exception {
+    pool.start();
+    try {
+      CompletableFuture<Thread> thread = new CompletableFuture<>();
+      pool.execute(() -> thread.complete(Thread.currentThread()));
+      return thread.get(10, SECONDS);
+    } finally {
+      pool.stop();
+    }
+  }
+}
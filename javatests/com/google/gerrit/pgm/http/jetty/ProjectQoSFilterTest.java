@@ -20,6 +20,7 @@ import static org.mockito.Mockito.when;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.account.AccountLimits;
 import com.google.gerrit.server.account.GroupMembership;
+import com.google.gerrit.server.git.QoSPolicy;
 import com.google.gerrit.server.git.QueueProvider;
 import com.google.inject.Provider;
 import java.util.Optional;
@@ -46,6 +47,7 @@ public class ProjectQoSFilterTest {
   @Mock AccountLimits.Factory limitsFactory;
   @Mock Provider<CurrentUser> userProvider;
   @Mock QueueProvider queue;
+  @Mock QoSPolicy qosPolicy;
   @Mock ServletContext context;
 
   @Test
@@ -127,7 +129,7 @@ public class ProjectQoSFilterTest {
     when(asyncContext.getRequest()).thenReturn(servletRequest);
 
     ProjectQoSFilter projectQoSFilter =
-        new ProjectQoSFilter(limitsFactory, userProvider, queue, context, config);
+        new ProjectQoSFilter(limitsFactory, userProvider, queue, qosPolicy, context, config);
     return projectQoSFilter.new TaskThunk(asyncContext, servletRequest);
   }
 
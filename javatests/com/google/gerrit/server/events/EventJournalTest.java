@@ -0,0 +1,191 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.events;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.SitePaths;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventJournalTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Config cfg;
+  private SitePaths site;
+  private SerializedEvents serializedEvents;
+  private EventJournal journal;
+
+  @Before
+  public void setUp() throws Exception {
+    cfg = new Config();
+    cfg.setBoolean("event", "journal", "enabled", true);
+    site = new SitePaths(temporaryFolder.getRoot().toPath());
+    serializedEvents =
+        new SerializedEvents(new EventGsonProvider().get(), new DisabledMetricMaker());
+    journal = newJournal();
+  }
+
+  @After
+  public void tearDown() {
+    journal.stop();
+  }
+
+  @Test
+  public void journaledEventsGetIncreasingSequenceIds() {
+    ProjectCreatedEvent first = projectCreated("first");
+    ProjectCreatedEvent second = projectCreated("second");
+    journal.append(first);
+    journal.append(second);
+
+    assertThat(serializedEvents.get(first).get().sequenceId()).isEqualTo(1);
+    assertThat(serializedEvents.get(second).get().sequenceId()).isEqualTo(2);
+    assertThat(serializedEvents.get(second).get().toString()).startsWith("{\"sequenceId\":2,");
+  }
+
+  @Test
+  public void readEventsInOrder() throws Exception {
+    Change change =
+        new Change(
+            Change.key("Ideadbeef"),
+            Change.id(42),
+            Account.id(1000),
+            BranchNameKey.create("foo", "master"),
+            Instant.now());
+    journal.append(projectCreated("foo"));
+    journal.append(change, projectCreated("foo"));
+    journal.append(BranchNameKey.create("bar", "master"), projectCreated("bar"));
+
+    List<EventJournal.Entry> entries = journal.read(0).next(10);
+    assertThat(ids(entries)).containsExactly(1L, 2L, 3L).inOrder();
+    assertThat(entries.get(0).scope()).isEqualTo(EventJournal.Scope.PROJECT);
+    assertThat(entries.get(0).project()).isEqualTo(Project.nameKey("foo"));
+    assertThat(entries.get(0).type()).isEqualTo(ProjectCreatedEvent.TYPE);
+    assertThat(entries.get(1).scope()).isEqualTo(EventJournal.Scope.CHANGE);
+    assertThat(entries.get(1).changeId()).isEqualTo(Change.id(42));
+    assertThat(entries.get(2).scope()).isEqualTo(EventJournal.Scope.REF);
+    assertThat(entries.get(2).ref()).isEqualTo("refs/heads/master");
+  }
+
+  @Test
+  public void resumeAfterSequenceId() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      journal.append(projectCreated("p" + i));
+    }
+
+    EventJournal.Cursor cursor = journal.read(3);
+    assertThat(ids(cursor.next(10))).containsExactly(4L, 5L).inOrder();
+    assertThat(cursor.missedEvents()).isFalse();
+    assertThat(cursor.next(10)).isEmpty();
+
+    journal.append(projectCreated("p5"));
+    assertThat(ids(cursor.next(10))).containsExactly(6L);
+    assertThat(cursor.lastId()).isEqualTo(6);
+  }
+
+  @Test
+  public void sequenceIdsContinueAfterRestart() throws Exception {
+    journal.append(projectCreated("first"));
+    journal.stop();
+
+    journal = newJournal();
+    ProjectCreatedEvent event = projectCreated("second");
+    journal.append(event);
+    assertThat(serializedEvents.get(event).get().sequenceId()).isEqualTo(2);
+    assertThat(ids(journal.read(0).next(10))).containsExactly(1L, 2L).inOrder();
+  }
+
+  @Test
+  public void incompleteRecordIsDroppedOnRestart() throws Exception {
+    journal.append(projectCreated("first"));
+    journal.stop();
+    try (Stream<Path> segments = Files.list(site.resolve("data/event-journal"))) {
+      Path segment = segments.findFirst().get();
+      Files.write(segment, new byte[] {0, 0, 0, 0, 0, 0, 0, 2, 0}, StandardOpenOption.APPEND);
+    }
+
+    journal = newJournal();
+    journal.append(projectCreated("second"));
+    assertThat(ids(journal.read(0).next(10))).containsExactly(1L, 2L).inOrder();
+  }
+
+  @Test
+  public void oldestSegmentsAreDeletedWhenJournalExceedsMaxSize() throws Exception {
+    journal.stop();
+    cfg.setLong("event", "journal", "segmentSize", 512);
+    cfg.setLong("event", "journal", "maxSize", 2048);
+    journal = newJournal();
+    for (int i = 0; i < 100; i++) {
+      journal.append(projectCreated("project" + i));
+    }
+
+    EventJournal.Cursor cursor = journal.read(0);
+    ImmutableList<Long> ids = ids(cursor.next(100));
+    assertThat(cursor.missedEvents()).isTrue();
+    assertThat(ids.get(0)).isGreaterThan(1L);
+    assertThat(ids.get(ids.size() - 1)).isEqualTo(100L);
+    long size = 0;
+    for (File segment : site.resolve("data/event-journal").toFile().listFiles()) {
+      size += segment.length();
+    }
+    // Only the current segment may exceed the limit.
+    assertThat(size).isAtMost(2048 + 512);
+  }
+
+  @Test
+  public void disabledJournalDoesNotAssignSequenceIds() {
+    journal.stop();
+    cfg.setBoolean("event", "journal", "enabled", false);
+    journal = newJournal();
+    ProjectCreatedEvent event = projectCreated("foo");
+    journal.append(event);
+    assertThat(serializedEvents.get(event).get().sequenceId()).isEqualTo(0);
+  }
+
+  private EventJournal newJournal() {
+    EventJournal eventJournal = new EventJournal(cfg, site, serializedEvents);
+    eventJournal.start();
+    return eventJournal;
+  }
+
+  private static ProjectCreatedEvent projectCreated(String projectName) {
+    ProjectCreatedEvent event = new ProjectCreatedEvent();
+    event.projectName = projectName;
+    event.headName = "refs/heads/master";
+    return event;
+  }
+
+  private static ImmutableList<Long> ids(List<EventJournal.Entry> entries) {
+    return entries.stream().map(EventJournal.Entry::id).collect(toImmutableList());
+  }
+}
@@ -0,0 +1,230 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Ticker;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.git.QoSScheduler.QueueFullException;
+import com.google.gerrit.server.git.QoSScheduler.Tenant;
+import com.google.gerrit.server.git.WorkQueue.CancelableRunnable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+
+public class QoSSchedulerTest {
+  private static final Tenant ALICE = new Tenant("alice", 1, 0);
+  private static final Tenant BOB = new Tenant("bob", 1, 0);
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return nanos.get();
+        }
+      };
+  private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+  private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void tenantsAreServedInTurn() throws Exception {
+    QoSScheduler scheduler = newScheduler(1, 0, 0);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> first = scheduler.submit(ALICE, PROJECT, blocking("a1", release));
+    List<Future<?>> futures = new ArrayList<>();
+    futures.add(scheduler.submit(ALICE, PROJECT, record("a2")));
+    futures.add(scheduler.submit(ALICE, PROJECT, record("a3")));
+    futures.add(scheduler.submit(ALICE, PROJECT, record("a4")));
+    futures.add(scheduler.submit(BOB, PROJECT, record("b1")));
+    assertThat(scheduler.getQueuedCount()).isEqualTo(4);
+
+    release.countDown();
+    first.get();
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    assertThat(started).containsExactly("a1", "a2", "b1", "a3", "a4").inOrder();
+    assertThat(scheduler.getTenantCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void tenantsAreServedByWeight() throws Exception {
+    QoSScheduler scheduler = newScheduler(1, 0, 0);
+    Tenant heavy = new Tenant("heavy", 2, 0);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> first = scheduler.submit(ALICE, PROJECT, blocking("blocker", release));
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 1; i <= 4; i++) {
+      futures.add(scheduler.submit(heavy, PROJECT, record("h" + i)));
+    }
+    for (int i = 1; i <= 2; i++) {
+      futures.add(scheduler.submit(BOB, PROJECT, record("b" + i)));
+    }
+
+    release.countDown();
+    first.get();
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    assertThat(started).containsExactly("blocker", "h1", "h2", "b1", "h3", "h4", "b2").inOrder();
+  }
+
+  @Test
+  public void concurrencyOfTenantIsLimited() throws Exception {
+    QoSScheduler scheduler = newScheduler(2, 0, 0);
+    Tenant limited = new Tenant("limited", 1, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> first = scheduler.submit(limited, PROJECT, blocking("l1", release));
+    Future<?> second = scheduler.submit(limited, PROJECT, record("l2"));
+    Future<?> other = scheduler.submit(BOB, PROJECT, record("b1"));
+
+    other.get();
+    assertThat(second.isDone()).isFalse();
+    assertThat(scheduler.getQueuedCount()).isEqualTo(1);
+
+    release.countDown();
+    first.get();
+    second.get();
+    assertThat(started).containsExactly("l1", "b1", "l2");
+    assertThat(started.get(2)).isEqualTo("l2");
+  }
+
+  @Test
+  public void concurrencyOfProjectIsLimited() throws Exception {
+    QoSScheduler scheduler = newScheduler(2, 1, 0);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> first = scheduler.submit(ALICE, PROJECT, blocking("hot1", release));
+    Future<?> second = scheduler.submit(BOB, PROJECT, record("hot2"));
+    Future<?> other = scheduler.submit(BOB, Project.nameKey("other"), record("other"));
+
+    other.get();
+    assertThat(second.isDone()).isFalse();
+
+    release.countDown();
+    first.get();
+    second.get();
+    assertThat(started).containsExactly("hot1", "other", "hot2");
+    assertThat(started.get(2)).isEqualTo("hot2");
+  }
+
+  @Test
+  public void rejectIfProjectedWaitIsTooLong() throws Exception {
+    QoSScheduler scheduler = newScheduler(1, 0, 15);
+    scheduler.submit(ALICE, PROJECT, advanceClock(SECONDS.toNanos(10))).get();
+
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> first = scheduler.submit(ALICE, PROJECT, blocking("a1", release));
+    Future<?> second = scheduler.submit(BOB, PROJECT, record("b1"));
+    QueueFullException e =
+        assertThrows(
+            QueueFullException.class, () -> scheduler.submit(BOB, PROJECT, record("b2")));
+    assertThat(e.getProjectedWaitMillis()).isEqualTo(20000);
+
+    release.countDown();
+    first.get();
+    second.get();
+    assertThat(started).containsExactly("a1", "b1").inOrder();
+  }
+
+  @Test
+  public void cancelQueuedTask() throws Exception {
+    QoSScheduler scheduler = newScheduler(1, 0, 0);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> first = scheduler.submit(ALICE, PROJECT, blocking("a1", release));
+    AtomicBoolean canceled = new AtomicBoolean();
+    Future<?> queued =
+        scheduler.submit(
+            BOB,
+            PROJECT,
+            new CancelableRunnable() {
+              @Override
+              public void run() {
+                started.add("b1");
+              }
+
+              @Override
+              public void cancel() {
+                canceled.set(true);
+              }
+            });
+
+    assertThat(queued.cancel(true)).isTrue();
+    assertThat(queued.isCancelled()).isTrue();
+    assertThat(canceled.get()).isTrue();
+    assertThat(scheduler.getQueuedCount()).isEqualTo(0);
+    assertThat(scheduler.getTenantCount()).isEqualTo(1);
+
+    release.countDown();
+    first.get();
+    assertThat(started).containsExactly("a1");
+  }
+
+  @Test
+  public void directSchedulerSubmitsRightAway() throws Exception {
+    QoSScheduler scheduler = QoSScheduler.direct(executor);
+    scheduler.submit(ALICE, PROJECT, record("a1")).get();
+    assertThat(started).containsExactly("a1");
+  }
+
+  private QoSScheduler newScheduler(
+      int capacity, int maxConcurrentPerProject, long maxProjectedWaitSeconds) {
+    return new QoSScheduler(
+        "test",
+        executor,
+        capacity,
+        maxConcurrentPerProject,
+        maxProjectedWaitSeconds,
+        0,
+        SECONDS,
+        new DisabledMetricMaker(),
+        ticker);
+  }
+
+  private Runnable record(String name) {
+    return () -> started.add(name);
+  }
+
+  private Runnable blocking(String name, CountDownLatch release) {
+    return () -> {
+      started.add(name);
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  private Runnable advanceClock(long delta) {
+    return () -> nanos.addAndGet(delta);
+  }
+}
@@ -0,0 +1,195 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.SitePaths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UploadPackResponseCacheTest {
+  private static final String ID1 = "1111111111111111111111111111111111111111";
+  private static final String ID2 = "2222222222222222222222222222222222222222";
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private UploadPackResponseCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    Config cfg = new Config();
+    cfg.setBoolean("upload", null, "responseCache", true);
+    cfg.setLong("upload", null, "responseCacheMaxSize", 10);
+    cache =
+        new UploadPackResponseCache(
+            cfg, new SitePaths(temporaryFolder.newFolder().toPath()), new DisabledMetricMaker());
+    cache.start();
+  }
+
+  @Test
+  public void parseClone() {
+    Optional<UploadPackResponseCache.Request> request =
+        UploadPackResponseCache.parse(
+            body(
+                pkt("want " + ID1 + " side-band-64k agent=git/2.40"),
+                pkt("want " + ID2),
+                "0000",
+                pkt("done")));
+    assertThat(request).isPresent();
+    assertThat(request.get().wants())
+        .containsExactly(ObjectId.fromString(ID1), ObjectId.fromString(ID2));
+  }
+
+  @Test
+  public void parseProtocolV2Fetch() {
+    assertThat(
+            UploadPackResponseCache.parse(
+                body(
+                    pkt("command=fetch"),
+                    pkt("agent=git/2.40"),
+                    "0001",
+                    pkt("thin-pack"),
+                    pkt("want " + ID1),
+                    pkt("done"),
+                    "0000")))
+        .isPresent();
+  }
+
+  @Test
+  public void requestsThatNegotiateAreNotCacheable() {
+    assertThat(
+            UploadPackResponseCache.parse(
+                body(pkt("want " + ID1), "0000", pkt("have " + ID2), pkt("done"))))
+        .isEmpty();
+    assertThat(UploadPackResponseCache.parse(body(pkt("want " + ID1), "0000"))).isEmpty();
+    assertThat(
+            UploadPackResponseCache.parse(
+                body(pkt("want " + ID1), pkt("shallow " + ID2), "0000", pkt("done"))))
+        .isEmpty();
+    assertThat(UploadPackResponseCache.parse(body(pkt("command=ls-refs"), "0000"))).isEmpty();
+    assertThat(UploadPackResponseCache.parse("garbage".getBytes(UTF_8))).isEmpty();
+  }
+
+  @Test
+  public void keyIgnoresAgentButNotRefs() {
+    UploadPackResponseCache.Request git240 =
+        UploadPackResponseCache.parse(
+                body(pkt("want " + ID1 + " agent=git/2.40"), "0000", pkt("done")))
+            .get();
+    UploadPackResponseCache.Request git241 =
+        UploadPackResponseCache.parse(
+                body(pkt("want " + ID1 + " agent=git/2.41"), "0000", pkt("done")))
+            .get();
+    ImmutableList<Ref> refs = ImmutableList.of(ref("refs/heads/master", ID1));
+    assertThat(UploadPackResponseCache.key(PROJECT, null, git241, refs))
+        .isEqualTo(UploadPackResponseCache.key(PROJECT, null, git240, refs));
+    assertThat(
+            UploadPackResponseCache.key(
+                PROJECT,
+                null,
+                git240,
+                ImmutableList.of(ref("refs/heads/master", ID1), ref("refs/tags/v1", ID2))))
+        .isNotEqualTo(UploadPackResponseCache.key(PROJECT, null, git240, refs));
+    assertThat(UploadPackResponseCache.key(PROJECT, "version=2", git240, refs))
+        .isNotEqualTo(UploadPackResponseCache.key(PROJECT, null, git240, refs));
+  }
+
+  @Test
+  public void storeAndOpen() throws Exception {
+    ObjectId key = ObjectId.fromString(ID1);
+    assertThat(cache.open(key)).isNull();
+
+    try (UploadPackResponseCache.Writer writer = cache.newWriter(key)) {
+      writer.write("pack".getBytes(UTF_8));
+      writer.commit();
+    }
+
+    assertThat(read(key)).isEqualTo("pack");
+    assertThat(cache.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void uncommittedResponseIsDiscarded() throws Exception {
+    ObjectId key = ObjectId.fromString(ID1);
+    try (UploadPackResponseCache.Writer writer = cache.newWriter(key)) {
+      writer.write("pack".getBytes(UTF_8));
+    }
+    assertThat(cache.open(key)).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void leastRecentlyUsedResponseIsEvicted() throws Exception {
+    ObjectId key1 = ObjectId.fromString(ID1);
+    ObjectId key2 = ObjectId.fromString(ID2);
+    store(key1, "pack1");
+    store(key2, "pack2");
+    assertThat(read(key1)).isEqualTo("pack1");
+
+    store(ObjectId.zeroId(), "pack3");
+
+    assertThat(cache.contains(key1)).isTrue();
+    assertThat(cache.contains(key2)).isFalse();
+    assertThat(cache.size()).isEqualTo(10);
+  }
+
+  @Test
+  public void responseLargerThanCacheIsNotStored() throws Exception {
+    ObjectId key = ObjectId.fromString(ID1);
+    store(key, "much too large");
+    assertThat(cache.contains(key)).isFalse();
+  }
+
+  private void store(ObjectId key, String response) throws Exception {
+    try (UploadPackResponseCache.Writer writer = cache.newWriter(key)) {
+      writer.write(response.getBytes(UTF_8));
+      writer.commit();
+    }
+  }
+
+  private String read(ObjectId key) throws Exception {
+    try (FileChannel channel = cache.open(key)) {
+      ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+      while (buf.hasRemaining() && channel.read(buf) >= 0) {}
+      return new String(buf.array(), UTF_8);
+    }
+  }
+
+  private static Ref ref(String name, String id) {
+    return new ObjectIdRef.Unpeeled(Ref.Storage.LOOSE, name, ObjectId.fromString(id));
+  }
+
+  private static String pkt(String line) {
+    return String.format("%04x%s\n", line.length() + 5, line);
+  }
+
+  private static byte[] body(String... pkts) {
+    return String.join("", pkts).getBytes(UTF_8);
+  }
+}
@@ -0,0 +1,176 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.extensions.registration.DynamicMap;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.git.WorkQueue.Priority;
+import com.google.gerrit.server.plugincontext.PluginContext.PluginMetrics;
+import com.google.gerrit.server.plugincontext.PluginMapContext;
+import com.google.gerrit.server.util.IdGenerator;
+import com.google.gerrit.server.util.VirtualThreads;
+import com.google.inject.Guice;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkQueueTest {
+  private WorkQueue workQueue;
+
+  @After
+  public void tearDown() {
+    if (workQueue != null) {
+      new WorkQueue.Lifecycle(workQueue).stop();
+    }
+  }
+
+  @Test
+  public void platformThreadsByDefault() throws Exception {
+    workQueue = newWorkQueue(false);
+    assertThat(VirtualThreads.isVirtual(runOn(workQueue.getDefaultQueue()))).isFalse();
+    assertThat(VirtualThreads.isVirtual(runOn(workQueue.createQueue(1, "Test")))).isFalse();
+  }
+
+  @Test
+  public void virtualThreadsIfEnabledAndSupported() throws Exception {
+    workQueue = newWorkQueue(true);
+    // Falls back to platform threads if the Java runtime doesn't support virtual threads.
+    boolean expected = VirtualThreads.isSupported();
+    assertThat(VirtualThreads.isVirtual(runOn(workQueue.getDefaultQueue()))).isEqualTo(expected);
+    assertThat(VirtualThreads.isVirtual(runOn(workQueue.createQueue(1, "Test"))))
+        .isEqualTo(expected);
+  }
+
+  @Test
+  public void threadsAreNamedAfterQueue() throws Exception {
+    workQueue = newWorkQueue(true);
+    assertThat(runOn(workQueue.createQueue(1, "Test")).getName()).isEqualTo("Test-1");
+  }
+
+  @Test
+  public void delayedHighPriorityTaskIsStartedFirstOnceReady() throws Exception {
+    workQueue = newWorkQueue(false);
+    ScheduledExecutorService executor = workQueue.createQueue(1, "Test");
+    CountDownLatch blocked = new CountDownLatch(1);
+    List<String> started = new CopyOnWriteArrayList<>();
+    Future<?> blocker =
+        executor.submit(
+            () -> {
+              blocked.await();
+              return null;
+            });
+
+    Future<?> low = executor.submit(new TestTask("low", Priority.LOW, started));
+    executor.execute(new TestTask("normal", Priority.NORMAL, started));
+    ScheduledFuture<?> high =
+        executor.schedule(new TestTask("high", Priority.HIGH, started), 100, MILLISECONDS);
+    // The high priority task becomes ready while the other tasks are queued.
+    while (high.getDelay(MILLISECONDS) > 0) {
+      Thread.sleep(10);
+    }
+
+    blocked.countDown();
+    blocker.get(10, SECONDS);
+    low.get(10, SECONDS);
+    assertThat(started).containsExactly("high", "normal", "low").inOrder();
+  }
+
+  @Test
+  public void readyLowPriorityTaskIsNotDelayedByTaskThatIsNotReady() throws Exception {
+    workQueue = newWorkQueue(false);
+    ScheduledExecutorService executor = workQueue.createQueue(1, "Test");
+    List<String> started = new CopyOnWriteArrayList<>();
+    ScheduledFuture<?> normal =
+        executor.schedule(new TestTask("normal", Priority.NORMAL, started), 1, MINUTES);
+
+    executor.submit(new TestTask("low", Priority.LOW, started)).get(10, SECONDS);
+    assertThat(started).containsExactly("low");
+    assertThat(normal.isDone()).isFalse();
+    normal.cancel(false);
+  }
+
+  @Test
+  public void periodicTaskIsQueuedAgainByNextReadyTime() throws Exception {
+    Config cfg = new Config();
+    cfg.setString("execution", null, "priorityAging", "0");
+    workQueue =
+        new WorkQueue(
+            Guice.createInjector().getInstance(IdGenerator.class),
+            cfg,
+            new DisabledMetricMaker(),
+            new PluginMapContext<>(DynamicMap.emptyMap(), PluginMetrics.DISABLED_INSTANCE));
+    ScheduledExecutorService executor = workQueue.createQueue(1, "Test");
+    CountDownLatch ran = new CountDownLatch(1);
+    ScheduledFuture<?> periodic =
+        executor.scheduleAtFixedRate(ran::countDown, 0, 50, MILLISECONDS);
+    assertThat(ran.await(10, SECONDS)).isTrue();
+
+    // If the periodic task kept the effective deadline of its first run, it would always precede
+    // this task and starve it.
+    executor.submit(() -> {}).get(10, SECONDS);
+    periodic.cancel(false);
+  }
+
+  private static class TestTask implements WorkQueue.PrioritizedRunnable {
+    private final String name;
+    private final Priority priority;
+    private final List<String> started;
+
+    TestTask(String name, Priority priority, List<String> started) {
+      this.name = name;
+      this.priority = priority;
+      this.started = started;
+    }
+
+    @Override
+    public void run() {
+      started.add(name);
+    }
+
+    @Override
+    public Priority getPriority() {
+      return priority;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static Thread runOn(ScheduledExecutorService executor) throws Exception {
+    return executor.submit(Thread::currentThread).get(10, SECONDS);
+  }
+
+  private static WorkQueue newWorkQueue(boolean virtualThreads) {
+    return new WorkQueue(
+        Guice.createInjector().getInstance(IdGenerator.class),
+        2,
+        new DisabledMetricMaker(),
+        new PluginMapContext<>(DynamicMap.emptyMap(), PluginMetrics.DISABLED_INSTANCE),
+        virtualThreads);
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Stopwatch;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.index.IndexDefinition;
+import com.google.gerrit.index.Schema;
+import com.google.gerrit.index.SiteIndexer;
+import com.google.gerrit.server.index.change.ChangeIndex;
+import com.google.gerrit.server.index.change.ChangeIndexCollection;
+import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gerrit.server.plugincontext.PluginContext.PluginMetrics;
+import com.google.gerrit.server.plugincontext.PluginSetContext;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class OnlineReindexerTest {
+  private ChangeIndexCollection indexes;
+  private ChangeIndex oldIndex;
+  private ChangeIndex newIndex;
+  private int oldVersion;
+  private int newVersion;
+
+  @Before
+  public void setUp() {
+    Schema<ChangeData> newSchema = ChangeSchemaDefinitions.INSTANCE.getLatest();
+    Schema<ChangeData> oldSchema =
+        ChangeSchemaDefinitions.INSTANCE.getSchemas().lowerEntry(newSchema.getVersion()).getValue();
+    oldVersion = oldSchema.getVersion();
+    newVersion = newSchema.getVersion();
+
+    oldIndex = mock(ChangeIndex.class);
+    when(oldIndex.getSchema()).thenReturn(oldSchema);
+    newIndex = mock(ChangeIndex.class);
+    when(newIndex.getSchema()).thenReturn(newSchema);
+
+    indexes = new ChangeIndexCollection();
+    indexes.setSearchIndex(oldIndex);
+    indexes.addWriteIndex(oldIndex);
+    indexes.addWriteIndex(newIndex);
+  }
+
+  @Test
+  public void finishBuildIsCalledBeforeIndexIsActivated() throws Exception {
+    AtomicReference<ChangeIndex> searchIndexOnFinishBuild = new AtomicReference<>();
+    doAnswer(
+            invocation -> {
+              searchIndexOnFinishBuild.set(indexes.getSearchIndex());
+              return null;
+            })
+        .when(newIndex)
+        .finishBuild();
+
+    reindex(true);
+
+    assertThat(searchIndexOnFinishBuild.get()).isSameInstanceAs(oldIndex);
+    assertThat(indexes.getSearchIndex()).isSameInstanceAs(newIndex);
+    assertThat(indexes.getWriteIndexes()).containsExactly(newIndex);
+
+    InOrder inOrder = inOrder(newIndex, oldIndex);
+    inOrder.verify(newIndex).deleteAll();
+    inOrder.verify(newIndex).finishBuild();
+    inOrder.verify(newIndex).markReady(true);
+    inOrder.verify(oldIndex).markReady(false);
+  }
+
+  @Test
+  public void finishBuildIsNotCalledIfReindexFailed() throws Exception {
+    reindex(false);
+
+    verify(newIndex, never()).finishBuild();
+    verify(newIndex, never()).markReady(true);
+    assertThat(indexes.getSearchIndex()).isSameInstanceAs(oldIndex);
+    assertThat(indexes.getWriteIndexes()).containsExactly(oldIndex, newIndex);
+  }
+
+  private void reindex(boolean success) throws InterruptedException {
+    OnlineReindexer<Change.Id, ChangeData, ChangeIndex> reindexer =
+        new OnlineReindexer<>(
+            new TestIndexDefinition(success),
+            oldVersion,
+            newVersion,
+            new PluginSetContext<>(DynamicSet.emptySet(), PluginMetrics.DISABLED_INSTANCE),
+            false);
+    reindexer.start();
+    Stopwatch sw = Stopwatch.createStarted();
+    while (reindexer.isRunning()) {
+      assertThat(sw.elapsed(TimeUnit.SECONDS)).isLessThan(30);
+      Thread.sleep(10);
+    }
+  }
+
+  private class TestIndexDefinition extends IndexDefinition<Change.Id, ChangeData, ChangeIndex> {
+    TestIndexDefinition(boolean success) {
+      super(
+          ChangeSchemaDefinitions.INSTANCE,
+          indexes,
+          schema -> null,
+          new SiteIndexer<Change.Id, ChangeData, ChangeIndex>() {
+            @Override
+            public Result indexAll(ChangeIndex index) {
+              return Result.create(Stopwatch.createStarted(), success, 1, success ? 0 : 1);
+            }
+          });
+    }
+  }
+}
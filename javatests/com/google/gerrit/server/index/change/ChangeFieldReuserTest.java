@@ -0,0 +1,164 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.QueryOptions;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangeData.StorageConstraint;
+import java.util.List;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeFieldReuserTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final Change.Id CHANGE_ID = Change.id(1);
+  private static final ObjectId COMMIT =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private static final ObjectId OTHER_COMMIT =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+  private static final ImmutableList<String> PATHS = ImmutableList.of("a.txt", "dir/b.txt");
+
+  private ChangeIndex index;
+  private ChangeFieldReuser reuser;
+
+  @Before
+  public void setUp() {
+    index = mock(ChangeIndex.class);
+    when(index.getSchema()).thenReturn(ChangeSchemaDefinitions.INSTANCE.getLatest());
+    reuser = new ChangeFieldReuser(new Config(), IndexConfig.createDefault());
+  }
+
+  @Test
+  public void valuesAreReusedIfCurrentPatchSetIsUnchanged() {
+    indexed(1, COMMIT, PATHS, 10, 3);
+    ChangeData cd = newChangeData(1, COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isTrue();
+    assertThat(cd.currentFilePaths()).containsExactlyElementsIn(PATHS).inOrder();
+    assertThat(cd.changedLines().get().insertions).isEqualTo(10);
+    assertThat(cd.changedLines().get().deletions).isEqualTo(3);
+  }
+
+  @Test
+  public void nothingIsReusedIfChangeIsNotIndexed() {
+    when(index.get(eq(CHANGE_ID), any(QueryOptions.class))).thenReturn(Optional.empty());
+    ChangeData cd = newChangeData(1, COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isFalse();
+    assertNotReused(cd);
+  }
+
+  @Test
+  public void nothingIsReusedIfCurrentPatchSetChanged() {
+    indexed(1, COMMIT, PATHS, 10, 3);
+    ChangeData cd = newChangeData(2, OTHER_COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isFalse();
+    assertNotReused(cd);
+  }
+
+  @Test
+  public void nothingIsReusedIfCommitOfCurrentPatchSetChanged() {
+    indexed(1, COMMIT, PATHS, 10, 3);
+    ChangeData cd = newChangeData(1, OTHER_COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isFalse();
+    assertNotReused(cd);
+  }
+
+  @Test
+  public void nothingIsReusedIfNoPathsAreStored() {
+    // Paths that were computed from coarse diffs are not stored.
+    indexed(1, COMMIT, ImmutableList.of(), 10, 3);
+    ChangeData cd = newChangeData(1, COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isFalse();
+    assertNotReused(cd);
+  }
+
+  @Test
+  public void nothingIsReusedIfLineCountsAreMissing() {
+    indexed(1, COMMIT, PATHS, -1, 3);
+    ChangeData cd = newChangeData(1, COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isFalse();
+    assertNotReused(cd);
+  }
+
+  @Test
+  public void nothingIsReusedIfIndexCannotBeRead() {
+    when(index.get(eq(CHANGE_ID), any(QueryOptions.class)))
+        .thenThrow(new StorageException("broken"));
+    ChangeData cd = newChangeData(1, COMMIT);
+
+    assertThat(reuser.reuse(index, cd)).isFalse();
+    assertNotReused(cd);
+  }
+
+  @Test
+  public void indexIsNotReadIfDisabled() {
+    Config cfg = new Config();
+    cfg.setBoolean("index", null, "reuseStoredFields", false);
+    reuser = new ChangeFieldReuser(cfg, IndexConfig.createDefault());
+    indexed(1, COMMIT, PATHS, 10, 3);
+
+    assertThat(reuser.reuse(index, newChangeData(1, COMMIT))).isFalse();
+    verify(index, never()).get(any(), any());
+  }
+
+  @Test
+  public void indexIsNotReadIfSchemaHasNoStoredPaths() {
+    when(index.getSchema()).thenReturn(ChangeSchemaDefinitions.V86);
+    indexed(1, COMMIT, PATHS, 10, 3);
+
+    assertThat(reuser.reuse(index, newChangeData(1, COMMIT))).isFalse();
+    verify(index, never()).get(any(), any());
+  }
+
+  private void indexed(
+      int currentPatchSet, ObjectId commit, List<String> paths, int insertions, int deletions) {
+    ChangeData previous = newChangeData(currentPatchSet, commit);
+    previous.setCurrentFilePaths(paths);
+    previous.setChangedLines(insertions, deletions);
+    when(index.get(eq(CHANGE_ID), any(QueryOptions.class))).thenReturn(Optional.of(previous));
+  }
+
+  private static ChangeData newChangeData(int currentPatchSet, ObjectId commit) {
+    return ChangeData.createForTest(PROJECT, CHANGE_ID, currentPatchSet, commit);
+  }
+
+  private static void assertNotReused(ChangeData cd) {
+    // Don't load the diff, only look at what was set.
+    cd.setStorageConstraint(StorageConstraint.INDEX_ONLY);
+    assertThat(cd.currentFilePaths()).isEmpty();
+    assertThat(cd.changedLines()).isEmpty();
+  }
+}
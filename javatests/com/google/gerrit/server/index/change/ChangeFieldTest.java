@@ -171,6 +171,23 @@ public class ChangeFieldTest {
         .isTrue();
   }
 
+  @Test
+  public void storedCurrentFilePaths() {
+    Project.NameKey project = Project.nameKey("project");
+    ChangeData cd =
+        ChangeData.createForTest(project, Change.id(1), 1, ObjectId.zeroId(), null, null);
+    cd.setCurrentFilePaths(ImmutableList.of("a.txt", "dir/b.txt"));
+    Iterable<byte[]> stored = ChangeField.STORED_CURRENT_FILE_PATHS_FIELD.get(cd);
+
+    ChangeData fromIndex =
+        ChangeData.createForTest(project, Change.id(1), 1, ObjectId.zeroId(), null, null);
+    assertThat(
+            ChangeField.STORED_CURRENT_FILE_PATHS_SPEC.setIfPossible(
+                fromIndex, new FakeStoredValue(stored)))
+        .isTrue();
+    assertThat(fromIndex.currentFilePaths()).containsExactly("a.txt", "dir/b.txt").inOrder();
+  }
+
   @Test
   public void shortStringIsNotTruncated() {
     assertThat(ChangeField.truncateStringValue("short string", 20)).isEqualTo("short string");
@@ -0,0 +1,195 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+
+public class CoalescingReindexSchedulerTest {
+  private static final Change.Id ID = Change.id(1);
+
+  private final AtomicLong now = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return now.get();
+        }
+      };
+  // Timers are scheduled far in the future so that they never fire during the test, the tests
+  // trigger them by calling fire() instead.
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final ChangeData cd =
+      ChangeData.createForTest(Project.nameKey("project"), ID, 1, ObjectId.zeroId());
+  private final AtomicInteger indexCount = new AtomicInteger();
+  private final Supplier<ListenableFuture<ChangeData>> index =
+      () -> {
+        indexCount.incrementAndGet();
+        return Futures.immediateFuture(cd);
+      };
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void indexImmediatelyIfDisabled() throws Exception {
+    CoalescingReindexScheduler scheduler = create(0, 0);
+    assertThat(scheduler.isEnabled()).isFalse();
+    assertThat(scheduler.schedule(ID, index).get()).isSameInstanceAs(cd);
+    assertThat(indexCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void requestsAreCoalesced() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(1), HOURS.toMillis(2));
+    ListenableFuture<ChangeData> first = scheduler.schedule(ID, index);
+    ListenableFuture<ChangeData> second = scheduler.schedule(ID, index);
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(first.isDone()).isFalse();
+    assertThat(indexCount.get()).isEqualTo(0);
+
+    advance(HOURS.toMillis(1));
+    scheduler.fire(ID);
+    assertThat(first.get()).isSameInstanceAs(cd);
+    assertThat(indexCount.get()).isEqualTo(1);
+    assertThat(scheduler.pendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void delayIsExtendedUpToMaxDelay() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(10), HOURS.toMillis(25));
+    ListenableFuture<ChangeData> result = scheduler.schedule(ID, index);
+
+    advance(HOURS.toMillis(9));
+    assertThat(scheduler.schedule(ID, index)).isSameInstanceAs(result);
+    advance(HOURS.toMillis(1));
+    scheduler.fire(ID);
+    assertThat(indexCount.get()).isEqualTo(0);
+
+    advance(HOURS.toMillis(8));
+    assertThat(scheduler.schedule(ID, index)).isSameInstanceAs(result);
+    advance(HOURS.toMillis(6));
+    scheduler.fire(ID);
+    assertThat(indexCount.get()).isEqualTo(0);
+
+    // 25 hours after the first request.
+    advance(HOURS.toMillis(1));
+    scheduler.fire(ID);
+    assertThat(indexCount.get()).isEqualTo(1);
+    assertThat(result.get()).isSameInstanceAs(cd);
+  }
+
+  @Test
+  public void immediateIndexWriteCompletesPendingRequest() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(1), HOURS.toMillis(2));
+    ListenableFuture<ChangeData> result = scheduler.schedule(ID, index);
+
+    scheduler.absorb(ID, Futures.immediateFuture(cd));
+    assertThat(result.get()).isSameInstanceAs(cd);
+    assertThat(scheduler.pendingCount()).isEqualTo(0);
+
+    advance(HOURS.toMillis(1));
+    scheduler.fire(ID);
+    assertThat(indexCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void requestAfterIndexWriteIsScheduledAgain() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(1), HOURS.toMillis(2));
+    ListenableFuture<ChangeData> first = scheduler.schedule(ID, index);
+    advance(HOURS.toMillis(1));
+    scheduler.fire(ID);
+
+    ListenableFuture<ChangeData> second = scheduler.schedule(ID, index);
+    assertThat(second).isNotSameInstanceAs(first);
+    assertThat(second.isDone()).isFalse();
+    assertThat(scheduler.pendingCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void pendingRequestsAreIndexedOnStop() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(1), HOURS.toMillis(2));
+    ListenableFuture<ChangeData> first = scheduler.schedule(ID, index);
+    ListenableFuture<ChangeData> second = scheduler.schedule(Change.id(2), index);
+
+    new CoalescingReindexScheduler.Lifecycle(scheduler).stop();
+    assertThat(first.get()).isSameInstanceAs(cd);
+    assertThat(second.get()).isSameInstanceAs(cd);
+    assertThat(indexCount.get()).isEqualTo(2);
+    assertThat(scheduler.pendingCount()).isEqualTo(0);
+
+    // Timers that were already due don't index again.
+    advance(HOURS.toMillis(1));
+    scheduler.fire(ID);
+    assertThat(indexCount.get()).isEqualTo(2);
+
+    // Requests after the stop are not delayed anymore.
+    assertThat(scheduler.schedule(ID, index).get()).isSameInstanceAs(cd);
+    assertThat(indexCount.get()).isEqualTo(3);
+    assertThat(scheduler.pendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void indexImmediatelyIfTimerIsRejected() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(1), HOURS.toMillis(2));
+    executor.shutdown();
+    assertThat(scheduler.schedule(ID, index).get()).isSameInstanceAs(cd);
+    assertThat(indexCount.get()).isEqualTo(1);
+    assertThat(scheduler.pendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void indexImmediatelyIfDelayedTimerIsRejected() throws Exception {
+    CoalescingReindexScheduler scheduler = create(HOURS.toMillis(1), HOURS.toMillis(2));
+    ListenableFuture<ChangeData> result = scheduler.schedule(ID, index);
+    advance(MINUTES.toMillis(30));
+    scheduler.schedule(ID, index);
+    executor.shutdown();
+
+    // The request was pushed back, but the timer can't be scheduled again.
+    advance(MINUTES.toMillis(30));
+    scheduler.fire(ID);
+    assertThat(result.get()).isSameInstanceAs(cd);
+    assertThat(indexCount.get()).isEqualTo(1);
+    assertThat(scheduler.pendingCount()).isEqualTo(0);
+  }
+
+  private CoalescingReindexScheduler create(long debounceMs, long maxDelayMs) {
+    return new CoalescingReindexScheduler(debounceMs, maxDelayMs, ticker, () -> executor);
+  }
+
+  private void advance(long ms) {
+    now.addAndGet(MILLISECONDS.toNanos(ms));
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.index.RefState;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefStateSummaryTest {
+  private static final Change.Id C1 = Change.id(1);
+  private static final Change.Id C2 = Change.id(2);
+  private static final Change.Id C3 = Change.id(3);
+
+  private TestRepository<InMemoryRepository> tr;
+
+  @Before
+  public void setUp() throws Exception {
+    tr = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("project")));
+  }
+
+  @Test
+  public void changeRefsContainsMetaAndEditRefsOnly() throws Exception {
+    String meta = RefNames.changeMetaRef(C1);
+    String edit = RefNames.refsEdit(Account.id(1000), C1, PatchSet.id(C1, 1));
+    tr.update(meta, tr.commit().create());
+    tr.update(RefNames.patchSetRef(PatchSet.id(C1, 1)), tr.commit().create());
+    tr.update(edit, tr.commit().create());
+    tr.update("refs/heads/master", tr.commit().create());
+
+    assertThat(changeRefs().stream().map(Ref::getName)).containsExactly(meta, edit);
+  }
+
+  @Test
+  public void upToDate() throws Exception {
+    RevCommit c1 = tr.update(RefNames.changeMetaRef(C1), tr.commit().create());
+    RevCommit c2 = tr.update(RefNames.changeMetaRef(C2), tr.commit().create());
+
+    RefStateSummary summary = RefStateSummary.create(2);
+    summary.add(
+        C1,
+        ImmutableList.of(
+            RefState.create(RefNames.changeMetaRef(C1), c1),
+            RefState.create(RefNames.robotCommentsRef(C1), ObjectId.zeroId())));
+    summary.add(C2, ImmutableList.of(RefState.create(RefNames.changeMetaRef(C2), c2)));
+
+    RefStateSummary.Result result = summary.compare(changeRefs());
+    assertThat(result.stale()).isEmpty();
+    assertThat(result.missingMetaRef()).isEmpty();
+    assertThat(summary.changeCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void updatedAndNewRefsAreStale() throws Exception {
+    RevCommit c1 = tr.commit().create();
+    tr.update(RefNames.changeMetaRef(C1), tr.commit().parent(c1).create());
+    RevCommit c2 = tr.update(RefNames.changeMetaRef(C2), tr.commit().create());
+    tr.update(RefNames.robotCommentsRef(C2), tr.commit().create());
+    tr.update(RefNames.changeMetaRef(C3), tr.commit().create());
+
+    RefStateSummary summary = RefStateSummary.create(2);
+    summary.add(C1, ImmutableList.of(RefState.create(RefNames.changeMetaRef(C1), c1)));
+    summary.add(
+        C2,
+        ImmutableList.of(
+            RefState.create(RefNames.changeMetaRef(C2), c2),
+            RefState.create(RefNames.robotCommentsRef(C2), ObjectId.zeroId())));
+
+    RefStateSummary.Result result = summary.compare(changeRefs());
+    assertThat(result.stale()).containsExactly(C1, C2, C3);
+    assertThat(result.missingMetaRef()).isEmpty();
+  }
+
+  @Test
+  public void newEditRefIsStale() throws Exception {
+    RevCommit c1 = tr.update(RefNames.changeMetaRef(C1), tr.commit().create());
+    tr.update(RefNames.refsEdit(Account.id(1000), C1, PatchSet.id(C1, 1)), tr.commit().create());
+
+    RefStateSummary summary = RefStateSummary.create(1);
+    summary.add(C1, ImmutableList.of(RefState.create(RefNames.changeMetaRef(C1), c1)));
+
+    assertThat(summary.compare(changeRefs()).stale()).containsExactly(C1);
+  }
+
+  @Test
+  public void deletedChangeHasMissingMetaRef() throws Exception {
+    RevCommit c1 = tr.update(RefNames.changeMetaRef(C1), tr.commit().create());
+
+    RefStateSummary summary = RefStateSummary.create(2);
+    summary.add(C1, ImmutableList.of(RefState.create(RefNames.changeMetaRef(C1), c1)));
+    summary.add(
+        C2, ImmutableList.of(RefState.create(RefNames.changeMetaRef(C2), tr.commit().create())));
+
+    RefStateSummary.Result result = summary.compare(changeRefs());
+    assertThat(result.stale()).isEmpty();
+    assertThat(result.missingMetaRef()).containsExactly(C2);
+  }
+
+  private ImmutableList<Ref> changeRefs() throws Exception {
+    return RefStateSummary.changeRefs(tr.getRepository());
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.index.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.index.change.AllChangesIndexer.ProjectSlice;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReindexCheckpointTest {
+  private static final ImmutableMap<Change.Id, ObjectId> CHANGES =
+      ImmutableMap.of(
+          Change.id(1),
+          ObjectId.fromString("1111111111111111111111111111111111111111"),
+          Change.id(2),
+          ObjectId.fromString("2222222222222222222222222222222222222222"));
+  private static final ProjectSlice SLICE =
+      ProjectSlice.create(Project.nameKey("project"), 0, 1, CHANGES);
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AtomicLong now = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return now.get();
+        }
+      };
+  private final AtomicInteger commitCount = new AtomicInteger();
+  private final FakeChangeIndex index =
+      new FakeChangeIndex(FakeChangeIndex.V1) {
+        @Override
+        public void commit() {
+          commitCount.incrementAndGet();
+        }
+      };
+  private Path file;
+
+  @Before
+  public void setUp() {
+    file = temporaryFolder.getRoot().toPath().resolve("changes_0001.reindex-progress");
+  }
+
+  @Test
+  public void doneSliceIsRecordedAfterCommitAndSkippedOnResume() throws Exception {
+    String key = ReindexCheckpoint.key(SLICE, CHANGES);
+    ReindexCheckpoint checkpoint = new ReindexCheckpoint(file, ImmutableSet.of(), ticker);
+    now.addAndGet(MINUTES.toNanos(2));
+    checkpoint.markDone(key, index);
+    assertThat(commitCount.get()).isEqualTo(1);
+
+    ReindexCheckpoint resumed = ReindexCheckpoint.open(file, true);
+    assertThat(resumed.isResumed()).isTrue();
+    assertThat(resumed.isDone(key)).isTrue();
+  }
+
+  @Test
+  public void doneSlicesAreRecordedAtMostOncePerInterval() throws Exception {
+    ReindexCheckpoint checkpoint = new ReindexCheckpoint(file, ImmutableSet.of(), ticker);
+    checkpoint.markDone(ReindexCheckpoint.key(SLICE, CHANGES), index);
+    assertThat(commitCount.get()).isEqualTo(0);
+    assertThat(Files.exists(file)).isFalse();
+
+    checkpoint.checkpoint(index);
+    assertThat(commitCount.get()).isEqualTo(1);
+    assertThat(Files.readAllLines(file, UTF_8)).hasSize(1);
+
+    checkpoint.checkpoint(index);
+    assertThat(commitCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void openWithoutResumeDiscardsProgress() throws Exception {
+    Files.write(file, ImmutableSet.of(ReindexCheckpoint.key(SLICE, CHANGES)), UTF_8);
+
+    ReindexCheckpoint checkpoint = ReindexCheckpoint.open(file, false);
+    assertThat(checkpoint.isResumed()).isFalse();
+    assertThat(Files.exists(file)).isFalse();
+  }
+
+  @Test
+  public void keyChangesWhenChangeIsUpdated() {
+    ImmutableMap<Change.Id, ObjectId> updated =
+        ImmutableMap.of(
+            Change.id(1),
+            ObjectId.fromString("1111111111111111111111111111111111111111"),
+            Change.id(2),
+            ObjectId.fromString("3333333333333333333333333333333333333333"));
+    assertThat(ReindexCheckpoint.key(SLICE, updated))
+        .isNotEqualTo(ReindexCheckpoint.key(SLICE, CHANGES));
+  }
+}
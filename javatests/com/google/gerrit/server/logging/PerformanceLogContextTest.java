@@ -18,6 +18,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.registration.RegistrationHandle;
 import com.google.gerrit.metrics.Description;
@@ -361,17 +362,75 @@ public class PerformanceLogContextTest {
     assertThat(LoggingContext.getInstance().getPerformanceLogRecords()).isEmpty();
   }
 
+  @Test
+  public void resourceUsageIsAccountedAcrossThreads() throws Exception {
+    ResourceUsage resourceUsage = new ResourceUsage();
+    try (PerformanceLogContext traceContext =
+        new PerformanceLogContext(config, performanceLoggers)) {
+      traceContext.accountResourceUsage("REST /changes/*", resourceUsage);
+
+      LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.INDEX_QUERIES, 1);
+      LoggingContext.getInstance().addCacheHits("changes", 2);
+
+      Thread thread =
+          new Thread(
+              LoggingContext.copy(
+                  () -> {
+                    LoggingContext.getInstance()
+                        .addResourceUsage(ResourceUsage.Counter.REPO_OPENS, 1);
+                    LoggingContext.getInstance().addCacheMisses("changes", 1);
+                  }));
+      thread.start();
+      thread.join();
+    }
+
+    assertThat(LoggingContext.getInstance().getResourceUsage()).isNull();
+    assertThat(resourceUsage.get(ResourceUsage.Counter.INDEX_QUERIES)).isEqualTo(1);
+    assertThat(resourceUsage.get(ResourceUsage.Counter.REPO_OPENS)).isEqualTo(1);
+    assertThat(resourceUsage.get(ResourceUsage.Counter.NOTEDB_REFS_READ)).isEqualTo(0);
+    assertThat(resourceUsage.cacheHits()).containsExactly("changes", 2L);
+    assertThat(resourceUsage.cacheMisses()).containsExactly("changes", 1L);
+    assertThat(testPerformanceLogger.resourceUsages())
+        .containsExactly("REST /changes/*", resourceUsage);
+  }
+
+  @Test
+  public void resourceUsageIsNotAccountedIfPerformanceLoggingIsDisabled() {
+    config.setBoolean("tracing", null, "performanceLogging", false);
+
+    ResourceUsage resourceUsage = new ResourceUsage();
+    try (PerformanceLogContext traceContext =
+        new PerformanceLogContext(config, performanceLoggers)) {
+      traceContext.accountResourceUsage("REST /changes/*", resourceUsage);
+      assertThat(LoggingContext.getInstance().getResourceUsage()).isNull();
+      LoggingContext.getInstance().addResourceUsage(ResourceUsage.Counter.INDEX_QUERIES, 1);
+    }
+
+    assertThat(resourceUsage.get(ResourceUsage.Counter.INDEX_QUERIES)).isEqualTo(0);
+    assertThat(testPerformanceLogger.resourceUsages()).isEmpty();
+  }
+
   private static class TestPerformanceLogger implements PerformanceLogger {
     private ImmutableList.Builder<PerformanceLogEntry> logEntries = ImmutableList.builder();
+    private ImmutableMap.Builder<String, ResourceUsage> resourceUsages = ImmutableMap.builder();
 
     @Override
     public void logNanos(String operation, long durationNanos, Instant endTime, Metadata metadata) {
       logEntries.add(PerformanceLogEntry.create(operation, metadata));
     }
 
+    @Override
+    public void logResourceUsage(String request, ResourceUsage resourceUsage) {
+      resourceUsages.put(request, resourceUsage);
+    }
+
     ImmutableList<PerformanceLogEntry> logEntries() {
       return logEntries.build();
     }
+
+    ImmutableMap<String, ResourceUsage> resourceUsages() {
+      return resourceUsages.build();
+    }
   }
 
   private void removeAllPerformanceLoggers() throws Exception {
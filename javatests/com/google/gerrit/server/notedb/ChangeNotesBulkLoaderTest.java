@@ -0,0 +1,149 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.TestActionRefUpdateContext.testRefAction;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.testing.TestChanges;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class ChangeNotesBulkLoaderTest extends AbstractChangeNotesTest {
+  @Inject private ChangeNotesBulkLoader bulkLoader;
+
+  @Test
+  public void loadChangesOfSeveralProjects() throws Exception {
+    Project.NameKey otherProject = Project.nameKey("other-project");
+    repoManager.createRepository(otherProject);
+    Change c1 = newChange();
+    Change c2 = newChange(otherProject);
+    ChangeUpdate update = newUpdate(c2, changeOwner);
+    update.setChangeMessage("Hello.\n");
+    update.commit();
+
+    Table<Project.NameKey, Change.Id, Optional<ObjectId>> request = HashBasedTable.create();
+    request.put(project, c1.getId(), Optional.empty());
+    request.put(otherProject, c2.getId(), Optional.empty());
+    ImmutableTable<Project.NameKey, Change.Id, ChangeNotes> loaded = bulkLoader.load(request);
+
+    assertThat(loaded.size()).isEqualTo(2);
+    assertSameNotes(loaded.get(project, c1.getId()), newNotes(c1));
+    assertSameNotes(loaded.get(otherProject, c2.getId()), newNotes(c2));
+  }
+
+  @Test
+  public void loadPinnedMetaRevision() throws Exception {
+    Change c = newChange();
+    ObjectId oldMetaId = newNotes(c).getMetaId();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Hello.\n");
+    update.commit();
+
+    Table<Project.NameKey, Change.Id, Optional<ObjectId>> request = HashBasedTable.create();
+    request.put(project, c.getId(), Optional.of(oldMetaId));
+    ChangeNotes notes = bulkLoader.load(request).get(project, c.getId());
+
+    assertThat(notes.getMetaId()).isEqualTo(oldMetaId);
+    assertThat(notes.getChangeMessages()).isEmpty();
+  }
+
+  @Test
+  public void missingChangesAreLeftOut() throws Exception {
+    Change c = newChange();
+    Change.Id missing = Change.id(c.getId().get() + 1000);
+
+    Table<Project.NameKey, Change.Id, Optional<ObjectId>> request = HashBasedTable.create();
+    request.put(project, c.getId(), Optional.empty());
+    request.put(project, missing, Optional.empty());
+    request.put(Project.nameKey("missing-project"), c.getId(), Optional.empty());
+    ImmutableTable<Project.NameKey, Change.Id, ChangeNotes> loaded = bulkLoader.load(request);
+
+    assertThat(loaded.cellSet()).hasSize(1);
+    assertSameNotes(loaded.get(project, c.getId()), newNotes(c));
+  }
+
+  @Test
+  public void parseBatchesOnFanOutExecutor() throws Exception {
+    List<Change> changes = new ArrayList<>();
+    Table<Project.NameKey, Change.Id, Optional<ObjectId>> request = HashBasedTable.create();
+    for (int i = 0; i <= ChangeNotesBulkLoader.BATCH_SIZE; i++) {
+      Change c = newChange();
+      changes.add(c);
+      request.put(project, c.getId(), Optional.empty());
+    }
+
+    ImmutableTable<Project.NameKey, Change.Id, ChangeNotes> loaded = bulkLoader.load(request);
+
+    assertableFanOutExecutor.assertInteractions(2);
+    assertThat(loaded.size()).isEqualTo(changes.size());
+    for (Change c : changes) {
+      assertSameNotes(loaded.get(project, c.getId()), newNotes(c));
+    }
+  }
+
+  @Test
+  public void loadFromTheOnlyExecutorThread() throws Exception {
+    Table<Project.NameKey, Change.Id, Optional<ObjectId>> request = HashBasedTable.create();
+    for (int i = 0; i <= ChangeNotesBulkLoader.BATCH_SIZE; i++) {
+      request.put(project, newChange().getId(), Optional.empty());
+    }
+
+    // The batches submitted by the caller can't run before it returns, so it loads them itself.
+    ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    try {
+      ChangeNotesBulkLoader loader = new ChangeNotesBulkLoader(args, singleThread);
+      Future<ImmutableTable<Project.NameKey, Change.Id, ChangeNotes>> loaded =
+          singleThread.submit(() -> loader.load(request));
+      assertThat(loaded.get(10, SECONDS).size()).isEqualTo(request.size());
+    } finally {
+      singleThread.shutdownNow();
+    }
+  }
+
+  private Change newChange(Project.NameKey project) throws Exception {
+    return testRefAction(
+        () -> {
+          Change c = TestChanges.newChange(project, changeOwner.getAccountId());
+          ChangeUpdate u = newUpdateForNewChange(c, changeOwner);
+          u.setChangeId(c.getKey().get());
+          u.setBranch(c.getDest().branch());
+          u.commit();
+          return c;
+        });
+  }
+
+  private static void assertSameNotes(ChangeNotes actual, ChangeNotes expected) {
+    assertThat(actual).isNotNull();
+    assertThat(actual.getMetaId()).isEqualTo(expected.getMetaId());
+    assertThat(actual.getChange().getProject()).isEqualTo(expected.getChange().getProject());
+    assertThat(actual.getChange().getSubject()).isEqualTo(expected.getChange().getSubject());
+    assertThat(actual.getPatchSets()).isEqualTo(expected.getPatchSets());
+    assertThat(actual.getChangeMessages()).isEqualTo(expected.getChangeMessages());
+  }
+}
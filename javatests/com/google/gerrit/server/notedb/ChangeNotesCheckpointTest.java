@@ -0,0 +1,612 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.google.gerrit.entities.RefNames.changeMetaHistoryRef;
+import static com.google.gerrit.entities.RefNames.changeMetaRef;
+import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_CHECKPOINT;
+import static com.google.gerrit.server.notedb.ReviewerStateInternal.CC;
+import static com.google.gerrit.server.notedb.ReviewerStateInternal.REVIEWER;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.gerrit.entities.Address;
+import com.google.gerrit.entities.AttentionSetUpdate;
+import com.google.gerrit.entities.AttentionSetUpdate.Operation;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.ChangeMessage;
+import com.google.gerrit.entities.CommentRange;
+import com.google.gerrit.entities.HumanComment;
+import com.google.gerrit.entities.LabelId;
+import com.google.gerrit.entities.SubmissionId;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.proto.Protos;
+import com.google.gerrit.server.cache.proto.Cache.ChangeNotesCheckpointProto;
+import com.google.gerrit.server.git.validators.TopicValidator;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.TestChanges;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeNotesCheckpointTest extends AbstractChangeNotesTest {
+  private TopicValidator topicValidator;
+
+  @Before
+  public void setUp() throws Exception {
+    topicValidator = mock(TopicValidator.class);
+  }
+
+  @Test
+  public void squashKeepsState() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.putApproval(LabelId.CODE_REVIEW, (short) 1);
+    update.setChangeMessage("Looks good.\n");
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.setHashtags(ImmutableSet.of("tag1", "tag2"));
+    update.setTopic("topic", topicValidator);
+    update.commit();
+
+    incrementPatchSet(c);
+
+    update = newUpdate(c, otherUser);
+    update.putApproval(LabelId.CODE_REVIEW, (short) -1);
+    update.setChangeMessage("Needs work.\n");
+    update.commit();
+
+    ChangeNotes before = newNotes(c);
+    squash(c);
+    ChangeNotes after = newNotes(c);
+
+    RevCommit checkpoint = rw.parseCommit(after.getMetaId());
+    assertThat(checkpoint.getParentCount()).isEqualTo(0);
+    assertThat(ChangeNotesCheckpoint.isCheckpoint(checkpoint)).isTrue();
+    assertThat(repo.exactRef(changeMetaHistoryRef(c.getId())).getObjectId())
+        .isEqualTo(before.getMetaId());
+
+    assertThat(after.getChange().getTopic()).isEqualTo("topic");
+    assertThat(after.getHashtags()).isEqualTo(before.getHashtags());
+    assertThat(after.getPatchSets()).isEqualTo(before.getPatchSets());
+    assertThat(after.getChangeMessages()).isEqualTo(before.getChangeMessages());
+    assertThat(after.getApprovals().all())
+        .containsExactlyEntriesIn(before.getApprovals().all());
+    assertThat(after.getReviewers()).isEqualTo(before.getReviewers());
+    assertThat(after.getReviewerUpdates()).isEqualTo(before.getReviewerUpdates());
+    assertThat(after.getUpdateCount()).isEqualTo(before.getUpdateCount());
+  }
+
+  @Test
+  public void updateAfterSquash() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.setChangeMessage("First.\n");
+    update.commit();
+    ObjectId squashed = squash(c);
+
+    update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), CC);
+    update.setChangeMessage("Second.\n");
+    update.commit();
+
+    ChangeNotes notes = newNotes(c);
+    assertThat(rw.parseCommit(notes.getMetaId()).getParent(0)).isEqualTo(squashed);
+    assertThat(notes.getChangeMessages().stream().map(ChangeMessage::getMessage))
+        .containsExactly("First.\n", "Second.\n")
+        .inOrder();
+    assertThat(notes.getReviewers().byState(CC)).containsExactly(otherUser.getAccountId());
+    assertThat(notes.getReviewers().byState(REVIEWER)).isEmpty();
+
+    // Squashing again folds the new updates and keeps the previously archived history.
+    ObjectId oldArchive = repo.exactRef(changeMetaHistoryRef(c.getId())).getObjectId();
+    squash(c);
+    RevCommit archive =
+        rw.parseCommit(repo.exactRef(changeMetaHistoryRef(c.getId())).getObjectId());
+    assertThat(archive.getParents())
+        .asList()
+        .containsExactly(rw.parseCommit(notes.getMetaId()), rw.parseCommit(oldArchive));
+    assertThat(newNotes(c).getChangeMessages()).isEqualTo(notes.getChangeMessages());
+  }
+
+  @Test
+  public void deleteChangeMessageAfterSquash() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Secret.\n");
+    update.commit();
+    ChangeMessage message = Iterables.getOnlyElement(newNotes(c).getChangeMessages());
+    squash(c);
+
+    update = newUpdate(c, changeOwner);
+    update.deleteChangeMessageByRewritingHistory(message.getKey().uuid(), "Removed.\n");
+    update.commit();
+
+    ChangeMessage deleted = Iterables.getOnlyElement(newNotes(c).getChangeMessages());
+    assertThat(deleted.getKey()).isEqualTo(message.getKey());
+    assertThat(deleted.getMessage()).isEqualTo("Removed.\n");
+  }
+
+  @Test
+  public void deleteCommentAfterSquash() throws Exception {
+    Change c = newChange();
+    RevCommit commit = tr.commit().message("PS2").create();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putComment(
+        HumanComment.Status.PUBLISHED,
+        newComment(
+            c.currentPatchSetId(),
+            "a.txt",
+            "uuid1",
+            new CommentRange(1, 2, 3, 4),
+            1,
+            changeOwner,
+            null,
+            TimeUtil.now(),
+            "Secret",
+            (short) 1,
+            commit,
+            false));
+    update.commit();
+    squash(c);
+
+    update = newUpdate(c, changeOwner);
+    update.deleteCommentByRewritingHistory("uuid1", "Removed");
+    update.commit();
+
+    ChangeNotes notes = newNotes(c);
+    assertThat(ChangeNotesCheckpoint.isCheckpoint(rw.parseCommit(notes.getMetaId()))).isTrue();
+    HumanComment comment = Iterables.getOnlyElement(notes.getHumanComments().values());
+    assertThat(comment.message).isEqualTo("Removed");
+  }
+
+  @Test
+  public void deleteChangeMessageRewritesArchivedHistory() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Secret.\n");
+    update.commit();
+    ChangeMessage message = Iterables.getOnlyElement(newNotes(c).getChangeMessages());
+    squash(c);
+    update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Public.\n");
+    update.commit();
+    // Squash twice, so that the archive joins two squashed histories.
+    squash(c);
+    update = newUpdate(c, changeOwner);
+    update.setTopic("topic", topicValidator);
+    update.commit();
+    assertThat(isReachable("Secret")).isTrue();
+
+    update = newUpdate(c, changeOwner);
+    update.deleteChangeMessageByRewritingHistory(message.getKey().uuid(), "Removed.\n");
+    update.commit();
+
+    assertThat(isReachable("Secret")).isFalse();
+    RevCommit archive =
+        rw.parseCommit(repo.exactRef(changeMetaHistoryRef(c.getId())).getObjectId());
+    assertThat(archive.getParentCount()).isEqualTo(2);
+    // The checkpoints name the rewritten squashed histories.
+    assertThat(squashedTipOf(repo.exactRef(changeMetaRef(c.getId())).getObjectId()))
+        .isEqualTo(archive.getParent(0));
+    assertThat(squashedTipOf(archive.getParent(0))).isEqualTo(archive.getParent(1));
+    assertThat(newNotes(c).getChangeMessages().stream().map(ChangeMessage::getMessage))
+        .containsExactly("Removed.\n", "Public.\n")
+        .inOrder();
+  }
+
+  @Test
+  public void deleteCommentRewritesArchivedHistory() throws Exception {
+    Change c = newChange();
+    RevCommit commit = tr.commit().message("PS2").create();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putComment(
+        HumanComment.Status.PUBLISHED,
+        newComment(
+            c.currentPatchSetId(),
+            "a.txt",
+            "uuid1",
+            new CommentRange(1, 2, 3, 4),
+            1,
+            changeOwner,
+            null,
+            TimeUtil.now(),
+            "Secret",
+            (short) 1,
+            commit,
+            false));
+    update.commit();
+    squash(c);
+    update = newUpdate(c, changeOwner);
+    update.setTopic("topic", topicValidator);
+    update.commit();
+    squash(c);
+    assertThat(isReachable("Secret")).isTrue();
+
+    update = newUpdate(c, changeOwner);
+    update.deleteCommentByRewritingHistory("uuid1", "Removed");
+    update.commit();
+
+    assertThat(isReachable("Secret")).isFalse();
+    HumanComment comment = Iterables.getOnlyElement(newNotes(c).getHumanComments().values());
+    assertThat(comment.message).isEqualTo("Removed");
+    RevCommit archive =
+        rw.parseCommit(repo.exactRef(changeMetaHistoryRef(c.getId())).getObjectId());
+    assertThat(squashedTipOf(repo.exactRef(changeMetaRef(c.getId())).getObjectId()))
+        .isEqualTo(archive.getParent(0));
+    assertThat(squashedTipOf(archive.getParent(0))).isEqualTo(archive.getParent(1));
+  }
+
+  @Test
+  public void squashedHistoryParsesLikeFullHistory() throws Exception {
+    Change revertedChange = newChange();
+    Change cherryPickedChange = newChange();
+    Change c = TestChanges.newChange(project, changeOwner.getAccountId());
+    SubmissionId submissionId = new SubmissionId(c);
+    Address email = Address.create("Foo Bar", "foo.bar@example.com");
+
+    ChangeUpdate update = newUpdateForNewChange(c, changeOwner);
+    update.setChangeId(c.getKey().get());
+    update.setBranch(c.getDest().branch());
+    update.setRevertOf(revertedChange.getId().get());
+    update.setWorkInProgress(true);
+    update.commit();
+
+    // Reviewers added while the change is WIP are pending.
+    update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.putReviewerByEmail(email, CC);
+    update.setChangeMessage("Draft.\n");
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.setPrivate(true);
+    update.setCherryPickOf(
+        cherryPickedChange.currentPatchSetId().getCommaSeparatedChangeAndPatchSetId());
+    update.setHashtags(ImmutableSet.of("tag"));
+    update.commit();
+
+    update = newUpdate(c, otherUser);
+    update.putApproval(LabelId.CODE_REVIEW, (short) -1);
+    update.setChangeMessage("Needs work.\n");
+    update.commit();
+
+    // The second patch set targets another branch.
+    TestChanges.incrementPatchSet(c);
+    update = newUpdate(c, changeOwner);
+    update.setCommit(rw, tr.commit().message("PS2").create());
+    update.setBranch("refs/heads/stable");
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.setWorkInProgress(false);
+    update.addToPlannedAttentionSetUpdates(
+        AttentionSetUpdate.createForWrite(otherUser.getAccountId(), Operation.ADD, "review"));
+    update.commit();
+
+    // Removing a reviewer zeroes their votes.
+    update = newUpdate(c, changeOwner);
+    update.removeReviewer(otherUser.getAccountId());
+    update.removeReviewerByEmail(email);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.putApproval(LabelId.CODE_REVIEW, (short) 2);
+    update.setPrivate(false);
+    update.setChangeMessage("Looks good.\n");
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.merge(
+        submissionId,
+        ImmutableList.of(
+            submitRecord(
+                "OK", null, submitLabel(LabelId.CODE_REVIEW, "OK", changeOwner.getAccountId()))));
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.putApproval(LabelId.VERIFIED, (short) 1);
+    update.addToPlannedAttentionSetUpdates(
+        AttentionSetUpdate.createForWrite(otherUser.getAccountId(), Operation.REMOVE, "merged"));
+    update.commit();
+
+    int commits = 10;
+    for (int i = 0; i < commits; i++) {
+      assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(i));
+    }
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(1, 4, 8));
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(0, 2, 5, 7, 9));
+    assertSquashedParsesLikeFullHistory(
+        c, IntStream.range(0, commits).boxed().collect(toImmutableSet()));
+  }
+
+  @Test
+  public void squashedHistoryParsesLikeFullHistoryAfterRemovingReviewer() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.commit();
+
+    update = newUpdate(c, otherUser);
+    update.putApproval(LabelId.CODE_REVIEW, (short) 1);
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.removeReviewer(otherUser.getAccountId());
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.putReviewer(otherUser.getAccountId(), REVIEWER);
+    update.commit();
+
+    // The vote stays zeroed when the reviewer is added again after the checkpoint.
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(2));
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(0, 2));
+  }
+
+  @Test
+  public void squashedHistoryParsesLikeFullHistoryAfterDeletingPatchSet() throws Exception {
+    Change c = newChange();
+    incrementPatchSet(c);
+
+    ChangeUpdate update = newUpdate(c, otherUser);
+    update.putApproval(LabelId.CODE_REVIEW, (short) 1);
+    update.setChangeMessage("On PS2.\n");
+    update.commit();
+
+    update = newUpdate(c, changeOwner);
+    update.setPatchSetState(PatchSetState.DELETED);
+    update.commit();
+
+    ChangeNotes notes = newNotes(c);
+    assertThat(notes.getPatchSets()).hasSize(1);
+    assertThat(notes.getChangeMessages()).isEmpty();
+    // The deleted patch set was folded into the checkpoints.
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(1));
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(2));
+    assertSquashedParsesLikeFullHistory(c, ImmutableSet.of(0, 1, 2));
+  }
+
+  @Test
+  public void deletingPatchSetOfMissingSquashedHistoryFails() throws Exception {
+    Change c = newChange();
+    incrementPatchSet(c);
+    RevCommit checkpoint = rw.parseCommit(squash(c));
+    ObjectId missingTip = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    try (ObjectInserter ins = repo.newObjectInserter()) {
+      CommitBuilder cb = new CommitBuilder();
+      cb.setTreeId(checkpoint.getTree());
+      cb.setAuthor(checkpoint.getAuthorIdent());
+      cb.setCommitter(checkpoint.getCommitterIdent());
+      cb.setMessage(
+          ChangeNotesCheckpoint.rewriteMessage(
+              checkpoint, ImmutableMap.of(squashedTipOf(checkpoint), missingTip)));
+      ObjectId id = ins.insert(cb);
+      ins.flush();
+      tr.update(changeMetaRef(c.getId()), id);
+    }
+
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setPatchSetState(PatchSetState.DELETED);
+    update.commit();
+
+    StorageException thrown = assertThrows(StorageException.class, () -> newNotes(c));
+    assertThat(thrown).hasCauseThat().isInstanceOf(ConfigInvalidException.class);
+    assertThat(thrown)
+        .hasCauseThat()
+        .hasMessageThat()
+        .contains("squashed history " + missingTip.name() + " of checkpoint");
+  }
+
+  @Test
+  public void unsupportedFormatVersionIsRejected() throws Exception {
+    Change c = newChange();
+    RevCommit checkpoint = rw.parseCommit(squash(c));
+    RevCommit rewritten;
+    try (ObjectInserter ins = repo.newObjectInserter();
+        ObjectReader reader = repo.newObjectReader()) {
+      ObjectId blob =
+          ins.insert(
+              OBJ_BLOB,
+              Protos.toByteArray(
+                  ChangeNotesCheckpointProto.newBuilder()
+                      .setVersion(ChangeNotesCheckpoint.FORMAT_VERSION + 1)
+                      .build()));
+      CommitBuilder cb = new CommitBuilder();
+      cb.setTreeId(ChangeNotesCheckpoint.insertTree(ins, reader, checkpoint.getTree(), blob));
+      cb.setAuthor(checkpoint.getAuthorIdent());
+      cb.setCommitter(checkpoint.getCommitterIdent());
+      cb.setMessage(checkpoint.getFullMessage());
+      ObjectId id = ins.insert(cb);
+      ins.flush();
+      rewritten = rw.parseCommit(id);
+    }
+
+    ConfigInvalidException thrown =
+        assertThrows(
+            ConfigInvalidException.class,
+            () -> ChangeNotesCheckpoint.readState(rw.getObjectReader(), rewritten));
+    assertThat(thrown)
+        .hasMessageThat()
+        .contains("unsupported format version " + (ChangeNotesCheckpoint.FORMAT_VERSION + 1));
+  }
+
+  @Test
+  public void deleteChangeMessageWithoutArchive() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Secret.\n");
+    update.commit();
+    ChangeMessage message = Iterables.getOnlyElement(newNotes(c).getChangeMessages());
+
+    update = newUpdate(c, changeOwner);
+    update.deleteChangeMessageByRewritingHistory(message.getKey().uuid(), "Removed.\n");
+    update.commit();
+
+    assertThat(isReachable("Secret")).isFalse();
+    assertThat(repo.exactRef(changeMetaHistoryRef(c.getId()))).isNull();
+  }
+
+  /** Whether any commit message or blob reachable from any ref contains the text. */
+  private boolean isReachable(String text) throws IOException {
+    try (ObjectWalk ow = new ObjectWalk(repo)) {
+      for (Ref ref : repo.getRefDatabase().getRefs()) {
+        ow.markStart(ow.parseAny(ref.getObjectId()));
+      }
+      RevCommit commit;
+      while ((commit = ow.next()) != null) {
+        if (commit.getFullMessage().contains(text)) {
+          return true;
+        }
+      }
+      RevObject obj;
+      while ((obj = ow.nextObject()) != null) {
+        if (obj.getType() == OBJ_BLOB
+            && new String(repo.open(obj).getCachedBytes(), UTF_8).contains(text)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks that the change parses to the same state if its meta history is squashed after each of
+   * the given commits, counted from the oldest one.
+   *
+   * <p>The commits after the first squash are replayed on top of the checkpoint, which changes
+   * their IDs. The meta ID and the keys of the change messages are mapped back to the original
+   * commits for the comparison.
+   */
+  private void assertSquashedParsesLikeFullHistory(Change c, Set<Integer> squashAfter)
+      throws Exception {
+    String metaRef = changeMetaRef(c.getId());
+    ObjectId fullTip = repo.exactRef(metaRef).getObjectId();
+    ChangeNotesState expected = newNotes(c).getState();
+
+    List<RevCommit> commits = new ArrayList<>();
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.sort(RevSort.REVERSE);
+      walk.markStart(walk.parseCommit(fullTip));
+      walk.forEach(commits::add);
+    }
+
+    Map<String, String> originals = new HashMap<>();
+    ObjectId tip = null;
+    ObjectId stateBlob = null;
+    try (ObjectInserter ins = repo.newObjectInserter();
+        ObjectReader reader = repo.newObjectReader()) {
+      for (int i = 0; i < commits.size(); i++) {
+        RevCommit commit = commits.get(i);
+        if (stateBlob == null) {
+          tip = commit;
+        } else {
+          CommitBuilder cb = new CommitBuilder();
+          cb.setParentId(tip);
+          cb.setTreeId(ChangeNotesCheckpoint.insertTree(ins, reader, commit.getTree(), stateBlob));
+          cb.setAuthor(commit.getAuthorIdent());
+          cb.setCommitter(commit.getCommitterIdent());
+          cb.setMessage(commit.getFullMessage());
+          tip = ins.insert(cb);
+          ins.flush();
+          originals.put(tip.name(), commit.name());
+        }
+        if (squashAfter.contains(i)) {
+          tr.update(metaRef, tip);
+          tip = squash(c);
+          stateBlob = ChangeNotesCheckpoint.stateBlob(reader, rw.parseCommit(tip).getTree());
+        }
+      }
+    }
+
+    tr.update(metaRef, tip);
+    ChangeNotesState actual = newNotes(c).getState();
+    tr.update(metaRef, fullTip);
+
+    ImmutableList<ChangeMessage> messages =
+        actual.changeMessages().stream()
+            .map(
+                m ->
+                    ChangeMessage.create(
+                        ChangeMessage.key(
+                            c.getId(),
+                            originals.getOrDefault(m.getKey().uuid(), m.getKey().uuid())),
+                        m.getAuthor(),
+                        m.getWrittenOn(),
+                        m.getPatchSetId(),
+                        m.getMessage(),
+                        m.getRealAuthor(),
+                        m.getTag()))
+            .collect(toImmutableList());
+    assertWithMessage("squashed after %s", squashAfter)
+        .that(actual.toBuilder().metaId(fullTip).changeMessages(messages).build())
+        .isEqualTo(expected);
+  }
+
+  /** Returns the squashed history named by the checkpoint at the root of the given history. */
+  private ObjectId squashedTipOf(ObjectId tip) throws IOException {
+    RevCommit commit = rw.parseCommit(tip);
+    while (commit.getParentCount() > 0) {
+      commit = rw.parseCommit(commit.getParent(0));
+    }
+    return ObjectId.fromString(
+        Iterables.getOnlyElement(commit.getFooterLines(FOOTER_CHECKPOINT)));
+  }
+
+  private ObjectId squash(Change c) throws Exception {
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.squashMetaHistory();
+    update.commit();
+    return repo.exactRef(changeMetaRef(c.getId())).getObjectId();
+  }
+
+  private void incrementPatchSet(Change c) throws Exception {
+    TestChanges.incrementPatchSet(c);
+    RevCommit commit = tr.commit().message("PS" + c.currentPatchSetId().get()).create();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setCommit(rw, commit);
+    update.commit();
+  }
+}
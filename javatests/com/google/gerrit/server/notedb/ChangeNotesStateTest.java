@@ -1011,6 +1011,7 @@ public class ChangeNotesStateTest {
                     new TypeLiteral<ImmutableList<SubmitRequirementResult>>() {}.getType())
                 .put("updateCount", int.class)
                 .put("mergedOn", Instant.class)
+                .put("toBuilder", ChangeNotesState.Builder.class)
                 .build());
   }
 
@@ -27,6 +27,7 @@ import static org.mockito.Mockito.mock;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gerrit.entities.Account;
 import com.google.gerrit.entities.AttentionSetUpdate;
@@ -91,7 +92,9 @@ public class CommitRewriterTest extends AbstractChangeNotesTest {
     bru.setAllowNonFastForwards(true);
     for (Ref ref : repo.getRefDatabase().getRefsByPrefix(RefNames.REFS_CHANGES)) {
       Change.Id changeId = Change.Id.fromRef(ref.getName());
-      if (changeId == null || !ref.getName().equals(RefNames.changeMetaRef(changeId))) {
+      if (changeId == null
+          || (!ref.getName().equals(RefNames.changeMetaRef(changeId))
+              && !ref.getName().equals(RefNames.changeMetaHistoryRef(changeId)))) {
         continue;
       }
       bru.addCommand(new ReceiveCommand(ref.getObjectId(), ObjectId.zeroId(), ref.getName()));
@@ -1591,6 +1594,68 @@ public class CommitRewriterTest extends AbstractChangeNotesTest {
     assertThat(secondRunResult.refsFailedToFix).isEmpty();
   }
 
+  @Test
+  public void fixCheckpointStateAndArchivedHistory() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Change has been successfully merged by " + changeOwner.getName());
+    ObjectId firstCommitToFix = update.commit();
+    ObjectId firstCheckpoint = rootOf(squash(c));
+    update = newUpdate(c, changeOwner);
+    update.setChangeMessage(
+        "Change has been successfully cherry-picked as e40dc1a50dc7f457a37579e2755374f3e1a5413b by "
+            + changeOwner.getName());
+    ObjectId secondCommitToFix = update.commit();
+    // Squash twice, so that the archive joins two squashed histories and both checkpoints fold
+    // change messages that need the fix.
+    ObjectId secondCheckpoint = rootOf(squash(c));
+    update = newUpdate(c, changeOwner);
+    update.setSubjectForCommit("Update with subject");
+    update.commit();
+
+    String metaRef = RefNames.changeMetaRef(c.getId());
+    String archiveRef = RefNames.changeMetaHistoryRef(c.getId());
+    RunOptions options = new RunOptions();
+    options.dryRun = false;
+    BackfillResult result = rewriter.backfillProject(project, repo, options);
+    assertThat(result.fixedRefDiff.keySet()).containsExactly(metaRef, archiveRef);
+    assertThat(result.refsStillInvalidAfterFix).isEmpty();
+    assertThat(
+            result.fixedRefDiff.get(archiveRef).stream()
+                .map(CommitDiff::oldSha1)
+                .collect(toImmutableList()))
+        .containsExactly(firstCommitToFix, firstCheckpoint, secondCommitToFix);
+    assertFixedCommits(ImmutableList.of(secondCheckpoint), result, c.getId());
+
+    assertThat(changeMessages(newNotes(c)))
+        .containsExactly(
+            "Change has been successfully merged",
+            "Change has been successfully cherry-picked as"
+                + " e40dc1a50dc7f457a37579e2755374f3e1a5413b")
+        .inOrder();
+    RevCommit archive = rw.parseCommit(repo.exactRef(archiveRef).getObjectId());
+    assertThat(archive.getParentCount()).isEqualTo(2);
+    // The checkpoints name the fixed squashed histories.
+    assertThat(squashedTipOf(repo.exactRef(metaRef).getObjectId()))
+        .isEqualTo(archive.getParent(0));
+    assertThat(squashedTipOf(archive.getParent(0))).isEqualTo(archive.getParent(1));
+    ImmutableList<RevCommit> metaCommits = logMetaRef(repo, repo.exactRef(metaRef));
+    ImmutableList<RevCommit> archiveCommits = logMetaRef(repo, repo.exactRef(archiveRef));
+    for (RevCommit commit : Iterables.concat(metaCommits, archiveCommits)) {
+      assertThat(commit.getFullMessage()).doesNotContain(changeOwner.getName());
+      if (ChangeNotesCheckpoint.isCheckpoint(commit)) {
+        ChangeNotesState state = ChangeNotesCheckpoint.readState(rw.getObjectReader(), commit);
+        for (ChangeMessage message : state.changeMessages()) {
+          assertThat(message.getMessage()).doesNotContain(changeOwner.getName());
+        }
+      }
+    }
+
+    BackfillResult secondRunResult = rewriter.backfillProject(project, repo, options);
+    assertThat(secondRunResult.fixedRefDiff.keySet()).isEmpty();
+    assertThat(secondRunResult.refsFailedToFix).isEmpty();
+  }
+
   @Test
   public void fixSubmitChangeMessageAndFooters() throws Exception {
     Change c = newChange();
@@ -2434,6 +2499,27 @@ public class CommitRewriterTest extends AbstractChangeNotesTest {
     }
   }
 
+  private ObjectId squash(Change c) throws Exception {
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.squashMetaHistory();
+    update.commit();
+    return repo.exactRef(RefNames.changeMetaRef(c.getId())).getObjectId();
+  }
+
+  private ObjectId rootOf(ObjectId tip) throws Exception {
+    RevCommit commit = rw.parseCommit(tip);
+    while (commit.getParentCount() > 0) {
+      commit = rw.parseCommit(commit.getParent(0));
+    }
+    return commit;
+  }
+
+  private ObjectId squashedTipOf(ObjectId tip) throws Exception {
+    RevCommit checkpoint = rw.parseCommit(rootOf(tip));
+    return ObjectId.fromString(
+        Iterables.getOnlyElement(checkpoint.getFooterLines(ChangeNoteFooters.FOOTER_CHECKPOINT)));
+  }
+
   private void assertValidCommits(
       ImmutableList<RevCommit> commitsBeforeRewrite,
       ImmutableList<RevCommit> commitsAfterRewrite,
@@ -0,0 +1,228 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.Histogram0;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefUpdateGroupCommitterTest {
+  private static final String REF1 = "refs/changes/01/1/meta";
+  private static final String REF2 = "refs/changes/02/2/meta";
+  private static final String REF3 = "refs/changes/03/3/meta";
+  private static final String REF4 = "refs/changes/04/4/meta";
+
+  private InMemoryRepository repo;
+  private TestRepository<InMemoryRepository> tr;
+  private ExecutorService executor;
+  private RecordingMetricMaker metricMaker;
+  private RefUpdateGroupCommitter groupCommitter;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("project"));
+    tr = new TestRepository<>(repo);
+    executor = Executors.newFixedThreadPool(4);
+    metricMaker = new RecordingMetricMaker();
+    // The window is long enough that the tests only finish in time if the groups are filled.
+    groupCommitter = new RefUpdateGroupCommitter(new NoteDbMetrics(metricMaker), 60_000, 2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentUpdatesAreCombined() throws Exception {
+    BatchRefUpdate bru1 = create(REF1, tr.commit().create());
+    BatchRefUpdate bru2 = create(REF2, tr.commit().create());
+
+    Future<?> f1 = executor.submit(() -> execute(bru1));
+    Future<?> f2 = executor.submit(() -> execute(bru2));
+    f1.get(10, SECONDS);
+    f2.get(10, SECONDS);
+
+    assertOk(bru1);
+    assertOk(bru2);
+    assertThat(metricMaker.batchSizes).containsExactly(2L);
+    assertThat(metricMaker.fallbacks.get()).isEqualTo(0);
+    assertThat(repo.exactRef(REF1).getObjectId()).isEqualTo(bru1.getCommands().get(0).getNewId());
+    assertThat(repo.exactRef(REF2).getObjectId()).isEqualTo(bru2.getCommands().get(0).getNewId());
+  }
+
+  @Test
+  public void failedUpdateDoesNotFailCombinedUpdates() throws Exception {
+    tr.update(REF1, tr.commit().create());
+    // Expects REF1 to not exist yet.
+    BatchRefUpdate bru1 = create(REF1, tr.commit().create());
+    BatchRefUpdate bru2 = create(REF2, tr.commit().create());
+
+    Future<?> f1 = executor.submit(() -> execute(bru1));
+    Future<?> f2 = executor.submit(() -> execute(bru2));
+    ExecutionException e = assertThrows(ExecutionException.class, () -> f1.get(10, SECONDS));
+    assertThat(e).hasCauseThat().isInstanceOf(IOException.class);
+    f2.get(10, SECONDS);
+
+    assertThat(bru1.getCommands().get(0).getResult()).isNotEqualTo(ReceiveCommand.Result.OK);
+    assertOk(bru2);
+    // The combined update failed, hence both updates were executed on their own.
+    assertThat(metricMaker.batchSizes).isEmpty();
+    assertThat(metricMaker.fallbacks.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void groupsAreLimitedToMaxUpdates() throws Exception {
+    List<BatchRefUpdate> brus = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
+    for (String ref : new String[] {REF1, REF2, REF3, REF4}) {
+      BatchRefUpdate bru = create(ref, tr.commit().create());
+      brus.add(bru);
+      futures.add(executor.submit(() -> execute(bru)));
+    }
+    for (Future<?> f : futures) {
+      f.get(10, SECONDS);
+    }
+
+    brus.forEach(RefUpdateGroupCommitterTest::assertOk);
+    assertThat(metricMaker.batchSizes).containsExactly(2L, 2L);
+    assertThat(metricMaker.fallbacks.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void updatesOfSameRefAreNotCombined() throws Exception {
+    // Neither group gets full, hence use a short window.
+    groupCommitter = new RefUpdateGroupCommitter(new NoteDbMetrics(metricMaker), 100, 2);
+    RevCommit base = tr.commit().create();
+    tr.update(REF1, base);
+    BatchRefUpdate bru1 = update(REF1, base, tr.commit().parent(base).create());
+    BatchRefUpdate bru2 = update(REF1, base, tr.commit().parent(base).create());
+
+    Future<?> f1 = executor.submit(() -> execute(bru1));
+    Future<?> f2 = executor.submit(() -> execute(bru2));
+    int failed = 0;
+    for (Future<?> f : List.of(f1, f2)) {
+      try {
+        f.get(10, SECONDS);
+      } catch (ExecutionException e) {
+        assertThat(e).hasCauseThat().isInstanceOf(IOException.class);
+        failed++;
+      }
+    }
+
+    // Combining the updates would have failed both of them and then executed each on its own.
+    // Instead each update was executed in a group of its own and only the later one failed.
+    assertThat(failed).isEqualTo(1);
+    assertThat(metricMaker.batchSizes).containsExactly(1L);
+    assertThat(metricMaker.fallbacks.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void updatesThatCannotBeCombinedAreExecutedDirectly() throws Exception {
+    BatchRefUpdate bru = create(REF1, tr.commit().create());
+    try (RevWalk rw = new RevWalk(repo)) {
+      groupCommitter.execute(repo, bru, rw, false);
+    }
+    assertOk(bru);
+    assertThat(metricMaker.batchSizes).isEmpty();
+  }
+
+  private BatchRefUpdate create(String ref, RevCommit commit) {
+    return update(ref, ObjectId.zeroId(), commit);
+  }
+
+  private BatchRefUpdate update(String ref, ObjectId oldId, RevCommit commit) {
+    BatchRefUpdate bru = repo.getRefDatabase().newBatchUpdate();
+    bru.setAtomic(true);
+    bru.addCommand(new ReceiveCommand(oldId, commit, ref));
+    return bru;
+  }
+
+  private Void execute(BatchRefUpdate bru) throws IOException {
+    try (RevWalk rw = new RevWalk(repo)) {
+      groupCommitter.execute(repo, bru, rw, true);
+    }
+    return null;
+  }
+
+  private static void assertOk(BatchRefUpdate bru) {
+    for (ReceiveCommand cmd : bru.getCommands()) {
+      assertThat(cmd.getResult()).isEqualTo(ReceiveCommand.Result.OK);
+    }
+  }
+
+  /** Records the group commit metrics. */
+  private static class RecordingMetricMaker extends DisabledMetricMaker {
+    final List<Long> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    final AtomicLong fallbacks = new AtomicLong();
+
+    @Override
+    public Histogram0 newHistogram(String name, Description desc) {
+      if (!name.equals("notedb/group_commit_batch_size")) {
+        return super.newHistogram(name, desc);
+      }
+      return new Histogram0() {
+        @Override
+        public void record(long value) {
+          batchSizes.add(value);
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+
+    @Override
+    public Counter0 newCounter(String name, Description desc) {
+      if (!name.equals("notedb/group_commit_fallback_count")) {
+        return super.newCounter(name, desc);
+      }
+      return new Counter0() {
+        @Override
+        public void incrementBy(long value) {
+          fallbacks.addAndGet(value);
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.server.cancellation.RequestCancelledException;
+import com.google.gerrit.server.cancellation.RequestStateContext;
+import com.google.gerrit.server.cancellation.RequestStateProvider;
+import com.google.gerrit.server.patch.DiffBudget.DiffBudgetExceededException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.junit.Test;
+
+public class DiffBudgetTest {
+  @Test
+  public void diffWithinBudget() throws Exception {
+    RawText a = text("a\nb\nc\n");
+    RawText b = text("a\nx\nc\n");
+    EditList expected = new HistogramDiff().diff(RawTextComparator.DEFAULT, a, b);
+
+    DiffBudget budget = DiffBudget.create(60_000);
+    assertThat(budget.isExhausted()).isFalse();
+    assertThat(budget.wrap(new HistogramDiff()).diff(RawTextComparator.DEFAULT, a, b))
+        .isEqualTo(expected);
+  }
+
+  @Test
+  public void cancelledBudgetAbortsDiff() throws Exception {
+    DiffBudget budget = DiffBudget.create(60_000);
+    budget.cancel();
+    assertThat(budget.isExhausted()).isTrue();
+
+    RawText a = text(lines("a", 50_000));
+    RawText b = text(lines("b", 50_000));
+    assertThrows(
+        DiffBudgetExceededException.class,
+        () -> budget.wrap(new HistogramDiff()).diff(RawTextComparator.DEFAULT, a, b));
+  }
+
+  @Test
+  public void awaitReturnsResult() throws Exception {
+    assertThat(DiffBudget.create(60_000).await(CompletableFuture.completedFuture("result")))
+        .isEqualTo("result");
+  }
+
+  @Test
+  public void awaitTimesOut() throws Exception {
+    DiffBudget budget = DiffBudget.create(0);
+    assertThrows(TimeoutException.class, () -> budget.await(new CompletableFuture<String>()));
+  }
+
+  @Test
+  public void awaitAbortsOnRequestCancellation() throws Exception {
+    DiffBudget budget = DiffBudget.create(60_000);
+    CompletableFuture<String> future = new CompletableFuture<>();
+    try (RequestStateContext requestStateContext =
+        RequestStateContext.open()
+            .addRequestStateProvider(
+                onCancelled ->
+                    onCancelled.onCancel(
+                        RequestStateProvider.Reason.CLIENT_CLOSED_REQUEST, /* message= */ null))) {
+      assertThrows(RequestCancelledException.class, () -> budget.await(future));
+    }
+    assertThat(budget.isExhausted()).isTrue();
+    assertThat(future.isCancelled()).isTrue();
+  }
+
+  private static RawText text(String content) {
+    return new RawText(content.getBytes(UTF_8));
+  }
+
+  private static String lines(String prefix, int count) {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      b.append(prefix).append(i % 7).append('\n');
+    }
+    return b.toString();
+  }
+}
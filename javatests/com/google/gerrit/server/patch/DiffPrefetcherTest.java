@@ -0,0 +1,260 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.patch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.BooleanProjectConfig;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.patch.gitdiff.ModifiedFile;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.InMemoryRepositoryManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiffPrefetcherTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final Change.Id CHANGE_ID = Change.id(1);
+  private static final ObjectId COMMIT_1 =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private static final ObjectId COMMIT_2 =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+
+  private Config cfg;
+  private WorkQueue workQueue;
+  private ScheduledThreadPoolExecutor executor;
+  private ProjectCache projectCache;
+  private ProjectState projectState;
+  private ChangeNotes.Factory notesFactory;
+  private DiffOperations diffOperations;
+  private InMemoryRepositoryManager repoManager;
+
+  @Before
+  public void setUp() throws Exception {
+    cfg = new Config();
+    executor = mock(ScheduledThreadPoolExecutor.class);
+    when(executor.getQueue()).thenReturn(queue);
+    doAnswer(
+            invocation -> {
+              scheduled.add(invocation.getArgument(0));
+              return null;
+            })
+        .when(executor)
+        .execute(any(Runnable.class));
+    workQueue = mock(WorkQueue.class);
+    when(workQueue.createQueue(anyInt(), anyString(), anyInt(), anyBoolean()))
+        .thenReturn(executor);
+
+    projectState = mock(ProjectState.class);
+    when(projectState.is(BooleanProjectConfig.PREFETCH_DIFFS)).thenReturn(true);
+    projectCache = mock(ProjectCache.class);
+    when(projectCache.get(PROJECT)).thenReturn(Optional.of(projectState));
+
+    ChangeNotes notes = mock(ChangeNotes.class);
+    when(notes.getPatchSets())
+        .thenReturn(
+            ImmutableSortedMap.of(
+                PatchSet.id(CHANGE_ID, 1), patchSet(1, COMMIT_1),
+                PatchSet.id(CHANGE_ID, 2), patchSet(2, COMMIT_2)));
+    notesFactory = mock(ChangeNotes.Factory.class);
+    when(notesFactory.createChecked(PROJECT, CHANGE_ID)).thenReturn(notes);
+
+    diffOperations = mock(DiffOperations.class);
+    when(diffOperations.loadModifiedFilesAgainstParentIfNecessary(
+            eq(PROJECT), any(), anyInt(), any(), any(), anyBoolean()))
+        .thenReturn(ImmutableMap.of("a.txt", mock(ModifiedFile.class)));
+    when(diffOperations.loadModifiedFilesIfNecessary(
+            eq(PROJECT), any(), any(), any(), any(), anyBoolean()))
+        .thenReturn(ImmutableMap.of("a.txt", mock(ModifiedFile.class)));
+
+    repoManager = new InMemoryRepositoryManager();
+    repoManager.createRepository(PROJECT);
+  }
+
+  @Test
+  public void prefetchDiffsOfNewPatchSet() throws Exception {
+    newPrefetcher().onRevisionCreated(event(2));
+    runScheduled();
+
+    verify(diffOperations)
+        .listModifiedFilesAgainstParent(PROJECT, COMMIT_2, 0, DiffOptions.DEFAULTS);
+    verify(diffOperations).listModifiedFiles(PROJECT, COMMIT_1, COMMIT_2, DiffOptions.DEFAULTS);
+  }
+
+  @Test
+  public void noDiffAgainstPriorPatchSetForFirstPatchSet() throws Exception {
+    newPrefetcher().onRevisionCreated(event(1));
+    runScheduled();
+
+    verify(diffOperations)
+        .listModifiedFilesAgainstParent(PROJECT, COMMIT_1, 0, DiffOptions.DEFAULTS);
+    verify(diffOperations, never()).listModifiedFiles(any(), any(), any(), any());
+  }
+
+  @Test
+  public void onlyFileListsOfLargePatchSets() throws Exception {
+    cfg.setInt("diff", null, "prefetchMaxFiles", 0);
+    newPrefetcher().onRevisionCreated(event(2));
+    runScheduled();
+
+    verify(diffOperations)
+        .loadModifiedFilesAgainstParentIfNecessary(
+            eq(PROJECT), eq(COMMIT_2), anyInt(), any(), any(), anyBoolean());
+    verify(diffOperations, never()).listModifiedFilesAgainstParent(any(), any(), anyInt(), any());
+    verify(diffOperations, never()).listModifiedFiles(any(), any(), any(), any());
+  }
+
+  @Test
+  public void skippedIfDisabledForProject() throws Exception {
+    when(projectState.is(BooleanProjectConfig.PREFETCH_DIFFS)).thenReturn(false);
+    newPrefetcher().onRevisionCreated(event(2));
+
+    assertThat(scheduled).isEmpty();
+  }
+
+  @Test
+  public void skippedIfProjectIsUnknown() throws Exception {
+    when(projectCache.get(PROJECT)).thenReturn(Optional.empty());
+    newPrefetcher().onRevisionCreated(event(2));
+
+    assertThat(scheduled).isEmpty();
+  }
+
+  @Test
+  public void skippedIfNoThreads() throws Exception {
+    cfg.setInt("diff", null, "prefetchThreads", 0);
+    newPrefetcher().onRevisionCreated(event(2));
+
+    verify(workQueue, never()).createQueue(anyInt(), anyString(), anyInt(), anyBoolean());
+    verifyNoInteractions(projectCache);
+  }
+
+  @Test
+  public void skippedIfQueueIsFull() throws Exception {
+    cfg.setInt("diff", null, "prefetchMaxQueued", 1);
+    queue.add(() -> {});
+    newPrefetcher().onRevisionCreated(event(2));
+
+    assertThat(scheduled).isEmpty();
+  }
+
+  @Test
+  public void prefetchFailureIsIsolated() throws Exception {
+    when(diffOperations.listModifiedFilesAgainstParent(any(), any(), anyInt(), any()))
+        .thenThrow(new DiffNotAvailableException("failure"));
+    newPrefetcher().onRevisionCreated(event(2));
+
+    // Doesn't throw.
+    runScheduled();
+  }
+
+  @Test
+  public void loadFailureIsIsolated() throws Exception {
+    when(notesFactory.createChecked(PROJECT, CHANGE_ID)).thenThrow(new StorageException("failure"));
+    newPrefetcher().onRevisionCreated(event(2));
+
+    // Doesn't throw.
+    runScheduled();
+    verifyNoInteractions(diffOperations);
+  }
+
+  @Test
+  public void schedulingFailureIsIsolated() throws Exception {
+    when(projectCache.get(PROJECT)).thenThrow(new StorageException("failure"));
+    // Doesn't throw.
+    newPrefetcher().onRevisionCreated(event(2));
+
+    when(projectCache.get(PROJECT)).thenReturn(Optional.of(projectState));
+    doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+    // Doesn't throw.
+    newPrefetcher().onRevisionCreated(event(2));
+  }
+
+  private DiffPrefetcher newPrefetcher() {
+    return new DiffPrefetcher(
+        cfg,
+        workQueue,
+        new DisabledMetricMaker(),
+        projectCache,
+        notesFactory,
+        repoManager,
+        diffOperations);
+  }
+
+  private void runScheduled() {
+    List<Runnable> tasks = new ArrayList<>(scheduled);
+    scheduled.clear();
+    tasks.forEach(Runnable::run);
+  }
+
+  private static PatchSet patchSet(int num, ObjectId commitId) {
+    return PatchSet.builder()
+        .id(PatchSet.id(CHANGE_ID, num))
+        .commitId(commitId)
+        .uploader(Account.id(1000))
+        .realUploader(Account.id(1000))
+        .createdOn(TimeUtil.now())
+        .build();
+  }
+
+  private static RevisionCreatedListener.Event event(int psNum) {
+    ChangeInfo change = new ChangeInfo();
+    change.project = PROJECT.get();
+    change._number = CHANGE_ID.get();
+    RevisionInfo revision = new RevisionInfo();
+    revision._number = psNum;
+    RevisionCreatedListener.Event event = mock(RevisionCreatedListener.Event.class);
+    when(event.getChange()).thenReturn(change);
+    when(event.getRevision()).thenReturn(revision);
+    return event;
+  }
+}
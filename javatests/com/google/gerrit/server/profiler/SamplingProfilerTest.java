@@ -0,0 +1,146 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.gerrit.server.profiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.google.gerrit.server.TraceRequestListener;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.logging.LoggingContext;
+import com.google.gerrit.server.logging.TraceContext;
+import java.util.concurrent.CountDownLatch;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SamplingProfilerTest {
+  private final SamplingProfiler profiler = newProfiler(new Config());
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final CountDownLatch done = new CountDownLatch(1);
+  private Thread requestThread;
+
+  @Before
+  public void setUp() {
+    LoggingContext.setTrackTagsOfAllThreads(true);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    done.countDown();
+    if (requestThread != null) {
+      requestThread.join();
+    }
+    LoggingContext.setTrackTagsOfAllThreads(false);
+  }
+
+  @Test
+  public void samplesRequestThreads() throws Exception {
+    startRequestThread("REST /foo", this::spin);
+
+    profiler.sample();
+    profiler.sample();
+
+    SamplingProfiler.Status status = profiler.getStatus();
+    assertThat(status.samples).isEqualTo(2);
+    assertThat(status.samplesByRequest).containsExactly("REST /foo", 2L);
+    assertThat(profiler.getCollapsedStacks("REST /foo"))
+        .contains(SamplingProfilerTest.class.getName() + ".spin");
+    assertThat(profiler.getCollapsedStacks(null)).startsWith("REST /foo;");
+    assertThat(profiler.getCollapsedStacks("REST /bar")).isEmpty();
+  }
+
+  @Test
+  public void threadsWithoutRequestAreNotSampled() throws Exception {
+    startRequestThread(null, this::spin);
+
+    profiler.sample();
+
+    assertThat(profiler.getStatus().samples).isEqualTo(1);
+    assertThat(profiler.getStatus().samplesByRequest).isEmpty();
+  }
+
+  @Test
+  public void waitingThreadsAreNotSampledInCpuMode() throws Exception {
+    Config cfg = new Config();
+    cfg.setEnum("profiler", null, "mode", SamplingProfiler.Mode.CPU);
+    SamplingProfiler cpuProfiler = newProfiler(cfg);
+    startRequestThread("REST /foo", this::await);
+    while (requestThread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+
+    cpuProfiler.sample();
+
+    assertThat(cpuProfiler.getStatus().samplesByRequest).isEmpty();
+  }
+
+  @Test
+  public void threadsAreOnlyTrackedWhileProfiling() throws Exception {
+    LoggingContext.setTrackTagsOfAllThreads(false);
+    startRequestThread("REST /foo", this::spin);
+
+    assertThat(LoggingContext.getTagsOfAllThreads()).doesNotContainKey(requestThread);
+    profiler.sample();
+    assertThat(profiler.getStatus().samplesByRequest).isEmpty();
+  }
+
+  @Test
+  public void reset() throws Exception {
+    startRequestThread("REST /foo", this::spin);
+    profiler.sample();
+
+    profiler.reset();
+
+    assertThat(profiler.getStatus().samples).isEqualTo(0);
+    assertThat(profiler.getCollapsedStacks(null)).isEmpty();
+  }
+
+  private static SamplingProfiler newProfiler(Config cfg) {
+    return new SamplingProfiler(cfg, mock(WorkQueue.class));
+  }
+
+  private void startRequestThread(String request, Runnable work) throws InterruptedException {
+    requestThread =
+        new Thread(
+            () -> {
+              try (TraceContext traceContext = TraceContext.open()) {
+                if (request != null) {
+                  traceContext.addTag(TraceRequestListener.TAG_REQUEST, request);
+                } else {
+                  traceContext.addTag("project", "foo");
+                }
+                started.countDown();
+                work.run();
+              }
+            });
+    requestThread.start();
+    started.await();
+  }
+
+  private void spin() {
+    while (done.getCount() > 0) {
+      Thread.onSpinWait();
+    }
+  }
+
+  private void await() {
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,340 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.project;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.CachedProjectConfig;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.SubmitRequirement;
+import com.google.gerrit.entities.SubmitRequirementExpression;
+import com.google.gerrit.entities.SubmitRequirementExpressionResult;
+import com.google.gerrit.entities.SubmitRequirementExpressionResult.Status;
+import com.google.gerrit.entities.SubmitRequirementResult;
+import com.google.gerrit.server.cache.proto.Cache.SubmitRequirementsResultsKeyProto;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class SubmitRequirementsResultsCacheTest {
+  private static final ObjectId COMMIT =
+      ObjectId.fromString("aabbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+  private static final ObjectId OTHER_COMMIT =
+      ObjectId.fromString("ccdddddddddddddddddddddddddddddddddddddd");
+  private static final ObjectId META_ID =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private static final ObjectId OTHER_META_ID =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+  private static final ObjectId CONFIG_REV =
+      ObjectId.fromString("3333333333333333333333333333333333333333");
+  private static final ObjectId OTHER_CONFIG_REV =
+      ObjectId.fromString("4444444444444444444444444444444444444444");
+
+  private static final SubmitRequirement VERIFIED =
+      SubmitRequirement.builder()
+          .setName("Verified")
+          .setSubmittabilityExpression(SubmitRequirementExpression.create("label:Verified=+1"))
+          .setAllowOverrideInChildProjects(false)
+          .build();
+
+  @Test
+  public void cacheableExpressions() {
+    assertCacheable("is:open");
+    assertCacheable("label:Code-Review=MAX AND -label:Code-Review=MIN");
+    assertCacheable("label:Code-Review=+2,user=non_uploader");
+    assertCacheable("label:Code-Review=+2,owner");
+    assertCacheable("label:\"Code-Review=+1,count>=2\"");
+    assertCacheable("-is:wip AND (branch:master OR hashtag:age)");
+    assertCacheable("owner:admin OR uploader:admin");
+  }
+
+  @Test
+  public void expressionsThatDependOnGroupMembershipsAreNotCacheable() {
+    assertNotCacheable("ownerin:Administrators");
+    assertNotCacheable("is:open AND -uploaderin:Administrators");
+    assertNotCacheable("reviewerin:Administrators");
+    assertNotCacheable("label:Code-Review=+2,group=Administrators");
+    assertNotCacheable("label:Code-Review=+2,Administrators");
+    assertNotCacheable("label:Code-Review=+2,user=admin");
+    assertNotCacheable("label:\"Code-Review=+2,user=admin\"");
+  }
+
+  @Test
+  public void expressionsThatDependOnBranchTipOrTimeAreNotCacheable() {
+    assertNotCacheable("is:mergeable");
+    assertNotCacheable("is:open AND (is:MERGEABLE OR is:merge)");
+    assertNotCacheable("-age:1w");
+  }
+
+  @Test
+  public void keyContainsInputsOfEvaluation() {
+    SubmitRequirementsResultsKeyProto key =
+        SubmitRequirementsResultsCache.key(
+                changeData(META_ID, COMMIT),
+                projectState(CONFIG_REV, OTHER_CONFIG_REV),
+                ImmutableList.of())
+            .get();
+
+    assertThat(key)
+        .isEqualTo(
+            SubmitRequirementsResultsCache.key(
+                    changeData(META_ID, COMMIT),
+                    projectState(CONFIG_REV, OTHER_CONFIG_REV),
+                    ImmutableList.of())
+                .get());
+    assertThat(key)
+        .isNotEqualTo(
+            SubmitRequirementsResultsCache.key(
+                    changeData(OTHER_META_ID, COMMIT),
+                    projectState(CONFIG_REV, OTHER_CONFIG_REV),
+                    ImmutableList.of())
+                .get());
+    assertThat(key)
+        .isNotEqualTo(
+            SubmitRequirementsResultsCache.key(
+                    changeData(META_ID, OTHER_COMMIT),
+                    projectState(CONFIG_REV, OTHER_CONFIG_REV),
+                    ImmutableList.of())
+                .get());
+    assertThat(key)
+        .isNotEqualTo(
+            SubmitRequirementsResultsCache.key(
+                    changeData(META_ID, COMMIT),
+                    projectState(CONFIG_REV, CONFIG_REV),
+                    ImmutableList.of())
+                .get());
+    assertThat(key)
+        .isNotEqualTo(
+            SubmitRequirementsResultsCache.key(
+                    changeData(META_ID, COMMIT),
+                    projectState(CONFIG_REV, OTHER_CONFIG_REV),
+                    ImmutableList.of(VERIFIED))
+                .get());
+  }
+
+  @Test
+  public void noKeyWithoutMetaId() {
+    assertThat(
+            SubmitRequirementsResultsCache.key(
+                changeData(null, COMMIT), projectState(CONFIG_REV), ImmutableList.of()))
+        .isEmpty();
+  }
+
+  @Test
+  public void resultsAreCachedByKey() {
+    SubmitRequirementsResultsCache cache = newCache();
+    AtomicInteger evaluations = new AtomicInteger();
+    ImmutableMap<SubmitRequirement, SubmitRequirementResult> results =
+        ImmutableMap.of(VERIFIED, result(Status.PASS));
+
+    assertThat(get(cache, META_ID, evaluations, results)).isEqualTo(results);
+    assertThat(evaluations.get()).isEqualTo(1);
+
+    assertThat(get(cache, META_ID, evaluations, results)).isEqualTo(results);
+    assertThat(evaluations.get()).isEqualTo(1);
+
+    assertThat(get(cache, OTHER_META_ID, evaluations, results)).isEqualTo(results);
+    assertThat(evaluations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void resultsWithErrorsAreNotCached() {
+    SubmitRequirementsResultsCache cache = newCache();
+    AtomicInteger evaluations = new AtomicInteger();
+    ImmutableMap<SubmitRequirement, SubmitRequirementResult> results =
+        ImmutableMap.of(VERIFIED, result(Status.ERROR));
+
+    assertThat(get(cache, META_ID, evaluations, results)).isEqualTo(results);
+    assertThat(get(cache, META_ID, evaluations, results)).isEqualTo(results);
+    assertThat(evaluations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void resultsAreNotCachedWithoutKey() {
+    SubmitRequirementsResultsCache cache = newCache();
+    AtomicInteger evaluations = new AtomicInteger();
+    ImmutableMap<SubmitRequirement, SubmitRequirementResult> results =
+        ImmutableMap.of(VERIFIED, result(Status.PASS));
+
+    assertThat(get(cache, null, evaluations, results)).isEqualTo(results);
+    assertThat(get(cache, null, evaluations, results)).isEqualTo(results);
+    assertThat(evaluations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void serializeResults() {
+    SubmitRequirementExpression applicability = SubmitRequirementExpression.create("is:open");
+    SubmitRequirementExpression submittability =
+        SubmitRequirementExpression.create("label:Code-Review=MAX AND -label:Code-Review=MIN");
+    SubmitRequirementExpression override = SubmitRequirementExpression.create("label:Override=+1");
+    SubmitRequirement codeReview =
+        SubmitRequirement.builder()
+            .setName("Code-Review")
+            .setDescription(Optional.of("Requires a code review"))
+            .setApplicabilityExpression(Optional.of(applicability))
+            .setSubmittabilityExpression(submittability)
+            .setOverrideExpression(Optional.of(override))
+            .setAllowOverrideInChildProjects(true)
+            .build();
+    SubmitRequirement verified =
+        SubmitRequirement.builder()
+            .setName("Verified")
+            .setSubmittabilityExpression(SubmitRequirementExpression.create("label:Verified=+1"))
+            .setAllowOverrideInChildProjects(false)
+            .build();
+
+    ImmutableList<SubmitRequirementResult> results =
+        ImmutableList.of(
+            SubmitRequirementResult.builder()
+                .legacy(Optional.of(false))
+                .submitRequirement(codeReview)
+                .patchSetCommitId(COMMIT)
+                .applicabilityExpressionResult(
+                    Optional.of(
+                        SubmitRequirementExpressionResult.create(
+                            applicability,
+                            Status.PASS,
+                            ImmutableList.of("is:open"),
+                            ImmutableList.of())))
+                .submittabilityExpressionResult(
+                    Optional.of(
+                        SubmitRequirementExpressionResult.create(
+                            submittability,
+                            Status.FAIL,
+                            ImmutableList.of("label:Code-Review=MIN"),
+                            ImmutableList.of("label:Code-Review=MAX"))))
+                .overrideExpressionResult(
+                    Optional.of(
+                        SubmitRequirementExpressionResult.create(
+                            override,
+                            Status.FAIL,
+                            ImmutableList.of(),
+                            ImmutableList.of("label:Override=+1"))))
+                .build(),
+            SubmitRequirementResult.builder()
+                .legacy(Optional.of(false))
+                .submitRequirement(verified)
+                .patchSetCommitId(COMMIT)
+                .submittabilityExpressionResult(
+                    Optional.of(
+                        SubmitRequirementExpressionResult.create(
+                            verified.submittabilityExpression(),
+                            Status.PASS,
+                            ImmutableList.of("label:Verified=+1"),
+                            ImmutableList.of())))
+                .build());
+
+    SubmitRequirementsResultsCache.Serializer serializer =
+        SubmitRequirementsResultsCache.Serializer.INSTANCE;
+    assertThat(serializer.deserialize(serializer.serialize(results)))
+        .containsExactlyElementsIn(results)
+        .inOrder();
+  }
+
+  @Test
+  public void serializeEmptyResults() {
+    SubmitRequirementsResultsCache.Serializer serializer =
+        SubmitRequirementsResultsCache.Serializer.INSTANCE;
+    assertThat(serializer.deserialize(serializer.serialize(ImmutableList.of()))).isEmpty();
+  }
+
+  private static void assertCacheable(String expression) {
+    assertThat(
+            SubmitRequirementsResultsCache.isCacheable(
+                SubmitRequirementExpression.create(expression)))
+        .isTrue();
+  }
+
+  private static void assertNotCacheable(String expression) {
+    assertThat(
+            SubmitRequirementsResultsCache.isCacheable(
+                SubmitRequirementExpression.create(expression)))
+        .isFalse();
+  }
+
+  private static SubmitRequirementsResultsCache newCache() {
+    Cache<SubmitRequirementsResultsKeyProto, ImmutableList<SubmitRequirementResult>> cache =
+        CacheBuilder.newBuilder().build();
+    return new SubmitRequirementsResultsCache(cache);
+  }
+
+  private static ImmutableMap<SubmitRequirement, SubmitRequirementResult> get(
+      SubmitRequirementsResultsCache cache,
+      ObjectId metaId,
+      AtomicInteger evaluations,
+      ImmutableMap<SubmitRequirement, SubmitRequirementResult> results) {
+    return cache.get(
+        changeData(metaId, COMMIT),
+        projectState(CONFIG_REV),
+        ImmutableList.of(),
+        () -> {
+          evaluations.incrementAndGet();
+          return results;
+        });
+  }
+
+  private static SubmitRequirementResult result(Status status) {
+    return SubmitRequirementResult.builder()
+        .legacy(Optional.of(false))
+        .submitRequirement(VERIFIED)
+        .patchSetCommitId(COMMIT)
+        .submittabilityExpressionResult(
+            Optional.of(
+                SubmitRequirementExpressionResult.create(
+                    VERIFIED.submittabilityExpression(),
+                    status,
+                    ImmutableList.of(),
+                    ImmutableList.of())))
+        .build();
+  }
+
+  private static ChangeData changeData(ObjectId metaId, ObjectId commit) {
+    ChangeNotes notes = mock(ChangeNotes.class);
+    when(notes.getMetaId()).thenReturn(metaId);
+    PatchSet ps = mock(PatchSet.class);
+    when(ps.commitId()).thenReturn(commit);
+    ChangeData cd = mock(ChangeData.class);
+    when(cd.notes()).thenReturn(notes);
+    when(cd.currentPatchSet()).thenReturn(ps);
+    when(cd.project()).thenReturn(Project.nameKey("project"));
+    when(cd.getId()).thenReturn(Change.id(1));
+    return cd;
+  }
+
+  private static ProjectState projectState(ObjectId... configRevisions) {
+    ImmutableList.Builder<ProjectState> tree = ImmutableList.builder();
+    for (ObjectId revision : configRevisions) {
+      CachedProjectConfig config = mock(CachedProjectConfig.class);
+      when(config.getRevision()).thenReturn(Optional.of(revision));
+      ProjectState state = mock(ProjectState.class);
+      when(state.getConfig()).thenReturn(config);
+      tree.add(state);
+    }
+    ProjectState projectState = mock(ProjectState.class);
+    when(projectState.tree()).thenReturn(tree.build());
+    return projectState;
+  }
+}
@@ -0,0 +1,252 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.query.change;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.query.FieldBundle;
+import com.google.gerrit.index.query.Matchable;
+import com.google.gerrit.index.query.OperatorPredicate;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.index.query.ResultSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AndChangeSourceTest {
+  private static final IndexConfig PIPELINED =
+      IndexConfig.builder().pipelinedPagination(true).build();
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void matchesArePreservedInOrderAcrossPartitions() {
+    ImmutableList<ChangeData> changes = changes(95);
+    AndChangeSource source = source(executor, new TestFilter(cd -> cd.getId().get() % 3 != 0));
+
+    assertThat(ids(source.matchAll(changes)))
+        .containsExactlyElementsIn(
+            IntStream.rangeClosed(1, 95).filter(i -> i % 3 != 0).boxed().collect(toImmutableList()))
+        .inOrder();
+  }
+
+  @Test
+  public void matchesArePreservedInOrderIfPartitionsAreMatchedByExecutor() {
+    ImmutableList<ChangeData> changes = changes(35);
+    AndChangeSource source =
+        source(
+            MoreExecutors.newDirectExecutorService(),
+            new TestFilter(cd -> cd.getId().get() % 2 == 0));
+
+    assertThat(ids(source.matchAll(changes)))
+        .containsExactlyElementsIn(
+            IntStream.rangeClosed(1, 35).filter(i -> i % 2 == 0).boxed().collect(toImmutableList()))
+        .inOrder();
+  }
+
+  @Test
+  public void callerMatchesPartitionsIfExecutorIsSaturated() throws Exception {
+    CountDownLatch release = saturateExecutor();
+    try {
+      Set<Thread> threads = ConcurrentHashMap.newKeySet();
+      AndChangeSource source =
+          source(
+              executor,
+              new TestFilter(
+                  cd -> {
+                    threads.add(Thread.currentThread());
+                    return true;
+                  }));
+
+      assertThat(ids(source.matchAll(changes(50)))).hasSize(50);
+      assertThat(threads).containsExactly(Thread.currentThread());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void matchingMakesProgressIfCalledFromTheOnlyExecutorThread() throws Exception {
+    ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    try {
+      AndChangeSource source = source(singleThread, new TestFilter(cd -> true));
+      Future<List<ChangeData>> matches =
+          singleThread.submit(() -> source.matchAll(changes(30)));
+      assertThat(ids(matches.get(10, SECONDS))).hasSize(30);
+    } finally {
+      singleThread.shutdownNow();
+    }
+  }
+
+  @Test
+  public void exceptionOfPartitionMatchedByExecutorIsPropagated() {
+    StorageException failure = new StorageException("cannot match");
+    AndChangeSource source =
+        source(
+            MoreExecutors.newDirectExecutorService(),
+            new TestFilter(
+                cd -> {
+                  if (cd.getId().get() == 27) {
+                    throw failure;
+                  }
+                  return true;
+                }));
+
+    StorageException thrown =
+        assertThrows(StorageException.class, () -> source.matchAll(changes(35)));
+    assertThat(thrown).isSameInstanceAs(failure);
+  }
+
+  @Test
+  public void exceptionOfPartitionMatchedByCallerIsPropagated() {
+    StorageException failure = new StorageException("cannot match");
+    CountDownLatch release = saturateExecutor();
+    try {
+      AndChangeSource source =
+          source(
+              executor,
+              new TestFilter(
+                  cd -> {
+                    if (cd.getId().get() == 27) {
+                      throw failure;
+                    }
+                    return true;
+                  }));
+
+      StorageException thrown =
+          assertThrows(StorageException.class, () -> source.matchAll(changes(35)));
+      assertThat(thrown).isSameInstanceAs(failure);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /** Blocks all threads of the executor until the returned latch is counted down. */
+  private CountDownLatch saturateExecutor() throws Exception {
+    CountDownLatch started = new CountDownLatch(4);
+    CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 4; i++) {
+      Future<?> unused =
+          executor.submit(
+              () -> {
+                started.countDown();
+                release.await();
+                return null;
+              });
+    }
+    assertThat(started.await(10, SECONDS)).isTrue();
+    return release;
+  }
+
+  private static AndChangeSource source(ExecutorService executor, Predicate<ChangeData> filter) {
+    return new AndChangeSource(ImmutableList.of(new TestSource(), filter), 0, PIPELINED, executor);
+  }
+
+  private static ImmutableList<ChangeData> changes(int count) {
+    Project.NameKey project = Project.nameKey("project");
+    return IntStream.rangeClosed(1, count)
+        .mapToObj(i -> ChangeData.createForTest(project, Change.id(i), 1, ObjectId.zeroId()))
+        .collect(toImmutableList());
+  }
+
+  private static ImmutableList<Integer> ids(List<ChangeData> changes) {
+    return changes.stream().map(cd -> cd.getId().get()).collect(toImmutableList());
+  }
+
+  private static class TestSource extends OperatorPredicate<ChangeData>
+      implements ChangeDataSource, Matchable<ChangeData> {
+    TestSource() {
+      super("source", "test");
+    }
+
+    @Override
+    public boolean hasChange() {
+      return true;
+    }
+
+    @Override
+    public int getCardinality() {
+      return 1;
+    }
+
+    @Override
+    public ResultSet<ChangeData> read() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ResultSet<FieldBundle> readRaw() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean match(ChangeData cd) {
+      return true;
+    }
+
+    @Override
+    public int getCost() {
+      return 0;
+    }
+  }
+
+  private static class TestFilter extends OperatorPredicate<ChangeData>
+      implements Matchable<ChangeData> {
+    private final java.util.function.Predicate<ChangeData> matches;
+
+    TestFilter(java.util.function.Predicate<ChangeData> matches) {
+      super("filter", "test");
+      this.matches = matches;
+    }
+
+    @Override
+    public boolean match(ChangeData cd) {
+      return matches.test(cd);
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+}
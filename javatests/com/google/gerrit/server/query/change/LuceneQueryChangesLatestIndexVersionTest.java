@@ -37,4 +37,18 @@ public class LuceneQueryChangesLatestIndexVersionTest extends LuceneQueryChanges
     config.setString("index", null, "paginationType", "NONE");
     return config;
   }
+
+  @ConfigSuite.Config
+  public static Config pipelinedPagination() {
+    Config config = defaultConfig();
+    config.setBoolean("index", null, "pipelinedPagination", true);
+    return config;
+  }
+
+  @ConfigSuite.Config
+  public static Config pipelinedSearchAfterPagination() {
+    Config config = searchAfterPaginationType();
+    config.setBoolean("index", null, "pipelinedPagination", true);
+    return config;
+  }
 }
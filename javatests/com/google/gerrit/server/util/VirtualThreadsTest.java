@@ -0,0 +1,65 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.TruthJUnit.assume;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+  private static final ThreadFactory PLATFORM = Executors.defaultThreadFactory();
+
+  @Test
+  public void platformThreadsIfNotRequested() {
+    assertThat(VirtualThreads.newThreadFactory(false, "test", () -> Optional.of(r -> null)))
+        .isEmpty();
+    assertThat(VirtualThreads.threadFactory(false, PLATFORM, "test")).isSameInstanceAs(PLATFORM);
+  }
+
+  @Test
+  public void fallbackToPlatformThreadsIfNotSupported() {
+    assertThat(VirtualThreads.newThreadFactory(true, "test", Optional::empty)).isEmpty();
+  }
+
+  @Test
+  public void virtualThreadFactoryIfRequestedAndSupported() {
+    ThreadFactory virtual = r -> null;
+    assertThat(VirtualThreads.newThreadFactory(true, "test", () -> Optional.of(virtual)))
+        .hasValue(virtual);
+  }
+
+  @Test
+  public void createsVirtualThreadsIfSupported() {
+    assume().that(VirtualThreads.isSupported()).isTrue();
+    Thread thread = VirtualThreads.threadFactory(true, PLATFORM, "test").newThread(() -> {});
+    assertThat(VirtualThreads.isVirtual(thread)).isTrue();
+  }
+
+  @Test
+  public void createsPlatformThreadsIfNotSupported() {
+    assume().that(VirtualThreads.isSupported()).isFalse();
+    assertThat(VirtualThreads.newThreadFactory()).isEmpty();
+    assertThat(VirtualThreads.threadFactory(true, PLATFORM, "test")).isSameInstanceAs(PLATFORM);
+  }
+
+  @Test
+  public void platformThreadIsNotVirtual() {
+    assertThat(VirtualThreads.isVirtual(PLATFORM.newThread(() -> {}))).isFalse();
+  }
+}
@@ -0,0 +1,115 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.sshd.commands;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.extensions.registration.RegistrationHandle;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamEventsMetricsTest {
+  private RecordingMetricMaker metricMaker;
+  private StreamEventsMetrics metrics;
+
+  @Before
+  public void setUp() {
+    metricMaker = new RecordingMetricMaker();
+    metrics = new StreamEventsMetrics(metricMaker);
+  }
+
+  @Test
+  public void deliveredAndDroppedEventsAreCounted() {
+    metrics.delivered();
+    metrics.delivered();
+    metrics.dropped();
+
+    assertThat(metricMaker.count("sshd/stream_events/delivered_events")).isEqualTo(2);
+    assertThat(metricMaker.count("sshd/stream_events/dropped_events")).isEqualTo(1);
+  }
+
+  @Test
+  public void countersHaveNoPerUserField() {
+    assertThat(metricMaker.counters.keySet())
+        .containsExactly(
+            "sshd/stream_events/delivered_events", "sshd/stream_events/dropped_events");
+  }
+
+  @Test
+  public void gaugesReflectRegisteredQueues() {
+    assertThat(metricMaker.gauge("sshd/stream_events/subscribers")).isEqualTo(0);
+    assertThat(metricMaker.gauge("sshd/stream_events/max_queued_events")).isEqualTo(0);
+
+    AtomicInteger size1 = new AtomicInteger(3);
+    AtomicInteger size2 = new AtomicInteger(7);
+    IntSupplier queue1 = size1::get;
+    IntSupplier queue2 = size2::get;
+    metrics.register(queue1);
+    metrics.register(queue2);
+    assertThat(metricMaker.gauge("sshd/stream_events/subscribers")).isEqualTo(2);
+    assertThat(metricMaker.gauge("sshd/stream_events/max_queued_events")).isEqualTo(7);
+
+    size1.set(10);
+    assertThat(metricMaker.gauge("sshd/stream_events/max_queued_events")).isEqualTo(10);
+
+    metrics.unregister(queue1);
+    assertThat(metricMaker.gauge("sshd/stream_events/subscribers")).isEqualTo(1);
+    assertThat(metricMaker.gauge("sshd/stream_events/max_queued_events")).isEqualTo(7);
+  }
+
+  private static class RecordingMetricMaker extends DisabledMetricMaker {
+    final Map<String, AtomicLong> counters = new HashMap<>();
+    final Map<String, Supplier<?>> gauges = new HashMap<>();
+
+    @Override
+    public Counter0 newCounter(String name, Description desc) {
+      AtomicLong count = new AtomicLong();
+      counters.put(name, count);
+      return new Counter0() {
+        @Override
+        public void incrementBy(long value) {
+          count.addAndGet(value);
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+
+    @Override
+    public <V> RegistrationHandle newCallbackMetric(
+        String name, Class<V> valueClass, Description desc, Supplier<V> trigger) {
+      gauges.put(name, trigger);
+      return () -> {};
+    }
+
+    long count(String name) {
+      return counters.get(name).get();
+    }
+
+    Object gauge(String name) {
+      return gauges.get(name).get();
+    }
+  }
+}